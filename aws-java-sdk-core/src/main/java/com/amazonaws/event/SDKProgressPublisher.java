@@ -21,10 +21,15 @@ import static com.amazonaws.event.ProgressEventType.REQUEST_CONTENT_LENGTH_EVENT
 import static com.amazonaws.event.ProgressEventType.RESPONSE_BYTE_TRANSFER_EVENT;
 import static com.amazonaws.event.ProgressEventType.RESPONSE_CONTENT_LENGTH_EVENT;
 
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.logging.LogFactory;
@@ -33,6 +38,14 @@ import org.apache.commons.logging.LogFactory;
  * This class is responsible for executing the callback method of
  * ProgressListener; listener callbacks are executed sequentially in a separate
  * single thread.
+ * <p>
+ * Each asynchronous listener has at most one delivery task queued at a time.
+ * Byte transfer events with a positive byte count published while that task
+ * is pending are folded into a single event carrying the sum of their byte
+ * counts, so the amount of queued work is bounded by the number of active
+ * listeners rather than by the number of events. Any other event is delivered
+ * unchanged. A delivery task runs a bounded number of callbacks before giving
+ * the callback thread to the other listeners.
  */
 public class SDKProgressPublisher {
 
@@ -41,6 +54,16 @@ public class SDKProgressPublisher {
      */
     private static volatile Future<?> latestFutureTask;
 
+    /**
+     * The maximum number of callbacks one delivery task runs before yielding
+     * the callback thread to the delivery tasks of other listeners.
+     */
+    static final int MAX_CALLBACKS_PER_DRAIN = 64;
+
+    /** The pending callbacks of every asynchronous listener with work queued. */
+    private static final ConcurrentMap<ProgressListener, Mailbox> mailboxes =
+            new ConcurrentHashMap<ProgressListener, Mailbox>();
+
     /**
      * Used to deliver a progress event to the given listener.
      *
@@ -58,7 +81,11 @@ public class SDKProgressPublisher {
         return deliverEvent(listener, new ProgressEvent(type));
     }
 
-    private static Future<?> deliverEvent(final ProgressListener listener,
+    /**
+     * Delivers the event to the listener, directly if the listener is safe to
+     * call synchronously, or else in the callback thread.
+     */
+    static Future<?> deliverEvent(final ProgressListener listener,
             final ProgressEvent event) {
 
         if (listener instanceof DeliveryMode) {
@@ -68,16 +95,40 @@ public class SDKProgressPublisher {
                 return quietlyCallListener(listener, event);
             }
         }
-        // Not safe to call the listener directly; so submit an async task.
+        // Not safe to call the listener directly; so queue an async callback.
         // This is unfortunate as the listener should never block in the first
         // place, but such task submission is necessary to remain backward
         // compatible.
-        return latestFutureTask = LazyHolder.executor.submit(new Runnable() {
+        final ProgressEventType type = event.getEventType();
+        if ((type == REQUEST_BYTE_TRANSFER_EVENT
+        ||   type == RESPONSE_BYTE_TRANSFER_EVENT) && event.getBytes() > 0) {
+            return deliverAsync(listener, null, type, event.getBytes());
+        }
+        return deliverAsync(listener, new Runnable() {
             @Override
             public void run() {
                 listener.progressChanged(event);
             }
-        });
+        }, null, 0);
+    }
+
+    private static Future<?> deliverAsync(ProgressListener listener,
+            Runnable callback, ProgressEventType byteType, long bytes) {
+        for (;;) {
+            Mailbox mailbox = mailboxes.get(listener);
+            if (mailbox == null) {
+                Mailbox created = new Mailbox(listener);
+                mailbox = mailboxes.putIfAbsent(listener, created);
+                if (mailbox == null) {
+                    mailbox = created;
+                }
+            }
+            Future<?> future = mailbox.offer(callback, byteType, bytes);
+            if (future != null) {
+                return latestFutureTask = future;
+            }
+            // The mailbox was drained and retired concurrently; use a new one
+        }
     }
 
     private static Future<?> quietlyCallListener(final ProgressListener listener,
@@ -237,6 +288,123 @@ public class SDKProgressPublisher {
         }
     }
 
+    /**
+     * The callbacks queued for one asynchronous listener. At most one drain of
+     * a mailbox is submitted to the executor at any time; once drained, the
+     * mailbox is retired so that idle listeners are not retained.
+     */
+    private static final class Mailbox implements Runnable {
+        private final ProgressListener listener;
+        // All the fields below are guarded by this mailbox
+        private final Queue<Runnable> callbacks = new LinkedList<Runnable>();
+        private long requestBytes;
+        private long responseBytes;
+        private Future<?> future;
+        private boolean retired;
+
+        Mailbox(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Queues the callback, or adds the bytes, which must be positive, to
+         * the pending byte count when the callback is null.
+         *
+         * @return the future of the drain that will deliver the work; or null
+         * if the mailbox has been retired and the caller must use a new one.
+         */
+        synchronized Future<?> offer(Runnable callback,
+                ProgressEventType byteType, long bytes) {
+            if (retired) {
+                return null;
+            }
+            if (callback == null) {
+                if (byteType == REQUEST_BYTE_TRANSFER_EVENT) {
+                    requestBytes += bytes;
+                } else {
+                    responseBytes += bytes;
+                }
+            } else {
+                // Keep the byte counts ahead of the events that follow them
+                flushBytes();
+                callbacks.add(callback);
+            }
+            if (future == null) {
+                future = LazyHolder.executor.submit(this);
+            }
+            return future;
+        }
+
+        @Override
+        public void run() {
+            for (int delivered = 0;; delivered++) {
+                Runnable callback;
+                synchronized (this) {
+                    if (delivered == MAX_CALLBACKS_PER_DRAIN && resubmit()) {
+                        return;
+                    }
+                    callback = callbacks.poll();
+                    if (callback == null) {
+                        flushBytes();
+                        callback = callbacks.poll();
+                    }
+                    if (callback == null) {
+                        retired = true;
+                        future = null;
+                        mailboxes.remove(listener, this);
+                        return;
+                    }
+                }
+                try {
+                    callback.run();
+                } catch (Throwable t) {
+                    // Failures of async listeners have always been ignored
+                    LogFactory.getLog(SDKProgressPublisher.class)
+                        .debug("Failure from the event listener", t);
+                }
+            }
+        }
+
+        /**
+         * Queues another drain of this mailbox behind the drains of other
+         * listeners. Returns false if the executor has been shut down, in
+         * which case the current drain carries on.
+         */
+        private boolean resubmit() {
+            try {
+                future = LazyHolder.executor.submit(this);
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+            latestFutureTask = future;
+            return true;
+        }
+
+        private void flushBytes() {
+            if (requestBytes > 0) {
+                callbacks.add(newByteEventCallback(REQUEST_BYTE_TRANSFER_EVENT,
+                        requestBytes));
+                requestBytes = 0;
+            }
+            if (responseBytes > 0) {
+                callbacks.add(newByteEventCallback(RESPONSE_BYTE_TRANSFER_EVENT,
+                        responseBytes));
+                responseBytes = 0;
+            }
+        }
+
+        private Runnable newByteEventCallback(ProgressEventType type,
+                long bytes) {
+            final ProgressEvent event = new ProgressEvent(type, bytes);
+            return new Runnable() {
+                @Override
+                public void run() {
+                    listener.progressChanged(event);
+                }
+            };
+        }
+    }
+
     /**
      * Used to avoid creating the extra thread until absolutely necessary.
      */
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * A future completed by whoever holds it rather than by running a task.
+ * Only the first outcome, whether a result, an exception or a cancellation,
+ * is kept; {@link #done()} is called once, by the thread that set it.
+ */
+@SdkInternalApi
+public class SdkSettableFuture<T> implements Future<T> {
+
+    private final AtomicBoolean completing = new AtomicBoolean();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile T result;
+    private volatile Throwable failure;
+    private volatile boolean cancelled;
+
+    /**
+     * Completes the future with the given result.
+     *
+     * @return true if this call completed the future, false if it was
+     *         already completed
+     */
+    public boolean set(T result) {
+        if (!completing.compareAndSet(false, true)) {
+            return false;
+        }
+        this.result = result;
+        finish();
+        return true;
+    }
+
+    /**
+     * Completes the future with the given exception, which {@link #get()}
+     * reports wrapped in an {@link ExecutionException}.
+     *
+     * @return true if this call completed the future, false if it was
+     *         already completed
+     */
+    public boolean setException(Throwable failure) {
+        if (!completing.compareAndSet(false, true)) {
+            return false;
+        }
+        this.failure = failure;
+        finish();
+        return true;
+    }
+
+    /**
+     * Cancels the future if it is not completed yet. There is no task to
+     * interrupt, so the argument is ignored.
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!completing.compareAndSet(false, true)) {
+            return false;
+        }
+        cancelled = true;
+        finish();
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return completed.getCount() == 0;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        completed.await();
+        return outcome();
+    }
+
+    public T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completed.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return outcome();
+    }
+
+    /**
+     * Called once the future is completed, whatever the outcome. The default
+     * implementation does nothing.
+     */
+    protected void done() {
+    }
+
+    private void finish() {
+        completed.countDown();
+        done();
+    }
+
+    private T outcome() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.event;
+
+import static com.amazonaws.event.ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT;
+import static com.amazonaws.event.ProgressEventType.REQUEST_BYTE_TRANSFER_EVENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SDKProgressPublisherTest {
+
+    @Test
+    public void zeroByteEventsAreDeliveredUnchanged()
+            throws InterruptedException {
+        final List<Long> bytes =
+                Collections.synchronizedList(new ArrayList<Long>());
+        final CountDownLatch done = new CountDownLatch(1);
+        ProgressListener listener = new ProgressListener() {
+            @Override
+            public void progressChanged(ProgressEvent event) {
+                if (event.getEventType() == CLIENT_REQUEST_SUCCESS_EVENT) {
+                    done.countDown();
+                } else {
+                    bytes.add(event.getBytes());
+                }
+            }
+        };
+        for (long count : new long[] { 5, 0, 7 }) {
+            SDKProgressPublisher.deliverEvent(listener, new ProgressEvent(
+                    REQUEST_BYTE_TRANSFER_EVENT, count));
+        }
+        SDKProgressPublisher.publishProgress(listener,
+                CLIENT_REQUEST_SUCCESS_EVENT);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(5L, 0L, 7L), bytes);
+    }
+
+    @Test
+    public void busyListenerDoesNotStarveOthers() throws InterruptedException {
+        final int events = 4 * SDKProgressPublisher.MAX_CALLBACKS_PER_DRAIN;
+        final List<String> delivered =
+                Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(events + 1);
+        ProgressListener busy = new ProgressListener() {
+            @Override
+            public void progressChanged(ProgressEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delivered.add("busy");
+                done.countDown();
+            }
+        };
+        ProgressListener other = new ProgressListener() {
+            @Override
+            public void progressChanged(ProgressEvent event) {
+                delivered.add("other");
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < events; i++) {
+            SDKProgressPublisher.publishProgress(busy,
+                    CLIENT_REQUEST_SUCCESS_EVENT);
+        }
+        SDKProgressPublisher.publishProgress(other,
+                CLIENT_REQUEST_SUCCESS_EVENT);
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(delivered.indexOf("other")
+                <= SDKProgressPublisher.MAX_CALLBACKS_PER_DRAIN);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SdkSettableFutureTest {
+
+    @Test
+    public void firstOutcomeWins() throws Exception {
+        final AtomicInteger doneCalls = new AtomicInteger();
+        SdkSettableFuture<String> future = new SdkSettableFuture<String>() {
+            @Override
+            protected void done() {
+                doneCalls.incrementAndGet();
+            }
+        };
+        assertFalse(future.isDone());
+        assertTrue(future.set("result"));
+        assertFalse(future.setException(new RuntimeException()));
+        assertFalse(future.cancel(true));
+
+        assertTrue(future.isDone());
+        assertEquals("result", future.get());
+        assertEquals("result", future.get(1, TimeUnit.MILLISECONDS));
+        assertEquals(1, doneCalls.get());
+    }
+
+    @Test
+    public void exceptionIsWrapped() throws Exception {
+        SdkSettableFuture<String> future = new SdkSettableFuture<String>();
+        RuntimeException failure = new RuntimeException();
+        future.setException(failure);
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void cancelledFutureThrowsOnGet() throws Exception {
+        SdkSettableFuture<String> future = new SdkSettableFuture<String>();
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void getTimesOutWhenNotCompleted() throws Exception {
+        new SdkSettableFuture<String>().get(10, TimeUnit.MILLISECONDS);
+    }
+}
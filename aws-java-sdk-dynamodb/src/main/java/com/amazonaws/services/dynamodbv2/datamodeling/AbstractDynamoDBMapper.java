@@ -229,6 +229,33 @@ public class AbstractDynamoDBMapper implements IDynamoDBMapper {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public <T> PaginatedScanIterator<T> scanIterator(Class<T> clazz, DynamoDBScanExpression scanExpression) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> PaginatedScanIterator<T> scanIterator(Class<T> clazz,
+                                                     DynamoDBScanExpression scanExpression,
+                                                     DynamoDBMapperConfig config,
+                                                     int prefetchPages) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> PaginatedQueryIterator<T> queryIterator(Class<T> clazz,
+                                                       DynamoDBQueryExpression<T> queryExpression) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> PaginatedQueryIterator<T> queryIterator(Class<T> clazz,
+                                                       DynamoDBQueryExpression<T> queryExpression,
+                                                       DynamoDBMapperConfig config,
+                                                       int prefetchPages) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public int count(Class<?> clazz, DynamoDBScanExpression scanExpression) {
         throw new UnsupportedOperationException();
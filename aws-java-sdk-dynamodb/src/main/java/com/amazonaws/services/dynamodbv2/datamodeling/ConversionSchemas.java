@@ -102,6 +102,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Pre-defined strategies for mapping between Java types and DynamoDB types.
@@ -267,6 +269,15 @@ public final class ConversionSchemas {
         private final DynamoDBMappingsRegistry registry;
         private final S3ClientCache s3cc;
 
+        /**
+         * Fully resolved (un)marshallers by getter, so that converting an
+         * attribute does not repeat the lookup and member type resolution.
+         */
+        private final ConcurrentMap<Method, ArgumentMarshaller> marshallers =
+                new ConcurrentHashMap<Method, ArgumentMarshaller>();
+        private final ConcurrentMap<Method, ArgumentUnmarshaller> unmarshallers =
+                new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
+
         public StandardItemConverter(
                 MarshallerSet marshallerSet,
                 UnmarshallerSet unmarshallerSet,
@@ -348,11 +359,16 @@ public final class ConversionSchemas {
         }
 
         private ArgumentMarshaller getMarshaller(Method getter) {
-            ArgumentMarshaller marshaller =
-                    marshallerSet.getMarshaller(getter);
+            ArgumentMarshaller marshaller = marshallers.get(getter);
+            if (marshaller != null) {
+                return marshaller;
+            }
+
+            marshaller = marshallerSet.getMarshaller(getter);
 
             marshaller = augment(getter.getGenericReturnType(), marshaller);
 
+            marshallers.putIfAbsent(getter, marshaller);
             return marshaller;
         }
 
@@ -496,13 +512,19 @@ public final class ConversionSchemas {
                 Method getter,
                 Method setter) {
 
-            ArgumentUnmarshaller unmarshaller =
-                    unmarshallerSet.getUnmarshaller(getter, setter);
+            ArgumentUnmarshaller unmarshaller = unmarshallers.get(getter);
+            if (unmarshaller != null) {
+                return unmarshaller;
+            }
+
+            unmarshaller = unmarshallerSet.getUnmarshaller(getter, setter);
 
             unmarshaller = augment(
                     setter.getGenericParameterTypes()[0], unmarshaller);
 
-            return new NullableUnmarshaller(unmarshaller);
+            unmarshaller = new NullableUnmarshaller(unmarshaller);
+            unmarshallers.putIfAbsent(getter, unmarshaller);
+            return unmarshaller;
         }
 
         private ArgumentUnmarshaller getMemberUnmarshaller(Type type) {
@@ -22,6 +22,7 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.xspec.DeleteItemExpressionSpec;
 
 /**
  * Enables adding options to a delete operation.
@@ -338,4 +339,22 @@ public class DynamoDBDeleteExpression {
         this.expressionAttributeValues = null;
         return this;
     }
+
+    /**
+     * Sets the expressions, attribute names and attribute values of this
+     * expression from the given expression specification, which may have
+     * been bound from a {@link com.amazonaws.services.dynamodbv2.xspec.PreparedExpressionSpec}.
+     *
+     * @param xspec
+     *            The expression specification to apply.
+     *
+     * @return A reference to this updated object so that method calls can be
+     *         chained together.
+     */
+    public DynamoDBDeleteExpression withExpressionSpec(DeleteItemExpressionSpec xspec) {
+        setConditionExpression(xspec.getConditionExpression());
+        setExpressionAttributeNames(xspec.getNameMap());
+        setExpressionAttributeValues(ExpressionSpecValues.toAttributeValues(xspec.getValueMap()));
+        return this;
+    }
 }
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,6 +42,7 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchLoadRetryStrategy;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteListener;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.SaveBehavior;
@@ -196,6 +198,12 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
     private final AttributeTransformer transformer;
 
+    /**
+     * The writer threads of parallel batch writes, created on first use and
+     * shared by all the batch writes of this mapper.
+     */
+    private volatile ExecutorService batchWriteExecutor;
+
     /**
      * The max back off time for batch get. The configuration for batch write
      * has been moved to DynamoDBMapperConfig
@@ -431,7 +439,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         String tableName = getTableName(clazz, keyObject, config);
 
-        GetItemRequest rq = new GetItemRequest()
+        final GetItemRequest rq = new GetItemRequest()
             .withRequestMetricCollector(config.getRequestMetricCollector());
 
         Map<String, AttributeValue> key = model.mapKey(keyObject);
@@ -440,9 +448,20 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         rq.setTableName(tableName);
         rq.setConsistentRead(config.getConsistentReads() == ConsistentReads.CONSISTENT);
 
-
-        GetItemResult item = db.getItem(applyUserAgent(rq));
-        Map<String, AttributeValue> itemAttributes = item.getItem();
+        Map<String, AttributeValue> itemAttributes;
+        ItemCache cache = config.getItemCache();
+        if ( cache != null && !rq.isConsistentRead() ) {
+            itemAttributes = cache.get(new ItemCache.Key(tableName, key),
+                    new ItemCache.Loader() {
+                        @Override
+                        public Map<String, AttributeValue> load() {
+                            return db.getItem(applyUserAgent(rq)).getItem();
+                        }
+                    });
+        } else {
+            GetItemResult item = db.getItem(applyUserAgent(rq));
+            itemAttributes = item.getItem();
+        }
         if ( itemAttributes == null ) {
             return null;
         }
@@ -728,7 +747,33 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
             };
         }
 
-        saveObjectHandler.execute();
+        try {
+            saveObjectHandler.execute();
+        } finally {
+            invalidateCachedItem(finalConfig, tableName, model, object);
+        }
+    }
+
+    /**
+     * Drops the cached copy of the item identified by the given object, if
+     * items are cached. Objects without a complete key are ignored, since
+     * nothing can have been written for them.
+     */
+    private <T> void invalidateCachedItem(DynamoDBMapperConfig config,
+            String tableName, DynamoDBMapperTableModel<T> model, T object) {
+        ItemCache cache = config.getItemCache();
+        if (cache == null) {
+            return;
+        }
+        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+        for (final DynamoDBMapperFieldModel<T,Object> field : model.keys()) {
+            AttributeValue value = field.getAndConvert(object);
+            if (value == null) {
+                return;
+            }
+            key.put(field.name(), value);
+        }
+        cache.invalidate(tableName, key);
     }
 
     /**
@@ -1112,7 +1157,11 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                             deleteExpression.getConditionalOperator());
 
         }
-        db.deleteItem(applyUserAgent(req));
+        try {
+            db.deleteItem(applyUserAgent(req));
+        } finally {
+            invalidateCachedItem(config, tableName, model, object);
+        }
     }
 
     @Override
@@ -1147,59 +1196,56 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                                         DynamoDBMapperConfig config) {
         config = mergeConfig(config);
 
+        ItemCache cache = config.getItemCache();
+        List<ItemCache.Key> writtenKeys = (cache == null) ? null : new ArrayList<ItemCache.Key>();
+        try {
+            Integer concurrency = config.getBatchWriteConcurrency();
+            if (concurrency != null && concurrency > 1) {
+                return parallelBatchWrite(objectsToWrite, objectsToDelete, config,
+                        concurrency, writtenKeys);
+            }
+            return serialBatchWrite(objectsToWrite, objectsToDelete, config, writtenKeys);
+        } finally {
+            if (cache != null) {
+                for (ItemCache.Key key : writtenKeys) {
+                    cache.invalidate(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the items one BatchWriteItem call at a time.
+     */
+    private List<FailedBatch> serialBatchWrite(Iterable<? extends Object> objectsToWrite,
+                                               Iterable<? extends Object> objectsToDelete,
+                                               DynamoDBMapperConfig config,
+                                               List<ItemCache.Key> writtenKeys) {
         List<FailedBatch> totalFailedBatches = new LinkedList<FailedBatch>();
 
         HashMap<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
 
         List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
         for ( Object toWrite : objectsToWrite ) {
-            Class<Object> clazz = (Class<Object>)toWrite.getClass();
-            String tableName = getTableName(clazz, toWrite, config);
-
-            Map<String, AttributeValue> attributeValues = new HashMap<String, AttributeValue>();
-
-            // Look at every getter and construct a value object for it
-            final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
-            for ( final DynamoDBMapperFieldModel<Object,Object> field : model.fields() ) {
-                AttributeValue currentValue = null;
-                if ( field.canGenerate(toWrite, config.getSaveBehavior(), model) && !field.versioned() ) {
-                    currentValue = field.generateAndConvert(toWrite);
-                    inMemoryUpdates.add(new ValueUpdate(field, currentValue, toWrite));
-                } else {
-                    currentValue = field.getAndConvert(toWrite);
-                }
-                if ( currentValue != null ) {
-                    attributeValues.put(field.name(), currentValue);
-                }
-            }
+            String tableName = getTableName(toWrite.getClass(), toWrite, config);
 
             if ( !requestItems.containsKey(tableName) ) {
                 requestItems.put(tableName, new LinkedList<WriteRequest>());
             }
 
-            AttributeTransformer.Parameters<?> parameters =
-                toParameters(attributeValues, clazz, tableName, config);
-
             requestItems.get(tableName).add(
-                new WriteRequest().withPutRequest(
-                    new PutRequest().withItem(
-                        transformAttributes(parameters))));
+                toPutWriteRequest(toWrite, tableName, config, inMemoryUpdates, writtenKeys));
         }
 
         for ( Object toDelete : objectsToDelete ) {
-            Class<Object> clazz = (Class<Object>)toDelete.getClass();
-
-            String tableName = getTableName(clazz, toDelete, config);
-            final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
-
-            Map<String, AttributeValue> key = model.mapKey(toDelete);
+            String tableName = getTableName(toDelete.getClass(), toDelete, config);
 
             if ( !requestItems.containsKey(tableName) ) {
                 requestItems.put(tableName, new LinkedList<WriteRequest>());
             }
 
             requestItems.get(tableName).add(
-                    new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
+                toDeleteWriteRequest(toDelete, tableName, config, writtenKeys));
         }
 
         // Break into chunks of 25 items and make service requests to DynamoDB
@@ -1231,9 +1277,19 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                 }
             }
 
-            List<FailedBatch> failedBatches = writeOneBatch(batch, config.getBatchWriteRetryStrategy());
+            List<FailedBatch> failedBatches = writeOneBatch(batch,
+                    config.getBatchWriteRetryStrategy(), config.getBatchWriteListener());
             if (failedBatches != null) {
                 totalFailedBatches.addAll(failedBatches);
+                if (config.getBatchWriteListener() != null) {
+                    for (FailedBatch failedBatch : failedBatches) {
+                        try {
+                            config.getBatchWriteListener().onBatchFailed(failedBatch);
+                        } catch (RuntimeException e) {
+                            log.warn("Batch write listener failed", e);
+                        }
+                    }
+                }
 
                 // If contains throttling exception, we do a backoff
                 if (containsThrottlingException(failedBatches)) {
@@ -1256,18 +1312,132 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return totalFailedBatches;
     }
 
+    /**
+     * Writes the items with several BatchWriteItem calls in flight, marshalling
+     * each item on the calling thread while earlier batches are being sent.
+     */
+    private List<FailedBatch> parallelBatchWrite(Iterable<? extends Object> objectsToWrite,
+                                                 Iterable<? extends Object> objectsToDelete,
+                                                 DynamoDBMapperConfig config,
+                                                 int concurrency,
+                                                 List<ItemCache.Key> writtenKeys) {
+        List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
+        ParallelBatchWriter writer = new ParallelBatchWriter(db,
+                getBatchWriteExecutor(), concurrency,
+                config.getBatchWriteRetryStrategy(), config.getBatchWriteListener());
+        List<FailedBatch> failedBatches;
+        try {
+            for ( Object toWrite : objectsToWrite ) {
+                String tableName = getTableName(toWrite.getClass(), toWrite, config);
+                writer.add(tableName, toPutWriteRequest(
+                        toWrite, tableName, config, inMemoryUpdates, writtenKeys));
+            }
+            for ( Object toDelete : objectsToDelete ) {
+                String tableName = getTableName(toDelete.getClass(), toDelete, config);
+                writer.add(tableName,
+                        toDeleteWriteRequest(toDelete, tableName, config, writtenKeys));
+            }
+            failedBatches = writer.finish();
+        } catch (RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+
+        // Once the entire batch is processed, update assigned keys in memory
+        for ( ValueUpdate update : inMemoryUpdates ) {
+            update.apply();
+        }
+
+        return failedBatches;
+    }
+
+    private ExecutorService getBatchWriteExecutor() {
+        ExecutorService executor = batchWriteExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = batchWriteExecutor;
+                if (executor == null) {
+                    executor = batchWriteExecutor = ParallelBatchWriter.newExecutor();
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Marshalls the object into a put request for a batch write, recording any
+     * auto-generated values to be set on the object once the write is done
+     * and, if items are cached, the key of the item written.
+     */
+    private WriteRequest toPutWriteRequest(Object toWrite, String tableName,
+            DynamoDBMapperConfig config, List<ValueUpdate> inMemoryUpdates,
+            List<ItemCache.Key> writtenKeys) {
+        Class<Object> clazz = (Class<Object>)toWrite.getClass();
+
+        Map<String, AttributeValue> attributeValues = new HashMap<String, AttributeValue>();
+
+        // Look at every getter and construct a value object for it
+        final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
+        for ( final DynamoDBMapperFieldModel<Object,Object> field : model.fields() ) {
+            AttributeValue currentValue = null;
+            if ( field.canGenerate(toWrite, config.getSaveBehavior(), model) && !field.versioned() ) {
+                currentValue = field.generateAndConvert(toWrite);
+                inMemoryUpdates.add(new ValueUpdate(field, currentValue, toWrite));
+            } else {
+                currentValue = field.getAndConvert(toWrite);
+            }
+            if ( currentValue != null ) {
+                attributeValues.put(field.name(), currentValue);
+            }
+        }
+
+        if ( writtenKeys != null ) {
+            Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+            for ( final DynamoDBMapperFieldModel<Object,Object> field : model.keys() ) {
+                key.put(field.name(), attributeValues.get(field.name()));
+            }
+            writtenKeys.add(new ItemCache.Key(tableName, key));
+        }
+
+        AttributeTransformer.Parameters<?> parameters =
+            toParameters(attributeValues, clazz, tableName, config);
+
+        return new WriteRequest().withPutRequest(
+                new PutRequest().withItem(
+                    transformAttributes(parameters)));
+    }
+
+    /**
+     * Creates the delete request for a batch write from the object's key,
+     * recording the key if items are cached.
+     */
+    private WriteRequest toDeleteWriteRequest(Object toDelete, String tableName,
+            DynamoDBMapperConfig config, List<ItemCache.Key> writtenKeys) {
+        Class<Object> clazz = (Class<Object>)toDelete.getClass();
+        final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
+
+        Map<String, AttributeValue> key = model.mapKey(toDelete);
+        if ( writtenKeys != null ) {
+            writtenKeys.add(new ItemCache.Key(tableName, key));
+        }
+
+        return new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key));
+    }
+
     /**
      * Process one batch of requests(max 25). It will divide the batch if
      * receives request too large exception(the total size of the request is beyond 1M).
      */
     private List<FailedBatch> writeOneBatch(
             Map<String, List<WriteRequest>> batch,
-            BatchWriteRetryStrategy batchWriteRetryStrategy) {
+            BatchWriteRetryStrategy batchWriteRetryStrategy,
+            BatchWriteListener batchWriteListener) {
 
         List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
         Map<String, List<WriteRequest>> firstHalfBatch = new HashMap<String, List<WriteRequest>>();
         Map<String, List<WriteRequest>> secondHalfBatch = new HashMap<String, List<WriteRequest>>();
-        FailedBatch failedBatch = doBatchWriteItemWithRetry(batch, batchWriteRetryStrategy);
+        FailedBatch failedBatch = doBatchWriteItemWithRetry(batch, batchWriteRetryStrategy,
+                batchWriteListener);
 
         if (failedBatch != null) {
             // If the exception is request entity too large, we divide the batch
@@ -1283,8 +1453,10 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                     failedBatches.add(failedBatch);
                 } else {
                     divideBatch(batch, firstHalfBatch, secondHalfBatch);
-                    failedBatches.addAll(writeOneBatch(firstHalfBatch, batchWriteRetryStrategy));
-                    failedBatches.addAll(writeOneBatch(secondHalfBatch, batchWriteRetryStrategy));
+                    failedBatches.addAll(writeOneBatch(firstHalfBatch, batchWriteRetryStrategy,
+                            batchWriteListener));
+                    failedBatches.addAll(writeOneBatch(secondHalfBatch, batchWriteRetryStrategy,
+                            batchWriteListener));
                 }
 
             } else {
@@ -1329,6 +1501,19 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
     }
 
+    /**
+     * Count the total number of write requests in the batch.
+     */
+    private static int countItems(Map<String, List<WriteRequest>> batch) {
+        int count = 0;
+        if (batch != null) {
+            for (List<WriteRequest> requests : batch.values()) {
+                count += requests.size();
+            }
+        }
+        return count;
+    }
+
     /**
      * Count the total number of unprocessed items in the failed batch.
      */
@@ -1349,7 +1534,8 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
      */
     private FailedBatch doBatchWriteItemWithRetry(
             Map<String, List<WriteRequest>> batch,
-            BatchWriteRetryStrategy batchWriteRetryStrategy) {
+            BatchWriteRetryStrategy batchWriteRetryStrategy,
+            BatchWriteListener batchWriteListener) {
 
         BatchWriteItemResult result = null;
         int retries = 0;
@@ -1370,6 +1556,17 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                 failedBatch.setException(e);
                 return failedBatch;
             }
+            if (batchWriteListener != null) {
+                int writtenCount = countItems(pendingItems)
+                        - countItems(result.getUnprocessedItems());
+                if (writtenCount > 0) {
+                    try {
+                        batchWriteListener.onItemsWritten(writtenCount);
+                    } catch (RuntimeException e) {
+                        log.warn("Batch write listener failed", e);
+                    }
+                }
+            }
             pendingItems = result.getUnprocessedItems();
 
             if (pendingItems.size() > 0) {
@@ -1401,6 +1598,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
     public Map<String, List<Object>> batchLoad(Iterable<? extends Object> itemsToGet, DynamoDBMapperConfig config) {
         config = mergeConfig(config);
         boolean consistentReads = (config.getConsistentReads() == ConsistentReads.CONSISTENT);
+        ItemCache cache = config.getItemCache();
 
         if (itemsToGet == null) {
             return new HashMap<String, List<Object>>();
@@ -1418,6 +1616,19 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
             String tableName = getTableName(clazz, keyObject, config);
             classesByTableName.put(tableName, clazz);
 
+            Map<String, AttributeValue> key = model.mapKey(keyObject);
+            if ( cache != null && !consistentReads ) {
+                ItemCache.Entry cached = cache.lookup(new ItemCache.Key(tableName, key));
+                if ( cached != null ) {
+                    Map<String, AttributeValue> cachedItem = cached.item();
+                    if ( cachedItem != null ) {
+                        addBatchLoadResult(resultSet, tableName,
+                                privateMarshallIntoObject(toParameters(cachedItem, clazz, tableName, config)));
+                    }
+                    continue;
+                }
+            }
+
             if ( !requestItems.containsKey(tableName) ) {
                 requestItems.put(
                         tableName,
@@ -1425,7 +1636,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                                 new LinkedList<Map<String, AttributeValue>>()));
             }
 
-            requestItems.get(tableName).getKeys().add(model.mapKey(keyObject));
+            requestItems.get(tableName).getKeys().add(key);
 
             // Reach the maximum number which can be handled in a single batchGet
             if ( ++count == 100 ) {
@@ -1486,6 +1697,24 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         int retries = 0;
         int noOfItemsInOriginalRequest = requestItems.size();
 
+        ItemCache cache = config.getItemCache();
+        long cacheStamp = 0;
+        Map<String, Set<String>> keyNamesByTableName = null;
+        Map<ItemCache.Key, ItemCache.Key> requestedCacheKeys = null;
+        if ( cache != null ) {
+            cacheStamp = cache.stamp();
+            keyNamesByTableName = new HashMap<String, Set<String>>();
+            requestedCacheKeys = new HashMap<ItemCache.Key, ItemCache.Key>();
+            for ( Entry<String, KeysAndAttributes> entry : requestItems.entrySet() ) {
+                keyNamesByTableName.put(entry.getKey(),
+                        new HashSet<String>(entry.getValue().getKeys().get(0).keySet()));
+                for ( Map<String, AttributeValue> key : entry.getValue().getKeys() ) {
+                    ItemCache.Key cacheKey = new ItemCache.Key(entry.getKey(), key);
+                    requestedCacheKeys.put(cacheKey, cacheKey);
+                }
+            }
+        }
+
         do {
             if ( batchGetItemResult != null ) {
                 retries++;
@@ -1512,6 +1741,18 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
                 Class<?> clazz = classesByTableName.get(tableName);
 
                 for ( Map<String, AttributeValue> item : responses.get(tableName) ) {
+                    if ( cache != null ) {
+                        Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+                        for ( String keyName : keyNamesByTableName.get(tableName) ) {
+                            key.put(keyName, item.get(keyName));
+                        }
+                        // Cache under the key as requested, not as returned
+                        ItemCache.Key requested = requestedCacheKeys.get(
+                                new ItemCache.Key(tableName, key));
+                        if ( requested != null ) {
+                            cache.put(requested, item, cacheStamp);
+                        }
+                    }
                     AttributeTransformer.Parameters<?> parameters =
                         toParameters(item, clazz, tableName, config);
                     objects.add(privateMarshallIntoObject(parameters));
@@ -1532,6 +1773,16 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         
     }
 
+    private static void addBatchLoadResult(Map<String, List<Object>> resultSet,
+            String tableName, Object object) {
+        List<Object> objects = resultSet.get(tableName);
+        if ( objects == null ) {
+            objects = new LinkedList<Object>();
+            resultSet.put(tableName, objects);
+        }
+        objects.add(object);
+    }
+
     private final class ValueUpdate {
         private final DynamoDBMapperFieldModel<Object,Object> field;
         private final AttributeValue newValue;
@@ -1608,7 +1859,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         // Create hard copies of the original scan request with difference segment number.
         List<ScanRequest> parallelScanRequests = createParallelScanRequestsFromExpression(clazz, scanExpression, totalSegments, config);
-        ParallelScanTask parallelScanTask = new ParallelScanTask(db, parallelScanRequests);
+        ParallelScanTask parallelScanTask = new ParallelScanTask(db, parallelScanRequests, config.getParallelScanOptions());
 
         return new PaginatedParallelScanList<T>(this, clazz, db, parallelScanTask, config.getPaginationLoadingStrategy(), config);
     }
@@ -1684,6 +1935,39 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return result;
     }
 
+    @Override
+    public <T> PaginatedScanIterator<T> scanIterator(Class<T> clazz, DynamoDBScanExpression scanExpression) {
+        return scanIterator(clazz, scanExpression, config, PaginatedIterator.DEFAULT_PREFETCH_PAGES);
+    }
+
+    @Override
+    public <T> PaginatedScanIterator<T> scanIterator(Class<T> clazz,
+                                                     DynamoDBScanExpression scanExpression,
+                                                     DynamoDBMapperConfig config,
+                                                     int prefetchPages) {
+        config = mergeConfig(config);
+
+        ScanRequest scanRequest = createScanRequestFromExpression(clazz, scanExpression, config);
+        return new PaginatedScanIterator<T>(this, clazz, db, scanRequest, prefetchPages, config);
+    }
+
+    @Override
+    public <T> PaginatedQueryIterator<T> queryIterator(Class<T> clazz,
+                                                       DynamoDBQueryExpression<T> queryExpression) {
+        return queryIterator(clazz, queryExpression, config, PaginatedIterator.DEFAULT_PREFETCH_PAGES);
+    }
+
+    @Override
+    public <T> PaginatedQueryIterator<T> queryIterator(Class<T> clazz,
+                                                       DynamoDBQueryExpression<T> queryExpression,
+                                                       DynamoDBMapperConfig config,
+                                                       int prefetchPages) {
+        config = mergeConfig(config);
+
+        QueryRequest queryRequest = createQueryRequestFromExpression(clazz, queryExpression, config);
+        return new PaginatedQueryIterator<T>(this, clazz, db, queryRequest, prefetchPages, config);
+    }
+
     @Override
     public int count(Class<?> clazz, DynamoDBScanExpression scanExpression) {
         return count(clazz, scanExpression, config);
@@ -1785,7 +2069,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
             log.info("The Segment and TotalSegments parameters specified in the DynamoDBScanExpression are ignored.");
         }
 
-        List<ScanRequest> parallelScanRequests= new LinkedList<ScanRequest>();
+        List<ScanRequest> parallelScanRequests = new ArrayList<ScanRequest>(totalSegments);
         for (int segment = 0; segment < totalSegments; segment++) {
             ScanRequest scanRequest = createScanRequestFromExpression(clazz, scanExpression, config);
             parallelScanRequests.add(scanRequest
@@ -21,6 +21,7 @@ import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Immutable configuration object for service call behavior. An instance of this
@@ -58,6 +59,10 @@ public class DynamoDBMapperConfig {
         private ConversionSchema conversionSchema;
         private BatchWriteRetryStrategy batchWriteRetryStrategy;
         private BatchLoadRetryStrategy batchLoadRetryStrategy;
+        private Integer batchWriteConcurrency;
+        private BatchWriteListener batchWriteListener;
+        private ParallelScanOptions parallelScanOptions;
+        private ItemCache itemCache;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -73,6 +78,10 @@ public class DynamoDBMapperConfig {
             conversionSchema = DEFAULT.getConversionSchema();
             batchWriteRetryStrategy = DEFAULT.getBatchWriteRetryStrategy();
             batchLoadRetryStrategy = DEFAULT.getBatchLoadRetryStrategy();
+            batchWriteConcurrency = DEFAULT.getBatchWriteConcurrency();
+            batchWriteListener = DEFAULT.getBatchWriteListener();
+            parallelScanOptions = DEFAULT.getParallelScanOptions();
+            itemCache = DEFAULT.getItemCache();
         }
 
         /**
@@ -319,7 +328,103 @@ public class DynamoDBMapperConfig {
             setBatchLoadRetryStrategy(value);
             return this;
         }
-        
+
+        /**
+         * @return the number of BatchWriteItem calls allowed in flight
+         */
+        public Integer getBatchWriteConcurrency() {
+            return batchWriteConcurrency;
+        }
+
+        /**
+         * @param value the number of BatchWriteItem calls allowed in flight
+         */
+        public void setBatchWriteConcurrency(Integer value) {
+            if (value != null && value < 1) {
+                throw new IllegalArgumentException(
+                        "batchWriteConcurrency must be at least 1");
+            }
+            this.batchWriteConcurrency = value;
+        }
+
+        /**
+         * @param value the number of BatchWriteItem calls allowed in flight
+         * @return this builder
+         */
+        public Builder withBatchWriteConcurrency(Integer value) {
+            setBatchWriteConcurrency(value);
+            return this;
+        }
+
+        /**
+         * @return the listener notified of batch write progress
+         */
+        public BatchWriteListener getBatchWriteListener() {
+            return batchWriteListener;
+        }
+
+        /**
+         * @param value the listener notified of batch write progress
+         */
+        public void setBatchWriteListener(BatchWriteListener value) {
+            this.batchWriteListener = value;
+        }
+
+        /**
+         * @param value the listener notified of batch write progress
+         * @return this builder
+         */
+        public Builder withBatchWriteListener(BatchWriteListener value) {
+            setBatchWriteListener(value);
+            return this;
+        }
+
+        /**
+         * @return the options controlling how parallel scans are run
+         */
+        public ParallelScanOptions getParallelScanOptions() {
+            return parallelScanOptions;
+        }
+
+        /**
+         * @param value the options controlling how parallel scans are run
+         */
+        public void setParallelScanOptions(ParallelScanOptions value) {
+            this.parallelScanOptions = value;
+        }
+
+        /**
+         * @param value the options controlling how parallel scans are run
+         * @return this builder
+         */
+        public Builder withParallelScanOptions(ParallelScanOptions value) {
+            setParallelScanOptions(value);
+            return this;
+        }
+
+        /**
+         * @return the cache consulted by eventually consistent loads
+         */
+        public ItemCache getItemCache() {
+            return itemCache;
+        }
+
+        /**
+         * @param value the cache consulted by eventually consistent loads
+         */
+        public void setItemCache(ItemCache value) {
+            this.itemCache = value;
+        }
+
+        /**
+         * @param value the cache consulted by eventually consistent loads
+         * @return this builder
+         */
+        public Builder withItemCache(ItemCache value) {
+            setItemCache(value);
+            return this;
+        }
+
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
          *
@@ -336,7 +441,11 @@ public class DynamoDBMapperConfig {
                     requestMetricCollector,
                     conversionSchema,
                     batchWriteRetryStrategy,
-                    batchLoadRetryStrategy);
+                    batchLoadRetryStrategy,
+                    batchWriteConcurrency,
+                    batchWriteListener,
+                    parallelScanOptions,
+                    itemCache);
         }
     }
 
@@ -495,6 +604,109 @@ public class DynamoDBMapperConfig {
         }
     }
 
+    /**
+     * Options controlling how {@link DynamoDBMapper#parallelScan} runs the
+     * segments of a scan. Instances are immutable; each {@code with} method
+     * returns a modified copy.
+     * <p>
+     * Segments are scanned on a shared, bounded pool of daemon threads unless
+     * an executor is supplied. Each segment fetches its next page as soon as
+     * the previous one has been buffered, but no more than
+     * {@link #getMaxBufferedPages()} pages are fetched or held in memory
+     * ahead of the caller at any time.
+     */
+    public static final class ParallelScanOptions {
+
+        private final ExecutorService executor;
+        private final Integer maxBufferedPages;
+        private final Double readCapacityFraction;
+
+        /**
+         * Creates options that use the shared executor, the default buffer
+         * size and no read capacity limit.
+         */
+        public ParallelScanOptions() {
+            this(null, null, null);
+        }
+
+        private ParallelScanOptions(
+                ExecutorService executor,
+                Integer maxBufferedPages,
+                Double readCapacityFraction) {
+
+            this.executor = executor;
+            this.maxBufferedPages = maxBufferedPages;
+            this.readCapacityFraction = readCapacityFraction;
+        }
+
+        /**
+         * Returns the executor on which segment pages are fetched, or null to
+         * use the shared pool. The executor is never shut down by the mapper.
+         */
+        public ExecutorService getExecutor() {
+            return executor;
+        }
+
+        /**
+         * Returns a copy of these options that fetches pages on the given
+         * executor, or on the shared pool if null.
+         */
+        public ParallelScanOptions withExecutor(ExecutorService executor) {
+            return new ParallelScanOptions(
+                    executor, maxBufferedPages, readCapacityFraction);
+        }
+
+        /**
+         * Returns the maximum number of pages fetched or buffered ahead of
+         * the caller, or null for the default.
+         */
+        public Integer getMaxBufferedPages() {
+            return maxBufferedPages;
+        }
+
+        /**
+         * Returns a copy of these options that fetches or buffers at most the
+         * given number of pages ahead of the caller. This also bounds the
+         * number of scan requests in flight.
+         */
+        public ParallelScanOptions withMaxBufferedPages(Integer maxBufferedPages) {
+            if (maxBufferedPages != null && maxBufferedPages < 1) {
+                throw new IllegalArgumentException(
+                        "maxBufferedPages must be at least 1");
+            }
+            return new ParallelScanOptions(
+                    executor, maxBufferedPages, readCapacityFraction);
+        }
+
+        /**
+         * Returns the fraction of the provisioned read capacity of the table
+         * or index that a parallel scan may consume, or null for no limit.
+         */
+        public Double getReadCapacityFraction() {
+            return readCapacityFraction;
+        }
+
+        /**
+         * Returns a copy of these options that paces a parallel scan so that
+         * it consumes at most the given fraction of the provisioned read
+         * capacity of the scanned table or index. The consumed capacity
+         * reported for each page is used to delay the following requests.
+         *
+         * @param readCapacityFraction
+         *            A value greater than zero and at most one, or null for no
+         *            limit.
+         */
+        public ParallelScanOptions withReadCapacityFraction(Double readCapacityFraction) {
+            if (readCapacityFraction != null
+                    && (readCapacityFraction <= 0 || readCapacityFraction > 1)) {
+                throw new IllegalArgumentException(
+                        "readCapacityFraction must be greater than 0 and at most 1");
+            }
+            return new ParallelScanOptions(
+                    executor, maxBufferedPages, readCapacityFraction);
+        }
+    }
+
     /**
      * Interface for a strategy used to determine the table name of an object based on it's class.
      * This resolver is used when an object isn't available such as in
@@ -619,6 +831,38 @@ public class DynamoDBMapperConfig {
                 int retriesAttempted);
     }
 
+    /**
+     * Receives the outcome of each BatchWriteItem call made by
+     * {@link DynamoDBMapper#batchWrite(Iterable, Iterable, DynamoDBMapperConfig)}
+     * as it happens, rather than only once the whole write has finished.
+     * <p>
+     * When the batch write concurrency is greater than one, the methods are
+     * called from the writer threads and may be called concurrently.
+     *
+     * @see Builder#withBatchWriteConcurrency(Integer)
+     */
+    public interface BatchWriteListener {
+
+        /**
+         * Called after a BatchWriteItem call succeeds.
+         *
+         * @param writtenCount
+         *            the number of write requests the call completed; write
+         *            requests returned as unprocessed are not included.
+         */
+        public void onItemsWritten(int writtenCount);
+
+        /**
+         * Called as soon as a batch is given up on. The same failed batch is
+         * also part of the list returned by the batch write.
+         *
+         * @param failedBatch
+         *            the write requests that could not be completed and the
+         *            exception, if any, that caused the failure.
+         */
+        public void onBatchFailed(DynamoDBMapper.FailedBatch failedBatch);
+    }
+
     
     /**
      * {@link DynamoDBMapper#batchLoad(List)} breaks the requested items in batches of maximum size 100.
@@ -764,6 +1008,10 @@ public class DynamoDBMapperConfig {
     private final ConversionSchema conversionSchema;
     private final BatchWriteRetryStrategy batchWriteRetryStrategy;
     private final BatchLoadRetryStrategy batchLoadRetryStrategy;
+    private final Integer batchWriteConcurrency;
+    private final BatchWriteListener batchWriteListener;
+    private final ParallelScanOptions parallelScanOptions;
+    private final ItemCache itemCache;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -835,7 +1083,11 @@ public class DynamoDBMapperConfig {
                 requestMetricCollector,
                 ConversionSchemas.DEFAULT,
                 new DefaultBatchWriteRetryStrategy(),
-                new DefaultBatchLoadRetryStrategy());
+                new DefaultBatchLoadRetryStrategy(),
+                null,
+                null,
+                null,
+                null);
     }
 
     private DynamoDBMapperConfig(
@@ -848,7 +1100,11 @@ public class DynamoDBMapperConfig {
             RequestMetricCollector requestMetricCollector,
             ConversionSchema conversionSchema,
             BatchWriteRetryStrategy batchWriteRetryStrategy,
-            BatchLoadRetryStrategy batchLoadRetryStrategy) {
+            BatchLoadRetryStrategy batchLoadRetryStrategy,
+            Integer batchWriteConcurrency,
+            BatchWriteListener batchWriteListener,
+            ParallelScanOptions parallelScanOptions,
+            ItemCache itemCache) {
 
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
@@ -860,6 +1116,10 @@ public class DynamoDBMapperConfig {
         this.conversionSchema = conversionSchema;
         this.batchWriteRetryStrategy = batchWriteRetryStrategy;
         this.batchLoadRetryStrategy = batchLoadRetryStrategy;
+        this.batchWriteConcurrency = batchWriteConcurrency;
+        this.batchWriteListener = batchWriteListener;
+        this.parallelScanOptions = parallelScanOptions;
+        this.itemCache = itemCache;
     }
 
     /**
@@ -867,7 +1127,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(SaveBehavior saveBehavior) {
         this(saveBehavior, null, null, null, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -876,7 +1137,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ConsistentReads consistentReads) {
         this(null, consistentReads, null, null, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -884,7 +1146,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameOverride tableNameOverride) {
         this(null, null, tableNameOverride, null, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -892,7 +1155,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver) {
         this(null, null, null, tableNameResolver, null, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -900,7 +1164,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, null, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -908,7 +1173,8 @@ public class DynamoDBMapperConfig {
      */
     public DynamoDBMapperConfig(TableNameResolver tableNameResolver, ObjectTableNameResolver objectTableNameResolver) {
         this(null, null, null, tableNameResolver, objectTableNameResolver, null, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -919,14 +1185,16 @@ public class DynamoDBMapperConfig {
             PaginationLoadingStrategy paginationLoadingStrategy) {
 
         this(null, null, null, null, null, paginationLoadingStrategy, null,
-                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+                ConversionSchemas.DEFAULT, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
      * Constructs a new configuration object with the conversion schema given.
      */
     public DynamoDBMapperConfig(ConversionSchema conversionSchema) {
-        this(null, null, null, null, null, null, null, conversionSchema, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy());
+        this(null, null, null, null, null, null, null, conversionSchema, new DefaultBatchWriteRetryStrategy(), new DefaultBatchLoadRetryStrategy(),
+                null, null, null, null);
     }
 
     /**
@@ -960,6 +1228,10 @@ public class DynamoDBMapperConfig {
             this.conversionSchema = defaults.getConversionSchema();
             this.batchWriteRetryStrategy = defaults.getBatchWriteRetryStrategy();
             this.batchLoadRetryStrategy = defaults.getBatchLoadRetryStrategy();
+            this.batchWriteConcurrency = defaults.getBatchWriteConcurrency();
+            this.batchWriteListener = defaults.getBatchWriteListener();
+            this.parallelScanOptions = defaults.getParallelScanOptions();
+            this.itemCache = defaults.getItemCache();
 
         } else {
 
@@ -1005,6 +1277,22 @@ public class DynamoDBMapperConfig {
                             ? defaults.getBatchLoadRetryStrategy()
                             : overrides.getBatchLoadRetryStrategy();
 
+            this.batchWriteConcurrency = (overrides.getBatchWriteConcurrency() == null)
+                    ? defaults.getBatchWriteConcurrency()
+                    : overrides.getBatchWriteConcurrency();
+
+            this.batchWriteListener = (overrides.getBatchWriteListener() == null)
+                    ? defaults.getBatchWriteListener()
+                    : overrides.getBatchWriteListener();
+
+            this.parallelScanOptions = (overrides.getParallelScanOptions() == null)
+                    ? defaults.getParallelScanOptions()
+                    : overrides.getParallelScanOptions();
+
+            this.itemCache = (overrides.getItemCache() == null)
+                    ? defaults.getItemCache()
+                    : overrides.getItemCache();
+
         }
     }
 
@@ -1092,6 +1380,44 @@ public class DynamoDBMapperConfig {
         return batchWriteRetryStrategy;
     }
 
+    /**
+     * Returns the number of BatchWriteItem calls that a batch write may have
+     * in flight at the same time. A value of one, the default, sends batches
+     * strictly one after another.
+     * <p>
+     * With a higher value, items are marshalled on the calling thread while
+     * earlier batches are being sent, and unprocessed items are re-queued into
+     * later batches instead of holding up the sender. Writes to the same item
+     * within one call are then no longer guaranteed to be applied in order.
+     */
+    public Integer getBatchWriteConcurrency() {
+        return batchWriteConcurrency;
+    }
+
+    /**
+     * Returns the listener notified of each BatchWriteItem call made by a
+     * batch write, or null if not specified.
+     */
+    public BatchWriteListener getBatchWriteListener() {
+        return batchWriteListener;
+    }
+
+    /**
+     * Returns the options controlling the executor, buffering and read
+     * capacity usage of parallel scans, or null if not specified.
+     */
+    public ParallelScanOptions getParallelScanOptions() {
+        return parallelScanOptions;
+    }
+
+    /**
+     * Returns the cache consulted by eventually consistent loads and kept up
+     * to date by the mapper's own writes, or null if items are not cached.
+     */
+    public ItemCache getItemCache() {
+        return itemCache;
+    }
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
      * consistent reads, with no table name override and lazy-loading strategy.
@@ -1106,5 +1432,9 @@ public class DynamoDBMapperConfig {
             null,  // RequestMetricCollector
             ConversionSchemas.DEFAULT,
             new DefaultBatchWriteRetryStrategy(),
-            new DefaultBatchLoadRetryStrategy());
+            new DefaultBatchLoadRetryStrategy(),
+            1,     // BatchWriteConcurrency
+            null,  // BatchWriteListener
+            null,  // ParallelScanOptions
+            null); // ItemCache
 }
@@ -27,6 +27,7 @@ import com.amazonaws.services.dynamodbv2.model.LocalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.Projection;
 import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 
+import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -48,6 +49,11 @@ public final class DynamoDBMapperTableModel<T> implements DynamoDBTypeConverter<
     private final Map<String,LocalSecondaryIndex> lsis;
     private final Properties<T> properties;
 
+    /**
+     * The public no-argument constructor, resolved on first use.
+     */
+    private volatile Constructor<T> constructor;
+
     /**
      * Constructs a new table model for the specified class.
      * @param builder The builder.
@@ -237,12 +243,7 @@ public final class DynamoDBMapperTableModel<T> implements DynamoDBTypeConverter<
      */
     @Override
     public T unconvert(final Map<String,AttributeValue> object) {
-        final T result;
-        try {
-            result = targetType().newInstance();
-        } catch (final Exception e) {
-            throw new DynamoDBMappingException("could not instantiate " + targetType(), e);
-        }
+        final T result = newInstance();
         if (object != null && !object.isEmpty()) {
             for (final DynamoDBMapperFieldModel<T,Object> field : fields()) {
                 final AttributeValue value = object.get(field.name());
@@ -263,12 +264,7 @@ public final class DynamoDBMapperTableModel<T> implements DynamoDBTypeConverter<
      * @return The new instance.
      */
     public <H,R> T newKey(final H hashKey, final R rangeKey) {
-        final T key;
-        try {
-            key = targetType().newInstance();
-        } catch (final Exception e) {
-            throw new DynamoDBMappingException("could not instantiate " + targetType(), e);
-        }
+        final T key = newInstance();
         if (hashKey != null) {
             final DynamoDBMapperFieldModel<T,H> hk = hashKey();
             hk.set(key, hashKey);
@@ -280,6 +276,25 @@ public final class DynamoDBMapperTableModel<T> implements DynamoDBTypeConverter<
         return key;
     }
 
+    /**
+     * Creates a new object instance through the cached constructor.
+     * @return The new instance.
+     */
+    private T newInstance() {
+        try {
+            Constructor<T> constructor = this.constructor;
+            if (constructor == null) {
+                // Only a public constructor, as with Class.newInstance
+                constructor = StandardBeanProperties.accessible(
+                        targetType().getConstructor());
+                this.constructor = constructor;
+            }
+            return constructor.newInstance();
+        } catch (final Exception e) {
+            throw new DynamoDBMappingException("could not instantiate " + targetType(), e);
+        }
+    }
+
     /**
      * Creates a new key map from the specified hash and range key.
      * @param <H> The hash key type.
@@ -23,6 +23,7 @@ import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.xspec.QueryExpressionSpec;
 
 /**
  * A query expression.
@@ -1320,4 +1321,24 @@ public class DynamoDBQueryExpression <T> {
         this.returnConsumedCapacity = returnConsumedCapacity.toString();
         return this;
     }
+
+    /**
+     * Sets the expressions, attribute names and attribute values of this
+     * expression from the given expression specification, which may have
+     * been bound from a {@link com.amazonaws.services.dynamodbv2.xspec.PreparedExpressionSpec}.
+     *
+     * @param xspec
+     *            The expression specification to apply.
+     *
+     * @return A reference to this updated object so that method calls can be
+     *         chained together.
+     */
+    public DynamoDBQueryExpression<T> withExpressionSpec(QueryExpressionSpec xspec) {
+        setKeyConditionExpression(xspec.getKeyConditionExpression());
+        setFilterExpression(xspec.getFilterExpression());
+        setProjectionExpression(xspec.getProjectionExpression());
+        setExpressionAttributeNames(xspec.getNameMap());
+        setExpressionAttributeValues(ExpressionSpecValues.toAttributeValues(xspec.getValueMap()));
+        return this;
+    }
 }
@@ -24,6 +24,7 @@ import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.xspec.ScanExpressionSpec;
 
 /**
  * Options for filtering results from a scan operation. For example, callers can
@@ -1012,4 +1013,23 @@ public class DynamoDBScanExpression {
         this.consistentRead = consistentRead;
         return this;
     }
+
+    /**
+     * Sets the expressions, attribute names and attribute values of this
+     * expression from the given expression specification, which may have
+     * been bound from a {@link com.amazonaws.services.dynamodbv2.xspec.PreparedExpressionSpec}.
+     *
+     * @param xspec
+     *            The expression specification to apply.
+     *
+     * @return A reference to this updated object so that method calls can be
+     *         chained together.
+     */
+    public DynamoDBScanExpression withExpressionSpec(ScanExpressionSpec xspec) {
+        setFilterExpression(xspec.getFilterExpression());
+        setProjectionExpression(xspec.getProjectionExpression());
+        setExpressionAttributeNames(xspec.getNameMap());
+        setExpressionAttributeValues(ExpressionSpecValues.toAttributeValues(xspec.getValueMap()));
+        return this;
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Converts the values of an expression specification, which are plain Java
+ * values, into the attribute values of a mapper expression.
+ */
+final class ExpressionSpecValues {
+
+    private ExpressionSpecValues() {
+    }
+
+    /**
+     * Returns the attribute values for the given value map, or null if the
+     * map is null.
+     */
+    static Map<String, AttributeValue> toAttributeValues(Map<String, Object> values) {
+        if (values == null) {
+            return null;
+        }
+        Map<String, AttributeValue> result = new LinkedHashMap<String, AttributeValue>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            result.put(entry.getKey(), toAttributeValue(entry.getValue()));
+        }
+        return result;
+    }
+
+    private static AttributeValue toAttributeValue(Object value) {
+        if (value == null) {
+            return new AttributeValue().withNULL(Boolean.TRUE);
+        } else if (value instanceof Boolean) {
+            return new AttributeValue().withBOOL((Boolean) value);
+        } else if (value instanceof String) {
+            return new AttributeValue().withS((String) value);
+        } else if (value instanceof Number) {
+            return new AttributeValue().withN(toNumber((Number) value));
+        } else if (value instanceof byte[]) {
+            return new AttributeValue().withB(ByteBuffer.wrap((byte[]) value));
+        } else if (value instanceof ByteBuffer) {
+            return new AttributeValue().withB((ByteBuffer) value);
+        } else if (value instanceof Set) {
+            return toSetAttributeValue((Set<?>) value);
+        } else if (value instanceof List) {
+            List<AttributeValue> list = new ArrayList<AttributeValue>();
+            for (Object element : (List<?>) value) {
+                list.add(toAttributeValue(element));
+            }
+            return new AttributeValue().withL(list);
+        } else if (value instanceof Map) {
+            Map<String, AttributeValue> map = new LinkedHashMap<String, AttributeValue>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put((String) entry.getKey(), toAttributeValue(entry.getValue()));
+            }
+            return new AttributeValue().withM(map);
+        }
+        throw new DynamoDBMappingException(
+                "Unsupported expression value type: " + value.getClass());
+    }
+
+    private static AttributeValue toSetAttributeValue(Set<?> set) {
+        if (set.isEmpty()) {
+            // Matches the document API, which defaults to a string set
+            return new AttributeValue().withSS(new ArrayList<String>());
+        }
+        Object first = set.iterator().next();
+        if (first instanceof String) {
+            List<String> ss = new ArrayList<String>(set.size());
+            for (Object element : set) {
+                ss.add((String) element);
+            }
+            return new AttributeValue().withSS(ss);
+        } else if (first instanceof Number) {
+            List<String> ns = new ArrayList<String>(set.size());
+            for (Object element : set) {
+                ns.add(toNumber((Number) element));
+            }
+            return new AttributeValue().withNS(ns);
+        } else if (first instanceof byte[] || first instanceof ByteBuffer) {
+            List<ByteBuffer> bs = new ArrayList<ByteBuffer>(set.size());
+            for (Object element : set) {
+                bs.add(element instanceof byte[]
+                        ? ByteBuffer.wrap((byte[]) element)
+                        : (ByteBuffer) element);
+            }
+            return new AttributeValue().withBS(bs);
+        }
+        throw new DynamoDBMappingException(
+                "Unsupported expression set element type: " + first.getClass());
+    }
+
+    private static String toNumber(Number number) {
+        return number instanceof BigDecimal
+                ? ((BigDecimal) number).toPlainString()
+                : number.toString();
+    }
+}
@@ -567,6 +567,80 @@ public interface IDynamoDBMapper {
                                      DynamoDBQueryExpression<T> queryExpression,
                                      DynamoDBMapperConfig config);
 
+    /**
+     * Scans through an Amazon DynamoDB table and returns an iterator over the matching results,
+     * prefetching {@link PaginatedIterator#DEFAULT_PREFETCH_PAGES} page at a time, using the
+     * default configuration.
+     *
+     * @see DynamoDBMapper#scanIterator(Class, DynamoDBScanExpression, DynamoDBMapperConfig, int)
+     */
+    <T> PaginatedScanIterator<T> scanIterator(Class<T> clazz, DynamoDBScanExpression scanExpression);
+
+    /**
+     * Scans through an Amazon DynamoDB table and returns an iterator over the matching results.
+     * Unlike {@link #scan(Class, DynamoDBScanExpression, DynamoDBMapperConfig)}, items are not
+     * retained after they have been returned, and no more than {@code prefetchPages} pages beyond
+     * the one being consumed are held in memory, so tables of any size can be scanned with
+     * constant memory. The iteration can be resumed from
+     * {@link PaginatedIterator#getLastEvaluatedKey()} by setting it as the exclusive start key of
+     * the scan expression.
+     *
+     * @param <T>
+     *            The type of the objects being returned.
+     * @param clazz
+     *            The class annotated with DynamoDB annotations describing how to store the object
+     *            data in Amazon DynamoDB.
+     * @param scanExpression
+     *            Details on how to run the scan, including any filters to apply to limit results.
+     * @param config
+     *            The configuration to use for this scan, which overrides the default provided at
+     *            object construction.
+     * @param prefetchPages
+     *            The number of pages loaded ahead on a background thread, or zero to load every
+     *            page on the calling thread when it is needed.
+     * @see PaginatedScanIterator
+     */
+    <T> PaginatedScanIterator<T> scanIterator(Class<T> clazz,
+                                              DynamoDBScanExpression scanExpression,
+                                              DynamoDBMapperConfig config,
+                                              int prefetchPages);
+
+    /**
+     * Queries an Amazon DynamoDB table and returns an iterator over the matching results,
+     * prefetching {@link PaginatedIterator#DEFAULT_PREFETCH_PAGES} page at a time, using the
+     * default configuration.
+     *
+     * @see DynamoDBMapper#queryIterator(Class, DynamoDBQueryExpression, DynamoDBMapperConfig, int)
+     */
+    <T> PaginatedQueryIterator<T> queryIterator(Class<T> clazz, DynamoDBQueryExpression<T> queryExpression);
+
+    /**
+     * Queries an Amazon DynamoDB table and returns an iterator over the matching results. Items
+     * are not retained after they have been returned, and no more than {@code prefetchPages}
+     * pages beyond the one being consumed are held in memory. The iteration can be resumed from
+     * {@link PaginatedIterator#getLastEvaluatedKey()} by setting it as the exclusive start key of
+     * the query expression.
+     *
+     * @param <T>
+     *            The type of the objects being returned.
+     * @param clazz
+     *            The class annotated with DynamoDB annotations describing how to store the object
+     *            data in AWS DynamoDB.
+     * @param queryExpression
+     *            Details on how to run the query, including any conditions on the key values
+     * @param config
+     *            The configuration to use for this query, which overrides the default provided at
+     *            object construction.
+     * @param prefetchPages
+     *            The number of pages loaded ahead on a background thread, or zero to load every
+     *            page on the calling thread when it is needed.
+     * @see PaginatedQueryIterator
+     */
+    <T> PaginatedQueryIterator<T> queryIterator(Class<T> clazz,
+                                                DynamoDBQueryExpression<T> queryExpression,
+                                                DynamoDBMapperConfig config,
+                                                int prefetchPages);
+
     /**
      * Evaluates the specified scan expression and returns the count of matching items, without
      * returning any of the actual item data, using the default configuration.
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2011-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * A bounded, time-limited cache of items read by {@link DynamoDBMapper},
+ * enabled by setting it on a {@link DynamoDBMapperConfig}.
+ * <p>
+ * Items are cached as the raw attribute maps returned by DynamoDB, keyed by
+ * table name and primary key, so one cache can be shared by several mappers
+ * and model classes. Numeric key attributes are compared by value, so
+ * <code>1.50</code> and <code>1.5</code> identify the same item. Every caller
+ * gets its own deep copy of a cached attribute map. Loads that use {@link DynamoDBMapperConfig.ConsistentReads#EVENTUAL}
+ * consistency are served from the cache while the entry is younger than the
+ * time to live; loads using {@link DynamoDBMapperConfig.ConsistentReads#CONSISTENT}
+ * always go to DynamoDB. Items that do not exist are cached too, so repeated
+ * lookups of a missing key do not reach the table either.
+ * <p>
+ * Concurrent loads of the same uncached key are coalesced: one caller issues
+ * the GetItem request and the others wait for its result. Saves, deletes and
+ * batch writes made through a mapper using this cache drop the written keys;
+ * writes made by any other means are only picked up once the cached entry
+ * expires, so the time to live bounds how stale a cached item can be.
+ * <p>
+ * Once the maximum size is reached, the least recently used entries are
+ * evicted. The cache is split into independently locked segments, so the
+ * bound and the eviction order are approximate.
+ */
+public class ItemCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long timeToLiveNanos;
+
+    /** Loads in progress, so that concurrent misses share one request. */
+    private final ConcurrentMap<Key, Load> loading =
+            new ConcurrentHashMap<Key, Load>();
+
+    /**
+     * Incremented by every invalidation, so that batch reads started before
+     * a write do not cache what they read.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize
+     *            The maximum number of items held; must be positive.
+     * @param timeToLive
+     *            How long an item is served from the cache after it was
+     *            read; must be positive.
+     * @param unit
+     *            The unit of the time to live.
+     */
+    public ItemCache(int maxSize, long timeToLive, TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+        int segmentCount = Math.min(MAX_SEGMENTS, maxSize);
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to read from DynamoDB, including
+     * those that waited for a read already in progress for the same key.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries removed because they expired or because
+     * the cache was full. Entries dropped by writes are not counted.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of entries currently held, including expired entries
+     * that have not been looked up since they expired.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes the entry for the given item, if any. Loads of the item that
+     * are in progress complete normally but their result is not cached.
+     *
+     * @param tableName
+     *            The name of the table holding the item.
+     * @param key
+     *            The primary key attributes of the item.
+     */
+    public void invalidate(String tableName, Map<String, AttributeValue> key) {
+        invalidate(new Key(tableName, key));
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        loading.clear();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    void invalidate(Key key) {
+        invalidations.incrementAndGet();
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            loading.remove(key);
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Returns the cached item, which may be null if the item does not exist,
+     * or calls the loader on a miss. Only one loader runs at a time for a
+     * given key; other callers wait for its result.
+     */
+    Map<String, AttributeValue> get(Key key, Loader loader) {
+        Entry entry = lookup(key);
+        if (entry != null) {
+            return entry.item();
+        }
+
+        Load load = new Load();
+        Load inProgress = loading.putIfAbsent(key, load);
+        if (inProgress != null) {
+            return copyOf(inProgress.await());
+        }
+
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            // Another load may have completed since the lookup
+            Entry loaded = segment.get(key);
+            if (loaded != null && System.nanoTime() - loaded.expiresAt < 0) {
+                loading.remove(key, load);
+                load.complete(loaded.item);
+                return loaded.item();
+            }
+        }
+
+        Map<String, AttributeValue> item;
+        try {
+            item = copyOf(loader.load());
+        } catch (RuntimeException e) {
+            loading.remove(key, load);
+            load.fail(e);
+            throw e;
+        } catch (Error e) {
+            // Never leave the waiters blocked on a load that will not complete
+            loading.remove(key, load);
+            load.fail(new AmazonClientException("Unable to load the item", e));
+            throw e;
+        }
+
+        synchronized (segment) {
+            // Not removed by an invalidation while the item was being read
+            if (loading.remove(key, load)) {
+                segment.put(key, new Entry(item, System.nanoTime() + timeToLiveNanos));
+            }
+        }
+        load.complete(item);
+        return copyOf(item);
+    }
+
+    /**
+     * Returns the entry for the given key, or null on a miss.
+     */
+    Entry lookup(Key key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.incrementAndGet();
+                    return entry;
+                }
+                segment.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #put(Key, Map, long)} for items read
+     * after this call.
+     */
+    long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Caches a copy of an item read by a batch load, unless an invalidation
+     * happened since the given stamp was taken.
+     */
+    void put(Key key, Map<String, AttributeValue> item, long stamp) {
+        Entry entry = new Entry(copyOf(item), System.nanoTime() + timeToLiveNanos);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (invalidations.get() == stamp) {
+                segment.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Returns a deep copy of the attribute map, so that a caller modifying
+     * the map, its values or their binary contents does not change what
+     * other callers read from the cache. Reading a binary attribute moves the
+     * position of its buffer, so buffers are never shared either.
+     */
+    private static Map<String, AttributeValue> copyOf(Map<String, AttributeValue> item) {
+        if (item == null) {
+            return null;
+        }
+        Map<String, AttributeValue> copy =
+                new HashMap<String, AttributeValue>(item.size() * 4 / 3 + 1);
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            copy.put(attribute.getKey(), copyOf(attribute.getValue()));
+        }
+        return copy;
+    }
+
+    private static AttributeValue copyOf(AttributeValue value) {
+        if (value == null) {
+            return null;
+        }
+        AttributeValue copy = new AttributeValue()
+                .withS(value.getS())
+                .withN(value.getN())
+                .withB(copyOf(value.getB()))
+                .withNULL(value.getNULL())
+                .withBOOL(value.getBOOL());
+        if (value.getSS() != null) {
+            copy.setSS(new ArrayList<String>(value.getSS()));
+        }
+        if (value.getNS() != null) {
+            copy.setNS(new ArrayList<String>(value.getNS()));
+        }
+        if (value.getBS() != null) {
+            List<ByteBuffer> bs = new ArrayList<ByteBuffer>(value.getBS().size());
+            for (ByteBuffer b : value.getBS()) {
+                bs.add(copyOf(b));
+            }
+            copy.setBS(bs);
+        }
+        if (value.getM() != null) {
+            copy.setM(copyOf(value.getM()));
+        }
+        if (value.getL() != null) {
+            List<AttributeValue> l = new ArrayList<AttributeValue>(value.getL().size());
+            for (AttributeValue element : value.getL()) {
+                l.add(copyOf(element));
+            }
+            copy.setL(l);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a copy of the remaining bytes of the buffer, leaving the
+     * buffer's position unchanged.
+     */
+    private static ByteBuffer copyOf(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Reads an item from DynamoDB on a cache miss.
+     */
+    interface Loader {
+        /**
+         * Returns the item attributes, or null if the item does not exist.
+         */
+        Map<String, AttributeValue> load();
+    }
+
+    /**
+     * The table name and primary key identifying a cached item. Numeric key
+     * attributes are compared by value rather than by their string form.
+     */
+    static final class Key {
+
+        private final String tableName;
+        private final Map<String, AttributeValue> key;
+        private final int hashCode;
+
+        Key(String tableName, Map<String, AttributeValue> key) {
+            this.tableName = tableName;
+            this.key = new HashMap<String, AttributeValue>(key.size() * 4 / 3 + 1);
+            for (Map.Entry<String, AttributeValue> attribute : key.entrySet()) {
+                this.key.put(attribute.getKey(), normalized(attribute.getValue()));
+            }
+            this.hashCode = 31 * tableName.hashCode() + this.key.hashCode();
+        }
+
+        /**
+         * Returns the number in a canonical form, so that equal numbers
+         * written differently make equal keys.
+         */
+        private static AttributeValue normalized(AttributeValue value) {
+            if (value == null || value.getN() == null) {
+                return value;
+            }
+            BigDecimal number;
+            try {
+                number = new BigDecimal(value.getN());
+            } catch (NumberFormatException e) {
+                return value;
+            }
+            return new AttributeValue().withN(number.signum() == 0
+                    ? "0" : number.stripTrailingZeros().toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && tableName.equals(other.tableName)
+                    && key.equals(other.key);
+        }
+    }
+
+    /**
+     * A cached item, or a cached absence if the item is null.
+     */
+    static final class Entry {
+
+        private final Map<String, AttributeValue> item;
+        private final long expiresAt;
+
+        private Entry(Map<String, AttributeValue> item, long expiresAt) {
+            this.item = item;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Returns a copy of the cached item, or null if the item does not
+         * exist.
+         */
+        Map<String, AttributeValue> item() {
+            return copyOf(item);
+        }
+    }
+
+    /**
+     * One segment of the cache, evicting its least recently used entry when
+     * full. Guarded by its own monitor.
+     */
+    private final class Segment extends LinkedHashMap<Key, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A read in progress, awaited by concurrent misses on the same key.
+     */
+    private static final class Load {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Map<String, AttributeValue> item;
+        private volatile RuntimeException failure;
+
+        private void complete(Map<String, AttributeValue> item) {
+            this.item = item;
+            done.countDown();
+        }
+
+        private void fail(RuntimeException failure) {
+            this.failure = failure;
+            done.countDown();
+        }
+
+        private Map<String, AttributeValue> await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(
+                        "Interrupted while waiting for an item being loaded", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return item;
+        }
+    }
+}
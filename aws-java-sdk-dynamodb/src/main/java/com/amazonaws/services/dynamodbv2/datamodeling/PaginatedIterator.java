@@ -0,0 +1,352 @@
+/*
+ * Copyright 2011-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Iterator over the results of a scan or query in Amazon DynamoDB that never
+ * holds more than a bounded number of result pages in memory.
+ * <p>
+ * Unlike {@link PaginatedList}, items are not retained once they have been
+ * returned by {@link #next()}, so arbitrarily large tables can be walked with
+ * constant memory. When a positive number of prefetch pages is requested, the
+ * following pages are loaded and unmarshalled on a background daemon thread
+ * while the caller processes the current one; at most that many pages are
+ * fetched ahead of the page being consumed. With zero prefetch pages every
+ * page is loaded on the calling thread when it is needed.
+ * <p>
+ * {@link #getLastEvaluatedKey()} returns a checkpoint that can be passed as
+ * the exclusive start key of a new scan or query expression to resume the
+ * iteration after a restart. The checkpoint only advances at page
+ * boundaries, so items of a partially consumed page are returned again when
+ * resuming from it.
+ * <p>
+ * Instances are not thread safe and must be consumed by a single thread.
+ * Callers that stop before reaching the end of the results should call
+ * {@link #close()} to stop the background fetch; an iterator abandoned without
+ * being closed stops its fetch once it is garbage collected.
+ *
+ * @param <T>
+ *            The type of objects returned by this iterator.
+ * @see PaginatedScanIterator
+ * @see PaginatedQueryIterator
+ */
+public abstract class PaginatedIterator<T> implements Iterator<T>, Closeable {
+
+    /** The default number of pages fetched ahead of the current page. */
+    public static final int DEFAULT_PREFETCH_PAGES = 1;
+
+    /** The mapper that created this iterator. */
+    protected final DynamoDBMapper mapper;
+
+    /** The class annotated with DynamoDB tags declaring how to load/store objects. */
+    protected final Class<T> clazz;
+
+    /** The client for working with DynamoDB. */
+    protected final AmazonDynamoDB dynamo;
+
+    /** The configuration used to unmarshall the results. */
+    protected final DynamoDBMapperConfig config;
+
+    /**
+     * Limits the number of pages fetched ahead of the current page, or null
+     * if pages are fetched on the calling thread.
+     */
+    private final Semaphore prefetchPermits;
+
+    /** The background fetch of pages, started on first use. */
+    private Fetcher<T> fetcher;
+
+    /** The key from which the iteration can be resumed. */
+    private Map<String, AttributeValue> lastEvaluatedKey;
+
+    /** The page currently being consumed. */
+    private Page<T> currentPage;
+
+    /** The remaining items of the current page. */
+    private Iterator<T> currentItems;
+
+    /** True once the last page has been consumed or the iterator is closed. */
+    private boolean done;
+
+    protected PaginatedIterator(
+            DynamoDBMapper mapper,
+            Class<T> clazz,
+            AmazonDynamoDB dynamo,
+            DynamoDBMapperConfig config,
+            Map<String, AttributeValue> exclusiveStartKey,
+            int prefetchPages) {
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException(
+                    "prefetchPages must not be negative");
+        }
+        this.mapper = mapper;
+        this.clazz = clazz;
+        this.dynamo = dynamo;
+        this.config = config;
+        this.lastEvaluatedKey = exclusiveStartKey;
+        this.prefetchPermits = prefetchPages > 0
+                ? new Semaphore(prefetchPages)
+                : null;
+    }
+
+    /**
+     * Loads the page of results starting after the given key.
+     *
+     * @param exclusiveStartKey
+     *            The key to start after, or null for the first page.
+     */
+    protected abstract Page<T> fetchPage(
+            Map<String, AttributeValue> exclusiveStartKey);
+
+    /**
+     * Returns the key from which a new scan or query should start to resume
+     * this iteration: the last evaluated key of the most recent page whose
+     * items have all been returned, or the exclusive start key of the original
+     * request if no page has been completed yet. A null value means the
+     * iteration starts from the beginning of the results, or, once
+     * {@link #hasNext()} returns false, that all results have been returned.
+     */
+    public Map<String, AttributeValue> getLastEvaluatedKey() {
+        return lastEvaluatedKey;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If a page fails to load, the exception is rethrown here. Without
+     * prefetch the call can simply be retried; with prefetch the iterator is
+     * closed and the iteration must be resumed from
+     * {@link #getLastEvaluatedKey()}.
+     */
+    @Override
+    public boolean hasNext() {
+        while (currentItems == null || !currentItems.hasNext()) {
+            if (done) {
+                return false;
+            }
+            nextPage();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = currentItems.next();
+        if (!currentItems.hasNext()) {
+            pageConsumed();
+        }
+        return item;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException(
+                "Items cannot be removed through a paginated iterator");
+    }
+
+    /**
+     * Stops the background fetch, if any, and discards any pages that have
+     * been loaded but not consumed. After closing, {@link #hasNext()} returns
+     * false. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        done = true;
+        currentItems = null;
+        if (fetcher != null) {
+            fetcher.stop();
+        }
+    }
+
+    /**
+     * Stops the background fetch of an iterator that was abandoned without
+     * being closed.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        if (fetcher != null) {
+            fetcher.stop();
+        }
+    }
+
+    private void nextPage() {
+        Page<T> page;
+        if (prefetchPermits == null) {
+            page = fetchPage(lastEvaluatedKey);
+        } else {
+            if (fetcher == null) {
+                fetcher = new Fetcher<T>(this, prefetchPermits, lastEvaluatedKey);
+            }
+            page = fetcher.take();
+            if (page.failure != null) {
+                close();
+                if (page.failure instanceof Error) {
+                    throw (Error) page.failure;
+                }
+                throw (RuntimeException) page.failure;
+            }
+            // The page is no longer ahead of the consumer
+            prefetchPermits.release();
+        }
+        currentPage = page;
+        currentItems = page.items.iterator();
+        if (!currentItems.hasNext()) {
+            pageConsumed();
+        }
+    }
+
+    /**
+     * Records the checkpoint of the current page once all of its items have
+     * been returned.
+     */
+    private void pageConsumed() {
+        lastEvaluatedKey = currentPage.lastEvaluatedKey;
+        currentPage = null;
+        if (lastEvaluatedKey == null) {
+            close();
+        }
+    }
+
+    /**
+     * Loads pages in order on a background daemon thread until the last one,
+     * waiting for the consumer whenever the maximum number of pages has been
+     * fetched ahead. The thread only holds its iterator while a page is being
+     * loaded, so that an abandoned iterator can be garbage collected and stop
+     * the fetch.
+     */
+    private static final class Fetcher<T> implements Runnable {
+
+        private final WeakReference<PaginatedIterator<T>> iterator;
+        private final Semaphore prefetchPermits;
+
+        /** Pages loaded, in order, followed by a failure if one occurred. */
+        private final BlockingQueue<Page<T>> fetchedPages =
+                new LinkedBlockingQueue<Page<T>>();
+
+        private final Thread thread;
+        private volatile boolean stopped;
+        private Map<String, AttributeValue> startKey;
+
+        Fetcher(PaginatedIterator<T> iterator, Semaphore prefetchPermits,
+                Map<String, AttributeValue> startKey) {
+            this.iterator = new WeakReference<PaginatedIterator<T>>(iterator);
+            this.prefetchPermits = prefetchPermits;
+            this.startKey = startKey;
+            this.thread = new Thread(this);
+            thread.setName("dynamodb-mapper-page-fetcher-" + thread.getId());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        Page<T> take() {
+            try {
+                return fetchedPages.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(
+                        "Interrupted while waiting for the next page of results",
+                        e);
+            }
+        }
+
+        void stop() {
+            if (!stopped) {
+                stopped = true;
+                thread.interrupt();
+                fetchedPages.clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                do {
+                    prefetchPermits.acquire();
+                    if (stopped) {
+                        return;
+                    }
+                    Page<T> page = fetchPage();
+                    if (page == null) {
+                        // The iterator was garbage collected
+                        return;
+                    }
+                    fetchedPages.put(page);
+                    startKey = page.lastEvaluatedKey;
+                } while (startKey != null && !stopped);
+            } catch (InterruptedException e) {
+                // Stopped by the consumer
+            } catch (RuntimeException e) {
+                failed(e);
+            } catch (Error e) {
+                failed(e);
+            }
+        }
+
+        private Page<T> fetchPage() {
+            PaginatedIterator<T> owner = iterator.get();
+            return (owner == null) ? null : owner.fetchPage(startKey);
+        }
+
+        /**
+         * Queues the failure in place of the next page, so that the consumer
+         * is never left waiting for a page that will not come.
+         */
+        private void failed(Throwable failure) {
+            if (!stopped) {
+                fetchedPages.add(new Page<T>(failure));
+            }
+        }
+    }
+
+    /**
+     * One page of unmarshalled results and the key to continue after it.
+     */
+    protected static final class Page<T> {
+
+        private final List<T> items;
+        private final Map<String, AttributeValue> lastEvaluatedKey;
+        private final Throwable failure;
+
+        protected Page(List<T> items,
+                Map<String, AttributeValue> lastEvaluatedKey) {
+            this.items = items;
+            this.lastEvaluatedKey = lastEvaluatedKey;
+            this.failure = null;
+        }
+
+        private Page(Throwable failure) {
+            this.items = null;
+            this.lastEvaluatedKey = null;
+            this.failure = failure;
+        }
+    }
+}
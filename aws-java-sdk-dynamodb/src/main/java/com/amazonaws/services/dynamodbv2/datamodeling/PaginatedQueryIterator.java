@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+
+/**
+ * Iterator over the results of a query in AWS DynamoDB that holds a bounded
+ * number of result pages in memory.
+ *
+ * @param <T>
+ *            The type of objects returned by this iterator.
+ * @see PaginatedIterator
+ */
+public class PaginatedQueryIterator<T> extends PaginatedIterator<T> {
+
+    /** The query request, reused for every page */
+    private final QueryRequest queryRequest;
+
+    public PaginatedQueryIterator(
+            DynamoDBMapper mapper,
+            Class<T> clazz,
+            AmazonDynamoDB dynamo,
+            QueryRequest queryRequest,
+            int prefetchPages,
+            DynamoDBMapperConfig config
+    ) {
+        super(mapper, clazz, dynamo, config,
+                queryRequest.getExclusiveStartKey(), prefetchPages);
+        this.queryRequest = queryRequest;
+    }
+
+    @Override
+    protected Page<T> fetchPage(Map<String, AttributeValue> exclusiveStartKey) {
+        queryRequest.setExclusiveStartKey(exclusiveStartKey);
+        QueryResult queryResult = dynamo.query(DynamoDBMapper.applyUserAgent(queryRequest));
+        return new Page<T>(
+                mapper.marshallIntoObjects(mapper.toParameters(
+                        queryResult.getItems(),
+                        clazz,
+                        queryRequest.getTableName(),
+                        config)),
+                queryResult.getLastEvaluatedKey());
+    }
+}
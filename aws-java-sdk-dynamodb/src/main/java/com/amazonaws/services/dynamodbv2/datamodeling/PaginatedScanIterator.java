@@ -0,0 +1,62 @@
+/*
+ * Copyright 2011-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+/**
+ * Iterator over the results of a scan in AWS DynamoDB that holds a bounded
+ * number of result pages in memory.
+ *
+ * @param <T>
+ *            The type of objects returned by this iterator.
+ * @see PaginatedIterator
+ */
+public class PaginatedScanIterator<T> extends PaginatedIterator<T> {
+
+    /** The scan request, reused for every page */
+    private final ScanRequest scanRequest;
+
+    public PaginatedScanIterator(
+            DynamoDBMapper mapper,
+            Class<T> clazz,
+            AmazonDynamoDB dynamo,
+            ScanRequest scanRequest,
+            int prefetchPages,
+            DynamoDBMapperConfig config
+    ) {
+        super(mapper, clazz, dynamo, config,
+                scanRequest.getExclusiveStartKey(), prefetchPages);
+        this.scanRequest = scanRequest;
+    }
+
+    @Override
+    protected Page<T> fetchPage(Map<String, AttributeValue> exclusiveStartKey) {
+        scanRequest.setExclusiveStartKey(exclusiveStartKey);
+        ScanResult scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(scanRequest));
+        return new Page<T>(
+                mapper.marshallIntoObjects(mapper.toParameters(
+                        scanResult.getItems(),
+                        clazz,
+                        scanRequest.getTableName(),
+                        config)),
+                scanResult.getLastEvaluatedKey());
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2011-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.applyBatchOperationUserAgent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteListener;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * Sends the write requests of one batch write with several BatchWriteItem
+ * calls in flight at a time.
+ * <p>
+ * Write requests are added from the calling thread as they are marshalled and
+ * are sent as soon as a full batch is available, blocking the caller only
+ * while the maximum number of calls is already in flight. Unprocessed items
+ * returned by the service are queued for the delay given by the
+ * {@link BatchWriteRetryStrategy} and then packed into later batches, instead
+ * of holding up a writer thread while they wait.
+ * <p>
+ * The writer threads come from a pool owned by the mapper, created with
+ * {@link #newExecutor()} and shared by all its parallel batch writes.
+ */
+final class ParallelBatchWriter {
+
+    private static final Log log = LogFactory.getLog(ParallelBatchWriter.class);
+
+    /** The back-off applied by a writer thread after a throttled call. */
+    private static final long THROTTLING_BACKOFF_MILLIS = 1000 * 2;
+
+    /** How long to wait for in-flight calls between checks when finishing. */
+    private static final long IDLE_POLL_MILLIS = 10;
+
+    private final AmazonDynamoDB db;
+    private final BatchWriteRetryStrategy retryStrategy;
+    private final BatchWriteListener listener;
+    private final ExecutorService executorService;
+
+    /** One permit per BatchWriteItem call allowed in flight. */
+    private final Semaphore slots;
+
+    /** The number of batches handed to the writer threads and not yet done. */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /** Unprocessed items waiting for their retry delay to elapse. */
+    private final DelayQueue<Retry> retries = new DelayQueue<Retry>();
+
+    private final List<FailedBatch> failedBatches =
+            Collections.synchronizedList(new LinkedList<FailedBatch>());
+
+    /** The batch being filled; only accessed by the calling thread. */
+    private List<PendingWrite> batch = newBatch();
+
+    /** Set once the caller gives up; batches not yet sent are then failed. */
+    private volatile boolean aborted;
+
+    ParallelBatchWriter(AmazonDynamoDB db, ExecutorService executorService,
+            int concurrency, BatchWriteRetryStrategy retryStrategy,
+            BatchWriteListener listener) {
+        this.db = db;
+        this.executorService = executorService;
+        this.retryStrategy = retryStrategy;
+        this.listener = listener;
+        this.slots = new Semaphore(concurrency);
+    }
+
+    /**
+     * Creates a pool for the writer threads of parallel batch writes. The
+     * number of threads in use is bounded by the concurrency of the writes in
+     * progress, and idle threads time out, so the pool costs nothing when
+     * unused.
+     */
+    static ExecutorService newExecutor() {
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("dynamodb-mapper-batch-writer-"
+                                + threadCount.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Adds a write request, sending the current batch once it is full.
+     */
+    void add(String tableName, WriteRequest writeRequest) {
+        addReadyRetries();
+        append(new PendingWrite(tableName, writeRequest, 0));
+    }
+
+    /**
+     * Sends the remaining write requests and waits until every item has been
+     * written or given up on.
+     *
+     * @return the batches that could not be written.
+     */
+    List<FailedBatch> finish() {
+        try {
+            for (;;) {
+                addReadyRetries();
+                if (!batch.isEmpty()) {
+                    send();
+                    continue;
+                }
+                // Writers queue their retries before they stop counting as
+                // in flight, so nothing can be missed by checking in this order
+                if (inFlight.get() == 0 && retries.isEmpty()) {
+                    break;
+                }
+                Retry retry = retries.poll(IDLE_POLL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (retry != null) {
+                    appendAll(retry);
+                }
+            }
+        } catch (InterruptedException e) {
+            abort();
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+        synchronized (failedBatches) {
+            return new LinkedList<FailedBatch>(failedBatches);
+        }
+    }
+
+    /**
+     * Stops sending batches without waiting for the calls in flight. Batches
+     * handed to the writer threads but not yet sent are reported as failed.
+     */
+    void abort() {
+        aborted = true;
+    }
+
+    private void addReadyRetries() {
+        Retry retry;
+        while ((retry = retries.poll()) != null) {
+            appendAll(retry);
+        }
+    }
+
+    private void appendAll(Retry retry) {
+        for (Map.Entry<String, List<WriteRequest>> entry
+                : retry.unprocessedItems.entrySet()) {
+            for (WriteRequest writeRequest : entry.getValue()) {
+                append(new PendingWrite(entry.getKey(), writeRequest,
+                        retry.attempts));
+            }
+        }
+    }
+
+    private void append(PendingWrite write) {
+        batch.add(write);
+        if (batch.size() == DynamoDBMapper.MAX_ITEMS_PER_BATCH) {
+            send();
+        }
+    }
+
+    private void send() {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+        final List<PendingWrite> toSend = batch;
+        batch = newBatch();
+        inFlight.incrementAndGet();
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (aborted) {
+                            failed(toRequestItems(toSend), new AmazonClientException(
+                                    "The batch write was aborted"));
+                        } else {
+                            write(toRequestItems(toSend), maxAttempts(toSend));
+                        }
+                    } catch (RuntimeException e) {
+                        // Never lose items, even on an unexpected failure
+                        failed(toRequestItems(toSend), e);
+                    } finally {
+                        inFlight.decrementAndGet();
+                        slots.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Makes one BatchWriteItem call, splitting the batch in two if it is too
+     * large, and queues any unprocessed items for a later batch.
+     */
+    private void write(Map<String, List<WriteRequest>> requestItems,
+            int attempts) {
+        BatchWriteItemResult result;
+        try {
+            result = db.batchWriteItem(applyBatchOperationUserAgent(
+                    new BatchWriteItemRequest().withRequestItems(requestItems)));
+        } catch (AmazonServiceException e) {
+            if (RetryUtils.isRequestEntityTooLargeException(e)
+                    && countItems(requestItems) > 1) {
+                Map<String, List<WriteRequest>> firstHalf =
+                        new HashMap<String, List<WriteRequest>>();
+                Map<String, List<WriteRequest>> secondHalf =
+                        new HashMap<String, List<WriteRequest>>();
+                divide(requestItems, firstHalf, secondHalf);
+                write(firstHalf, attempts);
+                write(secondHalf, attempts);
+                return;
+            }
+            failed(requestItems, e);
+            if (RetryUtils.isThrottlingException(e)) {
+                backOff();
+            }
+            return;
+        } catch (AmazonClientException e) {
+            failed(requestItems, e);
+            return;
+        }
+
+        Map<String, List<WriteRequest>> unprocessedItems =
+                result.getUnprocessedItems();
+        int unprocessedCount = countItems(unprocessedItems);
+        notifyWritten(countItems(requestItems) - unprocessedCount);
+        if (unprocessedCount == 0) {
+            return;
+        }
+
+        int maxRetries = retryStrategy.getMaxRetryOnUnprocessedItems(
+                Collections.unmodifiableMap(requestItems));
+        if (maxRetries >= 0 && attempts >= maxRetries) {
+            failed(unprocessedItems, null);
+            return;
+        }
+        long delay = retryStrategy.getDelayBeforeRetryUnprocessedItems(
+                Collections.unmodifiableMap(unprocessedItems), attempts);
+        retries.add(new Retry(unprocessedItems, attempts + 1, delay));
+    }
+
+    private void failed(Map<String, List<WriteRequest>> unprocessedItems,
+            Exception exception) {
+        FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(unprocessedItems);
+        failedBatch.setException(exception);
+        failedBatches.add(failedBatch);
+        if (listener != null) {
+            try {
+                listener.onBatchFailed(failedBatch);
+            } catch (RuntimeException e) {
+                log.warn("Batch write listener failed", e);
+            }
+        }
+    }
+
+    private void notifyWritten(int writtenCount) {
+        if (listener != null && writtenCount > 0) {
+            try {
+                listener.onItemsWritten(writtenCount);
+            } catch (RuntimeException e) {
+                log.warn("Batch write listener failed", e);
+            }
+        }
+    }
+
+    private static void backOff() {
+        try {
+            Thread.sleep(THROTTLING_BACKOFF_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<PendingWrite> newBatch() {
+        return new ArrayList<PendingWrite>(DynamoDBMapper.MAX_ITEMS_PER_BATCH);
+    }
+
+    private static Map<String, List<WriteRequest>> toRequestItems(
+            List<PendingWrite> writes) {
+        Map<String, List<WriteRequest>> requestItems =
+                new HashMap<String, List<WriteRequest>>();
+        for (PendingWrite write : writes) {
+            List<WriteRequest> tableRequests = requestItems.get(write.tableName);
+            if (tableRequests == null) {
+                tableRequests = new LinkedList<WriteRequest>();
+                requestItems.put(write.tableName, tableRequests);
+            }
+            tableRequests.add(write.writeRequest);
+        }
+        return requestItems;
+    }
+
+    /**
+     * Items retried together share a retry count, so a batch mixing retried
+     * and fresh items is counted as the most retried of them.
+     */
+    private static int maxAttempts(List<PendingWrite> writes) {
+        int attempts = 0;
+        for (PendingWrite write : writes) {
+            attempts = Math.max(attempts, write.attempts);
+        }
+        return attempts;
+    }
+
+    private static int countItems(Map<String, List<WriteRequest>> items) {
+        int count = 0;
+        if (items != null) {
+            for (List<WriteRequest> tableRequests : items.values()) {
+                count += tableRequests.size();
+            }
+        }
+        return count;
+    }
+
+    private static void divide(Map<String, List<WriteRequest>> batch,
+            Map<String, List<WriteRequest>> firstHalf,
+            Map<String, List<WriteRequest>> secondHalf) {
+        for (Map.Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+            List<WriteRequest> requests = entry.getValue();
+            int middle = requests.size() / 2;
+            if (middle > 0) {
+                firstHalf.put(entry.getKey(), requests.subList(0, middle));
+            }
+            secondHalf.put(entry.getKey(),
+                    requests.subList(middle, requests.size()));
+        }
+    }
+
+    /**
+     * A write request together with the number of times it has been retried.
+     */
+    private static final class PendingWrite {
+        private final String tableName;
+        private final WriteRequest writeRequest;
+        private final int attempts;
+
+        PendingWrite(String tableName, WriteRequest writeRequest, int attempts) {
+            this.tableName = tableName;
+            this.writeRequest = writeRequest;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * Unprocessed items that become available again once their delay elapses.
+     */
+    private static final class Retry implements Delayed {
+        private final Map<String, List<WriteRequest>> unprocessedItems;
+        private final int attempts;
+        private final long readyAtNanos;
+
+        Retry(Map<String, List<WriteRequest>> unprocessedItems, int attempts,
+                long delayMillis) {
+            this.unprocessedItems = unprocessedItems;
+            this.attempts = attempts;
+            this.readyAtNanos = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAtNanos - System.nanoTime(),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long diff = getDelay(TimeUnit.NANOSECONDS)
+                    - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+    }
+}
@@ -14,23 +14,49 @@
  */
 package com.amazonaws.services.dynamodbv2.datamodeling;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ParallelScanOptions;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
 
+/**
+ * Runs the segments of a parallel scan on a bounded executor.
+ * <p>
+ * Each segment fetches its next page as soon as its previous page has been
+ * buffered, so segments progress independently of each other. The number of
+ * pages that are being fetched or are buffered waiting for the caller is
+ * bounded; segments that would exceed the bound wait, without holding a
+ * thread, until the caller consumes a page.
+ */
 public class ParallelScanTask {
 
+    /** Number of threads in the pool shared by parallel scans by default. */
+    static final int SHARED_POOL_SIZE = 16;
+
+    /** Default maximum number of pages fetched or buffered ahead of the caller. */
+    static final int DEFAULT_MAX_BUFFERED_PAGES = 16;
+
     /**
      * The list of hard copies of ScanRequest with different segment number.
      */
@@ -38,26 +64,33 @@ public class ParallelScanTask {
 
     private final int totalSegments;
 
-    /**
-     * Cache all the future tasks, so that we can extract the exception when
-     * we see failed segment scan.
-     */
-    private final List<Future<ScanResult>> segmentScanFutureTasks;
+    private final AmazonDynamoDB dynamo;
 
-    /**
-     * Cache all the most recent ScanResult on each segment.
-     */
-    private final List<ScanResult> segmentScanResults;
+    private final ExecutorService executorService;
+
+    /** Paces the requests by consumed capacity, or null if unlimited. */
+    private final ReadCapacityThrottle throttle;
 
     /**
-     * The current state of the scan on each segment.
-     * Used as the monitor for synchronization.
+     * One permit per page that is being fetched or is buffered in
+     * {@link #segmentScanResults}.
      */
-    private final List<SegmentScanState> segmentScanStates;
+    private final Semaphore bufferPermits;
 
-    private ExecutorService executorService;
+    /** Segments whose next page may be fetched once a permit is available. */
+    private final Queue<Integer> readySegments = new ConcurrentLinkedQueue<Integer>();
 
-    private final AmazonDynamoDB dynamo;
+    /** Fetched pages, or failures, in the order they completed. */
+    private final BlockingQueue<SegmentScanResult> segmentScanResults =
+            new LinkedBlockingQueue<SegmentScanResult>();
+
+    /** Number of segments whose last page has not been returned yet. */
+    private final AtomicInteger unfinishedSegments;
+
+    private volatile boolean failed;
+
+    /** The failure returned to the caller, rethrown on every later call. */
+    private AmazonClientException failure;
 
     @Deprecated
     public ParallelScanTask(DynamoDBMapper mapper, AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
@@ -65,17 +98,34 @@ public class ParallelScanTask {
     }
 
     ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
+        this(dynamo, parallelScanRequests, null);
+    }
+
+    ParallelScanTask(AmazonDynamoDB dynamo,
+                     List<ScanRequest> parallelScanRequests,
+                     ParallelScanOptions options) {
         this.dynamo = dynamo;
         this.parallelScanRequests = parallelScanRequests;
         this.totalSegments = parallelScanRequests.size();
-        executorService = Executors.newCachedThreadPool();
+        this.unfinishedSegments = new AtomicInteger(totalSegments);
 
-        // Create synchronized views of the list to guarantee any changes are visible across all threads.
-        segmentScanFutureTasks = Collections.synchronizedList(new ArrayList<Future<ScanResult>>(totalSegments));
-        segmentScanResults = Collections.synchronizedList(new ArrayList<ScanResult>(totalSegments));
-        segmentScanStates = Collections.synchronizedList(new ArrayList<SegmentScanState>(totalSegments));
+        ExecutorService executor = (options == null) ? null : options.getExecutor();
+        this.executorService = (executor == null) ? SharedPool.EXECUTOR : executor;
 
-        initSegmentScanStates();
+        Integer maxBufferedPages = (options == null) ? null : options.getMaxBufferedPages();
+        this.bufferPermits = new Semaphore((maxBufferedPages == null)
+                ? DEFAULT_MAX_BUFFERED_PAGES
+                : maxBufferedPages);
+
+        Double readCapacityFraction = (options == null) ? null : options.getReadCapacityFraction();
+        this.throttle = (readCapacityFraction == null)
+                ? null
+                : createThrottle(readCapacityFraction);
+
+        for (int segment = 0; segment < totalSegments; segment++) {
+            readySegments.add(segment);
+        }
+        scheduleReadySegments();
     }
 
     String getTableName() {
@@ -83,189 +133,255 @@ public class ParallelScanTask {
     }
 
     public boolean isAllSegmentScanFinished() {
-        synchronized(segmentScanStates) {
-            for (int segment = 0; segment < totalSegments; segment++) {
-                if (segmentScanStates.get(segment) != SegmentScanState.SegmentScanCompleted)
-                    return false;
-            }
-            // Shut down if all data have been scanned and loaded.
-            executorService.shutdown();
-            return true;
-        }
+        return unfinishedSegments.get() == 0;
     }
 
+    /**
+     * Returns the pages fetched since the previous call, waiting for at least
+     * one if none is available yet. Returns an empty list once the last page
+     * of every segment has been returned.
+     */
     public List<ScanResult> getNextBatchOfScanResults() throws AmazonClientException {
-        /**
-         * Kick-off all the parallel scan tasks.
-         */
-        startScanNextPages();
-        /**
-         * Wait till all the tasks have finished.
-         */
-        synchronized(segmentScanStates) {
-            while (segmentScanStates.contains(SegmentScanState.Waiting)
-                    || segmentScanStates.contains(SegmentScanState.Scanning)) {
-                try {
-                    segmentScanStates.wait();
-                } catch (InterruptedException ie) {
-                    throw new AmazonClientException("Parallel scan interrupted by other thread.", ie);
-                }
+        if (failure != null) {
+            throw failure;
+        }
+        List<ScanResult> scanResults = new LinkedList<ScanResult>();
+        if (isAllSegmentScanFinished()) {
+            return scanResults;
+        }
+
+        List<SegmentScanResult> batch = new LinkedList<SegmentScanResult>();
+        try {
+            batch.add(segmentScanResults.take());
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Parallel scan interrupted by other thread.", ie);
+        }
+        segmentScanResults.drainTo(batch);
+
+        for (SegmentScanResult result : batch) {
+            if (result.failure != null) {
+                failure = toClientException(result);
+                throw failure;
             }
-            /**
-             *  Keep the lock on segmentScanStates until all the cached results are marshaled and returned.
-             */
-            return marshalParallelScanResults();
+            if (result.scanResult.getLastEvaluatedKey() == null) {
+                unfinishedSegments.decrementAndGet();
+            }
+            scanResults.add(result.scanResult);
         }
 
+        bufferPermits.release(batch.size());
+        scheduleReadySegments();
+        return scanResults;
     }
 
-    private void startScanNextPages() {
-        for (int segment = 0; segment < totalSegments; segment++) {
-            final int currentSegment = segment;
-            final SegmentScanState currentSegmentState = segmentScanStates.get(currentSegment);
-            /**
-             * Assert: Should never see any task in state of "Scanning" when starting a new batch.
-             */
-            if (currentSegmentState == SegmentScanState.Scanning){
-                throw new AmazonClientException("Should never see a 'Scanning' state when starting parallel scans.");
-            }
-            /**
-             * Skip any failed or completed segment, and clear the corresponding cached result.
-             */
-            else if (currentSegmentState == SegmentScanState.Failed
-                    || currentSegmentState == SegmentScanState.SegmentScanCompleted) {
-                segmentScanResults.set(currentSegment, null);
+    /**
+     * Submits a page fetch for every ready segment for which a buffer permit
+     * is available.
+     */
+    private void scheduleReadySegments() {
+        while (!failed && !readySegments.isEmpty() && bufferPermits.tryAcquire()) {
+            Integer segment = readySegments.poll();
+            if (segment == null) {
+                // Another thread took it; give the permit back and re-check
+                bufferPermits.release();
                 continue;
             }
-            /**
-             * Otherwise, submit a new future task and save it in segmentScanFutureTasks.
-             */
-            else {
-                // Update the state to "Scanning" and notify any waiting thread.
-                synchronized(segmentScanStates) {
-                    segmentScanStates.set(currentSegment, SegmentScanState.Scanning);
-                    segmentScanStates.notifyAll();
+            submit(segment);
+        }
+    }
+
+    private void submit(final int segment) {
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    scanNextPageOfSegment(segment);
                 }
-                Future<ScanResult> futureTask = executorService.submit(new Callable<ScanResult>() {
-                    @Override
-                    public ScanResult call() throws Exception {
-                        try {
-                            if (currentSegmentState == SegmentScanState.HasNextPage) {
-                                return scanNextPageOfSegment(currentSegment, true);
-                            }
-                            else if (currentSegmentState == SegmentScanState.Waiting) {
-                                return scanNextPageOfSegment(currentSegment, false);
-                            }
-                            else {
-                                throw new AmazonClientException("Should not start a new future task");
-                            }
-                        } catch (Exception e) {
-                            synchronized(segmentScanStates) {
-                                segmentScanStates.set(currentSegment, SegmentScanState.Failed);
-                                segmentScanStates.notifyAll();
-                            }
-                            throw e;
-                        }
-                    }
-                });
-                // Cache the future task (for getting the Exceptions in the working thread).
-                segmentScanFutureTasks.set(currentSegment, futureTask);
+            });
+        } catch (RejectedExecutionException ree) {
+            fail(segment, ree);
+        }
+    }
+
+    private void scanNextPageOfSegment(int segment) {
+        ScanResult scanResult;
+        try {
+            double reservedUnits = 0;
+            if (throttle != null) {
+                reservedUnits = throttle.reserve();
+            }
+            ScanRequest segmentScanRequest = parallelScanRequests.get(segment);
+            scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(segmentScanRequest));
+            if (throttle != null) {
+                throttle.consumed(reservedUnits, scanResult.getConsumedCapacity());
             }
+            segmentScanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            fail(segment, e);
+            return;
+        }
+
+        segmentScanResults.add(new SegmentScanResult(segment, scanResult, null));
+        if (scanResult.getLastEvaluatedKey() != null) {
+            readySegments.add(segment);
         }
+        scheduleReadySegments();
     }
 
-    private List<ScanResult> marshalParallelScanResults() {
-        List<ScanResult> scanResults = new LinkedList<ScanResult>();
-        for (int segment = 0; segment < totalSegments; segment++) {
-            SegmentScanState currentSegmentState = segmentScanStates.get(segment);
-            /**
-             * Rethrow the exception from any failed segment scan.
-             */
-            if (currentSegmentState == SegmentScanState.Failed) {
-                try {
-                    segmentScanFutureTasks.get(segment).get();
-                    throw new AmazonClientException("No Exception found in the failed scan task.");
-                } catch (ExecutionException ee) {
-                    if ( ee.getCause() instanceof AmazonClientException) {
-                        throw (AmazonClientException) (ee.getCause());
-                    } else {
-                        throw new AmazonClientException("Internal error during the scan on segment #" + segment + ".",
-                                ee.getCause());
-                    }
-                } catch (Exception e) {
-                    throw new AmazonClientException("Error during the scan on segment #" + segment + ".", e);
+    private void fail(int segment, Exception e) {
+        failed = true;
+        segmentScanResults.add(new SegmentScanResult(segment, null, e));
+    }
+
+    private static AmazonClientException toClientException(SegmentScanResult result) {
+        if (result.failure instanceof AmazonClientException) {
+            return (AmazonClientException) result.failure;
+        }
+        return new AmazonClientException("Internal error during the scan on segment #"
+                + result.segment + ".", result.failure);
+    }
+
+    /**
+     * Looks up the provisioned read capacity of the scanned table or index
+     * and requests consumed capacity on every segment request.
+     */
+    private ReadCapacityThrottle createThrottle(double readCapacityFraction) {
+        ScanRequest firstRequest = parallelScanRequests.get(0);
+        TableDescription table = dynamo.describeTable(DynamoDBMapper.applyUserAgent(
+                new DescribeTableRequest(firstRequest.getTableName()))).getTable();
+
+        ProvisionedThroughputDescription throughput = table.getProvisionedThroughput();
+        if (firstRequest.getIndexName() != null && table.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndexDescription index : table.getGlobalSecondaryIndexes()) {
+                if (firstRequest.getIndexName().equals(index.getIndexName())) {
+                    throughput = index.getProvisionedThroughput();
                 }
             }
-            /**
-             * Get the ScanResult from cache if the segment scan has finished.
-             */
-            else if (currentSegmentState == SegmentScanState.HasNextPage
-                    || currentSegmentState == SegmentScanState.SegmentScanCompleted) {
-                ScanResult scanResult = segmentScanResults.get(segment);
-                scanResults.add(scanResult);
-            }
-            else if (currentSegmentState == SegmentScanState.Waiting
-                    || currentSegmentState == SegmentScanState.Scanning){
-                throw new AmazonClientException("Should never see a 'Scanning' or 'Waiting' state when marshalling parallel scan results.");
+        }
+        if (throughput == null || throughput.getReadCapacityUnits() == null
+                || throughput.getReadCapacityUnits() <= 0) {
+            return null;
+        }
+
+        for (ScanRequest request : parallelScanRequests) {
+            if (request.getReturnConsumedCapacity() == null
+                    || ReturnConsumedCapacity.NONE.toString().equals(request.getReturnConsumedCapacity())) {
+                request.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
             }
         }
-        return scanResults;
+        return new ReadCapacityThrottle(
+                throughput.getReadCapacityUnits() * readCapacityFraction);
+    }
+
+    /**
+     * A page of results, or the failure, of one request on a segment.
+     */
+    private static final class SegmentScanResult {
+        private final int segment;
+        private final ScanResult scanResult;
+        private final Exception failure;
+
+        private SegmentScanResult(int segment, ScanResult scanResult, Exception failure) {
+            this.segment = segment;
+            this.scanResult = scanResult;
+            this.failure = failure;
+        }
     }
 
-    private ScanResult scanNextPageOfSegment(int currentSegment, boolean checkLastEvaluatedKey) {
-        ScanRequest segmentScanRequest = parallelScanRequests.get(currentSegment);
-        if (checkLastEvaluatedKey) {
-            ScanResult lastScanResult = segmentScanResults.get(currentSegment);
-            segmentScanRequest.setExclusiveStartKey(lastScanResult.getLastEvaluatedKey());
-        } else {
-            segmentScanRequest.setExclusiveStartKey(null);
+    /**
+     * Delays requests so that the capacity consumed by the scan averages out
+     * to the target rate. Each request reserves the capacity it is expected
+     * to consume before it is sent, so that concurrent segments cannot all
+     * pass the check for the same capacity; the reservation is corrected once
+     * the consumed capacity is reported.
+     */
+    private static final class ReadCapacityThrottle {
+        private final double unitsPerSecond;
+
+        /** The time at which the capacity reserved so far has been paid for. */
+        private long nextAvailableNanos = System.nanoTime();
+
+        /**
+         * The capacity units reserved for the next request: the units consumed
+         * by the most recently completed request.
+         */
+        private double expectedUnits = 1;
+
+        private ReadCapacityThrottle(double unitsPerSecond) {
+            this.unitsPerSecond = unitsPerSecond;
         }
-        ScanResult scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(segmentScanRequest));
 
         /**
-         * Cache the scan result in segmentScanResults.
-         * We should never try to get these scan results by calling get() on the cached future tasks.
+         * Reserves capacity for one request and waits until it is available.
+         *
+         * @return the units reserved, to be passed to
+         *         {@link #consumed(double, ConsumedCapacity)}
          */
-        segmentScanResults.set(currentSegment, scanResult);
+        double reserve() throws InterruptedException {
+            final double reservedUnits;
+            final long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(nextAvailableNanos, now);
+                reservedUnits = expectedUnits;
+                nextAvailableNanos = start + toNanos(reservedUnits);
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            return reservedUnits;
+        }
 
         /**
-         * Update the state and notify any waiting thread.
+         * Replaces the reservation of a completed request with the capacity it
+         * actually consumed. The reservation is kept if none was reported.
          */
-        synchronized(segmentScanStates) {
-            if (null == scanResult.getLastEvaluatedKey())
-                segmentScanStates.set(currentSegment, SegmentScanState.SegmentScanCompleted);
-            else
-                segmentScanStates.set(currentSegment, SegmentScanState.HasNextPage);
-            segmentScanStates.notifyAll();
+        synchronized void consumed(double reservedUnits,
+                ConsumedCapacity consumedCapacity) {
+            if (consumedCapacity == null || consumedCapacity.getCapacityUnits() == null) {
+                return;
+            }
+            double consumedUnits = consumedCapacity.getCapacityUnits();
+            expectedUnits = consumedUnits;
+            nextAvailableNanos += toNanos(consumedUnits - reservedUnits);
         }
-        return scanResult;
-    }
 
-    private void initSegmentScanStates() {
-        for (int segment = 0; segment < totalSegments; segment++) {
-            segmentScanFutureTasks.add(null);
-            segmentScanResults.add(null);
-            segmentScanStates.add(SegmentScanState.Waiting);
+        private long toNanos(double units) {
+            return (long) (units / unitsPerSecond * TimeUnit.SECONDS.toNanos(1));
         }
     }
 
     /**
-     * Enumeration of the possible states of the scan on a segment.
+     * The bounded pool used by parallel scans that do not supply an executor.
+     * Idle threads time out, so the pool costs nothing when unused.
      */
-    private static enum SegmentScanState {
-        /** The scan on the segment is waiting for resources to execute and has not started yet. */
-        Waiting,
-
-        /** The scan is in process, and hasn't finished yet. */
-        Scanning,
-
-        /** The scan has already failed. */
-        Failed,
+    private static final class SharedPool {
+        static final ExecutorService EXECUTOR = create();
 
-        /** The scan on the current page has finished, but there are more pages in the segment to be scanned. */
-        HasNextPage,
+        private static ExecutorService create() {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    SHARED_POOL_SIZE, SHARED_POOL_SIZE,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger threadCount = new AtomicInteger(1);
 
-        /** The scan on the whole segment has completed. */
-        SegmentScanCompleted,
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r);
+                            thread.setName("dynamodb-mapper-parallel-scan-"
+                                    + threadCount.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
     }
 }
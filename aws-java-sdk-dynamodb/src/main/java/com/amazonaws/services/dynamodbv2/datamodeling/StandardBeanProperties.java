@@ -20,6 +20,7 @@ import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel.R
 import com.amazonaws.services.dynamodbv2.datamodeling.StandardAnnotationMaps.FieldMap;
 import com.amazonaws.util.StringUtils;
 
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
@@ -166,8 +167,8 @@ final class StandardBeanProperties {
          * @param getter The getter method.
          */
         private MethodReflect(final Method getter) {
-            this.setter = declaredSetterOf(getter);
-            this.getter = getter;
+            this.setter = accessible(declaredSetterOf(getter));
+            this.getter = accessible(getter);
         }
 
         /**
@@ -370,6 +371,23 @@ final class StandardBeanProperties {
         return null;
     }
 
+    /**
+     * Suppresses the access checks otherwise repeated on every invocation of
+     * the method or constructor, if the security manager allows it.
+     * @param member The method or constructor, or null.
+     * @return The same method or constructor.
+     */
+    static final <M extends AccessibleObject> M accessible(final M member) {
+        if (member != null) {
+            try {
+                member.setAccessible(true);
+            } catch (final SecurityException e) {
+                // Fall back to checked invocation
+            }
+        }
+        return member;
+    }
+
     /**
      * Gets the declared setter from the getter method.
      * @param getter The getter method.
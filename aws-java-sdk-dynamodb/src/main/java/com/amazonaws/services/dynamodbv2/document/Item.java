@@ -35,8 +35,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.services.dynamodbv2.document.internal.InternalUtils;
 import com.amazonaws.services.dynamodbv2.document.internal.ItemValueConformer;
+import com.amazonaws.services.dynamodbv2.document.internal.LazyNumber;
 import com.amazonaws.util.Base64;
 import com.amazonaws.util.json.Jackson;
 /**
@@ -65,9 +67,17 @@ import com.amazonaws.util.json.Jackson;
  */
 public class Item {
     private static final String DUPLICATE_VALUES_FOUND_IN_INPUT = "Duplicate values found in input";
-    private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    private final Map<String, Object> attributes;
     private static final ItemValueConformer valueConformer = new ItemValueConformer();
 
+    public Item() {
+        this(new LinkedHashMap<String, Object>());
+    }
+
+    private Item(Map<String, Object> attributes) {
+        this.attributes = attributes;
+    }
+
     /**
      * Returns true if the specified attribute exists with a null value; false
      * otherwise.
@@ -96,7 +106,7 @@ public class Item {
      *      value is present.
      */
     public String getString(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return valToString(val);
     }
 
@@ -124,7 +134,7 @@ public class Item {
      *         representation of a {@code BigDecimal}.
      */
     public BigDecimal getNumber(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return toBigDecimal(val);
     }
 
@@ -137,6 +147,43 @@ public class Item {
              ;
     }
 
+    /**
+     * Returns the numeric value of the specified attribute without converting
+     * a number that has not been parsed yet into a <code>BigDecimal</code>.
+     */
+    private Number getNumberValue(String attrName) {
+        Object val = attributes.get(attrName);
+        if (val instanceof LazyNumber)
+            return (LazyNumber) val;
+        return toBigDecimal(val);
+    }
+
+    /**
+     * Returns the value of the specified attribute, with a number that has
+     * not been parsed yet in its <code>BigDecimal</code> form. The attribute
+     * map itself is never modified by a read; the parsed value is cached by
+     * the number.
+     */
+    private Object value(String attrName) {
+        return parsed(attributes.get(attrName));
+    }
+
+    private static Object parsed(Object val) {
+        return val instanceof LazyNumber ? ((LazyNumber) val).toBigDecimal() : val;
+    }
+
+    /**
+     * Returns a copy of the attributes with every number in its
+     * <code>BigDecimal</code> form, to be exposed as a whole.
+     */
+    private Map<String, Object> parsedAttributes() {
+        Map<String, Object> parsed = new LinkedHashMap<String, Object>(
+                Math.max(16, attributes.size() * 4 / 3 + 1));
+        for (Map.Entry<String, Object> e : attributes.entrySet())
+            parsed.put(e.getKey(), parsed(e.getValue()));
+        return parsed;
+    }
+
     /**
      * Returns the value of the specified attribute in the current item as an
      * <code>BigInteger</code>; or null if the attribute doesn't exist.
@@ -169,11 +216,11 @@ public class Item {
      *             of a {@code BigDecimal}.
      */
     public short getShort(String attrName) {
-        BigDecimal bd = getNumber(attrName);
-        if (bd == null)
+        Number n = getNumberValue(attrName);
+        if (n == null)
             throw new NumberFormatException
                 ("value of " + attrName + " is null");
-        return bd.shortValue();
+        return n.shortValue();
     }
 
     /**
@@ -190,11 +237,11 @@ public class Item {
      *             of a {@code BigDecimal}.
      */
     public int getInt(String attrName) {
-        BigDecimal bd = getNumber(attrName);
-        if (bd == null)
+        Number n = getNumberValue(attrName);
+        if (n == null)
             throw new NumberFormatException
                 ("value of " + attrName + " is null");
-        return bd.intValue();
+        return n.intValue();
     }
 
     /**
@@ -211,11 +258,11 @@ public class Item {
      *             of a {@code BigDecimal}.
      */
     public long getLong(String attrName) {
-        BigDecimal bd = getNumber(attrName);
-        if (bd == null)
+        Number n = getNumberValue(attrName);
+        if (n == null)
             throw new NumberFormatException
                 ("value of " + attrName + " is null");
-        return bd.longValue();
+        return n.longValue();
     }
 
     /**
@@ -232,11 +279,11 @@ public class Item {
      *             of a {@code BigDecimal}.
      */
     public float getFloat(String attrName) {
-        BigDecimal bd = getNumber(attrName);
-        if (bd == null)
+        Number n = getNumberValue(attrName);
+        if (n == null)
             throw new NumberFormatException
                 ("value of " + attrName + " is null");
-        return bd.floatValue();
+        return n.floatValue();
     }
 
     /**
@@ -253,11 +300,11 @@ public class Item {
      *             of a {@code BigDecimal}.
      */
     public double getDouble(String attrName) {
-        BigDecimal bd = getNumber(attrName);
-        if (bd == null)
+        Number n = getNumberValue(attrName);
+        if (n == null)
             throw new NumberFormatException
                 ("value of " + attrName + " is null");
-        return bd.doubleValue();
+        return n.doubleValue();
     }
 
     /**
@@ -352,7 +399,7 @@ public class Item {
      *      value is present.
      */
     public byte[] getBinary(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return toByteArray(val);
     }
 
@@ -370,7 +417,7 @@ public class Item {
      *      value is present.
      */
     public ByteBuffer getByteBuffer(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return toByteBuffer(val);
     }
 
@@ -446,7 +493,7 @@ public class Item {
      *      value is present.
      */
     public Set<String> getStringSet(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         if (val == null)
             return null;
         Set<String> stringSet = new LinkedHashSet<String>();
@@ -508,7 +555,7 @@ public class Item {
      *      value is present.
      */
     public Set<BigDecimal> getNumberSet(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         if (val == null)
             return null;
         Set<BigDecimal> numSet = new LinkedHashSet<BigDecimal>();
@@ -593,7 +640,7 @@ public class Item {
      *      value is present.
      */
     public Set<byte[]> getBinarySet(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         if (val == null)
             return null;
         Set<byte[]> binarySet = new LinkedHashSet<byte[]>();
@@ -639,7 +686,7 @@ public class Item {
      *      value is present.
      */
     public Set<ByteBuffer> getByteBufferSet(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         if (val == null)
             return null;
         Set<ByteBuffer> binarySet = new LinkedHashSet<ByteBuffer>();
@@ -737,7 +784,7 @@ public class Item {
      *      value is present.
      */
     public <T> List<T> getList(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         if (val == null)
             return null;
         if (val instanceof List) {
@@ -800,7 +847,7 @@ public class Item {
      */
     @SuppressWarnings("unchecked")
     public <T> Map<String, T> getMap(String attrName) {
-        return (Map<String, T>)attributes.get(attrName);
+        return (Map<String, T>)value(attrName);
     }
 
     /**
@@ -841,7 +888,7 @@ public class Item {
         ||  valueType == BigDecimal.class
         ||  valueType == BigInteger.class) {
             final Map<String, BigDecimal> src =
-                (Map<String, BigDecimal>)attributes.get(attrName);
+                (Map<String, BigDecimal>)value(attrName);
             if (src == null)
                 return null;
             final Map<String, T> dst = new LinkedHashMap<String, T>(src.size());
@@ -888,7 +935,7 @@ public class Item {
      */
     @SuppressWarnings("unchecked")
     public Map<String, Object> getRawMap(String attrName) {
-        return (Map<String, Object>)attributes.get(attrName);
+        return (Map<String, Object>)value(attrName);
     }
 
     /**
@@ -924,7 +971,7 @@ public class Item {
      */
     public String getJSON(String attrName) {
         checkInvalidAttrName(attrName);
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return val == null ? null : Jackson.toJsonString(val);
     }
 
@@ -940,7 +987,7 @@ public class Item {
      */
     public String getJSONPretty(String attrName) {
         checkInvalidAttrName(attrName);
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return val == null ? null : Jackson.toJsonPrettyString(val);
     }
 
@@ -958,7 +1005,7 @@ public class Item {
      *      value is present.
      */
     public Boolean getBOOL(String attrName) {
-        final Object val = attributes.get(attrName);
+        final Object val = value(attrName);
         if (val instanceof Boolean)
             return (Boolean)val;
         if (val instanceof String) {
@@ -1156,7 +1203,7 @@ public class Item {
      *      value is present.
      */
     public Object get(String attrName) {
-        return attributes.get(attrName);
+        return value(attrName);
     }
 
     /**
@@ -1169,7 +1216,7 @@ public class Item {
      *      value is present.
      */
     public Class<?> getTypeOf(String attrName) {
-        Object val = attributes.get(attrName);
+        Object val = value(attrName);
         return val == null ? null : val.getClass();
     }
 
@@ -1186,7 +1233,7 @@ public class Item {
      * Returns all attributes of the current item.
      */
     public Iterable<Entry<String, Object>> attributes() {
-        return new LinkedHashMap<String, Object>(attributes).entrySet();
+        return parsedAttributes().entrySet();
     }
 
     /**
@@ -1200,7 +1247,7 @@ public class Item {
      * Returns all attributes of the current item as a map.
      */
     public Map<String, Object> asMap() {
-        return new LinkedHashMap<String,Object>(attributes);
+        return parsedAttributes();
     }
 
     /**
@@ -1226,6 +1273,20 @@ public class Item {
         return item;
     }
 
+    /**
+     * (Internal usage only) Instantiates an <code>Item</code> that takes
+     * ownership of the given map without validating or copying its values,
+     * which must already be in the form stored by an <code>Item</code>.
+     *
+     * @see InternalUtils#toItem(Map)
+     */
+    @SdkInternalApi
+    public static Item fromConvertedMap(Map<String, Object> attributes) {
+        if (attributes == null)
+            return null;
+        return new Item(attributes);
+    }
+
     /**
      * Convenient factory method - instantiates an <code>Item</code> from the
      * given JSON string.
@@ -1247,7 +1308,7 @@ public class Item {
      * base-64 encoded in the resultant string.
      */
     public String toJSON() {
-        return Jackson.toJsonString(this.attributes);
+        return Jackson.toJsonString(parsedAttributes());
     }
 
     /**
@@ -1368,24 +1429,41 @@ public class Item {
      * become base-64 encoded in the resultant string.
      */
     public String toJSONPretty() {
-        return Jackson.toJsonPrettyString(this.attributes);
+        return Jackson.toJsonPrettyString(parsedAttributes());
     }
 
     @Override
     public String toString() {
-        return "{ Item: " + attributes.toString() + " }";
+        return "{ Item: " + parsedAttributes().toString() + " }";
     }
 
     @Override
     public int hashCode() {
-        return attributes.hashCode();
+        // Same as the hash code of the parsed attribute map, without copying it
+        int hash = 0;
+        for (Map.Entry<String, Object> e : attributes.entrySet()) {
+            Object val = parsed(e.getValue());
+            hash += e.getKey().hashCode() ^ (val == null ? 0 : val.hashCode());
+        }
+        return hash;
     }
 
     @Override
     public boolean equals(Object in) {
         if (in instanceof Item) {
             Item that = (Item)in;
-            return this.attributes.equals(that.attributes);
+            if (this.attributes.size() != that.attributes.size())
+                return false;
+            for (Map.Entry<String, Object> e : attributes.entrySet()) {
+                Object val = parsed(e.getValue());
+                if (val == null) {
+                    if (!that.isNull(e.getKey()))
+                        return false;
+                } else if (!val.equals(that.value(e.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
         } else {
             return false;
         }
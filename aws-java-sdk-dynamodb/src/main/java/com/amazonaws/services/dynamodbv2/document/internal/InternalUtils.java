@@ -48,6 +48,30 @@ import com.amazonaws.util.VersionInfoUtils;
 public enum InternalUtils {
     ;
 
+    /**
+     * Returns an <code>Item</code> given the low level item information; or
+     * null if the input is null. The attribute values are converted straight
+     * into the item's internal representation, without the intermediate map
+     * and re-validation of {@link Item#fromMap(Map)}. Top-level numbers are
+     * only parsed when they are read, and integral values read through
+     * {@link Item#getLong(String)} or {@link Item#getInt(String)} are never
+     * parsed into a <code>BigDecimal</code>.
+     */
+    public static Item toItem(Map<String, AttributeValue> item) {
+        if (item == null)
+            return null;
+        Map<String, Object> attributes =
+            new LinkedHashMap<String, Object>(Math.max(16, item.size() * 4 / 3 + 1));
+        for (Map.Entry<String, AttributeValue> entry : item.entrySet()) {
+            AttributeValue value = entry.getValue();
+            if (value != null && value.getN() != null)
+                attributes.put(entry.getKey(), new LazyNumber(value.getN()));
+            else
+                attributes.put(entry.getKey(), toSimpleValue(value));
+        }
+        return Item.fromConvertedMap(attributes);
+    }
+
     /**
      * Returns a non-null list of <code>Item</code>'s given the low level
      * list of item information.
@@ -57,7 +81,7 @@ public enum InternalUtils {
             return Collections.emptyList();
         List<Item> result = new ArrayList<Item>(items.size());
         for (Map<String, AttributeValue> item : items)
-            result.add(Item.fromMap(toSimpleMapValue(item)));
+            result.add(toItem(item));
         return result;
     }
 
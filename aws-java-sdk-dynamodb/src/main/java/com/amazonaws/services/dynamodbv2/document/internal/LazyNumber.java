@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.document.internal;
+
+import java.math.BigDecimal;
+
+/**
+ * A number attribute value kept in its wire representation until it is
+ * needed. Integral values that fit in a <code>long</code> are read without
+ * creating a <code>BigDecimal</code>. Internal use only; an
+ * {@link com.amazonaws.services.dynamodbv2.document.Item} never exposes
+ * instances of this class, but returns the equivalent
+ * <code>BigDecimal</code> instead.
+ */
+public final class LazyNumber extends Number {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Integers with at most this many digits always fit in a long. */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final String value;
+
+    private transient BigDecimal decimal;
+
+    public LazyNumber(String value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the value as a <code>BigDecimal</code>, parsing it on first use.
+     */
+    public BigDecimal toBigDecimal() {
+        BigDecimal result = decimal;
+        if (result == null) {
+            result = new BigDecimal(value);
+            decimal = result;
+        }
+        return result;
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        final int length = value.length();
+        final int start = (length > 0 && value.charAt(0) == '-') ? 1 : 0;
+        if (length == start || length - start > MAX_LONG_DIGITS) {
+            return toBigDecimal().longValue();
+        }
+        long result = 0;
+        for (int i = start; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return toBigDecimal().longValue();
+            }
+            result = result * 10 + (c - '0');
+        }
+        return start == 0 ? result : -result;
+    }
+
+    @Override
+    public float floatValue() {
+        return Float.parseFloat(value);
+    }
+
+    @Override
+    public double doubleValue() {
+        return Double.parseDouble(value);
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
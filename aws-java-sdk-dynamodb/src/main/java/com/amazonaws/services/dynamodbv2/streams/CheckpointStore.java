@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+/**
+ * Durable storage for the position a {@link StreamReader} has reached in
+ * each shard of a stream.
+ * <p>
+ * Implementations must be thread safe; checkpoints of different shards are
+ * written concurrently.
+ *
+ * @see InMemoryCheckpointStore
+ * @see FileCheckpointStore
+ */
+public interface CheckpointStore {
+
+    /**
+     * The checkpoint recorded once every record of a closed shard has been
+     * processed.
+     */
+    String SHARD_END = "SHARD_END";
+
+    /**
+     * Returns the sequence number of the last record processed in the given
+     * shard, {@link #SHARD_END} if the shard has been read to its end, or
+     * null if no checkpoint has been recorded.
+     *
+     * @param streamArn
+     *            The ARN of the stream.
+     * @param shardId
+     *            The id of the shard.
+     */
+    String getCheckpoint(String streamArn, String shardId);
+
+    /**
+     * Records the sequence number of the last record processed in the given
+     * shard, or {@link #SHARD_END}.
+     *
+     * @param streamArn
+     *            The ARN of the stream.
+     * @param shardId
+     *            The id of the shard.
+     * @param checkpoint
+     *            The sequence number or {@link #SHARD_END}.
+     */
+    void setCheckpoint(String streamArn, String shardId, String checkpoint);
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * A {@link CheckpointStore} that keeps checkpoints in a local properties
+ * file, so a single reader process can resume after a restart.
+ * <p>
+ * The whole file is rewritten on every checkpoint, through a temporary file
+ * renamed over the previous one, so it is suited to streams with a moderate
+ * number of shards. It must not be shared by several processes.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+
+    private final File file;
+    private final Properties checkpoints = new Properties();
+
+    /**
+     * Creates a store backed by the given file, loading any checkpoints it
+     * already holds.
+     *
+     * @param file
+     *            The file holding the checkpoints; created on the first
+     *            checkpoint if it does not exist.
+     */
+    public FileCheckpointStore(File file) {
+        this.file = file;
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                checkpoints.load(in);
+            } catch (IOException e) {
+                throw new AmazonClientException(
+                        "Unable to read checkpoints from " + file, e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+    }
+
+    @Override
+    public synchronized String getCheckpoint(String streamArn, String shardId) {
+        return checkpoints.getProperty(key(streamArn, shardId));
+    }
+
+    @Override
+    public synchronized void setCheckpoint(String streamArn, String shardId, String checkpoint) {
+        checkpoints.setProperty(key(streamArn, shardId), checkpoint);
+
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            checkpoints.store(out, null);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Unable to rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to write checkpoints to " + file, e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static String key(String streamArn, String shardId) {
+        return streamArn + "/" + shardId;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
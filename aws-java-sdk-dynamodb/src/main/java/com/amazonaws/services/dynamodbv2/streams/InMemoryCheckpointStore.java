@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link CheckpointStore} that keeps checkpoints in memory only, for tests
+ * and for readers that always start from the configured initial position.
+ */
+public class InMemoryCheckpointStore implements CheckpointStore {
+
+    private final ConcurrentMap<String, String> checkpoints =
+            new ConcurrentHashMap<String, String>();
+
+    @Override
+    public String getCheckpoint(String streamArn, String shardId) {
+        return checkpoints.get(key(streamArn, shardId));
+    }
+
+    @Override
+    public void setCheckpoint(String streamArn, String shardId, String checkpoint) {
+        checkpoints.put(key(streamArn, shardId), checkpoint);
+    }
+
+    private static String key(String streamArn, String shardId) {
+        return streamArn + "/" + shardId;
+    }
+}
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+
+/**
+ * Reads all the shards of a DynamoDB stream and hands their records to a
+ * {@link StreamRecordProcessor}, recording its progress in a
+ * {@link CheckpointStore}.
+ * <p>
+ * The reader lists the shards of the stream periodically and whenever a
+ * shard has been read to its end. A shard is started once its parent, if
+ * the parent is still in the stream, has been read to its end, so the
+ * records of an item are always delivered in the order they were written.
+ * Independent shards are read and processed in parallel on a fixed number
+ * of threads. While a page of records is being processed, the next pages of
+ * the same shard are read ahead. A shard that returns no records is polled
+ * with a growing delay, up to a maximum, until records arrive again. Expired
+ * shard iterators are renewed from the last record read.
+ * <p>
+ * After a restart, each shard resumes after its last checkpoint, so a page
+ * whose processing was interrupted is delivered again: processing must be
+ * idempotent.
+ *
+ * <pre class="brush: java">
+ * StreamReader reader = new StreamReader(streamsClient, streamArn, processor,
+ *         new FileCheckpointStore(new File("checkpoints.properties")),
+ *         new StreamReaderConfiguration());
+ * reader.start();
+ * ...
+ * reader.shutdown();
+ * reader.awaitTermination(1, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class StreamReader {
+
+    private static final Log log = LogFactory.getLog(StreamReader.class);
+
+    private static final AtomicInteger readerCount = new AtomicInteger();
+
+    private final AmazonDynamoDBStreams streams;
+    private final String streamArn;
+    private final StreamRecordProcessor processor;
+    private final CheckpointStore checkpoints;
+    private final StreamReaderConfiguration config;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** The shards being read, by shard id. Guarded by this. */
+    private final Map<String, ShardWorker> workers = new HashMap<String, ShardWorker>();
+
+    /** The shards read to their end. Guarded by this. */
+    private final Set<String> completedShards = new HashSet<String>();
+
+    /** Whether the shards have been listed once. Guarded by this. */
+    private boolean listedOnce;
+
+    private boolean started;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new reader; call {@link #start()} to begin reading.
+     *
+     * @param streams
+     *            The client used to read the stream.
+     * @param streamArn
+     *            The ARN of the stream.
+     * @param processor
+     *            The callback receiving the records.
+     * @param checkpoints
+     *            The store recording the progress in each shard.
+     * @param config
+     *            The reader configuration.
+     */
+    public StreamReader(AmazonDynamoDBStreams streams,
+            String streamArn,
+            StreamRecordProcessor processor,
+            CheckpointStore checkpoints,
+            StreamReaderConfiguration config) {
+        this.streams = streams;
+        this.streamArn = streamArn;
+        this.processor = processor;
+        this.checkpoints = checkpoints;
+        this.config = config;
+
+        final int readerId = readerCount.incrementAndGet();
+        this.executor = new ScheduledThreadPoolExecutor(config.getThreadCount(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable);
+                        thread.setName("dynamodb-stream-reader-" + readerId
+                                + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Starts listing and reading the shards of the stream in the background.
+     *
+     * @throws IllegalStateException
+     *             If the reader has already been started.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The reader has already been started");
+        }
+        started = true;
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                syncShards();
+            }
+        }, 0, config.getShardSyncIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading. Pages being processed complete and are checkpointed;
+     * pages read ahead but not yet processed are discarded and read again on
+     * the next start.
+     */
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the processing in progress to complete after
+     * {@link #shutdown()}.
+     *
+     * @return true if the reader terminated, false if the timeout elapsed.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns the ids of the shards currently being read.
+     */
+    public synchronized Set<String> getActiveShardIds() {
+        return new HashSet<String>(workers.keySet());
+    }
+
+    /**
+     * Lists the shards of the stream and starts those that are ready: not
+     * yet read to their end, and whose parent is no longer in the stream or
+     * has been read to its end.
+     */
+    private void syncShards() {
+        if (shutdown) {
+            return;
+        }
+        List<Shard> shards;
+        try {
+            shards = listShards();
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of " + streamArn, e);
+            return;
+        }
+
+        synchronized (this) {
+            Set<String> shardIds = new HashSet<String>();
+            for (Shard shard : shards) {
+                shardIds.add(shard.getShardId());
+                if (!completedShards.contains(shard.getShardId())
+                        && !workers.containsKey(shard.getShardId())
+                        && CheckpointStore.SHARD_END.equals(
+                                checkpoints.getCheckpoint(streamArn, shard.getShardId()))) {
+                    completedShards.add(shard.getShardId());
+                }
+            }
+
+            for (Shard shard : shards) {
+                String shardId = shard.getShardId();
+                if (completedShards.contains(shardId) || workers.containsKey(shardId)) {
+                    continue;
+                }
+                String parentId = shard.getParentShardId();
+                if (parentId != null && shardIds.contains(parentId)
+                        && !completedShards.contains(parentId)) {
+                    continue;
+                }
+                ShardWorker worker = new ShardWorker(shardId,
+                        checkpoints.getCheckpoint(streamArn, shardId),
+                        listedOnce ? ShardIteratorType.TRIM_HORIZON : config.getInitialPosition());
+                workers.put(shardId, worker);
+                worker.schedule();
+            }
+            listedOnce = true;
+        }
+    }
+
+    private List<Shard> listShards() {
+        List<Shard> shards = new ArrayList<Shard>();
+        String exclusiveStartShardId = null;
+        do {
+            StreamDescription description = streams.describeStream(
+                    new DescribeStreamRequest()
+                            .withStreamArn(streamArn)
+                            .withExclusiveStartShardId(exclusiveStartShardId))
+                    .getStreamDescription();
+            shards.addAll(description.getShards());
+            exclusiveStartShardId = description.getLastEvaluatedShardId();
+        } while (exclusiveStartShardId != null);
+        return shards;
+    }
+
+    private void shardCompleted(String shardId) {
+        synchronized (this) {
+            workers.remove(shardId);
+            completedShards.add(shardId);
+        }
+        // Start the children without waiting for the next periodic listing
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                syncShards();
+            }
+        }, 0);
+    }
+
+    private void submit(Runnable task, long delayMillis) {
+        if (shutdown) {
+            return;
+        }
+        try {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down concurrently
+        }
+    }
+
+    private long nextIdleDelay(long delay) {
+        return delay == 0
+                ? config.getMinIdleDelayMillis()
+                : Math.min(delay * 2, config.getMaxIdleDelayMillis());
+    }
+
+    /**
+     * Reads one shard, running at most one GetRecords call and one processing
+     * call at a time, the former ahead of the latter. All state is guarded by
+     * the worker's monitor; the calls themselves run outside it.
+     */
+    private final class ShardWorker {
+
+        private final String shardId;
+
+        /** Where to start if there is no record to resume after. */
+        private ShardIteratorType initialPosition;
+
+        /** The sequence number to resume after when the iterator is renewed. */
+        private String resumeAfter;
+
+        /**
+         * The iterator for the next read, or null if it must be obtained.
+         * Only used by the read in progress.
+         */
+        private String iterator;
+
+        /** True once the shard has been closed and all its records read. */
+        private boolean exhausted;
+
+        /** Pages read but not yet processed, oldest first. */
+        private final LinkedList<List<Record>> pages = new LinkedList<List<Record>>();
+
+        private boolean reading;
+        private boolean processing;
+        private boolean completed;
+        private long readDelay;
+        private long processDelay;
+        private long endDelay;
+
+        private ShardWorker(String shardId, String checkpoint,
+                ShardIteratorType initialPosition) {
+            this.shardId = shardId;
+            this.resumeAfter = checkpoint;
+            this.initialPosition = initialPosition;
+        }
+
+        /**
+         * Starts the next read and the next processing call if they can run,
+         * or reports the shard as completed.
+         */
+        private void schedule() {
+            boolean shardEnded = false;
+            synchronized (this) {
+                if (!processing && !pages.isEmpty()) {
+                    processing = true;
+                    final List<Record> page = pages.removeFirst();
+                    submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            process(page);
+                        }
+                    }, processDelay);
+                }
+                int ahead = pages.size() + (processing ? 1 : 0);
+                if (!reading && !exhausted && ahead <= config.getPrefetchPages()) {
+                    reading = true;
+                    submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            read();
+                        }
+                    }, readDelay);
+                }
+                if (exhausted && !reading && !processing && pages.isEmpty() && !completed) {
+                    completed = true;
+                    shardEnded = true;
+                }
+            }
+            if (shardEnded) {
+                end();
+            }
+        }
+
+        /**
+         * Records that the shard has been read to its end, retrying with a
+         * growing delay until the checkpoint is stored, then reports the
+         * shard as completed so that its children are started.
+         */
+        private void end() {
+            boolean checkpointed = false;
+            try {
+                checkpoints.setCheckpoint(streamArn, shardId, CheckpointStore.SHARD_END);
+                checkpointed = true;
+            } catch (RuntimeException e) {
+                log.warn("Unable to checkpoint the end of shard " + shardId + "; retrying", e);
+            } finally {
+                if (!checkpointed) {
+                    long delay;
+                    synchronized (this) {
+                        endDelay = nextIdleDelay(endDelay);
+                        delay = endDelay;
+                    }
+                    submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            end();
+                        }
+                    }, delay);
+                }
+            }
+            if (checkpointed) {
+                shardCompleted(shardId);
+            }
+        }
+
+        private void read() {
+            try {
+                String shardIterator;
+                String after;
+                ShardIteratorType position;
+                synchronized (this) {
+                    shardIterator = iterator;
+                    after = resumeAfter;
+                    position = initialPosition;
+                }
+                if (shardIterator == null) {
+                    shardIterator = getShardIterator(after, position);
+                }
+                GetRecordsResult result = streams.getRecords(new GetRecordsRequest()
+                        .withShardIterator(shardIterator)
+                        .withLimit(config.getMaxRecordsPerRead()));
+                List<Record> records = result.getRecords();
+                synchronized (this) {
+                    iterator = result.getNextShardIterator();
+                    exhausted = (iterator == null);
+                    if (records != null && !records.isEmpty()) {
+                        pages.addLast(records);
+                        resumeAfter = lastSequenceNumber(records);
+                        readDelay = 0;
+                    } else {
+                        readDelay = nextIdleDelay(readDelay);
+                    }
+                }
+            } catch (ExpiredIteratorException e) {
+                synchronized (this) {
+                    iterator = null;
+                }
+            } catch (TrimmedDataAccessException e) {
+                log.warn("Records of shard " + shardId + " after " + resumeAfter
+                        + " have been trimmed from the stream; resuming from the oldest record", e);
+                synchronized (this) {
+                    iterator = null;
+                    resumeAfter = null;
+                    initialPosition = ShardIteratorType.TRIM_HORIZON;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Unable to read shard " + shardId + " of " + streamArn, e);
+                synchronized (this) {
+                    readDelay = nextIdleDelay(readDelay);
+                }
+            } finally {
+                synchronized (this) {
+                    reading = false;
+                }
+                schedule();
+            }
+        }
+
+        private String getShardIterator(String after, ShardIteratorType position) {
+            GetShardIteratorRequest request = new GetShardIteratorRequest()
+                    .withStreamArn(streamArn)
+                    .withShardId(shardId);
+            if (after != null) {
+                request.withShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER)
+                        .withSequenceNumber(after);
+            } else {
+                request.withShardIteratorType(position);
+            }
+            return streams.getShardIterator(request).getShardIterator();
+        }
+
+        private void process(List<Record> page) {
+            boolean processed = false;
+            try {
+                processor.processRecords(shardId, page);
+                checkpoints.setCheckpoint(streamArn, shardId, lastSequenceNumber(page));
+                processed = true;
+            } catch (RuntimeException e) {
+                log.warn("Processing records of shard " + shardId + " failed; retrying", e);
+            } finally {
+                // Also reached when the processor throws an error
+                synchronized (this) {
+                    if (processed) {
+                        processDelay = 0;
+                    } else {
+                        pages.addFirst(page);
+                        processDelay = nextIdleDelay(processDelay);
+                    }
+                    processing = false;
+                }
+                schedule();
+            }
+        }
+    }
+
+    private static String lastSequenceNumber(List<Record> records) {
+        return records.get(records.size() - 1).getDynamodb().getSequenceNumber();
+    }
+}
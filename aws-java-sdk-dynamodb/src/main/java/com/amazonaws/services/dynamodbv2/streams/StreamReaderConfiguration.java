@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+
+/**
+ * Configuration options for how a {@link StreamReader} polls a stream.
+ */
+public class StreamReaderConfiguration {
+
+    /** Default number of threads reading and processing shards. */
+    static final int DEFAULT_THREAD_COUNT = 4;
+
+    /** Default number of pages read ahead of the page being processed. */
+    static final int DEFAULT_PREFETCH_PAGES = 1;
+
+    /** Default delay after the first empty read of a shard. */
+    static final long DEFAULT_MIN_IDLE_DELAY_MILLIS = 250;
+
+    /** Default cap on the delay between reads of an idle shard. */
+    static final long DEFAULT_MAX_IDLE_DELAY_MILLIS = 5000;
+
+    /** Default interval between two listings of the shards of the stream. */
+    static final long DEFAULT_SHARD_SYNC_INTERVAL_MILLIS = 60 * 1000;
+
+    private int threadCount = DEFAULT_THREAD_COUNT;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private Integer maxRecordsPerRead;
+    private long minIdleDelayMillis = DEFAULT_MIN_IDLE_DELAY_MILLIS;
+    private long maxIdleDelayMillis = DEFAULT_MAX_IDLE_DELAY_MILLIS;
+    private long shardSyncIntervalMillis = DEFAULT_SHARD_SYNC_INTERVAL_MILLIS;
+    private ShardIteratorType initialPosition = ShardIteratorType.TRIM_HORIZON;
+
+    /**
+     * Returns the number of threads reading and processing shards.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the number of threads reading and processing shards. Shards are
+     * processed in parallel up to this number; more shards share the threads.
+     *
+     * @param threadCount
+     *            The number of threads; must be positive.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Returns the number of pages of records read from a shard ahead of the
+     * page being processed.
+     */
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * Sets the number of pages of records read from a shard ahead of the page
+     * being processed. Zero reads the next page only once the current one has
+     * been processed.
+     *
+     * @param prefetchPages
+     *            The number of pages; must not be negative.
+     */
+    public void setPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException("prefetchPages must not be negative");
+        }
+        this.prefetchPages = prefetchPages;
+    }
+
+    /**
+     * Returns the maximum number of records returned by each GetRecords
+     * call, or null for the service default.
+     */
+    public Integer getMaxRecordsPerRead() {
+        return maxRecordsPerRead;
+    }
+
+    /**
+     * Sets the maximum number of records returned by each GetRecords call.
+     *
+     * @param maxRecordsPerRead
+     *            The limit, or null for the service default.
+     */
+    public void setMaxRecordsPerRead(Integer maxRecordsPerRead) {
+        this.maxRecordsPerRead = maxRecordsPerRead;
+    }
+
+    /**
+     * Returns the delay in milliseconds before reading a shard again after
+     * the first empty read.
+     */
+    public long getMinIdleDelayMillis() {
+        return minIdleDelayMillis;
+    }
+
+    /**
+     * Returns the cap in milliseconds on the delay between reads of a shard
+     * that keeps returning no records.
+     */
+    public long getMaxIdleDelayMillis() {
+        return maxIdleDelayMillis;
+    }
+
+    /**
+     * Sets the delays between reads of a shard with no new records. The delay
+     * starts at the minimum after the first empty read, doubles with each
+     * further empty read up to the maximum, and is reset as soon as records
+     * are returned. Failed reads are retried with the same delays.
+     *
+     * @param minIdleDelayMillis
+     *            The first delay; must be positive.
+     * @param maxIdleDelayMillis
+     *            The largest delay; must not be lower than the first.
+     */
+    public void setIdleDelayMillis(long minIdleDelayMillis, long maxIdleDelayMillis) {
+        if (minIdleDelayMillis <= 0 || maxIdleDelayMillis < minIdleDelayMillis) {
+            throw new IllegalArgumentException(
+                    "idle delays must be positive with min <= max");
+        }
+        this.minIdleDelayMillis = minIdleDelayMillis;
+        this.maxIdleDelayMillis = maxIdleDelayMillis;
+    }
+
+    /**
+     * Returns the interval in milliseconds between two listings of the
+     * shards of the stream.
+     */
+    public long getShardSyncIntervalMillis() {
+        return shardSyncIntervalMillis;
+    }
+
+    /**
+     * Sets the interval in milliseconds between two listings of the shards
+     * of the stream. The shards are also listed whenever a shard has been
+     * read to its end, so that its children start without waiting for this
+     * interval.
+     *
+     * @param shardSyncIntervalMillis
+     *            The interval; must be positive.
+     */
+    public void setShardSyncIntervalMillis(long shardSyncIntervalMillis) {
+        if (shardSyncIntervalMillis <= 0) {
+            throw new IllegalArgumentException(
+                    "shardSyncIntervalMillis must be positive");
+        }
+        this.shardSyncIntervalMillis = shardSyncIntervalMillis;
+    }
+
+    /**
+     * Returns where reading starts in shards without a checkpoint.
+     */
+    public ShardIteratorType getInitialPosition() {
+        return initialPosition;
+    }
+
+    /**
+     * Sets where reading starts in shards without a checkpoint that exist
+     * when the reader starts: {@link ShardIteratorType#TRIM_HORIZON} for the
+     * oldest available record, or {@link ShardIteratorType#LATEST} for
+     * records written from now on. Shards created while the reader is running
+     * are always read from their first record.
+     *
+     * @param initialPosition
+     *            TRIM_HORIZON or LATEST.
+     */
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        if (initialPosition != ShardIteratorType.TRIM_HORIZON
+                && initialPosition != ShardIteratorType.LATEST) {
+            throw new IllegalArgumentException(
+                    "initialPosition must be TRIM_HORIZON or LATEST");
+        }
+        this.initialPosition = initialPosition;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.List;
+
+import com.amazonaws.services.dynamodbv2.model.Record;
+
+/**
+ * Application callback receiving the records read by a {@link StreamReader}.
+ * <p>
+ * Records of one shard are delivered in order, one call at a time, and only
+ * after all records of its parent shard have been delivered. Calls for
+ * different shards may run concurrently on different threads.
+ */
+public interface StreamRecordProcessor {
+
+    /**
+     * Processes one page of records read from a shard. Once this method
+     * returns, the sequence number of the last record is checkpointed. If it
+     * throws, the same records are delivered again after a delay.
+     *
+     * @param shardId
+     *            The id of the shard the records were read from.
+     * @param records
+     *            The records, in the order they were written; never empty.
+     */
+    void processRecords(String shardId, List<Record> records);
+}
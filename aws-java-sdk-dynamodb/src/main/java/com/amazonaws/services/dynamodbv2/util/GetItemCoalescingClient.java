@@ -0,0 +1,614 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.regions.Region;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.CreateTableResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteTableResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeLimitsRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeLimitsResult;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ListTablesRequest;
+import com.amazonaws.services.dynamodbv2.model.ListTablesResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateTableResult;
+
+/**
+ * An {@link AmazonDynamoDB} decorator that combines concurrent GetItem calls
+ * into BatchGetItem calls.
+ * <p>
+ * The first GetItem call for a table waits up to a short window for other
+ * calls to the same table with the same consistency and projection, then
+ * reads all of their keys with a single BatchGetItem request on its own
+ * thread and hands each caller its item. A batch is sent as soon as it holds
+ * the maximum number of keys. Keys returned as unprocessed are retried with
+ * a short backoff and, if they are still unprocessed, read with individual
+ * GetItem calls. Every caller still blocks until its own item is available,
+ * so the decorator can be handed to a {@code DynamoDBMapper} or
+ * {@code DynamoDB} document API instance without any change to their code.
+ * <p>
+ * The window adds to the latency of each GetItem call, so this is only
+ * worthwhile when many threads read different items at the same time.
+ * Calls that cannot be answered from a batch are sent unchanged: those
+ * using a projection expression, asking for consumed capacity, or carrying
+ * their own credentials or custom headers. All other operations are passed
+ * straight to the wrapped client.
+ */
+public class GetItemCoalescingClient extends AbstractAmazonDynamoDB {
+
+    private static final Log log = LogFactory.getLog(GetItemCoalescingClient.class);
+
+    /** Maximum number of keys DynamoDB accepts in one BatchGetItem request. */
+    public static final int MAX_BATCH_SIZE = 100;
+
+    /** Default time the first call of a batch waits for others, in microseconds. */
+    public static final long DEFAULT_WINDOW_MICROS = 2000;
+
+    private static final int MAX_UNPROCESSED_RETRIES = 5;
+    private static final long UNPROCESSED_BASE_DELAY_MILLIS = 10;
+
+    private final AmazonDynamoDB delegate;
+    private final long windowNanos;
+    private final int maxBatchSize;
+
+    /** The batch currently accepting keys for each compatible request shape. */
+    private final ConcurrentMap<BatchKey, Batch> openBatches =
+            new ConcurrentHashMap<BatchKey, Batch>();
+
+    /**
+     * Creates a decorator using the default window and batches of up to
+     * {@value #MAX_BATCH_SIZE} keys.
+     *
+     * @param delegate
+     *            The client used to send requests.
+     */
+    public GetItemCoalescingClient(AmazonDynamoDB delegate) {
+        this(delegate, DEFAULT_WINDOW_MICROS, TimeUnit.MICROSECONDS, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a decorator.
+     *
+     * @param delegate
+     *            The client used to send requests.
+     * @param window
+     *            How long the first GetItem call of a batch waits for other
+     *            calls to join it; must not be negative.
+     * @param unit
+     *            The unit of the window.
+     * @param maxBatchSize
+     *            The number of keys at which a batch is sent without waiting
+     *            for the end of the window, between 1 and
+     *            {@value #MAX_BATCH_SIZE}.
+     */
+    public GetItemCoalescingClient(AmazonDynamoDB delegate, long window,
+            TimeUnit unit, int maxBatchSize) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null");
+        }
+        if (window < 0) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        if (maxBatchSize < 1 || maxBatchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(
+                    "maxBatchSize must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        this.delegate = delegate;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public GetItemResult getItem(GetItemRequest request) {
+        if (!canCoalesce(request)) {
+            return delegate.getItem(request);
+        }
+
+        BatchKey batchKey = new BatchKey(request);
+        PendingItem pending;
+        while (true) {
+            Batch batch = openBatches.get(batchKey);
+            if (batch == null) {
+                batch = new Batch(batchKey, request);
+                pending = batch.add(request.getKey());
+                Batch existing = openBatches.putIfAbsent(batchKey, batch);
+                if (existing == null) {
+                    // This call leads the batch and sends it
+                    lead(batch);
+                    return pending.await();
+                }
+                batch = existing;
+            }
+            pending = batch.add(request.getKey());
+            if (pending != null) {
+                break;
+            }
+            // The batch was sealed before the key could join it
+            openBatches.remove(batchKey, batch);
+        }
+        return pending.await();
+    }
+
+    private boolean canCoalesce(GetItemRequest request) {
+        return request.getProjectionExpression() == null
+                && (request.getReturnConsumedCapacity() == null
+                        || ReturnConsumedCapacity.NONE.toString().equals(
+                                request.getReturnConsumedCapacity()))
+                && request.getRequestCredentialsProvider() == null
+                && request.getCustomRequestHeaders() == null
+                && request.getKey() != null
+                && !request.getKey().isEmpty();
+    }
+
+    /**
+     * Waits for the window to pass or the batch to fill up, then sends it.
+     */
+    private void lead(Batch batch) {
+        try {
+            batch.awaitSealed(windowNanos);
+        } finally {
+            openBatches.remove(batch.batchKey, batch);
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        Map<Map<String, AttributeValue>, PendingItem> remaining = batch.pendingByKey;
+        try {
+            remaining = batchGet(batch);
+        } catch (AmazonServiceException e) {
+            if (e.getErrorType() != ErrorType.Client
+                    || RetryUtils.isThrottlingException(e)) {
+                batch.failAll(e);
+                return;
+            }
+            // A bad key fails the whole batch; let each caller see its own error
+            log.debug("BatchGetItem rejected, reading keys individually", e);
+        } catch (RuntimeException e) {
+            batch.failAll(e);
+            return;
+        }
+        for (PendingItem pending : remaining.values()) {
+            if (pending.isDone()) {
+                continue;
+            }
+            GetItemRequest single = batch.template.clone();
+            single.setKey(pending.key);
+            try {
+                pending.complete(delegate.getItem(single).getItem());
+            } catch (RuntimeException e) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Reads the keys of the batch, completing the callers whose items were
+     * returned. Returns the callers whose keys were still unprocessed after
+     * the retries.
+     */
+    private Map<Map<String, AttributeValue>, PendingItem> batchGet(Batch batch) {
+        Map<Map<String, AttributeValue>, PendingItem> remaining =
+                new HashMap<Map<String, AttributeValue>, PendingItem>(batch.pendingByKey);
+        String tableName = batch.template.getTableName();
+        List<Map<String, AttributeValue>> keys =
+                new ArrayList<Map<String, AttributeValue>>(remaining.size());
+        for (PendingItem pending : remaining.values()) {
+            keys.add(pending.key);
+        }
+        KeysAndAttributes keysAndAttributes = new KeysAndAttributes()
+                .withKeys(keys)
+                .withConsistentRead(batch.template.getConsistentRead())
+                .withAttributesToGet(batch.attributesToGet)
+                .withExpressionAttributeNames(batch.template.getExpressionAttributeNames());
+        Map<String, KeysAndAttributes> requestItems =
+                Collections.singletonMap(tableName, keysAndAttributes);
+
+        for (int retries = 0; ; retries++) {
+            BatchGetItemResult result = delegate.batchGetItem(
+                    new BatchGetItemRequest().withRequestItems(requestItems));
+
+            List<Map<String, AttributeValue>> items = result.getResponses().get(tableName);
+            if (items != null) {
+                for (Map<String, AttributeValue> item : items) {
+                    Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+                    for (String keyName : batch.batchKey.keyNames) {
+                        key.put(keyName, item.get(keyName));
+                    }
+                    PendingItem pending = remaining.remove(matchKey(key));
+                    if (pending != null) {
+                        pending.complete(batch.project(item));
+                    }
+                }
+            }
+
+            requestItems = result.getUnprocessedKeys();
+            if (requestItems == null || requestItems.isEmpty()) {
+                // Keys neither returned nor unprocessed do not exist
+                for (PendingItem pending : remaining.values()) {
+                    pending.complete(null);
+                }
+                return Collections.emptyMap();
+            }
+            if (retries == MAX_UNPROCESSED_RETRIES) {
+                return remaining;
+            }
+            pause(UNPROCESSED_BASE_DELAY_MILLIS << retries);
+        }
+    }
+
+    /**
+     * Returns the key in the form used to match returned items to callers.
+     * DynamoDB returns numbers in a normalized form, so <code>1.50</code> is
+     * read back as <code>1.5</code>; numeric attributes are compared by value.
+     */
+    private static Map<String, AttributeValue> matchKey(Map<String, AttributeValue> key) {
+        Map<String, AttributeValue> matchKey = new HashMap<String, AttributeValue>(key);
+        for (Map.Entry<String, AttributeValue> attribute : matchKey.entrySet()) {
+            AttributeValue value = attribute.getValue();
+            if (value == null || value.getN() == null) {
+                continue;
+            }
+            try {
+                BigDecimal number = new BigDecimal(value.getN());
+                attribute.setValue(new AttributeValue().withN(number.signum() == 0
+                        ? "0" : number.stripTrailingZeros().toString()));
+            } catch (NumberFormatException e) {
+                // Left as is; DynamoDB rejects the key anyway
+            }
+        }
+        return matchKey;
+    }
+
+    private static void pause(long delayMillis) {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(
+                    "Interrupted while retrying unprocessed keys", e);
+        }
+    }
+
+    @Override
+    public void setEndpoint(String endpoint) {
+        delegate.setEndpoint(endpoint);
+    }
+
+    @Override
+    public void setRegion(Region region) {
+        delegate.setRegion(region);
+    }
+
+    @Override
+    public BatchGetItemResult batchGetItem(BatchGetItemRequest request) {
+        return delegate.batchGetItem(request);
+    }
+
+    @Override
+    public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+        return delegate.batchWriteItem(request);
+    }
+
+    @Override
+    public CreateTableResult createTable(CreateTableRequest request) {
+        return delegate.createTable(request);
+    }
+
+    @Override
+    public DeleteItemResult deleteItem(DeleteItemRequest request) {
+        return delegate.deleteItem(request);
+    }
+
+    @Override
+    public DeleteTableResult deleteTable(DeleteTableRequest request) {
+        return delegate.deleteTable(request);
+    }
+
+    @Override
+    public DescribeLimitsResult describeLimits(DescribeLimitsRequest request) {
+        return delegate.describeLimits(request);
+    }
+
+    @Override
+    public DescribeTableResult describeTable(DescribeTableRequest request) {
+        return delegate.describeTable(request);
+    }
+
+    @Override
+    public ListTablesResult listTables(ListTablesRequest request) {
+        return delegate.listTables(request);
+    }
+
+    @Override
+    public PutItemResult putItem(PutItemRequest request) {
+        return delegate.putItem(request);
+    }
+
+    @Override
+    public QueryResult query(QueryRequest request) {
+        return delegate.query(request);
+    }
+
+    @Override
+    public ScanResult scan(ScanRequest request) {
+        return delegate.scan(request);
+    }
+
+    @Override
+    public UpdateItemResult updateItem(UpdateItemRequest request) {
+        return delegate.updateItem(request);
+    }
+
+    @Override
+    public UpdateTableResult updateTable(UpdateTableRequest request) {
+        return delegate.updateTable(request);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public ResponseMetadata getCachedResponseMetadata(AmazonWebServiceRequest request) {
+        return delegate.getCachedResponseMetadata(request);
+    }
+
+    /**
+     * The settings GetItem requests must share to be read by one BatchGetItem
+     * request.
+     */
+    private static final class BatchKey {
+
+        private final String tableName;
+        private final boolean consistentRead;
+        private final TreeSet<String> attributesToGet;
+        private final Map<String, String> expressionAttributeNames;
+        private final TreeSet<String> keyNames;
+
+        private BatchKey(GetItemRequest request) {
+            this.tableName = request.getTableName();
+            this.consistentRead = Boolean.TRUE.equals(request.getConsistentRead());
+            this.attributesToGet = request.getAttributesToGet() == null
+                    ? null
+                    : new TreeSet<String>(request.getAttributesToGet());
+            this.expressionAttributeNames = request.getExpressionAttributeNames();
+            this.keyNames = new TreeSet<String>(request.getKey().keySet());
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = tableName == null ? 0 : tableName.hashCode();
+            hash = 31 * hash + (consistentRead ? 1 : 0);
+            hash = 31 * hash + (attributesToGet == null ? 0 : attributesToGet.hashCode());
+            hash = 31 * hash + (expressionAttributeNames == null ? 0 : expressionAttributeNames.hashCode());
+            return 31 * hash + keyNames.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return equal(tableName, other.tableName)
+                    && consistentRead == other.consistentRead
+                    && equal(attributesToGet, other.attributesToGet)
+                    && equal(expressionAttributeNames, other.expressionAttributeNames)
+                    && keyNames.equals(other.keyNames);
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    /**
+     * The keys collected for one BatchGetItem request. Guarded by its own
+     * monitor until sealed.
+     */
+    private final class Batch {
+
+        private final BatchKey batchKey;
+        private final GetItemRequest template;
+
+        /**
+         * The attributes requested, plus the key attributes needed to match
+         * items to callers, or null for all attributes.
+         */
+        private final List<String> attributesToGet;
+
+        /** Key attributes added to the requested attributes, to be removed again. */
+        private final List<String> addedKeyNames = new ArrayList<String>();
+
+        /**
+         * One pending item per distinct key, indexed by its match key;
+         * callers of the same key share it.
+         */
+        private final Map<Map<String, AttributeValue>, PendingItem> pendingByKey =
+                new LinkedHashMap<Map<String, AttributeValue>, PendingItem>();
+
+        private boolean sealed;
+
+        private Batch(BatchKey batchKey, GetItemRequest template) {
+            this.batchKey = batchKey;
+            this.template = template;
+            if (template.getAttributesToGet() == null) {
+                this.attributesToGet = null;
+            } else {
+                this.attributesToGet = new ArrayList<String>(template.getAttributesToGet());
+                for (String keyName : batchKey.keyNames) {
+                    if (!attributesToGet.contains(keyName)) {
+                        attributesToGet.add(keyName);
+                        addedKeyNames.add(keyName);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds a key to the batch, returning the pending item to wait for, or
+         * null if the batch has already been sealed.
+         */
+        private synchronized PendingItem add(Map<String, AttributeValue> key) {
+            if (sealed) {
+                return null;
+            }
+            Map<String, AttributeValue> matchKey = matchKey(key);
+            PendingItem pending = pendingByKey.get(matchKey);
+            if (pending == null) {
+                pending = new PendingItem(new HashMap<String, AttributeValue>(key));
+                pendingByKey.put(matchKey, pending);
+                if (pendingByKey.size() >= maxBatchSize) {
+                    sealed = true;
+                    openBatches.remove(batchKey, this);
+                    notifyAll();
+                }
+            }
+            return pending;
+        }
+
+        private synchronized void awaitSealed(long timeoutNanos) {
+            long deadline = System.nanoTime() + timeoutNanos;
+            try {
+                long remaining = timeoutNanos;
+                while (!sealed && remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = deadline - System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                // Send what has been collected so far
+                Thread.currentThread().interrupt();
+            } finally {
+                sealed = true;
+            }
+        }
+
+        /** Removes the key attributes the caller did not ask for. */
+        private Map<String, AttributeValue> project(Map<String, AttributeValue> item) {
+            for (String keyName : addedKeyNames) {
+                item.remove(keyName);
+            }
+            return item;
+        }
+
+        private void failAll(RuntimeException e) {
+            for (PendingItem pending : pendingByKey.values()) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    /**
+     * The result of one key of a batch, awaited by the callers of that key.
+     */
+    private static final class PendingItem {
+
+        /** The key as requested by the first caller. */
+        private final Map<String, AttributeValue> key;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile Map<String, AttributeValue> item;
+        private volatile RuntimeException failure;
+
+        private PendingItem(Map<String, AttributeValue> key) {
+            this.key = key;
+        }
+
+        /*
+         * Only the leading caller completes pending items, and only the first
+         * outcome of each is kept.
+         */
+        private void complete(Map<String, AttributeValue> item) {
+            if (!isDone()) {
+                this.item = item;
+                done.countDown();
+            }
+        }
+
+        private void fail(RuntimeException failure) {
+            if (!isDone()) {
+                this.failure = failure;
+                done.countDown();
+            }
+        }
+
+        private boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        private GetItemResult await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(
+                        "Interrupted while waiting for a coalesced GetItem call", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            // Callers of the same key each get a map of their own
+            return new GetItemResult().withItem(item == null
+                    ? null : new HashMap<String, AttributeValue>(item));
+        }
+    }
+}
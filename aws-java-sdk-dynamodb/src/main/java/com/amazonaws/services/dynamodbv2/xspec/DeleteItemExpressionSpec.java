@@ -45,6 +45,20 @@ public final class DeleteItemExpressionSpec extends ExpressionSpec {
         this.valueMap = valueMap == null ? null : Collections.unmodifiableMap(valueMap);
     }
 
+    /**
+     * Creates a copy of the given specification with a different value map.
+     */
+    private DeleteItemExpressionSpec(DeleteItemExpressionSpec template, Map<String, Object> valueMap) {
+        this.conditionExpression = template.conditionExpression;
+        this.nameMap = template.nameMap;
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    DeleteItemExpressionSpec withValueMap(Map<String, Object> valueMap) {
+        return new DeleteItemExpressionSpec(this, valueMap);
+    }
+
     /**
      * Returns the condition expression; or null if there is none.
      */
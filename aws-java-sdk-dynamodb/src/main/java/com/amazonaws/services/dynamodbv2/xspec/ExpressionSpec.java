@@ -24,4 +24,10 @@ abstract class ExpressionSpec {
      * Returns the name map which is unmodifiable; or null if there is none.
      */
     public abstract Map<String, String> getNameMap();
+
+    /**
+     * Returns a copy of this specification with the given value map in place
+     * of its own, sharing the expressions and the name map.
+     */
+    abstract ExpressionSpec withValueMap(Map<String, Object> valueMap);
 }
@@ -509,6 +509,66 @@ public final class ExpressionSpecBuilder implements Cloneable {
         return new PutItemExpressionSpec(this);
     }
 
+    /**
+     * Returns a prepared expression specification for use in
+     * <code>DeleteItem</code> requests, with the values currently in this
+     * builder used as samples to be replaced on each request.
+     *
+     * @see PreparedExpressionSpec
+     */
+    public PreparedExpressionSpec<DeleteItemExpressionSpec> prepareForDeleteItem() {
+        DeleteItemExpressionSpec spec = buildForDeleteItem();
+        return new PreparedExpressionSpec<DeleteItemExpressionSpec>(spec, spec.getValueMap());
+    }
+
+    /**
+     * Returns a prepared expression specification for use in query
+     * requests, with the values currently in this builder used as samples to
+     * be replaced on each request.
+     *
+     * @see PreparedExpressionSpec
+     */
+    public PreparedExpressionSpec<QueryExpressionSpec> prepareForQuery() {
+        QueryExpressionSpec spec = buildForQuery();
+        return new PreparedExpressionSpec<QueryExpressionSpec>(spec, spec.getValueMap());
+    }
+
+    /**
+     * Returns a prepared expression specification for use in scan requests,
+     * with the values currently in this builder used as samples to be
+     * replaced on each request.
+     *
+     * @see PreparedExpressionSpec
+     */
+    public PreparedExpressionSpec<ScanExpressionSpec> prepareForScan() {
+        ScanExpressionSpec spec = buildForScan();
+        return new PreparedExpressionSpec<ScanExpressionSpec>(spec, spec.getValueMap());
+    }
+
+    /**
+     * Returns a prepared expression specification for use in
+     * <code>UpdateItem</code> requests, with the values currently in this
+     * builder used as samples to be replaced on each request.
+     *
+     * @see PreparedExpressionSpec
+     */
+    public PreparedExpressionSpec<UpdateItemExpressionSpec> prepareForUpdate() {
+        UpdateItemExpressionSpec spec = buildForUpdate();
+        return new PreparedExpressionSpec<UpdateItemExpressionSpec>(spec, spec.getValueMap());
+    }
+
+    /**
+     * Returns a prepared expression specification for use in
+     * <code>PutItem</code> requests, with the values currently in this
+     * builder used as samples to be replaced on each request.
+     *
+     * @see PreparedExpressionSpec
+     */
+    public PreparedExpressionSpec<PutItemExpressionSpec> prepareForPut() {
+        PutItemExpressionSpec spec = buildForPut();
+        return new PreparedExpressionSpec<PutItemExpressionSpec>(spec, spec.getValueMap());
+    }
+
     /**
      * Builds and returns the update expression to be used in a dynamodb
      * request; or null if there is none.
@@ -37,6 +37,14 @@ public final class GetItemExpressionSpec extends ExpressionSpec {
         this.nameMap = nameMap == null ? null : Collections.unmodifiableMap(nameMap);
     }
 
+    /**
+     * Returns this specification, which has no values.
+     */
+    @Override
+    GetItemExpressionSpec withValueMap(Map<String, Object> valueMap) {
+        return this;
+    }
+
     /**
      * Returns the projection expression; or null if there is none.
      */
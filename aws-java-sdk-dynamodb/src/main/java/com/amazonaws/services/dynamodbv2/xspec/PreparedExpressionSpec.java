@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.xspec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.annotation.Beta;
+
+/**
+ * An expression specification whose expressions and name map have been
+ * rendered once, and which only needs new values to produce a specification
+ * for each request.
+ * <p>
+ * A prepared specification is obtained from one of the {@code prepareFor...}
+ * methods of {@link ExpressionSpecBuilder}, using sample values wherever the
+ * actual values vary from request to request. Each distinct sample value
+ * becomes a value placeholder, numbered in the order it first appears in the
+ * expressions; {@link #bind(Object...)} then replaces the sample values in
+ * that order. Since equal sample values share a placeholder, values that vary
+ * independently must be given distinct samples.
+ * <p>
+ * For example:
+ *
+ * <pre class="brush: java">
+ * // Prepared once
+ * PreparedExpressionSpec&lt;UpdateItemExpressionSpec&gt; setPrice = new ExpressionSpecBuilder()
+ *     .addUpdate(N("price").set(0))
+ *     .withCondition(S("status").eq("sample-status"))
+ *     .prepareForUpdate();
+ *
+ * // Bound for each request
+ * table.updateItem(new UpdateItemSpec()
+ *     .withPrimaryKey("id", id)
+ *     .withExpressionSpec(setPrice.bind(price, "ACTIVE")));
+ * </pre>
+ * <p>
+ * Instances are immutable and thread-safe, and binding does not walk the
+ * expression tree again.
+ *
+ * @param <T>
+ *            The type of expression specification produced.
+ */
+@Beta
+public final class PreparedExpressionSpec<T extends ExpressionSpec> {
+
+    private final T template;
+    private final String[] placeholders;
+    private final List<Object> sampleValues;
+
+    PreparedExpressionSpec(T template, Map<String, Object> valueMap) {
+        this.template = template;
+        if (valueMap == null) {
+            this.placeholders = new String[0];
+            this.sampleValues = Collections.emptyList();
+        } else {
+            this.placeholders = valueMap.keySet().toArray(new String[valueMap.size()]);
+            this.sampleValues = Collections.unmodifiableList(
+                    new ArrayList<Object>(valueMap.values()));
+        }
+    }
+
+    /**
+     * Returns the number of values expected by {@link #bind(Object...)}.
+     */
+    public int getValueCount() {
+        return placeholders.length;
+    }
+
+    /**
+     * Returns the sample values the specification was prepared with, in the
+     * order in which {@link #bind(Object...)} expects their replacements.
+     */
+    public List<Object> getSampleValues() {
+        return sampleValues;
+    }
+
+    /**
+     * Returns an expression specification with the given values in place of
+     * the sample values.
+     *
+     * @param values
+     *            One value per distinct sample value, in the order returned
+     *            by {@link #getSampleValues()}.
+     * @throws IllegalArgumentException
+     *             If the number of values does not match.
+     */
+    @SuppressWarnings("unchecked")
+    public T bind(Object... values) {
+        if (values.length != placeholders.length) {
+            throw new IllegalArgumentException("Expected " + placeholders.length
+                    + " values but got " + values.length);
+        }
+        if (values.length == 0) {
+            return template;
+        }
+        Map<String, Object> valueMap =
+                new LinkedHashMap<String, Object>(placeholders.length * 4 / 3 + 1);
+        for (int i = 0; i < placeholders.length; i++) {
+            valueMap.put(placeholders[i], values[i]);
+        }
+        return (T) template.withValueMap(Collections.unmodifiableMap(valueMap));
+    }
+}
@@ -44,6 +44,20 @@ public class PutItemExpressionSpec extends ExpressionSpec {
         this.valueMap = valueMap == null ? null : Collections.unmodifiableMap(valueMap);
     }
 
+    /**
+     * Creates a copy of the given specification with a different value map.
+     */
+    private PutItemExpressionSpec(PutItemExpressionSpec template, Map<String, Object> valueMap) {
+        this.conditionExpression = template.conditionExpression;
+        this.nameMap = template.nameMap;
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    PutItemExpressionSpec withValueMap(Map<String, Object> valueMap) {
+        return new PutItemExpressionSpec(this, valueMap);
+    }
+
     /**
      * Returns the condition expression; or null if there is none.
      */
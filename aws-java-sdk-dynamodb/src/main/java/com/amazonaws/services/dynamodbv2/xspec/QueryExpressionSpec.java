@@ -50,6 +50,22 @@ public final class QueryExpressionSpec extends ExpressionSpec {
         this.valueMap = valueMap == null ? null : Collections.unmodifiableMap(valueMap);
     }
 
+    /**
+     * Creates a copy of the given specification with a different value map.
+     */
+    private QueryExpressionSpec(QueryExpressionSpec template, Map<String, Object> valueMap) {
+        this.projectionExpression = template.projectionExpression;
+        this.filterExpression = template.filterExpression;
+        this.keyConditionExpression = template.keyConditionExpression;
+        this.nameMap = template.nameMap;
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    QueryExpressionSpec withValueMap(Map<String, Object> valueMap) {
+        return new QueryExpressionSpec(this, valueMap);
+    }
+
     /**
      * Returns the projection expression; or null if there is none.
      */
@@ -47,6 +47,21 @@ public final class ScanExpressionSpec extends ExpressionSpec {
         this.valueMap = valueMap == null ? null : Collections.unmodifiableMap(valueMap);
     }
 
+    /**
+     * Creates a copy of the given specification with a different value map.
+     */
+    private ScanExpressionSpec(ScanExpressionSpec template, Map<String, Object> valueMap) {
+        this.projectionExpression = template.projectionExpression;
+        this.filterExpression = template.filterExpression;
+        this.nameMap = template.nameMap;
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    ScanExpressionSpec withValueMap(Map<String, Object> valueMap) {
+        return new ScanExpressionSpec(this, valueMap);
+    }
+
     /**
      * Returns the projection expression; or null if there is none.
      */
@@ -46,6 +46,21 @@ public class UpdateItemExpressionSpec extends ExpressionSpec {
         this.valueMap = valueMap == null ? null : Collections.unmodifiableMap(valueMap);
     }
 
+    /**
+     * Creates a copy of the given specification with a different value map.
+     */
+    private UpdateItemExpressionSpec(UpdateItemExpressionSpec template, Map<String, Object> valueMap) {
+        this.updateExpression = template.updateExpression;
+        this.conditionExpression = template.conditionExpression;
+        this.nameMap = template.nameMap;
+        this.valueMap = valueMap;
+    }
+
+    @Override
+    UpdateItemExpressionSpec withValueMap(Map<String, Object> valueMap) {
+        return new UpdateItemExpressionSpec(this, valueMap);
+    }
+
     /**
      * Returns the update expression; or null if there is none.
      */
@@ -14,11 +14,13 @@
  */
 package com.amazonaws.services.dynamodbv2.datamodeling;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -34,6 +36,7 @@ import static org.easymock.EasyMock.verify;
 
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteListener;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
@@ -132,6 +135,113 @@ public class BatchWriteRetryStrategyTest {
                 failedBatch.getException());
     }
 
+    @Test
+    public void testParallelBatchWrite_AllBatchesSentAndReported() {
+
+        // 100 items are expected to be sent as 4 batches of 25
+        expectBatchWriteItemSuccess().times(4);
+
+        replay(ddbMock);
+        final AtomicInteger written = new AtomicInteger();
+        List<Item> items = new ArrayList<Item>();
+        for (int i = 0; i < 100; i++) {
+            items.add(new Item(UUID.randomUUID().toString()));
+        }
+        List<FailedBatch> failedBatches = mapper.batchWrite(items,
+                Collections.emptyList(),
+                getParallelConfig(new CountingBatchWriteListener(written)));
+        verify(ddbMock);
+
+        Assert.assertEquals(0, failedBatches.size());
+        Assert.assertEquals(100, written.get());
+    }
+
+    @Test
+    public void testParallelUnprocessedItemReturned_NotExceedMaxRetry() {
+
+        // Unprocessed items are requeued up to MAX_RETRY times
+        expectBatchWriteItemReturnUnprocessedItems().times(MAX_RETRY + 1);
+
+        replay(ddbMock);
+        final AtomicInteger written = new AtomicInteger();
+        List<FailedBatch> failedBatches = mapper.batchWrite(
+                Arrays.asList(new Item("foo")), Collections.emptyList(),
+                getParallelConfig(new CountingBatchWriteListener(written)));
+        verify(ddbMock);
+
+        Assert.assertEquals(1, failedBatches.size());
+        Assert.assertEquals(unprocessedItems,
+                failedBatches.get(0).getUnprocessedItems());
+        Assert.assertNull(failedBatches.get(0).getException());
+        Assert.assertEquals(0, written.get());
+    }
+
+    @Test
+    public void testParallelExceptionThrown_NoRetry() {
+
+        RuntimeException exception = new com.amazonaws.AmazonClientException("BOOM");
+        expectedBatchWriteItemThrowException(exception);
+
+        replay(ddbMock);
+        Item item = new Item(UUID.randomUUID().toString());
+        List<FailedBatch> failedBatches = mapper.batchWrite(
+                Arrays.asList(item), Collections.emptyList(),
+                getParallelConfig(null));
+        verify(ddbMock);
+
+        Assert.assertEquals(1, failedBatches.size());
+        Assert.assertEquals(
+                Collections.singletonMap(TABLE_NAME, Arrays.asList(item.toPutSaveRequest())),
+                failedBatches.get(0).getUnprocessedItems());
+        Assert.assertSame(exception, failedBatches.get(0).getException());
+    }
+
+    @Test
+    public void testFailingListener_DoesNotAbortSerialBatchWrite() {
+
+        expectBatchWriteItemReturnUnprocessedItems().times(MAX_RETRY + 1);
+
+        replay(ddbMock);
+        List<FailedBatch> failedBatches = mapper.batchWrite(
+                Arrays.asList(new Item("foo")), Collections.emptyList(),
+                new DynamoDBMapperConfig.Builder()
+                        .withBatchWriteRetryStrategy(
+                                new BatchWriteRetryStrategyWithNoDelay(MAX_RETRY))
+                        .withBatchWriteListener(new FailingBatchWriteListener())
+                        .build());
+        verify(ddbMock);
+
+        Assert.assertEquals(1, failedBatches.size());
+    }
+
+    @Test
+    public void testParallelBatchWrites_ShareTheMapperWriterThreads() {
+
+        expectBatchWriteItemSuccess().times(4);
+
+        replay(ddbMock);
+        for (int i = 0; i < 2; i++) {
+            List<Item> items = new ArrayList<Item>();
+            for (int j = 0; j < 50; j++) {
+                items.add(new Item(UUID.randomUUID().toString()));
+            }
+            List<FailedBatch> failedBatches = mapper.batchWrite(items,
+                    Collections.emptyList(),
+                    getParallelConfig(new FailingBatchWriteListener()));
+            Assert.assertEquals(0, failedBatches.size());
+        }
+        verify(ddbMock);
+    }
+
+    private DynamoDBMapperConfig getParallelConfig(BatchWriteListener listener) {
+        return new DynamoDBMapperConfig.Builder()
+                .withBatchWriteRetryStrategy(
+                        new BatchWriteRetryStrategyWithNoDelay(MAX_RETRY))
+                .withBatchWriteConcurrency(4)
+                .withBatchWriteListener(listener)
+                .build();
+    }
+
     private IExpectationSetters<BatchWriteItemResult> expectBatchWriteItemSuccess() {
         return expect(ddbMock.batchWriteItem(isA(BatchWriteItemRequest.class)))
                 .andReturn(new BatchWriteItemResult()
@@ -181,6 +291,39 @@ public class BatchWriteRetryStrategyTest {
 
     }
 
+    private static class CountingBatchWriteListener implements
+            BatchWriteListener {
+
+        private final AtomicInteger written;
+
+        public CountingBatchWriteListener(AtomicInteger written) {
+            this.written = written;
+        }
+
+        @Override
+        public void onItemsWritten(int writtenCount) {
+            written.addAndGet(writtenCount);
+        }
+
+        @Override
+        public void onBatchFailed(FailedBatch failedBatch) {
+        }
+    }
+
+    private static class FailingBatchWriteListener implements
+            BatchWriteListener {
+
+        @Override
+        public void onItemsWritten(int writtenCount) {
+            throw new IllegalStateException("listener failure");
+        }
+
+        @Override
+        public void onBatchFailed(FailedBatch failedBatch) {
+            throw new IllegalStateException("listener failure");
+        }
+    }
+
     @DynamoDBTable(tableName = TABLE_NAME)
     public static class Item {
 
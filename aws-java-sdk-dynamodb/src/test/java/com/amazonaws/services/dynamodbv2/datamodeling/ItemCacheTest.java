@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ConsistentReads;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.DeleteItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+public class ItemCacheTest {
+
+    private static final String TABLE_NAME = "tableName";
+    private static final String HASH_ATTR = "hash";
+
+    private AmazonDynamoDB ddbMock;
+    private ItemCache cache;
+    private DynamoDBMapper mapper;
+    private AtomicInteger getCalls;
+    private volatile CountDownLatch getGate;
+
+    @Before
+    public void setup() {
+        ddbMock = createMock(AmazonDynamoDB.class);
+        cache = new ItemCache(100, 1, TimeUnit.HOURS);
+        mapper = new DynamoDBMapper(ddbMock,
+                new DynamoDBMapperConfig.Builder().withItemCache(cache).build());
+        getCalls = new AtomicInteger();
+
+        expect(ddbMock.getItem(isA(GetItemRequest.class)))
+                .andAnswer(new IAnswer<GetItemResult>() {
+                    @Override
+                    public GetItemResult answer() throws Exception {
+                        getCalls.incrementAndGet();
+                        if (getGate != null) {
+                            getGate.await();
+                        }
+                        GetItemRequest request = (GetItemRequest) EasyMock.getCurrentArguments()[0];
+                        return new GetItemResult().withItem(request.getKey());
+                    }
+                })
+                .anyTimes();
+        expect(ddbMock.batchGetItem(isA(BatchGetItemRequest.class)))
+                .andAnswer(new IAnswer<BatchGetItemResult>() {
+                    @Override
+                    public BatchGetItemResult answer() {
+                        BatchGetItemRequest request = (BatchGetItemRequest) EasyMock.getCurrentArguments()[0];
+                        Map<String, List<Map<String, AttributeValue>>> responses =
+                                new HashMap<String, List<Map<String, AttributeValue>>>();
+                        responses.put(TABLE_NAME, request.getRequestItems().get(TABLE_NAME).getKeys());
+                        return new BatchGetItemResult()
+                                .withResponses(responses)
+                                .withUnprocessedKeys(Collections.<String, KeysAndAttributes>emptyMap());
+                    }
+                })
+                .anyTimes();
+        expect(ddbMock.deleteItem(isA(DeleteItemRequest.class)))
+                .andReturn(new DeleteItemResult())
+                .anyTimes();
+        replay(ddbMock);
+    }
+
+    @Test
+    public void testRepeatedLoadIsServedFromCache() {
+        Assert.assertEquals("a", mapper.load(Item.class, "a").getHash());
+        Assert.assertEquals("a", mapper.load(Item.class, "a").getHash());
+
+        Assert.assertEquals(1, getCalls.get());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testConsistentLoadBypassesCache() {
+        DynamoDBMapperConfig consistent = new DynamoDBMapperConfig(ConsistentReads.CONSISTENT);
+        mapper.load(Item.class, "a");
+        mapper.load(Item.class, "a", consistent);
+        mapper.load(Item.class, "a", consistent);
+
+        Assert.assertEquals(3, getCalls.get());
+        Assert.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testDeleteInvalidatesCachedItem() {
+        mapper.load(Item.class, "a");
+        mapper.delete(new Item("a"));
+        mapper.load(Item.class, "a");
+
+        Assert.assertEquals(2, getCalls.get());
+    }
+
+    @Test
+    public void testSizeBoundEvictsEntries() {
+        cache = new ItemCache(1, 1, TimeUnit.HOURS);
+        mapper = new DynamoDBMapper(ddbMock,
+                new DynamoDBMapperConfig.Builder().withItemCache(cache).build());
+        mapper.load(Item.class, "a");
+        mapper.load(Item.class, "b");
+        mapper.load(Item.class, "a");
+
+        Assert.assertEquals(3, getCalls.get());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testBatchLoadUsesAndFillsCache() {
+        mapper.load(Item.class, "a");
+        Map<String, List<Object>> result = mapper.batchLoad(
+                Arrays.asList(new Item("a"), new Item("b")));
+        Assert.assertEquals(2, result.get(TABLE_NAME).size());
+        Assert.assertEquals(1, cache.getHitCount());
+
+        mapper.load(Item.class, "b");
+        Assert.assertEquals(1, getCalls.get());
+        Assert.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneRequest() throws Exception {
+        getGate = new CountDownLatch(1);
+        final List<Item> loaded = Collections.synchronizedList(new ArrayList<Item>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loaded.add(mapper.load(Item.class, "a"));
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        while (cache.getMissCount() < 8) {
+            Thread.sleep(10);
+        }
+        getGate.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(1, getCalls.get());
+        Assert.assertEquals(8, loaded.size());
+    }
+
+    @Test
+    public void testLoaderErrorDoesNotStrandWaiters() throws Exception {
+        final ItemCache.Key key = new ItemCache.Key(TABLE_NAME,
+                Collections.singletonMap(HASH_ATTR, new AttributeValue("a")));
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger waiterFailures = new AtomicInteger();
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.get(key, new ItemCache.Loader() {
+                        @Override
+                        public Map<String, AttributeValue> load() {
+                            loading.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            throw new AssertionError("load failed");
+                        }
+                    });
+                } catch (AssertionError expected) {
+                }
+            }
+        });
+        loader.start();
+        loading.await();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.get(key, new ItemCache.Loader() {
+                        @Override
+                        public Map<String, AttributeValue> load() {
+                            throw new IllegalStateException("should wait for the first load");
+                        }
+                    });
+                } catch (RuntimeException expected) {
+                    waiterFailures.incrementAndGet();
+                }
+            }
+        });
+        waiter.start();
+        while (cache.getMissCount() < 2) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        loader.join(5000);
+        waiter.join(5000);
+
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertEquals(1, waiterFailures.get());
+        Map<String, AttributeValue> retried = cache.get(key, new ItemCache.Loader() {
+            @Override
+            public Map<String, AttributeValue> load() {
+                return Collections.singletonMap(HASH_ATTR, new AttributeValue("a"));
+            }
+        });
+        Assert.assertEquals("a", retried.get(HASH_ATTR).getS());
+    }
+
+    @Test
+    public void testNumericKeysMatchByValue() {
+        ItemCache.Key requested = new ItemCache.Key(TABLE_NAME,
+                Collections.singletonMap(HASH_ATTR, new AttributeValue().withN("1.50")));
+        ItemCache.Key returned = new ItemCache.Key(TABLE_NAME,
+                Collections.singletonMap(HASH_ATTR, new AttributeValue().withN("1.5")));
+        Assert.assertEquals(requested, returned);
+        Assert.assertEquals(requested.hashCode(), returned.hashCode());
+
+        cache.put(returned, Collections.singletonMap(HASH_ATTR, new AttributeValue().withN("1.5")),
+                cache.stamp());
+        Assert.assertNotNull(cache.lookup(requested));
+    }
+
+    @Test
+    public void testCallersGetTheirOwnCopy() {
+        Item item = mapper.load(Item.class, "a");
+        Assert.assertNotNull(item);
+        ItemCache.Key key = new ItemCache.Key(TABLE_NAME,
+                Collections.singletonMap(HASH_ATTR, new AttributeValue("a")));
+
+        Map<String, AttributeValue> first = cache.lookup(key).item();
+        first.put("extra", new AttributeValue("x"));
+        first.remove(HASH_ATTR);
+
+        Map<String, AttributeValue> second = cache.lookup(key).item();
+        Assert.assertEquals(1, second.size());
+        Assert.assertEquals("a", second.get(HASH_ATTR).getS());
+    }
+
+    @Test
+    public void testCallersGetTheirOwnBinaryValues() {
+        ItemCache.Key key = new ItemCache.Key(TABLE_NAME,
+                Collections.singletonMap(HASH_ATTR, new AttributeValue("a")));
+        ByteBuffer stored = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+        item.put(HASH_ATTR, new AttributeValue("a"));
+        item.put("b", new AttributeValue().withB(stored));
+        item.put("bs", new AttributeValue().withBS(ByteBuffer.wrap(new byte[] { 4, 5 })));
+        cache.put(key, item, cache.stamp());
+        stored.put(0, (byte) 9);
+
+        Map<String, AttributeValue> first = cache.lookup(key).item();
+        ByteBuffer b = first.get("b").getB();
+        Assert.assertEquals(1, b.get());
+        b.put(1, (byte) 9);
+        first.get("bs").getBS().get(0).put(0, (byte) 9);
+        first.get("bs").getBS().add(ByteBuffer.wrap(new byte[] { 6 }));
+
+        Map<String, AttributeValue> second = cache.lookup(key).item();
+        Assert.assertEquals(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), second.get("b").getB());
+        Assert.assertEquals(Arrays.asList(ByteBuffer.wrap(new byte[] { 4, 5 })),
+                second.get("bs").getBS());
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+
+        private String hash;
+
+        public Item() {
+        }
+
+        public Item(String hash) {
+            this.hash = hash;
+        }
+
+        @DynamoDBHashKey(attributeName = HASH_ATTR)
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
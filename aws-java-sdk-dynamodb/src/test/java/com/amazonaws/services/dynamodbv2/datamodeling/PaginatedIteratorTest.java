@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+public class PaginatedIteratorTest {
+
+    private static final String TABLE_NAME = "tableName";
+    private static final String HASH_ATTR = "hash";
+    private static final int PAGES = 5;
+    private static final int ITEMS_PER_PAGE = 3;
+
+    private AmazonDynamoDB ddbMock;
+    private DynamoDBMapper mapper;
+    private AtomicInteger scanCalls;
+
+    @Before
+    public void setup() {
+        ddbMock = createMock(AmazonDynamoDB.class);
+        mapper = new DynamoDBMapper(ddbMock);
+        scanCalls = new AtomicInteger();
+
+        expect(ddbMock.scan(isA(ScanRequest.class)))
+                .andAnswer(new IAnswer<ScanResult>() {
+                    @Override
+                    public ScanResult answer() {
+                        scanCalls.incrementAndGet();
+                        ScanRequest request = (ScanRequest) EasyMock.getCurrentArguments()[0];
+                        return page(request.getExclusiveStartKey() == null
+                                ? 0
+                                : Integer.parseInt(request.getExclusiveStartKey()
+                                        .get(HASH_ATTR).getS()) + 1);
+                    }
+                })
+                .anyTimes();
+        replay(ddbMock);
+    }
+
+    @Test
+    public void testSynchronousIterationReturnsAllPagesInOrder() {
+        PaginatedScanIterator<Item> iterator = mapper.scanIterator(
+                Item.class, new DynamoDBScanExpression(), null, 0);
+
+        Assert.assertEquals(0, scanCalls.get());
+        Assert.assertEquals(expectedHashes(0), drain(iterator));
+        Assert.assertEquals(PAGES, scanCalls.get());
+        Assert.assertNull(iterator.getLastEvaluatedKey());
+    }
+
+    @Test
+    public void testPrefetchingIterationReturnsAllPagesInOrder() {
+        PaginatedScanIterator<Item> iterator = mapper.scanIterator(
+                Item.class, new DynamoDBScanExpression(), null, 2);
+
+        Assert.assertEquals(expectedHashes(0), drain(iterator));
+        Assert.assertEquals(PAGES, scanCalls.get());
+    }
+
+    @Test
+    public void testPrefetchIsBounded() throws InterruptedException {
+        PaginatedScanIterator<Item> iterator = mapper.scanIterator(
+                Item.class, new DynamoDBScanExpression(), null, 2);
+
+        iterator.next();
+        Thread.sleep(200);
+
+        // The current page plus two pages ahead of it
+        Assert.assertEquals(3, scanCalls.get());
+        iterator.close();
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() {
+        PaginatedScanIterator<Item> iterator = mapper.scanIterator(
+                Item.class, new DynamoDBScanExpression(), null, 1);
+
+        // Consume the first page and part of the second
+        for (int i = 0; i < ITEMS_PER_PAGE + 1; i++) {
+            iterator.next();
+        }
+        Map<String, AttributeValue> checkpoint = iterator.getLastEvaluatedKey();
+        iterator.close();
+        Assert.assertEquals("0", checkpoint.get(HASH_ATTR).getS());
+
+        PaginatedScanIterator<Item> resumed = mapper.scanIterator(
+                Item.class,
+                new DynamoDBScanExpression().withExclusiveStartKey(checkpoint),
+                null,
+                1);
+        Assert.assertEquals(expectedHashes(1), drain(resumed));
+    }
+
+    @Test
+    public void testFetcherErrorIsRethrownToTheConsumer() {
+        AmazonDynamoDB failingMock = createMock(AmazonDynamoDB.class);
+        expect(failingMock.scan(isA(ScanRequest.class)))
+                .andThrow(new AssertionError("boom"));
+        replay(failingMock);
+        PaginatedScanIterator<Item> iterator = new DynamoDBMapper(failingMock)
+                .scanIterator(Item.class, new DynamoDBScanExpression(), null, 1);
+
+        try {
+            iterator.hasNext();
+            Assert.fail("Expected the fetcher's error");
+        } catch (AssertionError expected) {
+            Assert.assertEquals("boom", expected.getMessage());
+        }
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testAbandonedIteratorStopsItsFetcher() throws InterruptedException {
+        Set<Thread> before = fetcherThreads();
+        PaginatedScanIterator<Item> iterator = mapper.scanIterator(
+                Item.class, new DynamoDBScanExpression(), null, 1);
+        iterator.next();
+        Set<Thread> started = fetcherThreads();
+        started.removeAll(before);
+        Assert.assertEquals(1, started.size());
+        Thread fetcher = started.iterator().next();
+
+        iterator = null;
+        for (int i = 0; i < 50 && fetcher.isAlive(); i++) {
+            System.gc();
+            System.runFinalization();
+            fetcher.join(100);
+        }
+        Assert.assertFalse(fetcher.isAlive());
+    }
+
+    private static Set<Thread> fetcherThreads() {
+        Set<Thread> threads = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("dynamodb-mapper-page-fetcher-")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private static ScanResult page(int page) {
+        List<Map<String, AttributeValue>> items =
+                new ArrayList<Map<String, AttributeValue>>();
+        for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+            items.add(Collections.singletonMap(
+                    HASH_ATTR, new AttributeValue(page + "-" + i)));
+        }
+        ScanResult result = new ScanResult().withItems(items);
+        if (page < PAGES - 1) {
+            Map<String, AttributeValue> lastKey =
+                    new HashMap<String, AttributeValue>();
+            lastKey.put(HASH_ATTR, new AttributeValue(String.valueOf(page)));
+            result.setLastEvaluatedKey(lastKey);
+        }
+        return result;
+    }
+
+    private static List<String> expectedHashes(int fromPage) {
+        List<String> hashes = new ArrayList<String>();
+        for (int page = fromPage; page < PAGES; page++) {
+            for (int i = 0; i < ITEMS_PER_PAGE; i++) {
+                hashes.add(page + "-" + i);
+            }
+        }
+        return hashes;
+    }
+
+    private static List<String> drain(PaginatedIterator<Item> iterator) {
+        List<String> hashes = new ArrayList<String>();
+        while (iterator.hasNext()) {
+            hashes.add(iterator.next().getHash());
+        }
+        return hashes;
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+
+        private String hash;
+
+        @DynamoDBHashKey(attributeName = HASH_ATTR)
+        public String getHash() {
+            return hash;
+        }
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.ParallelScanOptions;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+
+public class ParallelScanTaskTest {
+
+    private static final String TABLE_NAME = "tableName";
+    private static final String HASH_ATTR = "hash";
+    private static final int SEGMENTS = 8;
+    private static final int PAGES_PER_SEGMENT = 4;
+
+    private AmazonDynamoDB ddbMock;
+    private DynamoDBMapper mapper;
+    private ExecutorService executor;
+    private AtomicInteger inFlight;
+    private AtomicInteger maxInFlight;
+    private volatile int failingSegment = -1;
+
+    @Before
+    public void setup() {
+        ddbMock = createMock(AmazonDynamoDB.class);
+        mapper = new DynamoDBMapper(ddbMock);
+        executor = Executors.newFixedThreadPool(4);
+        inFlight = new AtomicInteger();
+        maxInFlight = new AtomicInteger();
+
+        expect(ddbMock.scan(isA(ScanRequest.class)))
+                .andAnswer(new IAnswer<ScanResult>() {
+                    @Override
+                    public ScanResult answer() throws Exception {
+                        ScanRequest request = (ScanRequest) EasyMock.getCurrentArguments()[0];
+                        int current = inFlight.incrementAndGet();
+                        while (true) {
+                            int max = maxInFlight.get();
+                            if (current <= max || maxInFlight.compareAndSet(max, current)) {
+                                break;
+                            }
+                        }
+                        try {
+                            Thread.sleep(5);
+                            if (request.getSegment() == failingSegment) {
+                                throw new AmazonServiceException("BOOM");
+                            }
+                            return page(request);
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                })
+                .anyTimes();
+        replay(ddbMock);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAllPagesOfAllSegmentsAreReturned() {
+        List<Item> items = mapper.parallelScan(
+                Item.class, new DynamoDBScanExpression(), SEGMENTS, config(2));
+
+        Set<String> hashes = new HashSet<String>();
+        for (Item item : items) {
+            Assert.assertTrue(hashes.add(item.getHash()));
+        }
+        Assert.assertEquals(SEGMENTS * PAGES_PER_SEGMENT, hashes.size());
+        Assert.assertTrue(maxInFlight.get() <= 2);
+    }
+
+    @Test
+    public void testSegmentFailureIsRethrown() {
+        failingSegment = 3;
+        try {
+            for (Item item : mapper.parallelScan(
+                    Item.class, new DynamoDBScanExpression(), SEGMENTS, config(4))) {
+                Assert.assertNotNull(item);
+            }
+            Assert.fail("Expected the segment failure to be rethrown");
+        } catch (AmazonServiceException expected) {
+            Assert.assertEquals("BOOM", expected.getErrorMessage());
+        }
+    }
+
+    private DynamoDBMapperConfig config(int maxBufferedPages) {
+        return new DynamoDBMapperConfig.Builder()
+                .withPaginationLoadingStrategy(DynamoDBMapperConfig.PaginationLoadingStrategy.ITERATION_ONLY)
+                .withParallelScanOptions(new ParallelScanOptions()
+                        .withExecutor(executor)
+                        .withMaxBufferedPages(maxBufferedPages))
+                .build();
+    }
+
+    private static ScanResult page(ScanRequest request) {
+        int page = (request.getExclusiveStartKey() == null)
+                ? 0
+                : Integer.parseInt(request.getExclusiveStartKey().get(HASH_ATTR).getS()) + 1;
+        String hash = request.getSegment() + "-" + page;
+        ScanResult result = new ScanResult().withItems(
+                Collections.singletonList(Collections.singletonMap(
+                        HASH_ATTR, new AttributeValue(hash))));
+        if (page < PAGES_PER_SEGMENT - 1) {
+            Map<String, AttributeValue> lastKey = new HashMap<String, AttributeValue>();
+            lastKey.put(HASH_ATTR, new AttributeValue(String.valueOf(page)));
+            result.setLastEvaluatedKey(lastKey);
+        }
+        return result;
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+
+        private String hash;
+
+        @DynamoDBHashKey(attributeName = HASH_ATTR)
+        public String getHash() {
+            return hash;
+        }
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
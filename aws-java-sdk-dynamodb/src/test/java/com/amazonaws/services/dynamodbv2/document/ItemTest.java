@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.document.internal.InternalUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * Tests on items converted from low level results, whose numbers are only
+ * parsed when read.
+ */
+public class ItemTest {
+
+    private static final String[] NUMBERS = {
+        "0", "-7", "1.50", "123456789012345678", "12345678901234567890",
+        "-0.000123", "3E+2", "9.99999999999999999999"
+    };
+
+    /** Test that every numeric getter agrees with the parsed value. */
+    @Test
+    public void testNumberRoundTrip() {
+        Item item = InternalUtils.toItem(lowLevelItem());
+        for (int i = 0; i < NUMBERS.length; i++) {
+            String name = "n" + i;
+            BigDecimal expected = new BigDecimal(NUMBERS[i]);
+            assertEquals(expected, item.getNumber(name));
+            assertEquals(expected, item.get(name));
+            assertEquals(BigDecimal.class, item.getTypeOf(name));
+            assertEquals(expected.longValue(), item.getLong(name));
+            assertEquals(expected.intValue(), item.getInt(name));
+            assertEquals(expected.doubleValue(), item.getDouble(name), 0);
+            assertEquals(expected.floatValue(), item.getFloat(name), 0);
+            assertEquals(expected, item.asMap().get(name));
+        }
+        assertEquals("hello", item.getString("s"));
+    }
+
+    /** Test that a converted item equals the same item built from its values. */
+    @Test
+    public void testEqualsItemBuiltFromParsedValues() {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < NUMBERS.length; i++) {
+            values.put("n" + i, new BigDecimal(NUMBERS[i]));
+        }
+        values.put("s", "hello");
+        Item expected = Item.fromMap(values);
+
+        Item item = InternalUtils.toItem(lowLevelItem());
+        assertEquals(expected.hashCode(), item.hashCode());
+        assertTrue(item.equals(expected));
+        assertTrue(expected.equals(item));
+        assertEquals(expected.toJSON(), item.toJSON());
+    }
+
+    /** Test that concurrent readers of one item see consistent values. */
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final Item item = InternalUtils.toItem(lowLevelItem());
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int round = 0; round < 1000; round++) {
+                            int i = (round + offset) % NUMBERS.length;
+                            String name = "n" + i;
+                            BigDecimal expected = new BigDecimal(NUMBERS[i]);
+                            assertEquals(expected, item.getNumber(name));
+                            assertEquals(expected.longValue(), item.getLong(name));
+                            assertEquals(NUMBERS.length + 1, item.asMap().size());
+                            item.hashCode();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Map<String, AttributeValue> lowLevelItem() {
+        Map<String, AttributeValue> item = new LinkedHashMap<String, AttributeValue>();
+        for (int i = 0; i < NUMBERS.length; i++) {
+            item.put("n" + i, new AttributeValue().withN(NUMBERS[i]));
+        }
+        item.put("s", new AttributeValue("hello"));
+        return item;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+
+public class StreamReaderTest {
+
+    private static final String STREAM_ARN = "streamArn";
+
+    /**
+     * A closed parent shard with records 1 to 4 and an open child shard with
+     * records 5 and 6. Shard iterators are "shardId:position", and each read
+     * returns up to two records.
+     */
+    private static final class FakeStreams extends AbstractAmazonDynamoDBStreams {
+
+        private final List<String> parentRecords = Arrays.asList("1", "2", "3", "4");
+        private final List<String> childRecords = Arrays.asList("5", "6");
+
+        @Override
+        public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            return new DescribeStreamResult().withStreamDescription(
+                    new StreamDescription().withShards(
+                            new Shard().withShardId("child").withParentShardId("parent"),
+                            new Shard().withShardId("parent")));
+        }
+
+        @Override
+        public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+            int position = 0;
+            if (ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString()
+                    .equals(request.getShardIteratorType())) {
+                position = records(request.getShardId()).indexOf(request.getSequenceNumber()) + 1;
+            }
+            return new GetShardIteratorResult()
+                    .withShardIterator(request.getShardId() + ":" + position);
+        }
+
+        @Override
+        public GetRecordsResult getRecords(GetRecordsRequest request) {
+            String[] iterator = request.getShardIterator().split(":");
+            String shardId = iterator[0];
+            int position = Integer.parseInt(iterator[1]);
+            List<String> records = records(shardId);
+            int end = Math.min(position + 2, records.size());
+
+            List<Record> page = new ArrayList<Record>();
+            for (String sequenceNumber : records.subList(position, end)) {
+                page.add(new Record().withDynamodb(
+                        new StreamRecord().withSequenceNumber(sequenceNumber)));
+            }
+            // The parent is closed; the child stays open and returns empty pages
+            String next = (end == records.size() && shardId.equals("parent"))
+                    ? null
+                    : shardId + ":" + end;
+            return new GetRecordsResult().withRecords(page).withNextShardIterator(next);
+        }
+
+        private List<String> records(String shardId) {
+            return shardId.equals("parent") ? parentRecords : childRecords;
+        }
+    }
+
+    private static class CollectingProcessor implements StreamRecordProcessor {
+
+        private final List<String> sequenceNumbers =
+                Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch done;
+
+        private CollectingProcessor(int expectedRecords) {
+            this.done = new CountDownLatch(expectedRecords);
+        }
+
+        @Override
+        public void processRecords(String shardId, List<Record> records) {
+            for (Record record : records) {
+                sequenceNumbers.add(record.getDynamodb().getSequenceNumber());
+                done.countDown();
+            }
+        }
+    }
+
+    private static StreamReaderConfiguration config() {
+        StreamReaderConfiguration config = new StreamReaderConfiguration();
+        config.setIdleDelayMillis(10, 50);
+        return config;
+    }
+
+    @Test
+    public void testChildShardIsReadAfterItsParent() throws Exception {
+        CheckpointStore checkpoints = new InMemoryCheckpointStore();
+        CollectingProcessor processor = new CollectingProcessor(6);
+        StreamReader reader = new StreamReader(new FakeStreams(), STREAM_ARN,
+                processor, checkpoints, config());
+        reader.start();
+        Assert.assertTrue(processor.done.await(10, TimeUnit.SECONDS));
+        reader.shutdown();
+        Assert.assertTrue(reader.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6"),
+                processor.sequenceNumbers);
+        Assert.assertEquals(CheckpointStore.SHARD_END,
+                checkpoints.getCheckpoint(STREAM_ARN, "parent"));
+        Assert.assertEquals("6", checkpoints.getCheckpoint(STREAM_ARN, "child"));
+    }
+
+    @Test
+    public void testReadingResumesAfterCheckpoint() throws Exception {
+        File file = File.createTempFile("checkpoints", ".properties");
+        file.delete();
+        try {
+            CheckpointStore checkpoints = new FileCheckpointStore(file);
+            checkpoints.setCheckpoint(STREAM_ARN, "parent", CheckpointStore.SHARD_END);
+            checkpoints.setCheckpoint(STREAM_ARN, "child", "5");
+
+            CollectingProcessor processor = new CollectingProcessor(1);
+            StreamReader reader = new StreamReader(new FakeStreams(), STREAM_ARN,
+                    processor, new FileCheckpointStore(file), config());
+            reader.start();
+            Assert.assertTrue(processor.done.await(10, TimeUnit.SECONDS));
+            reader.shutdown();
+            Assert.assertTrue(reader.awaitTermination(10, TimeUnit.SECONDS));
+
+            Assert.assertEquals(Arrays.asList("6"), processor.sequenceNumbers);
+            Assert.assertEquals("6",
+                    new FileCheckpointStore(file).getCheckpoint(STREAM_ARN, "child"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testFailedShardEndCheckpointIsRetried() throws Exception {
+        final AtomicInteger shardEndFailures = new AtomicInteger();
+        CheckpointStore checkpoints = new InMemoryCheckpointStore() {
+            @Override
+            public void setCheckpoint(String streamArn, String shardId, String checkpoint) {
+                if (CheckpointStore.SHARD_END.equals(checkpoint)
+                        && shardEndFailures.getAndIncrement() < 2) {
+                    throw new IllegalStateException("checkpoint store unavailable");
+                }
+                super.setCheckpoint(streamArn, shardId, checkpoint);
+            }
+        };
+        CollectingProcessor processor = new CollectingProcessor(6);
+        StreamReader reader = new StreamReader(new FakeStreams(), STREAM_ARN,
+                processor, checkpoints, config());
+        reader.start();
+        Assert.assertTrue(processor.done.await(10, TimeUnit.SECONDS));
+        reader.shutdown();
+        Assert.assertTrue(reader.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(3, shardEndFailures.get());
+        Assert.assertEquals(CheckpointStore.SHARD_END,
+                checkpoints.getCheckpoint(STREAM_ARN, "parent"));
+    }
+
+    @Test
+    public void testPageIsRetriedAfterProcessorError() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        CollectingProcessor processor = new CollectingProcessor(6) {
+            @Override
+            public void processRecords(String shardId, List<Record> records) {
+                if (calls.getAndIncrement() == 0) {
+                    throw new AssertionError("processor failed");
+                }
+                super.processRecords(shardId, records);
+            }
+        };
+        StreamReader reader = new StreamReader(new FakeStreams(), STREAM_ARN,
+                processor, new InMemoryCheckpointStore(), config());
+        reader.start();
+        Assert.assertTrue(processor.done.await(10, TimeUnit.SECONDS));
+        reader.shutdown();
+        Assert.assertTrue(reader.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6"),
+                processor.sequenceNumbers);
+    }
+}
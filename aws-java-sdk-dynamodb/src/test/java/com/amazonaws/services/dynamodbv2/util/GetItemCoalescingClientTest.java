@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+
+public class GetItemCoalescingClientTest {
+
+    private static final String TABLE_NAME = "tableName";
+    private static final String HASH_ATTR = "hash";
+    private static final String MISSING = "missing";
+
+    private AmazonDynamoDB ddbMock;
+    private AtomicInteger batchCalls;
+    private AtomicInteger getCalls;
+    private AtomicBoolean leaveFirstKeyUnprocessed;
+
+    @Before
+    public void setup() {
+        ddbMock = createMock(AmazonDynamoDB.class);
+        batchCalls = new AtomicInteger();
+        getCalls = new AtomicInteger();
+        leaveFirstKeyUnprocessed = new AtomicBoolean();
+
+        expect(ddbMock.batchGetItem(isA(BatchGetItemRequest.class)))
+                .andAnswer(new IAnswer<BatchGetItemResult>() {
+                    @Override
+                    public BatchGetItemResult answer() {
+                        batchCalls.incrementAndGet();
+                        BatchGetItemRequest request = (BatchGetItemRequest) EasyMock.getCurrentArguments()[0];
+                        List<Map<String, AttributeValue>> keys =
+                                new ArrayList<Map<String, AttributeValue>>(
+                                        request.getRequestItems().get(TABLE_NAME).getKeys());
+                        Map<String, KeysAndAttributes> unprocessed =
+                                new HashMap<String, KeysAndAttributes>();
+                        if (leaveFirstKeyUnprocessed.getAndSet(false)) {
+                            unprocessed.put(TABLE_NAME, new KeysAndAttributes()
+                                    .withKeys(keys.remove(0)));
+                        }
+                        List<Map<String, AttributeValue>> items =
+                                new ArrayList<Map<String, AttributeValue>>();
+                        for (Map<String, AttributeValue> key : keys) {
+                            if (!MISSING.equals(key.get(HASH_ATTR).getS())) {
+                                items.add(item(key.get(HASH_ATTR).getS()));
+                            }
+                        }
+                        return new BatchGetItemResult()
+                                .withResponses(Collections.singletonMap(TABLE_NAME, items))
+                                .withUnprocessedKeys(unprocessed);
+                    }
+                })
+                .anyTimes();
+        expect(ddbMock.getItem(isA(GetItemRequest.class)))
+                .andAnswer(new IAnswer<GetItemResult>() {
+                    @Override
+                    public GetItemResult answer() {
+                        getCalls.incrementAndGet();
+                        GetItemRequest request = (GetItemRequest) EasyMock.getCurrentArguments()[0];
+                        return new GetItemResult().withItem(
+                                item(request.getKey().get(HASH_ATTR).getS()));
+                    }
+                })
+                .anyTimes();
+        replay(ddbMock);
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneBatch() throws Exception {
+        GetItemCoalescingClient client = new GetItemCoalescingClient(
+                ddbMock, 1, TimeUnit.SECONDS, GetItemCoalescingClient.MAX_BATCH_SIZE);
+        Map<String, Map<String, AttributeValue>> results = getConcurrently(client,
+                "a", "b", "a", MISSING);
+
+        Assert.assertEquals(1, batchCalls.get());
+        Assert.assertEquals(0, getCalls.get());
+        Assert.assertEquals("a", results.get("a").get("value").getS());
+        Assert.assertEquals("b", results.get("b").get("value").getS());
+        Assert.assertNull(results.get(MISSING));
+    }
+
+    @Test
+    public void testFullBatchIsSentWithoutWaitingForTheWindow() throws Exception {
+        GetItemCoalescingClient client = new GetItemCoalescingClient(
+                ddbMock, 1, TimeUnit.HOURS, 2);
+        Map<String, Map<String, AttributeValue>> results = getConcurrently(client,
+                "a", "b", "c", "d");
+
+        Assert.assertEquals(2, batchCalls.get());
+        Assert.assertEquals(4, results.size());
+    }
+
+    @Test
+    public void testUnprocessedKeysAreRetried() throws Exception {
+        leaveFirstKeyUnprocessed.set(true);
+        GetItemCoalescingClient client = new GetItemCoalescingClient(
+                ddbMock, 1, TimeUnit.SECONDS, GetItemCoalescingClient.MAX_BATCH_SIZE);
+        Map<String, Map<String, AttributeValue>> results = getConcurrently(client,
+                "a", "b");
+
+        Assert.assertEquals(2, batchCalls.get());
+        Assert.assertEquals("a", results.get("a").get("value").getS());
+        Assert.assertEquals("b", results.get("b").get("value").getS());
+    }
+
+    @Test
+    public void testProjectionExpressionIsNotCoalesced() {
+        GetItemCoalescingClient client = new GetItemCoalescingClient(ddbMock);
+        client.getItem(new GetItemRequest()
+                .withTableName(TABLE_NAME)
+                .withKey(key("a"))
+                .withProjectionExpression("#v")
+                .withExpressionAttributeNames(Collections.singletonMap("#v", "value")));
+
+        Assert.assertEquals(0, batchCalls.get());
+        Assert.assertEquals(1, getCalls.get());
+    }
+
+    @Test
+    public void testNumericKeysMatchNormalizedItems() throws Exception {
+        AmazonDynamoDB numericMock = createMock(AmazonDynamoDB.class);
+        expect(numericMock.batchGetItem(isA(BatchGetItemRequest.class)))
+                .andAnswer(new IAnswer<BatchGetItemResult>() {
+                    @Override
+                    public BatchGetItemResult answer() {
+                        BatchGetItemRequest request = (BatchGetItemRequest) EasyMock.getCurrentArguments()[0];
+                        Assert.assertEquals(1, request.getRequestItems().get(TABLE_NAME).getKeys().size());
+                        // DynamoDB returns numbers without trailing zeros
+                        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+                        item.put(HASH_ATTR, new AttributeValue().withN("1.5"));
+                        item.put("value", new AttributeValue("x"));
+                        return new BatchGetItemResult()
+                                .withResponses(Collections.singletonMap(TABLE_NAME,
+                                        Collections.singletonList(item)))
+                                .withUnprocessedKeys(Collections.<String, KeysAndAttributes>emptyMap());
+                    }
+                })
+                .once();
+        replay(numericMock);
+        final GetItemCoalescingClient client = new GetItemCoalescingClient(
+                numericMock, 1, TimeUnit.SECONDS, GetItemCoalescingClient.MAX_BATCH_SIZE);
+
+        final List<Map<String, AttributeValue>> results =
+                Collections.synchronizedList(new ArrayList<Map<String, AttributeValue>>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final String number : new String[] { "1.50", "1.5" }) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results.add(client.getItem(new GetItemRequest()
+                            .withTableName(TABLE_NAME)
+                            .withKey(Collections.singletonMap(HASH_ATTR,
+                                    new AttributeValue().withN(number)))).getItem());
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertNotNull(results.get(0));
+        Assert.assertNotNull(results.get(1));
+        Assert.assertNotSame(results.get(0), results.get(1));
+        results.get(0).remove("value");
+        Assert.assertEquals("x", results.get(1).get("value").getS());
+    }
+
+    private Map<String, Map<String, AttributeValue>> getConcurrently(
+            final GetItemCoalescingClient client, String... hashKeys) throws Exception {
+        final Map<String, Map<String, AttributeValue>> results =
+                Collections.synchronizedMap(new HashMap<String, Map<String, AttributeValue>>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final String hashKey : hashKeys) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    results.put(hashKey, client.getItem(new GetItemRequest()
+                            .withTableName(TABLE_NAME)
+                            .withKey(key(hashKey))).getItem());
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return results;
+    }
+
+    private static Map<String, AttributeValue> key(String hashKey) {
+        return Collections.singletonMap(HASH_ATTR, new AttributeValue(hashKey));
+    }
+
+    private static Map<String, AttributeValue> item(String hashKey) {
+        Map<String, AttributeValue> item = new HashMap<String, AttributeValue>(key(hashKey));
+        item.put("value", new AttributeValue(hashKey));
+        return item;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2016 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.xspec;
+
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.N;
+import static com.amazonaws.services.dynamodbv2.xspec.ExpressionSpecBuilder.S;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBDeleteExpression;
+
+public class PreparedExpressionSpecTest {
+
+    @Test
+    public void testBindReplacesValuesInOrder() {
+        UpdateItemExpressionSpec built = new ExpressionSpecBuilder()
+                .addUpdate(N("price").set(0))
+                .withCondition(S("status").eq("sample"))
+                .buildForUpdate();
+        PreparedExpressionSpec<UpdateItemExpressionSpec> prepared = new ExpressionSpecBuilder()
+                .addUpdate(N("price").set(0))
+                .withCondition(S("status").eq("sample"))
+                .prepareForUpdate();
+        Assert.assertEquals(Arrays.<Object>asList(0, "sample"), prepared.getSampleValues());
+
+        UpdateItemExpressionSpec bound = prepared.bind(42, "ACTIVE");
+        Assert.assertEquals(built.getUpdateExpression(), bound.getUpdateExpression());
+        Assert.assertEquals(built.getConditionExpression(), bound.getConditionExpression());
+        Assert.assertEquals(built.getNameMap(), bound.getNameMap());
+        Assert.assertEquals(42, bound.getValueMap().get(":0"));
+        Assert.assertEquals("ACTIVE", bound.getValueMap().get(":1"));
+        // The template itself is left untouched
+        Assert.assertEquals(0, prepared.bind(0, "sample").getValueMap().get(":0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBindRejectsWrongValueCount() {
+        new ExpressionSpecBuilder()
+                .withCondition(S("status").eq("sample"))
+                .prepareForDeleteItem()
+                .bind("a", "b");
+    }
+
+    @Test
+    public void testBoundSpecAppliesToMapperExpression() {
+        DynamoDBDeleteExpression expression = new DynamoDBDeleteExpression()
+                .withExpressionSpec(new ExpressionSpecBuilder()
+                        .withCondition(S("status").eq("sample"))
+                        .prepareForDeleteItem()
+                        .bind("ACTIVE"));
+        Assert.assertEquals("#0 = :0", expression.getConditionExpression());
+        Assert.assertEquals("status", expression.getExpressionAttributeNames().get("#0"));
+        Assert.assertEquals("ACTIVE", expression.getExpressionAttributeValues().get(":0").getS());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+/**
+ * Durable storage for the position a {@link StreamConsumer} has reached in each shard of a
+ * stream. Consumers sharing a stream through
+ * {@link StreamConsumerConfiguration#setWorker(int, int)} must share the store, since a shard
+ * is only started once its parents have been read to their end, possibly by another consumer.
+ * <p>
+ * Implementations must be thread safe; checkpoints of different shards are written
+ * concurrently.
+ *
+ * @see InMemoryCheckpointStore
+ */
+public interface CheckpointStore {
+
+    /**
+     * The checkpoint recorded once every record of a closed shard has been processed.
+     */
+    String SHARD_END = "SHARD_END";
+
+    /**
+     * Returns the sequence number of the last Kinesis record processed in the given shard,
+     * {@link #SHARD_END} if the shard has been read to its end, or null if no checkpoint has been
+     * recorded.
+     *
+     * @param streamName
+     *            The name of the stream.
+     * @param shardId
+     *            The id of the shard.
+     */
+    String getCheckpoint(String streamName, String shardId);
+
+    /**
+     * Records the sequence number of the last Kinesis record processed in the given shard, or
+     * {@link #SHARD_END}.
+     *
+     * @param streamName
+     *            The name of the stream.
+     * @param shardId
+     *            The id of the shard.
+     * @param checkpoint
+     *            The sequence number or {@link #SHARD_END}.
+     */
+    void setCheckpoint(String streamName, String shardId, String checkpoint);
+}
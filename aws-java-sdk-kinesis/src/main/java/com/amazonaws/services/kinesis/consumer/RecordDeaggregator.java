@@ -0,0 +1,240 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.Record;
+
+/**
+ * Splits Kinesis records in the aggregated record format of the Kinesis Producer Library, as
+ * written by {@link com.amazonaws.services.kinesis.producer.KinesisProducer}, back into the user
+ * records they hold: four magic bytes, an {@code AggregatedRecord} protocol buffer message, and
+ * the MD5 digest of that message.
+ * <p>
+ * A record without the magic bytes, with a digest that does not match, or that does not parse is
+ * returned as is, since it may be a plain record whose data happens to start like an aggregated
+ * one. Fields this class does not know are skipped.
+ */
+class RecordDeaggregator {
+
+    private static final byte[] MAGIC = { (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2 };
+
+    private static final int DIGEST_SIZE = 16;
+
+    // protocol buffer wire types
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AmazonClientException("Unable to get the MD5 message digest", e);
+            }
+        }
+    };
+
+    private RecordDeaggregator() {
+    }
+
+    /**
+     * Adds the user records held by the Kinesis record to the list.
+     */
+    static void deaggregate(Record record, List<UserRecord> out) {
+        ByteBuffer data = record.getData();
+        if (data == null || data.remaining() < MAGIC.length + DIGEST_SIZE || !hasMagic(data)) {
+            out.add(new UserRecord(record));
+            return;
+        }
+        int start = out.size();
+        try {
+            ByteBuffer message = data.duplicate();
+            message.position(data.position() + MAGIC.length);
+            message.limit(data.limit() - DIGEST_SIZE);
+            if (!digestMatches(message.duplicate(), data)) {
+                out.add(new UserRecord(record));
+                return;
+            }
+            parse(record, message, out);
+        } catch (InvalidMessageException e) {
+            truncate(out, start);
+            out.add(new UserRecord(record));
+        }
+    }
+
+    private static boolean hasMagic(ByteBuffer data) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data.get(data.position() + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean digestMatches(ByteBuffer message, ByteBuffer data) {
+        MessageDigest md5 = MD5.get();
+        md5.update(message);
+        byte[] actual = md5.digest();
+        byte[] expected = new byte[DIGEST_SIZE];
+        ByteBuffer digest = data.duplicate();
+        digest.position(data.limit() - DIGEST_SIZE);
+        digest.get(expected);
+        return Arrays.equals(actual, expected);
+    }
+
+    /**
+     * Parses the AggregatedRecord message. The key tables may come after the records that refer
+     * to them, so the records are resolved once the whole message has been read.
+     */
+    private static void parse(Record record, ByteBuffer message, List<UserRecord> out) {
+        List<String> partitionKeys = new ArrayList<String>();
+        List<String> explicitHashKeys = new ArrayList<String>();
+        List<long[]> keyIndexes = new ArrayList<long[]>();
+        List<ByteBuffer> datas = new ArrayList<ByteBuffer>();
+
+        while (message.hasRemaining()) {
+            long tag = readVarint(message);
+            int fieldNumber = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            if (fieldNumber == 1 && wireType == LENGTH_DELIMITED) {
+                partitionKeys.add(readString(message));
+            } else if (fieldNumber == 2 && wireType == LENGTH_DELIMITED) {
+                explicitHashKeys.add(readString(message));
+            } else if (fieldNumber == 3 && wireType == LENGTH_DELIMITED) {
+                ByteBuffer recordMessage = readBytes(message);
+                long[] indexes = { -1, -1 };
+                ByteBuffer recordData = null;
+                while (recordMessage.hasRemaining()) {
+                    long recordTag = readVarint(recordMessage);
+                    int recordFieldNumber = (int) (recordTag >>> 3);
+                    int recordWireType = (int) (recordTag & 7);
+                    if (recordFieldNumber == 1 && recordWireType == VARINT) {
+                        indexes[0] = readVarint(recordMessage);
+                    } else if (recordFieldNumber == 2 && recordWireType == VARINT) {
+                        indexes[1] = readVarint(recordMessage);
+                    } else if (recordFieldNumber == 3 && recordWireType == LENGTH_DELIMITED) {
+                        recordData = readBytes(recordMessage);
+                    } else {
+                        skip(recordMessage, recordWireType);
+                    }
+                }
+                if (indexes[0] < 0 || recordData == null) {
+                    throw new InvalidMessageException();
+                }
+                keyIndexes.add(indexes);
+                datas.add(recordData);
+            } else {
+                skip(message, wireType);
+            }
+        }
+
+        for (int i = 0; i < datas.size(); i++) {
+            long[] indexes = keyIndexes.get(i);
+            if (indexes[0] >= partitionKeys.size() || indexes[1] >= explicitHashKeys.size()) {
+                throw new InvalidMessageException();
+            }
+            String explicitHashKey = indexes[1] < 0 ? null : explicitHashKeys.get((int) indexes[1]);
+            out.add(new UserRecord(record, partitionKeys.get((int) indexes[0]), explicitHashKey,
+                    datas.get(i), i));
+        }
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!in.hasRemaining()) {
+                throw new InvalidMessageException();
+            }
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidMessageException();
+    }
+
+    /**
+     * @return a read-only view of the next length-delimited field, sharing the record's data
+     */
+    private static ByteBuffer readBytes(ByteBuffer in) {
+        long length = readVarint(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new InvalidMessageException();
+        }
+        ByteBuffer bytes = in.slice();
+        bytes.limit((int) length);
+        in.position(in.position() + (int) length);
+        return bytes.asReadOnlyBuffer();
+    }
+
+    private static String readString(ByteBuffer in) {
+        ByteBuffer bytes = readBytes(in);
+        byte[] array = new byte[bytes.remaining()];
+        bytes.get(array);
+        return new String(array, UTF8);
+    }
+
+    private static void skip(ByteBuffer in, int wireType) {
+        switch (wireType) {
+        case VARINT:
+            readVarint(in);
+            break;
+        case FIXED64:
+            advance(in, 8);
+            break;
+        case LENGTH_DELIMITED:
+            readBytes(in);
+            break;
+        case FIXED32:
+            advance(in, 4);
+            break;
+        default:
+            throw new InvalidMessageException();
+        }
+    }
+
+    private static void advance(ByteBuffer in, int count) {
+        if (in.remaining() < count) {
+            throw new InvalidMessageException();
+        }
+        in.position(in.position() + count);
+    }
+
+    private static void truncate(List<UserRecord> out, int size) {
+        while (out.size() > size) {
+            out.remove(out.size() - 1);
+        }
+    }
+
+    /** Thrown internally when a message does not parse. */
+    private static final class InvalidMessageException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
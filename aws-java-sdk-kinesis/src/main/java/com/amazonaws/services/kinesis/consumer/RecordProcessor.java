@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import java.util.List;
+
+/**
+ * Receives the records a {@link StreamConsumer} reads from a stream.
+ */
+public interface RecordProcessor {
+
+    /**
+     * Processes one page of records of a shard. Pages of a shard are delivered one at a time and
+     * in order; pages of different shards are delivered concurrently. Aggregated Kinesis records
+     * have been split back into the user records they hold.
+     * <p>
+     * The page is checkpointed once this method returns. If it throws, the same page is delivered
+     * again after a delay.
+     *
+     * @param shardId
+     *            The id of the shard the records were read from.
+     * @param records
+     *            The records, never empty.
+     */
+    void processRecords(String shardId, List<UserRecord> records);
+}
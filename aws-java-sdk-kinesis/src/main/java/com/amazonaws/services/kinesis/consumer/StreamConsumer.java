@@ -0,0 +1,508 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+/**
+ * Reads the shards of a Kinesis stream and hands their records to a {@link RecordProcessor},
+ * recording its progress in a {@link CheckpointStore}.
+ * <p>
+ * The consumer lists the shards of the stream periodically and whenever a shard has been read to
+ * its end. A shard is started once its parents, the shard it was split from or the two shards it
+ * was merged from, have been read to their end or are no longer in the stream, so the records of
+ * a partition key are always delivered in the order they were written. Independent shards are
+ * read and processed in parallel on a fixed number of threads. While a page of records is being
+ * processed, the next page of the same shard is read ahead. Aggregated records, such as those
+ * written by {@link com.amazonaws.services.kinesis.producer.KinesisProducer}, are split back into
+ * their user records.
+ * <p>
+ * A shard that is caught up is polled with a growing delay, up to a maximum, until records arrive
+ * again. A shard whose reads are throttled is read with a delay that doubles on each throttled
+ * read and halves on each successful one. Expired shard iterators are renewed after the last
+ * record read.
+ * <p>
+ * After a restart, each shard resumes after its last checkpoint, so a page whose processing was
+ * interrupted is delivered again: processing must be idempotent.
+ * <p>
+ * The consumer only uses the {@link AmazonKinesis} interface, so it can be run against an
+ * in-memory stand-in of the service, for example a subclass of
+ * {@link com.amazonaws.services.kinesis.AbstractAmazonKinesis}.
+ *
+ * <pre class="brush: java">
+ * StreamConsumer consumer = new StreamConsumer(kinesisClient, &quot;my-stream&quot;, processor,
+ *         checkpointStore, new StreamConsumerConfiguration());
+ * consumer.start();
+ * ...
+ * consumer.shutdown();
+ * consumer.awaitTermination(1, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class StreamConsumer {
+
+    private static final Log log = LogFactory.getLog(StreamConsumer.class);
+
+    private static final AtomicInteger consumerCount = new AtomicInteger();
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final RecordProcessor processor;
+    private final CheckpointStore checkpoints;
+    private final StreamConsumerConfiguration config;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /** The shards being read, by shard id. Guarded by this. */
+    private final Map<String, ShardWorker> workers = new HashMap<String, ShardWorker>();
+
+    /** The shards read to their end, by this consumer or another. Guarded by this. */
+    private final Set<String> completedShards = new HashSet<String>();
+
+    /** Whether the shards have been listed once. Guarded by this. */
+    private boolean listedOnce;
+
+    private boolean started;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new consumer; call {@link #start()} to begin reading.
+     *
+     * @param kinesis
+     *            The client used to read the stream.
+     * @param streamName
+     *            The name of the stream.
+     * @param processor
+     *            The callback receiving the records.
+     * @param checkpoints
+     *            The store recording the progress in each shard.
+     * @param config
+     *            The consumer configuration.
+     */
+    public StreamConsumer(AmazonKinesis kinesis, String streamName, RecordProcessor processor,
+            CheckpointStore checkpoints, StreamConsumerConfiguration config) {
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.processor = processor;
+        this.checkpoints = checkpoints;
+        this.config = new StreamConsumerConfiguration(config);
+
+        final int consumerId = consumerCount.incrementAndGet();
+        this.executor = new ScheduledThreadPoolExecutor(this.config.getThreadCount(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setName("StreamConsumer-" + consumerId + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Starts listing and reading the shards of the stream in the background.
+     *
+     * @throws IllegalStateException
+     *             If the consumer has already been started.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The consumer has already been started");
+        }
+        started = true;
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                syncShards();
+            }
+        }, 0, config.getShardSyncIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading. Pages being processed complete and are checkpointed; pages read ahead but not
+     * yet processed are discarded and read again on the next start.
+     */
+    public void shutdown() {
+        shutdown = true;
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the processing in progress to complete after {@link #shutdown()}.
+     *
+     * @return true if the consumer terminated, false if the timeout elapsed.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns the ids of the shards currently being read.
+     */
+    public synchronized Set<String> getActiveShardIds() {
+        return new HashSet<String>(workers.keySet());
+    }
+
+    /**
+     * Lists the shards of the stream and starts those that are assigned to this consumer and
+     * ready: not yet read to their end, and whose parents are no longer in the stream or have been
+     * read to their end.
+     */
+    private void syncShards() {
+        if (shutdown) {
+            return;
+        }
+        List<Shard> shards;
+        try {
+            shards = listShards();
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of " + streamName, e);
+            return;
+        }
+
+        synchronized (this) {
+            Set<String> shardIds = new HashSet<String>();
+            for (Shard shard : shards) {
+                String shardId = shard.getShardId();
+                shardIds.add(shardId);
+                if (!completedShards.contains(shardId) && !workers.containsKey(shardId)
+                        && CheckpointStore.SHARD_END.equals(checkpoints.getCheckpoint(streamName, shardId))) {
+                    completedShards.add(shardId);
+                }
+            }
+
+            for (Shard shard : shards) {
+                String shardId = shard.getShardId();
+                if (!isAssigned(shardId) || completedShards.contains(shardId) || workers.containsKey(shardId)) {
+                    continue;
+                }
+                if (isPending(shard.getParentShardId(), shardIds)
+                        || isPending(shard.getAdjacentParentShardId(), shardIds)) {
+                    continue;
+                }
+                ShardWorker worker = new ShardWorker(shardId, checkpoints.getCheckpoint(streamName, shardId),
+                        listedOnce ? ShardIteratorType.TRIM_HORIZON : config.getInitialPosition());
+                workers.put(shardId, worker);
+                worker.schedule();
+            }
+            listedOnce = true;
+        }
+    }
+
+    /**
+     * @return whether the parent shard is still in the stream and has not been read to its end.
+     *         Must be called holding the consumer's monitor.
+     */
+    private boolean isPending(String parentId, Set<String> shardIds) {
+        return parentId != null && shardIds.contains(parentId) && !completedShards.contains(parentId);
+    }
+
+    private boolean isAssigned(String shardId) {
+        return config.getWorkerCount() == 1
+                || (shardId.hashCode() & Integer.MAX_VALUE) % config.getWorkerCount() == config.getWorkerIndex();
+    }
+
+    private List<Shard> listShards() {
+        List<Shard> shards = new ArrayList<Shard>();
+        String exclusiveStartShardId = null;
+        boolean hasMoreShards;
+        do {
+            StreamDescription description = kinesis.describeStream(
+                    new DescribeStreamRequest().withStreamName(streamName).withExclusiveStartShardId(
+                            exclusiveStartShardId)).getStreamDescription();
+            shards.addAll(description.getShards());
+            if (!description.getShards().isEmpty()) {
+                exclusiveStartShardId = shards.get(shards.size() - 1).getShardId();
+            }
+            hasMoreShards = Boolean.TRUE.equals(description.getHasMoreShards())
+                    && !description.getShards().isEmpty();
+        } while (hasMoreShards);
+        return shards;
+    }
+
+    private void shardCompleted(String shardId) {
+        synchronized (this) {
+            workers.remove(shardId);
+            completedShards.add(shardId);
+        }
+        // Start the children without waiting for the next periodic listing
+        submit(new Runnable() {
+            public void run() {
+                syncShards();
+            }
+        }, 0);
+    }
+
+    private void submit(Runnable task, long delayMillis) {
+        if (shutdown) {
+            return;
+        }
+        try {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shut down concurrently
+        }
+    }
+
+    private long nextIdleDelay(long delay) {
+        return delay == 0 ? config.getMinIdleDelayMillis() : Math.min(delay * 2, config.getMaxIdleDelayMillis());
+    }
+
+    private long nextThrottleDelay(long delay) {
+        return delay < config.getMinThrottleDelayMillis() ? config.getMinThrottleDelayMillis() : Math.min(
+                delay * 2, config.getMaxThrottleDelayMillis());
+    }
+
+    /**
+     * Reads one shard, running at most one GetRecords call and one processing call at a time, the
+     * former ahead of the latter. All state is guarded by the worker's monitor; the calls
+     * themselves run outside it.
+     */
+    private final class ShardWorker {
+
+        private final String shardId;
+
+        /** Where to start if there is no record to resume after. */
+        private final ShardIteratorType initialPosition;
+
+        /** The sequence number to resume after when the iterator is renewed. */
+        private String resumeAfter;
+
+        /** The iterator for the next read, or null if it must be obtained. Only used by the read in progress. */
+        private String iterator;
+
+        /** True once the shard has been closed and all its records read. */
+        private boolean exhausted;
+
+        /** Pages read but not yet processed, oldest first, with the sequence number to checkpoint. */
+        private final LinkedList<Page> pages = new LinkedList<Page>();
+
+        private boolean reading;
+        private boolean processing;
+        private boolean completed;
+        private long idleDelay;
+        private long throttleDelay;
+        private long readDelay;
+        private long processDelay;
+        private long endDelay;
+
+        private ShardWorker(String shardId, String checkpoint, ShardIteratorType initialPosition) {
+            this.shardId = shardId;
+            this.resumeAfter = checkpoint;
+            this.initialPosition = initialPosition;
+        }
+
+        /**
+         * Starts the next read and the next processing call if they can run, or reports the shard
+         * as completed.
+         */
+        private void schedule() {
+            boolean shardEnded = false;
+            synchronized (this) {
+                if (!processing && !pages.isEmpty()) {
+                    processing = true;
+                    final Page page = pages.removeFirst();
+                    submit(new Runnable() {
+                        public void run() {
+                            process(page);
+                        }
+                    }, processDelay);
+                }
+                int ahead = pages.size() + (processing ? 1 : 0);
+                if (!reading && !exhausted && ahead <= config.getPrefetchPages()) {
+                    reading = true;
+                    submit(new Runnable() {
+                        public void run() {
+                            read();
+                        }
+                    }, readDelay);
+                }
+                if (exhausted && !reading && !processing && pages.isEmpty() && !completed) {
+                    completed = true;
+                    shardEnded = true;
+                }
+            }
+            if (shardEnded) {
+                end();
+            }
+        }
+
+        /**
+         * Records that the shard has been read to its end, retrying with a growing delay until the
+         * checkpoint is stored, then reports the shard as completed so that its children are
+         * started.
+         */
+        private void end() {
+            boolean checkpointed = false;
+            try {
+                checkpoints.setCheckpoint(streamName, shardId, CheckpointStore.SHARD_END);
+                checkpointed = true;
+            } catch (RuntimeException e) {
+                log.warn("Unable to checkpoint the end of shard " + shardId + "; retrying", e);
+            } finally {
+                if (!checkpointed) {
+                    long delay;
+                    synchronized (this) {
+                        endDelay = nextIdleDelay(endDelay);
+                        delay = endDelay;
+                    }
+                    submit(new Runnable() {
+                        public void run() {
+                            end();
+                        }
+                    }, delay);
+                }
+            }
+            if (checkpointed) {
+                shardCompleted(shardId);
+            }
+        }
+
+        private void read() {
+            try {
+                String shardIterator;
+                String after;
+                synchronized (this) {
+                    shardIterator = iterator;
+                    after = resumeAfter;
+                }
+                if (shardIterator == null) {
+                    shardIterator = getShardIterator(after);
+                }
+                GetRecordsResult result = kinesis.getRecords(new GetRecordsRequest().withShardIterator(
+                        shardIterator).withLimit(config.getMaxRecordsPerRead()));
+                List<Record> records = result.getRecords();
+                List<UserRecord> userRecords = new ArrayList<UserRecord>(records.size());
+                for (Record record : records) {
+                    RecordDeaggregator.deaggregate(record, userRecords);
+                }
+                synchronized (this) {
+                    iterator = result.getNextShardIterator();
+                    exhausted = (iterator == null);
+                    throttleDelay /= 2;
+                    if (!records.isEmpty()) {
+                        resumeAfter = records.get(records.size() - 1).getSequenceNumber();
+                        if (!userRecords.isEmpty()) {
+                            pages.addLast(new Page(userRecords, resumeAfter));
+                        }
+                        idleDelay = 0;
+                    } else if (result.getMillisBehindLatest() != null && result.getMillisBehindLatest() > 0) {
+                        // An empty page before the end of the shard, not a caught up shard
+                        idleDelay = 0;
+                    } else {
+                        idleDelay = nextIdleDelay(idleDelay);
+                    }
+                    readDelay = Math.max(idleDelay, throttleDelay);
+                }
+            } catch (ExpiredIteratorException e) {
+                synchronized (this) {
+                    iterator = null;
+                }
+            } catch (ProvisionedThroughputExceededException e) {
+                synchronized (this) {
+                    throttleDelay = nextThrottleDelay(throttleDelay);
+                    readDelay = throttleDelay;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Reads of shard " + shardId + " are throttled; waiting " + readDelay + " ms");
+                }
+            } catch (RuntimeException e) {
+                log.warn("Unable to read shard " + shardId + " of " + streamName, e);
+                synchronized (this) {
+                    idleDelay = nextIdleDelay(idleDelay);
+                    readDelay = Math.max(idleDelay, throttleDelay);
+                }
+            } finally {
+                synchronized (this) {
+                    reading = false;
+                }
+                schedule();
+            }
+        }
+
+        private String getShardIterator(String after) {
+            GetShardIteratorRequest request = new GetShardIteratorRequest().withStreamName(streamName)
+                    .withShardId(shardId);
+            if (after != null) {
+                request.withShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER).withStartingSequenceNumber(
+                        after);
+            } else {
+                request.withShardIteratorType(initialPosition);
+            }
+            return kinesis.getShardIterator(request).getShardIterator();
+        }
+
+        private void process(Page page) {
+            boolean processed = false;
+            try {
+                processor.processRecords(shardId, page.records);
+                checkpoints.setCheckpoint(streamName, shardId, page.checkpoint);
+                processed = true;
+            } catch (RuntimeException e) {
+                log.warn("Processing records of shard " + shardId + " failed; retrying", e);
+            } finally {
+                // also reached when the processor throws an error
+                synchronized (this) {
+                    if (processed) {
+                        processDelay = 0;
+                    } else {
+                        pages.addFirst(page);
+                        processDelay = nextIdleDelay(processDelay);
+                    }
+                    processing = false;
+                }
+                schedule();
+            }
+        }
+    }
+
+    private static final class Page {
+
+        private final List<UserRecord> records;
+
+        /** The sequence number of the last Kinesis record of the page. */
+        private final String checkpoint;
+
+        private Page(List<UserRecord> records, String checkpoint) {
+            this.records = records;
+            this.checkpoint = checkpoint;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Settings of a {@link StreamConsumer}. The configuration is read when the consumer is created;
+ * changing it afterwards has no effect on that consumer.
+ */
+public class StreamConsumerConfiguration {
+
+    /** The most records a GetRecords call returns. */
+    public static final int SERVICE_MAX_RECORDS_PER_READ = 10000;
+
+    /** 4 threads */
+    public static final int THREAD_COUNT_DEFAULT = 4;
+
+    /** 1 page */
+    public static final int PREFETCH_PAGES_DEFAULT = 1;
+
+    /** 10,000 records, the service limit */
+    public static final int MAX_RECORDS_PER_READ_DEFAULT = SERVICE_MAX_RECORDS_PER_READ;
+
+    /** 250 milliseconds */
+    public static final long MIN_IDLE_DELAY_MILLIS_DEFAULT = 250;
+
+    /** 5 seconds */
+    public static final long MAX_IDLE_DELAY_MILLIS_DEFAULT = 5 * 1000;
+
+    /** 200 milliseconds, the interval at which a shard can be read five times a second */
+    public static final long MIN_THROTTLE_DELAY_MILLIS_DEFAULT = 200;
+
+    /** 10 seconds */
+    public static final long MAX_THROTTLE_DELAY_MILLIS_DEFAULT = 10 * 1000;
+
+    /** 1 minute */
+    public static final long SHARD_SYNC_INTERVAL_MILLIS_DEFAULT = 60 * 1000;
+
+    /** {@link ShardIteratorType#TRIM_HORIZON} */
+    public static final ShardIteratorType INITIAL_POSITION_DEFAULT = ShardIteratorType.TRIM_HORIZON;
+
+    private int threadCount = THREAD_COUNT_DEFAULT;
+    private int prefetchPages = PREFETCH_PAGES_DEFAULT;
+    private int maxRecordsPerRead = MAX_RECORDS_PER_READ_DEFAULT;
+    private long minIdleDelayMillis = MIN_IDLE_DELAY_MILLIS_DEFAULT;
+    private long maxIdleDelayMillis = MAX_IDLE_DELAY_MILLIS_DEFAULT;
+    private long minThrottleDelayMillis = MIN_THROTTLE_DELAY_MILLIS_DEFAULT;
+    private long maxThrottleDelayMillis = MAX_THROTTLE_DELAY_MILLIS_DEFAULT;
+    private long shardSyncIntervalMillis = SHARD_SYNC_INTERVAL_MILLIS_DEFAULT;
+    private ShardIteratorType initialPosition = INITIAL_POSITION_DEFAULT;
+    private int workerIndex = 0;
+    private int workerCount = 1;
+
+    public StreamConsumerConfiguration() {
+    }
+
+    /** copy constructor */
+    public StreamConsumerConfiguration(StreamConsumerConfiguration other) {
+        threadCount = other.threadCount;
+        prefetchPages = other.prefetchPages;
+        maxRecordsPerRead = other.maxRecordsPerRead;
+        minIdleDelayMillis = other.minIdleDelayMillis;
+        maxIdleDelayMillis = other.maxIdleDelayMillis;
+        minThrottleDelayMillis = other.minThrottleDelayMillis;
+        maxThrottleDelayMillis = other.maxThrottleDelayMillis;
+        shardSyncIntervalMillis = other.shardSyncIntervalMillis;
+        initialPosition = other.initialPosition;
+        workerIndex = other.workerIndex;
+        workerCount = other.workerCount;
+    }
+
+    /**
+     * The number of threads reading and processing shards. Shards are processed in parallel up to
+     * this number; more shards share the threads.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * The number of threads reading and processing shards.
+     *
+     * @see #getThreadCount()
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * The number of threads reading and processing shards.
+     *
+     * @see #getThreadCount()
+     */
+    public StreamConsumerConfiguration withThreadCount(int threadCount) {
+        setThreadCount(threadCount);
+        return this;
+    }
+
+    /**
+     * The number of pages of records read from a shard ahead of the page being processed, so that
+     * the next GetRecords call overlaps processing. Zero reads the next page only once the current
+     * one has been processed.
+     */
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    /**
+     * The number of pages of records read from a shard ahead of the page being processed.
+     *
+     * @see #getPrefetchPages()
+     */
+    public void setPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException("prefetchPages cannot be negative");
+        }
+        this.prefetchPages = prefetchPages;
+    }
+
+    /**
+     * The number of pages of records read from a shard ahead of the page being processed.
+     *
+     * @see #getPrefetchPages()
+     */
+    public StreamConsumerConfiguration withPrefetchPages(int prefetchPages) {
+        setPrefetchPages(prefetchPages);
+        return this;
+    }
+
+    /**
+     * The most Kinesis records a GetRecords call returns. Aggregated records hold more user
+     * records each, so a page may hold more user records than this.
+     */
+    public int getMaxRecordsPerRead() {
+        return maxRecordsPerRead;
+    }
+
+    /**
+     * The most Kinesis records a GetRecords call returns.
+     *
+     * @see #getMaxRecordsPerRead()
+     */
+    public void setMaxRecordsPerRead(int maxRecordsPerRead) {
+        if (maxRecordsPerRead < 1 || maxRecordsPerRead > SERVICE_MAX_RECORDS_PER_READ) {
+            throw new IllegalArgumentException("maxRecordsPerRead must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_READ);
+        }
+        this.maxRecordsPerRead = maxRecordsPerRead;
+    }
+
+    /**
+     * The most Kinesis records a GetRecords call returns.
+     *
+     * @see #getMaxRecordsPerRead()
+     */
+    public StreamConsumerConfiguration withMaxRecordsPerRead(int maxRecordsPerRead) {
+        setMaxRecordsPerRead(maxRecordsPerRead);
+        return this;
+    }
+
+    /**
+     * The delay after the first read of a shard that finds it caught up. The delay doubles with
+     * each such read, up to the maximum idle delay, and is reset once records arrive again.
+     */
+    public long getMinIdleDelayMillis() {
+        return minIdleDelayMillis;
+    }
+
+    /**
+     * The delay after the first read of a shard that finds it caught up.
+     *
+     * @see #getMinIdleDelayMillis()
+     */
+    public void setMinIdleDelayMillis(long minIdleDelayMillis) {
+        if (minIdleDelayMillis < 1) {
+            throw new IllegalArgumentException("minIdleDelayMillis must be at least 1");
+        }
+        this.minIdleDelayMillis = minIdleDelayMillis;
+    }
+
+    /**
+     * The delay after the first read of a shard that finds it caught up.
+     *
+     * @see #getMinIdleDelayMillis()
+     */
+    public StreamConsumerConfiguration withMinIdleDelayMillis(long minIdleDelayMillis) {
+        setMinIdleDelayMillis(minIdleDelayMillis);
+        return this;
+    }
+
+    /**
+     * The longest delay between two reads of a caught up shard, which bounds the latency of the
+     * first record written to an idle shard.
+     */
+    public long getMaxIdleDelayMillis() {
+        return maxIdleDelayMillis;
+    }
+
+    /**
+     * The longest delay between two reads of a caught up shard.
+     *
+     * @see #getMaxIdleDelayMillis()
+     */
+    public void setMaxIdleDelayMillis(long maxIdleDelayMillis) {
+        if (maxIdleDelayMillis < 1) {
+            throw new IllegalArgumentException("maxIdleDelayMillis must be at least 1");
+        }
+        this.maxIdleDelayMillis = maxIdleDelayMillis;
+    }
+
+    /**
+     * The longest delay between two reads of a caught up shard.
+     *
+     * @see #getMaxIdleDelayMillis()
+     */
+    public StreamConsumerConfiguration withMaxIdleDelayMillis(long maxIdleDelayMillis) {
+        setMaxIdleDelayMillis(maxIdleDelayMillis);
+        return this;
+    }
+
+    /**
+     * The delay between reads of a shard after a read is throttled with a
+     * ProvisionedThroughputExceededException. The delay doubles with each throttled read, up to
+     * the maximum throttle delay, and halves with each successful one, so that the read rate
+     * settles just under what the shard and the other consumers of the stream leave available.
+     */
+    public long getMinThrottleDelayMillis() {
+        return minThrottleDelayMillis;
+    }
+
+    /**
+     * The delay between reads of a shard after a read is throttled.
+     *
+     * @see #getMinThrottleDelayMillis()
+     */
+    public void setMinThrottleDelayMillis(long minThrottleDelayMillis) {
+        if (minThrottleDelayMillis < 1) {
+            throw new IllegalArgumentException("minThrottleDelayMillis must be at least 1");
+        }
+        this.minThrottleDelayMillis = minThrottleDelayMillis;
+    }
+
+    /**
+     * The delay between reads of a shard after a read is throttled.
+     *
+     * @see #getMinThrottleDelayMillis()
+     */
+    public StreamConsumerConfiguration withMinThrottleDelayMillis(long minThrottleDelayMillis) {
+        setMinThrottleDelayMillis(minThrottleDelayMillis);
+        return this;
+    }
+
+    /**
+     * The longest delay between reads of a shard that keep being throttled.
+     */
+    public long getMaxThrottleDelayMillis() {
+        return maxThrottleDelayMillis;
+    }
+
+    /**
+     * The longest delay between reads of a shard that keep being throttled.
+     */
+    public void setMaxThrottleDelayMillis(long maxThrottleDelayMillis) {
+        if (maxThrottleDelayMillis < 1) {
+            throw new IllegalArgumentException("maxThrottleDelayMillis must be at least 1");
+        }
+        this.maxThrottleDelayMillis = maxThrottleDelayMillis;
+    }
+
+    /**
+     * The longest delay between reads of a shard that keep being throttled.
+     */
+    public StreamConsumerConfiguration withMaxThrottleDelayMillis(long maxThrottleDelayMillis) {
+        setMaxThrottleDelayMillis(maxThrottleDelayMillis);
+        return this;
+    }
+
+    /**
+     * The interval between two listings of the shards of the stream, which picks up the shards
+     * created by resharding. The shards are also listed whenever a shard has been read to its
+     * end.
+     */
+    public long getShardSyncIntervalMillis() {
+        return shardSyncIntervalMillis;
+    }
+
+    /**
+     * The interval between two listings of the shards of the stream.
+     *
+     * @see #getShardSyncIntervalMillis()
+     */
+    public void setShardSyncIntervalMillis(long shardSyncIntervalMillis) {
+        if (shardSyncIntervalMillis < 1) {
+            throw new IllegalArgumentException("shardSyncIntervalMillis must be at least 1");
+        }
+        this.shardSyncIntervalMillis = shardSyncIntervalMillis;
+    }
+
+    /**
+     * The interval between two listings of the shards of the stream.
+     *
+     * @see #getShardSyncIntervalMillis()
+     */
+    public StreamConsumerConfiguration withShardSyncIntervalMillis(long shardSyncIntervalMillis) {
+        setShardSyncIntervalMillis(shardSyncIntervalMillis);
+        return this;
+    }
+
+    /**
+     * Where to start reading the shards found by the first listing that have no checkpoint. Shards
+     * created later are always read from their start. Either
+     * {@link ShardIteratorType#TRIM_HORIZON} or {@link ShardIteratorType#LATEST}.
+     */
+    public ShardIteratorType getInitialPosition() {
+        return initialPosition;
+    }
+
+    /**
+     * Where to start reading the shards found by the first listing that have no checkpoint.
+     *
+     * @see #getInitialPosition()
+     */
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        if (initialPosition != ShardIteratorType.TRIM_HORIZON && initialPosition != ShardIteratorType.LATEST) {
+            throw new IllegalArgumentException("initialPosition must be TRIM_HORIZON or LATEST");
+        }
+        this.initialPosition = initialPosition;
+    }
+
+    /**
+     * Where to start reading the shards found by the first listing that have no checkpoint.
+     *
+     * @see #getInitialPosition()
+     */
+    public StreamConsumerConfiguration withInitialPosition(ShardIteratorType initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    /**
+     * The index of this consumer among the {@link #getWorkerCount()} consumers sharing the stream,
+     * from zero.
+     */
+    public int getWorkerIndex() {
+        return workerIndex;
+    }
+
+    /**
+     * The number of consumers sharing the stream. Each shard is read by exactly one of them,
+     * chosen by a hash of the shard id, without any coordination other than the shared
+     * {@link CheckpointStore}. The assignment is static: a consumer that stops leaves its shards
+     * unread until it is restarted.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Makes this consumer one of several sharing the stream.
+     *
+     * @param workerIndex
+     *            The index of this consumer, from zero.
+     * @param workerCount
+     *            The number of consumers sharing the stream.
+     * @see #getWorkerCount()
+     */
+    public void setWorker(int workerIndex, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1");
+        }
+        if (workerIndex < 0 || workerIndex >= workerCount) {
+            throw new IllegalArgumentException("workerIndex must be between 0 and workerCount - 1");
+        }
+        this.workerIndex = workerIndex;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Makes this consumer one of several sharing the stream.
+     *
+     * @see #setWorker(int, int)
+     */
+    public StreamConsumerConfiguration withWorker(int workerIndex, int workerCount) {
+        setWorker(workerIndex, workerCount);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamConsumerConfiguration [threadCount=" + threadCount + ", prefetchPages=" + prefetchPages
+                + ", maxRecordsPerRead=" + maxRecordsPerRead + ", minIdleDelayMillis=" + minIdleDelayMillis
+                + ", maxIdleDelayMillis=" + maxIdleDelayMillis + ", minThrottleDelayMillis="
+                + minThrottleDelayMillis + ", maxThrottleDelayMillis=" + maxThrottleDelayMillis
+                + ", shardSyncIntervalMillis=" + shardSyncIntervalMillis + ", initialPosition="
+                + initialPosition + ", workerIndex=" + workerIndex + ", workerCount=" + workerCount + "]";
+    }
+}
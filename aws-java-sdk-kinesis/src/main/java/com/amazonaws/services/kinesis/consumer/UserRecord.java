@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import java.nio.ByteBuffer;
+
+import com.amazonaws.services.kinesis.model.Record;
+
+/**
+ * A record read by a {@link StreamConsumer}: either a Kinesis record as is, or one of the user
+ * records packed into an aggregated Kinesis record. The user records of an aggregated record
+ * share its sequence number and are told apart by their sub-sequence number.
+ */
+public class UserRecord extends Record {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long subSequenceNumber;
+    private final String explicitHashKey;
+    private final boolean aggregated;
+
+    /**
+     * Wraps a Kinesis record that is not aggregated.
+     */
+    UserRecord(Record record) {
+        this(record, record.getPartitionKey(), null, record.getData(), -1, false);
+    }
+
+    /**
+     * Creates one of the user records of an aggregated Kinesis record.
+     */
+    UserRecord(Record record, String partitionKey, String explicitHashKey, ByteBuffer data,
+            long subSequenceNumber) {
+        this(record, partitionKey, explicitHashKey, data, subSequenceNumber, true);
+    }
+
+    private UserRecord(Record record, String partitionKey, String explicitHashKey, ByteBuffer data,
+            long subSequenceNumber, boolean aggregated) {
+        setSequenceNumber(record.getSequenceNumber());
+        setApproximateArrivalTimestamp(record.getApproximateArrivalTimestamp());
+        setPartitionKey(partitionKey);
+        setData(data);
+        this.explicitHashKey = explicitHashKey;
+        this.subSequenceNumber = subSequenceNumber;
+        this.aggregated = aggregated;
+    }
+
+    /**
+     * The position of the record within its aggregated Kinesis record, or -1 if it was not
+     * aggregated.
+     */
+    public long getSubSequenceNumber() {
+        return subSequenceNumber;
+    }
+
+    /**
+     * The explicit hash key the record was put with, if it was aggregated with one; null
+     * otherwise.
+     */
+    public String getExplicitHashKey() {
+        return explicitHashKey;
+    }
+
+    /**
+     * Whether the record was packed into an aggregated Kinesis record.
+     */
+    public boolean isAggregated() {
+        return aggregated;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof UserRecord) || !super.equals(obj)) {
+            return false;
+        }
+        UserRecord other = (UserRecord) obj;
+        return subSequenceNumber == other.subSequenceNumber && aggregated == other.aggregated
+                && (explicitHashKey == null ? other.explicitHashKey == null : explicitHashKey
+                        .equals(other.explicitHashKey));
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = super.hashCode();
+        hashCode = 31 * hashCode + (int) (subSequenceNumber ^ (subSequenceNumber >>> 32));
+        return 31 * hashCode + (explicitHashKey == null ? 0 : explicitHashKey.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return "UserRecord [sequenceNumber=" + getSequenceNumber() + ", subSequenceNumber="
+                + subSequenceNumber + ", partitionKey=" + getPartitionKey() + ", explicitHashKey="
+                + explicitHashKey + ", aggregated=" + aggregated + "]";
+    }
+}
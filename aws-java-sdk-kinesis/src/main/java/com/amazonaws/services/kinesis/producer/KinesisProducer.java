@@ -0,0 +1,619 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+
+/**
+ * Puts records to a Kinesis stream in batches, packing small records together.
+ * <p>
+ * Records added to the producer are grouped by the shard their hash key falls on, as predicted
+ * from the hash key ranges listed by DescribeStream. Records bound to the same shard are
+ * aggregated into Kinesis records of up to {@code maxAggregatedRecordBytes}, in the format of
+ * the Kinesis Producer Library, so that many small records count as one against the 1,000
+ * records per second limit of a shard. Kinesis records are then sent in PutRecords calls as soon
+ * as a call is full by count or size, or once its oldest record has waited
+ * {@code recordMaxBufferedTimeMillis}. Only the entries a call rejects are sent again, after a
+ * jittered exponential backoff.
+ * <p>
+ * Adding a record returns at once with a future of where it was put, and blocks only while the
+ * producer holds {@code maxOutstandingRecords} records. A record's data buffer must not be
+ * changed until its future completes.
+ * <p>
+ * Instances of {@code KinesisProducer} are thread-safe.
+ */
+public class KinesisProducer {
+
+    private static final Log log = LogFactory.getLog(KinesisProducer.class);
+
+    private static final int MAX_PARTITION_KEY_LENGTH = 256;
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 10 * 1000;
+
+    private static final AtomicInteger producerCount = new AtomicInteger();
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final KinesisProducerConfiguration config;
+    private final ShardMap shardMap;
+    private final long maxBufferedNanos;
+
+    /** The record being aggregated for each predicted shard. */
+    private final ConcurrentMap<String, ShardBuffer> shardBuffers = new ConcurrentHashMap<String, ShardBuffer>();
+
+    /** Guards the PutRecords call being filled. */
+    private final Object batchLock = new Object();
+    private List<KinesisRecord> batch = new ArrayList<KinesisRecord>();
+    private long batchBytes;
+    private long batchOldestNanos;
+
+    private final Semaphore outstandingPermits;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /** Runs the flush timer and retries. */
+    private final ScheduledThreadPoolExecutor scheduler;
+    /** Runs the shard map refreshes, one at a time. */
+    private final ScheduledThreadPoolExecutor refresher;
+    /** Makes the PutRecords calls. */
+    private final ThreadPoolExecutor senders;
+
+    /** Whether a requested shard map refresh is queued and not started yet. */
+    private final AtomicBoolean shardMapRefreshPending = new AtomicBoolean();
+    private final Random random = new Random();
+
+    private volatile boolean shutdown;
+    private final AtomicBoolean terminating = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final long createdNanos = System.nanoTime();
+    private final AtomicLong userRecordsPut = new AtomicLong();
+    private final AtomicLong kinesisRecordsPut = new AtomicLong();
+    private final AtomicLong bytesPut = new AtomicLong();
+    private final AtomicLong putRecordsRequests = new AtomicLong();
+    private final AtomicLong retriedKinesisRecords = new AtomicLong();
+    private final AtomicLong failedUserRecords = new AtomicLong();
+    private final AtomicLong totalUserRecordLatencyNanos = new AtomicLong();
+    private final AtomicLong totalRequestLatencyNanos = new AtomicLong();
+
+    public KinesisProducer(AmazonKinesis kinesis, String streamName) {
+        this(kinesis, streamName, new KinesisProducerConfiguration());
+    }
+
+    public KinesisProducer(AmazonKinesis kinesis, String streamName, KinesisProducerConfiguration config) {
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.config = new KinesisProducerConfiguration(config);
+        this.shardMap = new ShardMap(kinesis, streamName);
+        this.maxBufferedNanos = TimeUnit.MILLISECONDS.toNanos(this.config.getRecordMaxBufferedTimeMillis());
+        this.outstandingPermits = new Semaphore(this.config.getMaxOutstandingRecords());
+
+        int id = producerCount.incrementAndGet();
+        int senderCount = this.config.getMaxConcurrentRequests();
+        this.senders = new ThreadPoolExecutor(senderCount, senderCount, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(id, "sender"));
+        senders.allowCoreThreadTimeOut(true);
+        // shard map refreshes get their own thread, so that a slow DescribeStream call does not
+        // hold up flushing and retries
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(id, "scheduler"));
+        this.refresher = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(id, "refresher"));
+
+        long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), maxBufferedNanos / 4);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flushExpired();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to flush buffered records", e);
+                }
+            }
+        }, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        if (this.config.isAggregationEnabled()) {
+            refresher.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    refreshShardMap();
+                }
+            }, 0, this.config.getShardMapRefreshMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Adds a record to be put on the stream.
+     *
+     * @see #addUserRecord(String, String, ByteBuffer)
+     */
+    public Future<UserRecordResult> addUserRecord(String partitionKey, ByteBuffer data) throws InterruptedException {
+        return addUserRecord(partitionKey, null, data);
+    }
+
+    /**
+     * Adds a record to be put on the stream, blocking while the producer holds the maximum number
+     * of outstanding records.
+     *
+     * @param explicitHashKey
+     *            the hash key deciding the shard of the record, in place of the MD5 digest of
+     *            its partition key; may be null
+     * @return a future of where the record was put. It fails with an
+     *         {@link AmazonClientException} if the record could not be put.
+     * @throws IllegalArgumentException
+     *             if the record is not valid for Kinesis
+     * @throws IllegalStateException
+     *             if the producer was shut down
+     */
+    public Future<UserRecordResult> addUserRecord(String partitionKey, String explicitHashKey, ByteBuffer data)
+            throws InterruptedException {
+        if (partitionKey == null || partitionKey.length() == 0 || partitionKey.length() > MAX_PARTITION_KEY_LENGTH) {
+            throw new IllegalArgumentException("The partition key must have between 1 and "
+                    + MAX_PARTITION_KEY_LENGTH + " characters");
+        }
+        if (explicitHashKey != null) {
+            try {
+                new BigInteger(explicitHashKey);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("The explicit hash key must be a decimal integer", e);
+            }
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("The data cannot be null");
+        }
+        UserRecord record = new UserRecord(partitionKey, explicitHashKey, data) {
+            @Override
+            protected void done() {
+                outstandingPermits.release();
+                recordDone();
+            }
+        };
+        if (record.plainSize() > KinesisProducerConfiguration.SERVICE_MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("The data and partition key take more than "
+                    + KinesisProducerConfiguration.SERVICE_MAX_RECORD_BYTES + " bytes");
+        }
+
+        outstanding.incrementAndGet();
+        if (shutdown) {
+            recordDone();
+            throw new IllegalStateException("The producer was shut down");
+        }
+        try {
+            outstandingPermits.acquire();
+        } catch (InterruptedException e) {
+            recordDone();
+            throw e;
+        }
+
+        String shardId = config.isAggregationEnabled() ? shardMap.shardFor(record.hashKey()) : null;
+        if (shardId == null) {
+            RecordAggregator single = new RecordAggregator();
+            single.add(record);
+            enqueue(new KinesisRecord(single, null));
+        } else {
+            bufferFor(shardId).add(record);
+        }
+        return record;
+    }
+
+    /**
+     * Sends all the records buffered so far without waiting for more to batch them with.
+     */
+    public void flush() {
+        for (ShardBuffer buffer : shardBuffers.values()) {
+            buffer.seal();
+        }
+        List<KinesisRecord> ready;
+        synchronized (batchLock) {
+            ready = batch.isEmpty() ? null : takeBatch();
+        }
+        send(ready);
+    }
+
+    /**
+     * Flushes the buffered records and stops accepting new ones. Records already added, including
+     * their retries, are still put.
+     */
+    public void shutdown() {
+        shutdown = true;
+        flush();
+        if (outstanding.get() == 0) {
+            terminate();
+        }
+    }
+
+    /**
+     * Waits for the producer to put or fail all its records after {@link #shutdown()}.
+     *
+     * @return true if the producer terminated, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return a snapshot of the throughput and latency of the producer
+     */
+    public KinesisProducerMetrics getMetrics() {
+        return new KinesisProducerMetrics(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos),
+                config.getMaxOutstandingRecords() - outstandingPermits.availablePermits(), userRecordsPut.get(),
+                kinesisRecordsPut.get(), bytesPut.get(), putRecordsRequests.get(), retriedKinesisRecords.get(),
+                failedUserRecords.get(), TimeUnit.NANOSECONDS.toMillis(totalUserRecordLatencyNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(totalRequestLatencyNanos.get()));
+    }
+
+    private ShardBuffer bufferFor(String shardId) {
+        ShardBuffer buffer = shardBuffers.get(shardId);
+        if (buffer == null) {
+            ShardBuffer created = new ShardBuffer(shardId);
+            buffer = shardBuffers.putIfAbsent(shardId, created);
+            if (buffer == null) {
+                buffer = created;
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Adds a Kinesis record to the PutRecords call being filled, sending the call once full.
+     */
+    private void enqueue(KinesisRecord record) {
+        List<KinesisRecord> full = null;
+        List<KinesisRecord> filled = null;
+        synchronized (batchLock) {
+            if (!batch.isEmpty() && batchBytes + record.size > config.getMaxBytesPerRequest()) {
+                full = takeBatch();
+            }
+            if (batch.isEmpty() || record.bufferedSinceNanos - batchOldestNanos < 0) {
+                batchOldestNanos = record.bufferedSinceNanos;
+            }
+            batch.add(record);
+            batchBytes += record.size;
+            if (batch.size() >= config.getMaxRecordsPerRequest()) {
+                filled = takeBatch();
+            }
+        }
+        send(full);
+        send(filled);
+    }
+
+    /**
+     * Called with the lock on {@code batchLock} held.
+     */
+    private List<KinesisRecord> takeBatch() {
+        List<KinesisRecord> taken = batch;
+        batch = new ArrayList<KinesisRecord>();
+        batchBytes = 0;
+        return taken;
+    }
+
+    /**
+     * Sends the records whose oldest user record has waited long enough.
+     */
+    private void flushExpired() {
+        long cutoff = System.nanoTime() - maxBufferedNanos;
+        for (ShardBuffer buffer : shardBuffers.values()) {
+            buffer.sealIfBufferedSince(cutoff);
+        }
+        List<KinesisRecord> expired = null;
+        synchronized (batchLock) {
+            if (!batch.isEmpty() && batchOldestNanos - cutoff <= 0) {
+                expired = takeBatch();
+            }
+        }
+        send(expired);
+    }
+
+    /**
+     * Refreshes the shard map soon, unless a requested refresh is already queued.
+     */
+    private void requestShardMapRefresh() {
+        if (!shardMapRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(new Runnable() {
+                public void run() {
+                    // requests made from now on need another refresh
+                    shardMapRefreshPending.set(false);
+                    refreshShardMap();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down concurrently
+        }
+    }
+
+    private void refreshShardMap() {
+        try {
+            shardMap.refresh();
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of stream " + streamName
+                    + "; records are not aggregated until they are listed", e);
+        }
+    }
+
+    private void send(List<KinesisRecord> records) {
+        if (records == null) {
+            return;
+        }
+        try {
+            senders.execute(new PutRecordsTask(records));
+        } catch (RejectedExecutionException e) {
+            for (KinesisRecord record : records) {
+                fail(record, new AmazonClientException("The producer was shut down", e));
+            }
+        }
+    }
+
+    private void succeed(KinesisRecord record, PutRecordsResultEntry result) {
+        if (record.predictedShardId != null && !record.predictedShardId.equals(result.getShardId())) {
+            // the stream was resharded since the shards were listed
+            requestShardMapRefresh();
+        }
+        int attempts = record.attempts + 1;
+        boolean aggregated = record.userRecords.size() > 1;
+        long now = System.nanoTime();
+        long latencyNanos = 0;
+        for (UserRecord userRecord : record.userRecords) {
+            latencyNanos += now - userRecord.addedNanos;
+        }
+        userRecordsPut.addAndGet(record.userRecords.size());
+        kinesisRecordsPut.incrementAndGet();
+        bytesPut.addAndGet(record.size);
+        totalUserRecordLatencyNanos.addAndGet(latencyNanos);
+        for (int i = 0; i < record.userRecords.size(); i++) {
+            record.userRecords.get(i).succeed(
+                    new UserRecordResult(result.getShardId(), result.getSequenceNumber(), aggregated ? i : -1,
+                            attempts));
+        }
+    }
+
+    /**
+     * Sends the record again after a backoff, or fails it once it is out of retries.
+     */
+    private void retry(final KinesisRecord record, AmazonClientException cause) {
+        record.attempts++;
+        if (record.attempts > config.getMaxRetries()) {
+            fail(record, new AmazonClientException("Record not put after " + record.attempts + " attempts: "
+                    + cause.getMessage(), cause));
+            return;
+        }
+        retriedKinesisRecords.incrementAndGet();
+        long ceiling = MAX_RETRY_BACKOFF_MILLIS;
+        if (record.attempts < 31) {
+            ceiling = Math.min(ceiling, config.getRetryBackoffMillis() << (record.attempts - 1));
+        }
+        long backoffMillis = (long) (random.nextDouble() * ceiling);
+        try {
+            scheduler.schedule(new Runnable() {
+                public void run() {
+                    record.bufferedSinceNanos = System.nanoTime();
+                    enqueue(record);
+                }
+            }, backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(record, cause);
+        }
+    }
+
+    private void fail(KinesisRecord record, AmazonClientException cause) {
+        failedUserRecords.addAndGet(record.userRecords.size());
+        for (UserRecord userRecord : record.userRecords) {
+            userRecord.fail(cause);
+        }
+    }
+
+    private void recordDone() {
+        if (outstanding.decrementAndGet() == 0 && shutdown) {
+            terminate();
+        }
+    }
+
+    private void terminate() {
+        if (terminating.compareAndSet(false, true)) {
+            scheduler.shutdown();
+            refresher.shutdown();
+            senders.shutdown();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Whether a whole PutRecords call that failed is worth making again.
+     */
+    private static boolean isRetryable(AmazonClientException e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return ase.getErrorType() == ErrorType.Service || RetryUtils.isThrottlingException(ase);
+        }
+        return true;
+    }
+
+    /**
+     * The user records being aggregated for one predicted shard.
+     */
+    private final class ShardBuffer {
+
+        private final String shardId;
+        private RecordAggregator aggregator = new RecordAggregator();
+
+        private ShardBuffer(String shardId) {
+            this.shardId = shardId;
+        }
+
+        private synchronized void add(UserRecord record) {
+            if (!aggregator.isEmpty() && aggregator.sizeWith(record) > config.getMaxAggregatedRecordBytes()) {
+                seal();
+            }
+            aggregator.add(record);
+            if (aggregator.size() >= config.getMaxAggregatedRecordBytes()) {
+                // full, or a single record too large to aggregate
+                seal();
+            }
+        }
+
+        private synchronized void sealIfBufferedSince(long cutoffNanos) {
+            if (!aggregator.isEmpty() && aggregator.records().get(0).addedNanos - cutoffNanos <= 0) {
+                seal();
+            }
+        }
+
+        private synchronized void seal() {
+            if (!aggregator.isEmpty()) {
+                enqueue(new KinesisRecord(aggregator, shardId));
+                aggregator = new RecordAggregator();
+            }
+        }
+    }
+
+    /**
+     * One record as sent to Kinesis, holding one or more user records.
+     */
+    private static final class KinesisRecord {
+
+        private final List<UserRecord> userRecords;
+        private final PutRecordsRequestEntry entry;
+        private final String predictedShardId;
+        private final int size;
+
+        /** Only changed by the thread handling the outcome of the last attempt. */
+        private int attempts;
+        private volatile long bufferedSinceNanos;
+
+        private KinesisRecord(RecordAggregator aggregator, String predictedShardId) {
+            this.userRecords = new ArrayList<UserRecord>(aggregator.records());
+            this.entry = aggregator.toEntry();
+            this.predictedShardId = predictedShardId;
+            this.size = aggregator.size();
+            this.bufferedSinceNanos = userRecords.get(0).addedNanos;
+        }
+    }
+
+    /**
+     * Makes one PutRecords call and sorts out its entries.
+     */
+    private final class PutRecordsTask implements Runnable {
+
+        private final List<KinesisRecord> records;
+
+        /** The number of records, from the first, whose outcome has been handled. */
+        private int handled;
+
+        private PutRecordsTask(List<KinesisRecord> records) {
+            this.records = records;
+        }
+
+        public void run() {
+            try {
+                put();
+            } finally {
+                // reached early only on an unexpected exception or error; the records left would
+                // otherwise never release their permits
+                for (; handled < records.size(); handled++) {
+                    fail(records.get(handled), new AmazonClientException("Unable to put records"));
+                }
+            }
+        }
+
+        private void put() {
+            List<PutRecordsRequestEntry> entries = new ArrayList<PutRecordsRequestEntry>(records.size());
+            for (KinesisRecord record : records) {
+                // a fresh entry each attempt, since sending one may consume its data buffer
+                entries.add(new PutRecordsRequestEntry().withPartitionKey(record.entry.getPartitionKey())
+                        .withExplicitHashKey(record.entry.getExplicitHashKey())
+                        .withData(record.entry.getData().duplicate()));
+            }
+
+            PutRecordsResult result;
+            long start = System.nanoTime();
+            try {
+                result = kinesis.putRecords(new PutRecordsRequest().withStreamName(streamName).withRecords(entries));
+            } catch (AmazonClientException e) {
+                putRecordsRequests.incrementAndGet();
+                totalRequestLatencyNanos.addAndGet(System.nanoTime() - start);
+                boolean retryable = isRetryable(e);
+                for (; handled < records.size(); handled++) {
+                    if (retryable) {
+                        retry(records.get(handled), e);
+                    } else {
+                        fail(records.get(handled), e);
+                    }
+                }
+                return;
+            } catch (RuntimeException e) {
+                for (; handled < records.size(); handled++) {
+                    fail(records.get(handled), new AmazonClientException("Unable to put records", e));
+                }
+                return;
+            }
+            putRecordsRequests.incrementAndGet();
+            totalRequestLatencyNanos.addAndGet(System.nanoTime() - start);
+
+            List<PutRecordsResultEntry> results = result.getRecords();
+            for (; handled < records.size(); handled++) {
+                PutRecordsResultEntry entry = results.get(handled);
+                if (entry.getErrorCode() == null) {
+                    succeed(records.get(handled), entry);
+                } else {
+                    retry(records.get(handled), new AmazonClientException(entry.getErrorCode() + ": "
+                            + entry.getErrorMessage()));
+                }
+            }
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private NamedThreadFactory(int producerId, String role) {
+            this.prefix = "KinesisProducer-" + producerId + "-" + role + "-";
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(prefix + threadCount.incrementAndGet());
+            return thread;
+        }
+    }
+}
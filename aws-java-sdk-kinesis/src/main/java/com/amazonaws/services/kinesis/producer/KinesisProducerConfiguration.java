@@ -0,0 +1,406 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+/**
+ * Settings of a {@link KinesisProducer}. The configuration is read when the producer is created;
+ * changing it afterwards has no effect on that producer.
+ */
+public class KinesisProducerConfiguration {
+
+    /** The most records a PutRecords call accepts. */
+    public static final int SERVICE_MAX_RECORDS_PER_REQUEST = 500;
+
+    /** The most bytes a PutRecords call accepts, counting data and partition keys: 5 MB. */
+    public static final int SERVICE_MAX_BYTES_PER_REQUEST = 5 * 1024 * 1024;
+
+    /** The largest record Kinesis accepts, counting its data and partition key: 1 MB. */
+    public static final int SERVICE_MAX_RECORD_BYTES = 1024 * 1024;
+
+    /** true */
+    public static final boolean AGGREGATION_ENABLED_DEFAULT = true;
+
+    /** 50 KB */
+    public static final int MAX_AGGREGATED_RECORD_BYTES_DEFAULT = 50 * 1024;
+
+    /** 500 records, the service limit */
+    public static final int MAX_RECORDS_PER_REQUEST_DEFAULT = SERVICE_MAX_RECORDS_PER_REQUEST;
+
+    /** 5 MB, the service limit */
+    public static final int MAX_BYTES_PER_REQUEST_DEFAULT = SERVICE_MAX_BYTES_PER_REQUEST;
+
+    /** 100 milliseconds */
+    public static final long RECORD_MAX_BUFFERED_TIME_MILLIS_DEFAULT = 100;
+
+    /** 10,000 records */
+    public static final int MAX_OUTSTANDING_RECORDS_DEFAULT = 10000;
+
+    /** 8 requests */
+    public static final int MAX_CONCURRENT_REQUESTS_DEFAULT = 8;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /** 100 milliseconds */
+    public static final long RETRY_BACKOFF_MILLIS_DEFAULT = 100;
+
+    /** 1 minute */
+    public static final long SHARD_MAP_REFRESH_MILLIS_DEFAULT = 60 * 1000;
+
+    private boolean aggregationEnabled = AGGREGATION_ENABLED_DEFAULT;
+    private int maxAggregatedRecordBytes = MAX_AGGREGATED_RECORD_BYTES_DEFAULT;
+    private int maxRecordsPerRequest = MAX_RECORDS_PER_REQUEST_DEFAULT;
+    private int maxBytesPerRequest = MAX_BYTES_PER_REQUEST_DEFAULT;
+    private long recordMaxBufferedTimeMillis = RECORD_MAX_BUFFERED_TIME_MILLIS_DEFAULT;
+    private int maxOutstandingRecords = MAX_OUTSTANDING_RECORDS_DEFAULT;
+    private int maxConcurrentRequests = MAX_CONCURRENT_REQUESTS_DEFAULT;
+    private int maxRetries = MAX_RETRIES_DEFAULT;
+    private long retryBackoffMillis = RETRY_BACKOFF_MILLIS_DEFAULT;
+    private long shardMapRefreshMillis = SHARD_MAP_REFRESH_MILLIS_DEFAULT;
+
+    public KinesisProducerConfiguration() {
+    }
+
+    /** copy constructor */
+    public KinesisProducerConfiguration(KinesisProducerConfiguration other) {
+        aggregationEnabled = other.aggregationEnabled;
+        maxAggregatedRecordBytes = other.maxAggregatedRecordBytes;
+        maxRecordsPerRequest = other.maxRecordsPerRequest;
+        maxBytesPerRequest = other.maxBytesPerRequest;
+        recordMaxBufferedTimeMillis = other.recordMaxBufferedTimeMillis;
+        maxOutstandingRecords = other.maxOutstandingRecords;
+        maxConcurrentRequests = other.maxConcurrentRequests;
+        maxRetries = other.maxRetries;
+        retryBackoffMillis = other.retryBackoffMillis;
+        shardMapRefreshMillis = other.shardMapRefreshMillis;
+    }
+
+    /**
+     * Whether user records bound to the same shard are packed together into larger Kinesis
+     * records, so that small records are limited by the 1 MB per second of a shard rather than
+     * its 1,000 records per second. Consumers must de-aggregate such records, in the format of
+     * the Kinesis Producer Library.
+     */
+    public boolean isAggregationEnabled() {
+        return aggregationEnabled;
+    }
+
+    /**
+     * Whether user records bound to the same shard are packed together into larger Kinesis
+     * records.
+     *
+     * @see #isAggregationEnabled()
+     */
+    public void setAggregationEnabled(boolean aggregationEnabled) {
+        this.aggregationEnabled = aggregationEnabled;
+    }
+
+    /**
+     * Whether user records bound to the same shard are packed together into larger Kinesis
+     * records.
+     *
+     * @see #isAggregationEnabled()
+     */
+    public KinesisProducerConfiguration withAggregationEnabled(boolean aggregationEnabled) {
+        setAggregationEnabled(aggregationEnabled);
+        return this;
+    }
+
+    /**
+     * The largest Kinesis record user records are aggregated into, counting its data and
+     * partition key. A user record larger than this is sent on its own.
+     */
+    public int getMaxAggregatedRecordBytes() {
+        return maxAggregatedRecordBytes;
+    }
+
+    /**
+     * The largest Kinesis record user records are aggregated into.
+     *
+     * @see #getMaxAggregatedRecordBytes()
+     */
+    public void setMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        if (maxAggregatedRecordBytes < 1 || maxAggregatedRecordBytes > SERVICE_MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("maxAggregatedRecordBytes must be between 1 and "
+                    + SERVICE_MAX_RECORD_BYTES);
+        }
+        this.maxAggregatedRecordBytes = maxAggregatedRecordBytes;
+    }
+
+    /**
+     * The largest Kinesis record user records are aggregated into.
+     *
+     * @see #getMaxAggregatedRecordBytes()
+     */
+    public KinesisProducerConfiguration withMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        setMaxAggregatedRecordBytes(maxAggregatedRecordBytes);
+        return this;
+    }
+
+    /**
+     * The most Kinesis records sent in one PutRecords call. A call is made as soon as this many
+     * records are buffered.
+     */
+    public int getMaxRecordsPerRequest() {
+        return maxRecordsPerRequest;
+    }
+
+    /**
+     * The most Kinesis records sent in one PutRecords call.
+     *
+     * @see #getMaxRecordsPerRequest()
+     */
+    public void setMaxRecordsPerRequest(int maxRecordsPerRequest) {
+        if (maxRecordsPerRequest < 1 || maxRecordsPerRequest > SERVICE_MAX_RECORDS_PER_REQUEST) {
+            throw new IllegalArgumentException("maxRecordsPerRequest must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_REQUEST);
+        }
+        this.maxRecordsPerRequest = maxRecordsPerRequest;
+    }
+
+    /**
+     * The most Kinesis records sent in one PutRecords call.
+     *
+     * @see #getMaxRecordsPerRequest()
+     */
+    public KinesisProducerConfiguration withMaxRecordsPerRequest(int maxRecordsPerRequest) {
+        setMaxRecordsPerRequest(maxRecordsPerRequest);
+        return this;
+    }
+
+    /**
+     * The most bytes sent in one PutRecords call, counting data and partition keys. A call is
+     * made as soon as the next record would not fit.
+     */
+    public int getMaxBytesPerRequest() {
+        return maxBytesPerRequest;
+    }
+
+    /**
+     * The most bytes sent in one PutRecords call, counting data and partition keys.
+     *
+     * @see #getMaxBytesPerRequest()
+     */
+    public void setMaxBytesPerRequest(int maxBytesPerRequest) {
+        if (maxBytesPerRequest < 1 || maxBytesPerRequest > SERVICE_MAX_BYTES_PER_REQUEST) {
+            throw new IllegalArgumentException("maxBytesPerRequest must be between 1 and "
+                    + SERVICE_MAX_BYTES_PER_REQUEST);
+        }
+        this.maxBytesPerRequest = maxBytesPerRequest;
+    }
+
+    /**
+     * The most bytes sent in one PutRecords call, counting data and partition keys.
+     *
+     * @see #getMaxBytesPerRequest()
+     */
+    public KinesisProducerConfiguration withMaxBytesPerRequest(int maxBytesPerRequest) {
+        setMaxBytesPerRequest(maxBytesPerRequest);
+        return this;
+    }
+
+    /**
+     * The longest a user record waits in the producer for more records to be aggregated or
+     * batched with before it is sent. Larger values make for fuller requests at the cost of
+     * latency.
+     */
+    public long getRecordMaxBufferedTimeMillis() {
+        return recordMaxBufferedTimeMillis;
+    }
+
+    /**
+     * The longest a user record waits in the producer before it is sent.
+     *
+     * @see #getRecordMaxBufferedTimeMillis()
+     */
+    public void setRecordMaxBufferedTimeMillis(long recordMaxBufferedTimeMillis) {
+        if (recordMaxBufferedTimeMillis < 1) {
+            throw new IllegalArgumentException("recordMaxBufferedTimeMillis must be at least 1");
+        }
+        this.recordMaxBufferedTimeMillis = recordMaxBufferedTimeMillis;
+    }
+
+    /**
+     * The longest a user record waits in the producer before it is sent.
+     *
+     * @see #getRecordMaxBufferedTimeMillis()
+     */
+    public KinesisProducerConfiguration withRecordMaxBufferedTimeMillis(long recordMaxBufferedTimeMillis) {
+        setRecordMaxBufferedTimeMillis(recordMaxBufferedTimeMillis);
+        return this;
+    }
+
+    /**
+     * The most user records added but not yet put or failed, including those waiting to be
+     * retried. Adding a record blocks while the limit is reached.
+     */
+    public int getMaxOutstandingRecords() {
+        return maxOutstandingRecords;
+    }
+
+    /**
+     * The most user records added but not yet put or failed.
+     *
+     * @see #getMaxOutstandingRecords()
+     */
+    public void setMaxOutstandingRecords(int maxOutstandingRecords) {
+        if (maxOutstandingRecords < 1) {
+            throw new IllegalArgumentException("maxOutstandingRecords must be at least 1");
+        }
+        this.maxOutstandingRecords = maxOutstandingRecords;
+    }
+
+    /**
+     * The most user records added but not yet put or failed.
+     *
+     * @see #getMaxOutstandingRecords()
+     */
+    public KinesisProducerConfiguration withMaxOutstandingRecords(int maxOutstandingRecords) {
+        setMaxOutstandingRecords(maxOutstandingRecords);
+        return this;
+    }
+
+    /**
+     * The number of threads making PutRecords calls. The client's connection pool should allow at
+     * least this many connections.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * The number of threads making PutRecords calls.
+     *
+     * @see #getMaxConcurrentRequests()
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * The number of threads making PutRecords calls.
+     *
+     * @see #getMaxConcurrentRequests()
+     */
+    public KinesisProducerConfiguration withMaxConcurrentRequests(int maxConcurrentRequests) {
+        setMaxConcurrentRequests(maxConcurrentRequests);
+        return this;
+    }
+
+    /**
+     * How many times a Kinesis record rejected by PutRecords, typically because its shard is over
+     * its throughput, is sent again before its user records fail. Only the rejected records of a
+     * call are retried.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * How many times a Kinesis record rejected by PutRecords is sent again.
+     *
+     * @see #getMaxRetries()
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries cannot be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * How many times a Kinesis record rejected by PutRecords is sent again.
+     *
+     * @see #getMaxRetries()
+     */
+    public KinesisProducerConfiguration withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The backoff before the first retry of a rejected record. Each retry waits a random time
+     * between zero and this value doubled once per earlier attempt, up to ten seconds.
+     */
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    /**
+     * The backoff before the first retry of a rejected record.
+     *
+     * @see #getRetryBackoffMillis()
+     */
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        if (retryBackoffMillis < 1) {
+            throw new IllegalArgumentException("retryBackoffMillis must be at least 1");
+        }
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    /**
+     * The backoff before the first retry of a rejected record.
+     *
+     * @see #getRetryBackoffMillis()
+     */
+    public KinesisProducerConfiguration withRetryBackoffMillis(long retryBackoffMillis) {
+        setRetryBackoffMillis(retryBackoffMillis);
+        return this;
+    }
+
+    /**
+     * How often the shards of the stream are listed again. The shard map is also refreshed as
+     * soon as a record lands on another shard than predicted, as happens after resharding.
+     */
+    public long getShardMapRefreshMillis() {
+        return shardMapRefreshMillis;
+    }
+
+    /**
+     * How often the shards of the stream are listed again.
+     *
+     * @see #getShardMapRefreshMillis()
+     */
+    public void setShardMapRefreshMillis(long shardMapRefreshMillis) {
+        if (shardMapRefreshMillis < 1) {
+            throw new IllegalArgumentException("shardMapRefreshMillis must be at least 1");
+        }
+        this.shardMapRefreshMillis = shardMapRefreshMillis;
+    }
+
+    /**
+     * How often the shards of the stream are listed again.
+     *
+     * @see #getShardMapRefreshMillis()
+     */
+    public KinesisProducerConfiguration withShardMapRefreshMillis(long shardMapRefreshMillis) {
+        setShardMapRefreshMillis(shardMapRefreshMillis);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisProducerConfiguration [aggregationEnabled=" + aggregationEnabled
+                + ", maxAggregatedRecordBytes=" + maxAggregatedRecordBytes + ", maxRecordsPerRequest="
+                + maxRecordsPerRequest + ", maxBytesPerRequest=" + maxBytesPerRequest
+                + ", recordMaxBufferedTimeMillis=" + recordMaxBufferedTimeMillis + ", maxOutstandingRecords="
+                + maxOutstandingRecords + ", maxConcurrentRequests=" + maxConcurrentRequests + ", maxRetries="
+                + maxRetries + ", retryBackoffMillis=" + retryBackoffMillis + ", shardMapRefreshMillis="
+                + shardMapRefreshMillis + "]";
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+/**
+ * A snapshot of the activity of a {@link KinesisProducer}, as returned by
+ * {@link KinesisProducer#getMetrics()}. Counts are totals since the producer was created; rates
+ * over an interval are obtained by comparing two snapshots.
+ */
+public class KinesisProducerMetrics {
+
+    private final long elapsedMillis;
+    private final int outstandingUserRecords;
+    private final long userRecordsPut;
+    private final long kinesisRecordsPut;
+    private final long bytesPut;
+    private final long putRecordsRequests;
+    private final long retriedKinesisRecords;
+    private final long failedUserRecords;
+    private final long totalUserRecordLatencyMillis;
+    private final long totalRequestLatencyMillis;
+
+    KinesisProducerMetrics(long elapsedMillis, int outstandingUserRecords, long userRecordsPut,
+            long kinesisRecordsPut, long bytesPut, long putRecordsRequests, long retriedKinesisRecords,
+            long failedUserRecords, long totalUserRecordLatencyMillis, long totalRequestLatencyMillis) {
+        this.elapsedMillis = elapsedMillis;
+        this.outstandingUserRecords = outstandingUserRecords;
+        this.userRecordsPut = userRecordsPut;
+        this.kinesisRecordsPut = kinesisRecordsPut;
+        this.bytesPut = bytesPut;
+        this.putRecordsRequests = putRecordsRequests;
+        this.retriedKinesisRecords = retriedKinesisRecords;
+        this.failedUserRecords = failedUserRecords;
+        this.totalUserRecordLatencyMillis = totalUserRecordLatencyMillis;
+        this.totalRequestLatencyMillis = totalRequestLatencyMillis;
+    }
+
+    /**
+     * @return the time since the producer was created, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the number of user records added but not yet put or failed
+     */
+    public int getOutstandingUserRecords() {
+        return outstandingUserRecords;
+    }
+
+    /**
+     * @return the number of user records put
+     */
+    public long getUserRecordsPut() {
+        return userRecordsPut;
+    }
+
+    /**
+     * @return the number of Kinesis records put, each holding one or more user records
+     */
+    public long getKinesisRecordsPut() {
+        return kinesisRecordsPut;
+    }
+
+    /**
+     * @return the number of bytes put, counting the data and partition keys of Kinesis records
+     */
+    public long getBytesPut() {
+        return bytesPut;
+    }
+
+    /**
+     * @return the number of PutRecords calls made, including failed ones
+     */
+    public long getPutRecordsRequests() {
+        return putRecordsRequests;
+    }
+
+    /**
+     * @return the number of times a Kinesis record was sent again after being rejected
+     */
+    public long getRetriedKinesisRecords() {
+        return retriedKinesisRecords;
+    }
+
+    /**
+     * @return the number of user records that could not be put
+     */
+    public long getFailedUserRecords() {
+        return failedUserRecords;
+    }
+
+    /**
+     * @return the mean time, in milliseconds, from adding a user record to it being put
+     */
+    public double getAverageUserRecordLatencyMillis() {
+        return userRecordsPut == 0 ? 0 : (double) totalUserRecordLatencyMillis / userRecordsPut;
+    }
+
+    /**
+     * @return the mean duration of PutRecords calls, in milliseconds
+     */
+    public double getAverageRequestLatencyMillis() {
+        return putRecordsRequests == 0 ? 0 : (double) totalRequestLatencyMillis / putRecordsRequests;
+    }
+
+    /**
+     * @return the mean number of user records put per second since the producer was created
+     */
+    public double getUserRecordsPerSecond() {
+        return elapsedMillis == 0 ? 0 : userRecordsPut * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return the mean number of bytes put per second since the producer was created
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis == 0 ? 0 : bytesPut * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisProducerMetrics [elapsedMillis=" + elapsedMillis + ", outstandingUserRecords="
+                + outstandingUserRecords + ", userRecordsPut=" + userRecordsPut + ", kinesisRecordsPut="
+                + kinesisRecordsPut + ", bytesPut=" + bytesPut + ", putRecordsRequests=" + putRecordsRequests
+                + ", retriedKinesisRecords=" + retriedKinesisRecords + ", failedUserRecords=" + failedUserRecords
+                + ", averageUserRecordLatencyMillis=" + getAverageUserRecordLatencyMillis()
+                + ", averageRequestLatencyMillis=" + getAverageRequestLatencyMillis() + "]";
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+
+/**
+ * Packs user records into one Kinesis record, in the aggregated record format of the Kinesis
+ * Producer Library, which the Kinesis Client Library de-aggregates: four magic bytes, an
+ * {@code AggregatedRecord} protocol buffer message, and the MD5 digest of that message.
+ * <p>
+ * The message holds a table of the distinct partition keys, a table of the distinct explicit
+ * hash keys, and one {@code Record} per user record referring to its keys by index. The size of
+ * the encoded record is kept up to date as records are added, so that callers can check whether
+ * the next one fits without encoding anything. A single user record is sent as is.
+ * <p>
+ * Instances of {@code RecordAggregator} are not thread-safe.
+ */
+class RecordAggregator {
+
+    static final byte[] MAGIC = { (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2 };
+
+    private static final int DIGEST_SIZE = 16;
+
+    // protocol buffer wire types
+    private static final int VARINT = 0;
+    private static final int LENGTH_DELIMITED = 2;
+
+    private final List<UserRecord> records = new ArrayList<UserRecord>();
+    private final List<byte[]> partitionKeys = new ArrayList<byte[]>();
+    private final Map<String, Integer> partitionKeyIndexes = new HashMap<String, Integer>();
+    private final List<byte[]> explicitHashKeys = new ArrayList<byte[]>();
+    private final Map<String, Integer> explicitHashKeyIndexes = new HashMap<String, Integer>();
+
+    /** The size of the AggregatedRecord message. */
+    private int messageSize;
+
+    boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    int count() {
+        return records.size();
+    }
+
+    List<UserRecord> records() {
+        return records;
+    }
+
+    /**
+     * @return the size of the Kinesis record holding the records added so far, counting its data
+     *         and partition key
+     */
+    int size() {
+        if (records.size() <= 1) {
+            return records.isEmpty() ? 0 : records.get(0).plainSize();
+        }
+        return aggregatedSize(messageSize);
+    }
+
+    /**
+     * @return what {@link #size()} would return once the record is added
+     */
+    int sizeWith(UserRecord record) {
+        if (records.isEmpty()) {
+            return record.plainSize();
+        }
+        return aggregatedSize(messageSize + growth(record));
+    }
+
+    void add(UserRecord record) {
+        messageSize += growth(record);
+        if (!partitionKeyIndexes.containsKey(record.partitionKey)) {
+            partitionKeyIndexes.put(record.partitionKey, partitionKeys.size());
+            partitionKeys.add(record.partitionKeyBytes);
+        }
+        if (record.explicitHashKey != null && !explicitHashKeyIndexes.containsKey(record.explicitHashKey)) {
+            explicitHashKeyIndexes.put(record.explicitHashKey, explicitHashKeys.size());
+            explicitHashKeys.add(record.explicitHashKeyBytes);
+        }
+        records.add(record);
+    }
+
+    /**
+     * Encodes the records added into a PutRecords entry.
+     */
+    PutRecordsRequestEntry toEntry() {
+        UserRecord first = records.get(0);
+        PutRecordsRequestEntry entry = new PutRecordsRequestEntry().withPartitionKey(first.partitionKey)
+                .withExplicitHashKey(first.explicitHashKey);
+        if (records.size() == 1) {
+            return entry.withData(first.data.duplicate());
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(MAGIC.length + messageSize + DIGEST_SIZE);
+        out.put(MAGIC);
+        for (byte[] key : partitionKeys) {
+            writeTag(out, 1, LENGTH_DELIMITED);
+            writeBytes(out, key);
+        }
+        for (byte[] key : explicitHashKeys) {
+            writeTag(out, 2, LENGTH_DELIMITED);
+            writeBytes(out, key);
+        }
+        for (UserRecord record : records) {
+            int partitionKeyIndex = partitionKeyIndexes.get(record.partitionKey);
+            int explicitHashKeyIndex = record.explicitHashKey == null ? -1 : explicitHashKeyIndexes
+                    .get(record.explicitHashKey);
+            writeTag(out, 3, LENGTH_DELIMITED);
+            writeVarint(out, recordMessageSize(record, partitionKeyIndex, explicitHashKeyIndex));
+            writeTag(out, 1, VARINT);
+            writeVarint(out, partitionKeyIndex);
+            if (explicitHashKeyIndex >= 0) {
+                writeTag(out, 2, VARINT);
+                writeVarint(out, explicitHashKeyIndex);
+            }
+            writeTag(out, 3, LENGTH_DELIMITED);
+            writeVarint(out, record.data.remaining());
+            out.put(record.data.duplicate());
+        }
+
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException("Unable to get the MD5 message digest", e);
+        }
+        md5.update(out.array(), MAGIC.length, messageSize);
+        out.put(md5.digest());
+        out.flip();
+        return entry.withData(out);
+    }
+
+    private int aggregatedSize(int messageSize) {
+        return MAGIC.length + messageSize + DIGEST_SIZE + records.get(0).partitionKeyBytes.length;
+    }
+
+    /**
+     * @return how many bytes adding the record adds to the AggregatedRecord message
+     */
+    private int growth(UserRecord record) {
+        int growth = 0;
+        Integer partitionKeyIndex = partitionKeyIndexes.get(record.partitionKey);
+        if (partitionKeyIndex == null) {
+            partitionKeyIndex = partitionKeys.size();
+            growth += fieldSize(record.partitionKeyBytes.length);
+        }
+        int explicitHashKeyIndex = -1;
+        if (record.explicitHashKey != null) {
+            Integer index = explicitHashKeyIndexes.get(record.explicitHashKey);
+            if (index == null) {
+                index = explicitHashKeys.size();
+                growth += fieldSize(record.explicitHashKeyBytes.length);
+            }
+            explicitHashKeyIndex = index;
+        }
+        return growth + fieldSize(recordMessageSize(record, partitionKeyIndex, explicitHashKeyIndex));
+    }
+
+    /**
+     * @return the size of the Record message of a user record
+     */
+    private static int recordMessageSize(UserRecord record, int partitionKeyIndex, int explicitHashKeyIndex) {
+        int size = 1 + varintSize(partitionKeyIndex);
+        if (explicitHashKeyIndex >= 0) {
+            size += 1 + varintSize(explicitHashKeyIndex);
+        }
+        return size + fieldSize(record.data.remaining());
+    }
+
+    /**
+     * @return the size of a length-delimited field with a one-byte tag
+     */
+    private static int fieldSize(int length) {
+        return 1 + varintSize(length) + length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeTag(ByteBuffer out, int fieldNumber, int wireType) {
+        out.put((byte) (fieldNumber << 3 | wireType));
+    }
+
+    private static void writeBytes(ByteBuffer out, byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.put(bytes);
+    }
+
+    private static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+}
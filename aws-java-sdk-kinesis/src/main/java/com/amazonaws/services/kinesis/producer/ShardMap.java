@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+/**
+ * The hash key ranges of the open shards of a stream, used to predict which shard a record will
+ * land on. The ranges are replaced as a whole on each refresh, so lookups take no lock.
+ */
+class ShardMap {
+
+    private static final ThreadLocal<MessageDigest> MD5 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AmazonClientException("Unable to get the MD5 message digest", e);
+            }
+        }
+    };
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+
+    /** The open shards, sorted by starting hash key. */
+    private volatile ShardRange[] ranges = new ShardRange[0];
+
+    ShardMap(AmazonKinesis kinesis, String streamName) {
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+    }
+
+    /**
+     * @return the id of the open shard whose range holds the hash key, or null if none is known,
+     *         for example before the first refresh
+     */
+    String shardFor(BigInteger hashKey) {
+        ShardRange[] current = ranges;
+        int low = 0;
+        int high = current.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            ShardRange range = current[middle];
+            if (range.end.compareTo(hashKey) < 0) {
+                low = middle + 1;
+            } else if (range.start.compareTo(hashKey) > 0) {
+                high = middle - 1;
+            } else {
+                return range.shardId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists the shards of the stream again, with as many DescribeStream calls as the stream has
+     * pages of shards.
+     */
+    void refresh() {
+        List<ShardRange> open = new ArrayList<ShardRange>();
+        String exclusiveStartShardId = null;
+        boolean hasMoreShards;
+        do {
+            StreamDescription description = kinesis.describeStream(
+                    new DescribeStreamRequest().withStreamName(streamName).withExclusiveStartShardId(
+                            exclusiveStartShardId)).getStreamDescription();
+            for (Shard shard : description.getShards()) {
+                exclusiveStartShardId = shard.getShardId();
+                if (shard.getSequenceNumberRange().getEndingSequenceNumber() == null) {
+                    open.add(new ShardRange(shard.getShardId(), new BigInteger(shard.getHashKeyRange()
+                            .getStartingHashKey()), new BigInteger(shard.getHashKeyRange().getEndingHashKey())));
+                }
+            }
+            hasMoreShards = Boolean.TRUE.equals(description.getHasMoreShards())
+                    && !description.getShards().isEmpty();
+        } while (hasMoreShards);
+
+        Collections.sort(open, new Comparator<ShardRange>() {
+            public int compare(ShardRange a, ShardRange b) {
+                return a.start.compareTo(b.start);
+            }
+        });
+        ranges = open.toArray(new ShardRange[open.size()]);
+    }
+
+    /**
+     * @return the hash key Kinesis derives from a partition key: its MD5 digest as an unsigned
+     *         128-bit integer
+     */
+    static BigInteger hashKey(byte[] partitionKeyBytes) {
+        return new BigInteger(1, MD5.get().digest(partitionKeyBytes));
+    }
+
+    private static final class ShardRange {
+
+        private final String shardId;
+        private final BigInteger start;
+        private final BigInteger end;
+
+        private ShardRange(String shardId, BigInteger start, BigInteger end) {
+            this.shardId = shardId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import com.amazonaws.internal.SdkSettableFuture;
+
+/**
+ * A record added to the producer, which is also the future of its result.
+ */
+class UserRecord extends SdkSettableFuture<UserRecordResult> {
+
+    final String partitionKey;
+    final byte[] partitionKeyBytes;
+    final String explicitHashKey;
+    final byte[] explicitHashKeyBytes;
+    final ByteBuffer data;
+    final long addedNanos = System.nanoTime();
+
+    UserRecord(String partitionKey, String explicitHashKey, ByteBuffer data) {
+        this.partitionKey = partitionKey;
+        this.partitionKeyBytes = partitionKey.getBytes(UTF8);
+        this.explicitHashKey = explicitHashKey;
+        this.explicitHashKeyBytes = explicitHashKey == null ? null : explicitHashKey.getBytes(UTF8);
+        this.data = data;
+    }
+
+    /**
+     * @return the hash key that decides the shard of the record
+     */
+    BigInteger hashKey() {
+        return explicitHashKey != null ? new BigInteger(explicitHashKey) : ShardMap.hashKey(partitionKeyBytes);
+    }
+
+    /**
+     * @return the size of the record sent on its own, as Kinesis counts it
+     */
+    int plainSize() {
+        return data.remaining() + partitionKeyBytes.length;
+    }
+
+    void succeed(UserRecordResult result) {
+        set(result);
+    }
+
+    void fail(Exception e) {
+        setException(e);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+/**
+ * Where a user record added to a {@link KinesisProducer} was put.
+ */
+public class UserRecordResult {
+
+    private final String shardId;
+    private final String sequenceNumber;
+    private final int subSequenceNumber;
+    private final int attempts;
+
+    UserRecordResult(String shardId, String sequenceNumber, int subSequenceNumber, int attempts) {
+        this.shardId = shardId;
+        this.sequenceNumber = sequenceNumber;
+        this.subSequenceNumber = subSequenceNumber;
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return the shard the record was put on
+     */
+    public String getShardId() {
+        return shardId;
+    }
+
+    /**
+     * @return the sequence number of the Kinesis record holding the user record; user records
+     *         aggregated together share it
+     */
+    public String getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return the position of the user record within its aggregated Kinesis record, or -1 if it
+     *         was sent on its own
+     */
+    public int getSubSequenceNumber() {
+        return subSequenceNumber;
+    }
+
+    /**
+     * @return the number of PutRecords calls it took to put the record
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "UserRecordResult [shardId=" + shardId + ", sequenceNumber=" + sequenceNumber
+                + ", subSequenceNumber=" + subSequenceNumber + ", attempts=" + attempts + "]";
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.internal.SdkSettableFuture;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+
+/**
+ * Delivers records to a Firehose delivery stream in PutRecordBatch calls, so that callers can put
+ * one record at a time without paying for one call per record.
+ * <p>
+ * Records put from any number of threads are appended to a lock-free queue. A batch is taken
+ * from the queue and sent as soon as it is full by count or size, or once its oldest record has
+ * waited {@code maxBufferedTimeMillis}; only one thread takes batches at a time, and threads that
+ * find another one doing so return at once. Only the records a call rejects are sent again, each
+ * after its own jittered exponential backoff.
+ * <p>
+ * Putting a record returns at once with a future of its record id, and blocks only while the
+ * client holds {@code maxBufferedBytes} of data. A record's data buffer must not be changed until
+ * its future completes.
+ * <p>
+ * Instances of {@code BufferedDeliveryClient} are thread-safe.
+ */
+public class BufferedDeliveryClient {
+
+    private static final Log log = LogFactory.getLog(BufferedDeliveryClient.class);
+
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 10 * 1000;
+
+    private static final AtomicInteger clientCount = new AtomicInteger();
+
+    private static final int FULL = 0;
+    private static final int TIMED_OUT = 1;
+    private static final int FLUSHED = 2;
+
+    private final AmazonKinesisFirehose firehose;
+    private final String deliveryStreamName;
+    private final BufferedDeliveryConfiguration config;
+    private final long maxBufferedNanos;
+
+    /** The records waiting to be batched, oldest first. */
+    private final ConcurrentLinkedQueue<PendingRecord> buffer = new ConcurrentLinkedQueue<PendingRecord>();
+    private final AtomicInteger bufferedCount = new AtomicInteger();
+    private final AtomicLong bufferedBatchBytes = new AtomicLong();
+
+    /** Held by the one thread taking batches from the buffer. */
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private final Semaphore bytePermits;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /** Runs the flush timer and retries. */
+    private final ScheduledThreadPoolExecutor scheduler;
+    /** Makes the PutRecordBatch calls. */
+    private final ThreadPoolExecutor senders;
+
+    private final Random random = new Random();
+
+    private volatile boolean shutdown;
+    private final AtomicBoolean terminating = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final long createdNanos = System.nanoTime();
+    private final AtomicLong recordsDelivered = new AtomicLong();
+    private final AtomicLong bytesDelivered = new AtomicLong();
+    private final AtomicLong[] batches = { new AtomicLong(), new AtomicLong(), new AtomicLong() };
+    private final AtomicLong batchedRecords = new AtomicLong();
+    private final AtomicLong putRecordBatchRequests = new AtomicLong();
+    private final AtomicLong retriedRecords = new AtomicLong();
+    private final AtomicLong failedRecords = new AtomicLong();
+    private final AtomicLong totalRecordLatencyNanos = new AtomicLong();
+    private final AtomicLong totalRequestLatencyNanos = new AtomicLong();
+
+    public BufferedDeliveryClient(AmazonKinesisFirehose firehose, String deliveryStreamName) {
+        this(firehose, deliveryStreamName, new BufferedDeliveryConfiguration());
+    }
+
+    public BufferedDeliveryClient(AmazonKinesisFirehose firehose, String deliveryStreamName,
+            BufferedDeliveryConfiguration config) {
+        this.firehose = firehose;
+        this.deliveryStreamName = deliveryStreamName;
+        this.config = new BufferedDeliveryConfiguration(config);
+        this.maxBufferedNanos = TimeUnit.MILLISECONDS.toNanos(this.config.getMaxBufferedTimeMillis());
+        // fair, so that a large record waiting for room is not overtaken by smaller ones forever
+        this.bytePermits = new Semaphore(this.config.getMaxBufferedBytes(), true);
+
+        int id = clientCount.incrementAndGet();
+        int senderCount = this.config.getMaxConcurrentRequests();
+        this.senders = new ThreadPoolExecutor(senderCount, senderCount, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(id, "sender"));
+        senders.allowCoreThreadTimeOut(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(id, "scheduler"));
+
+        long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), maxBufferedNanos / 4);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    drain();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to flush buffered records", e);
+                }
+            }
+        }, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Puts a record to the delivery stream.
+     *
+     * @see #putRecord(Record)
+     */
+    public Future<PutRecordResult> putRecord(ByteBuffer data) throws InterruptedException {
+        return putRecord(new Record().withData(data));
+    }
+
+    /**
+     * Puts a record to the delivery stream, blocking while the client holds the maximum buffered
+     * data.
+     *
+     * @return a future of the id Firehose gave the record. It fails with an
+     *         {@link AmazonClientException} if the record could not be delivered.
+     * @throws IllegalArgumentException
+     *             if the record is larger than Firehose accepts
+     * @throws IllegalStateException
+     *             if the client was shut down
+     */
+    public Future<PutRecordResult> putRecord(Record record) throws InterruptedException {
+        if (record == null || record.getData() == null) {
+            throw new IllegalArgumentException("The record data cannot be null");
+        }
+        final int size = record.getData().remaining();
+        if (size > BufferedDeliveryConfiguration.SERVICE_MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("The record data takes more than "
+                    + BufferedDeliveryConfiguration.SERVICE_MAX_RECORD_BYTES + " bytes");
+        }
+        PendingRecord pending = new PendingRecord(record.getData(), size) {
+            @Override
+            protected void done() {
+                bytePermits.release(size);
+                recordDone();
+            }
+        };
+
+        outstanding.incrementAndGet();
+        if (shutdown) {
+            recordDone();
+            throw new IllegalStateException("The client was shut down");
+        }
+        try {
+            bytePermits.acquire(size);
+        } catch (InterruptedException e) {
+            recordDone();
+            throw e;
+        }
+        buffer(pending);
+        return pending;
+    }
+
+    /**
+     * Sends all the records buffered so far without waiting for more to batch them with.
+     */
+    public void flush() {
+        flushRequested.set(true);
+        drain();
+    }
+
+    /**
+     * Flushes the buffered records and stops accepting new ones. Records already put, including
+     * their retries, are still delivered.
+     */
+    public void shutdown() {
+        shutdown = true;
+        flush();
+        if (outstanding.get() == 0) {
+            terminate();
+        }
+    }
+
+    /**
+     * Waits for the client to deliver or fail all its records after {@link #shutdown()}.
+     *
+     * @return true if the client terminated, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return a snapshot of the batching, throughput and latency of the client
+     */
+    public BufferedDeliveryMetrics getMetrics() {
+        return new BufferedDeliveryMetrics(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos),
+                config.getMaxBufferedBytes() - bytePermits.availablePermits(), recordsDelivered.get(),
+                bytesDelivered.get(), batches[FULL].get(), batches[TIMED_OUT].get(), batches[FLUSHED].get(),
+                batchedRecords.get(), putRecordBatchRequests.get(), retriedRecords.get(), failedRecords.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalRecordLatencyNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(totalRequestLatencyNanos.get()));
+    }
+
+    private void buffer(PendingRecord record) {
+        buffer.offer(record);
+        int count = bufferedCount.incrementAndGet();
+        long bytes = bufferedBatchBytes.addAndGet(record.size);
+        if (count >= config.getMaxRecordsPerBatch() || bytes >= config.getMaxBytesPerBatch()) {
+            drain();
+        }
+    }
+
+    /**
+     * Sends the batches that are ready, unless another thread is already doing so. That thread
+     * checks again after it stops, so no batch is left behind.
+     */
+    private void drain() {
+        do {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                drainReady();
+            } finally {
+                draining.set(false);
+            }
+        } while (isFull() || flushRequested.get());
+    }
+
+    /**
+     * Called by the one thread holding {@code draining}.
+     */
+    private void drainReady() {
+        // records put concurrently with a flush are not waited for
+        int flushCount = flushRequested.getAndSet(false) ? bufferedCount.get() : 0;
+        long cutoff = System.nanoTime() - maxBufferedNanos;
+        while (true) {
+            int reason;
+            if (isFull()) {
+                reason = FULL;
+            } else if (flushCount > 0) {
+                reason = FLUSHED;
+            } else {
+                PendingRecord oldest = buffer.peek();
+                if (oldest == null || oldest.bufferedSinceNanos - cutoff > 0) {
+                    return;
+                }
+                reason = TIMED_OUT;
+            }
+            List<PendingRecord> batch = takeBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            flushCount -= batch.size();
+            batches[reason].incrementAndGet();
+            send(batch);
+        }
+    }
+
+    private boolean isFull() {
+        return bufferedCount.get() >= config.getMaxRecordsPerBatch()
+                || bufferedBatchBytes.get() >= config.getMaxBytesPerBatch();
+    }
+
+    /**
+     * Takes the oldest records that fit in one call. Called by the one thread holding
+     * {@code draining}, so the record peeked at is the one polled.
+     */
+    private List<PendingRecord> takeBatch() {
+        List<PendingRecord> batch = new ArrayList<PendingRecord>();
+        long batchBytes = 0;
+        PendingRecord next;
+        while (batch.size() < config.getMaxRecordsPerBatch() && (next = buffer.peek()) != null
+                && batchBytes + next.size <= config.getMaxBytesPerBatch()) {
+            buffer.poll();
+            bufferedCount.decrementAndGet();
+            bufferedBatchBytes.addAndGet(-next.size);
+            batch.add(next);
+            batchBytes += next.size;
+        }
+        return batch;
+    }
+
+    private void send(List<PendingRecord> batch) {
+        batchedRecords.addAndGet(batch.size());
+        try {
+            senders.execute(new PutRecordBatchTask(batch));
+        } catch (RejectedExecutionException e) {
+            for (PendingRecord record : batch) {
+                fail(record, new AmazonClientException("The client was shut down", e));
+            }
+        }
+    }
+
+    private void succeed(PendingRecord record, String recordId) {
+        recordsDelivered.incrementAndGet();
+        bytesDelivered.addAndGet(record.size);
+        totalRecordLatencyNanos.addAndGet(System.nanoTime() - record.addedNanos);
+        record.succeed(new PutRecordResult().withRecordId(recordId));
+    }
+
+    /**
+     * Buffers the record again after a backoff, or fails it once it is out of retries.
+     */
+    private void retry(final PendingRecord record, AmazonClientException cause) {
+        record.attempts++;
+        if (record.attempts > config.getMaxRetries()) {
+            fail(record, new AmazonClientException("Record not delivered after " + record.attempts
+                    + " attempts: " + cause.getMessage(), cause));
+            return;
+        }
+        retriedRecords.incrementAndGet();
+        long ceiling = MAX_RETRY_BACKOFF_MILLIS;
+        if (record.attempts < 31) {
+            ceiling = Math.min(ceiling, config.getRetryBackoffMillis() << (record.attempts - 1));
+        }
+        long backoffMillis = (long) (random.nextDouble() * ceiling);
+        try {
+            scheduler.schedule(new Runnable() {
+                public void run() {
+                    record.bufferedSinceNanos = System.nanoTime();
+                    buffer(record);
+                    if (shutdown) {
+                        flush();
+                    }
+                }
+            }, backoffMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(record, cause);
+        }
+    }
+
+    private void fail(PendingRecord record, AmazonClientException cause) {
+        failedRecords.incrementAndGet();
+        record.fail(cause);
+    }
+
+    private void recordDone() {
+        if (outstanding.decrementAndGet() == 0 && shutdown) {
+            terminate();
+        }
+    }
+
+    private void terminate() {
+        if (terminating.compareAndSet(false, true)) {
+            scheduler.shutdown();
+            senders.shutdown();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Whether a whole PutRecordBatch call that failed is worth making again.
+     */
+    private static boolean isRetryable(AmazonClientException e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return ase.getErrorType() == ErrorType.Service || RetryUtils.isThrottlingException(ase);
+        }
+        return true;
+    }
+
+    /**
+     * A record put to the client, which is also the future of its result.
+     */
+    private static class PendingRecord extends SdkSettableFuture<PutRecordResult> {
+
+        private final ByteBuffer data;
+        private final int size;
+        private final long addedNanos = System.nanoTime();
+
+        /** Only changed by the thread handling the outcome of the last attempt. */
+        private int attempts;
+        private volatile long bufferedSinceNanos = addedNanos;
+
+        private PendingRecord(ByteBuffer data, int size) {
+            this.data = data;
+            this.size = size;
+        }
+
+        private void succeed(PutRecordResult result) {
+            set(result);
+        }
+
+        private void fail(Throwable cause) {
+            setException(cause);
+        }
+    }
+
+    /**
+     * Makes one PutRecordBatch call and sorts out its entries.
+     */
+    private final class PutRecordBatchTask implements Runnable {
+
+        private final List<PendingRecord> records;
+
+        /** The number of records, from the first, whose outcome has been handled. */
+        private int handled;
+
+        private PutRecordBatchTask(List<PendingRecord> records) {
+            this.records = records;
+        }
+
+        public void run() {
+            try {
+                put();
+            } finally {
+                // reached early only on an unexpected exception or error; the records left would
+                // otherwise never release their permits
+                for (; handled < records.size(); handled++) {
+                    fail(records.get(handled), new AmazonClientException("Unable to put records"));
+                }
+            }
+        }
+
+        private void put() {
+            List<Record> entries = new ArrayList<Record>(records.size());
+            for (PendingRecord record : records) {
+                // a fresh entry each attempt, since sending one may consume its data buffer
+                entries.add(new Record().withData(record.data.duplicate()));
+            }
+
+            PutRecordBatchResult result;
+            long start = System.nanoTime();
+            try {
+                result = firehose.putRecordBatch(new PutRecordBatchRequest().withDeliveryStreamName(
+                        deliveryStreamName).withRecords(entries));
+            } catch (AmazonClientException e) {
+                putRecordBatchRequests.incrementAndGet();
+                totalRequestLatencyNanos.addAndGet(System.nanoTime() - start);
+                boolean retryable = isRetryable(e);
+                for (; handled < records.size(); handled++) {
+                    if (retryable) {
+                        retry(records.get(handled), e);
+                    } else {
+                        fail(records.get(handled), e);
+                    }
+                }
+                return;
+            } catch (RuntimeException e) {
+                for (; handled < records.size(); handled++) {
+                    fail(records.get(handled), new AmazonClientException("Unable to put records", e));
+                }
+                return;
+            }
+            putRecordBatchRequests.incrementAndGet();
+            totalRequestLatencyNanos.addAndGet(System.nanoTime() - start);
+
+            List<PutRecordBatchResponseEntry> responses = result.getRequestResponses();
+            for (; handled < records.size(); handled++) {
+                PutRecordBatchResponseEntry response = responses.get(handled);
+                if (response.getErrorCode() == null) {
+                    succeed(records.get(handled), response.getRecordId());
+                } else {
+                    retry(records.get(handled), new AmazonClientException(response.getErrorCode() + ": "
+                            + response.getErrorMessage()));
+                }
+            }
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private NamedThreadFactory(int clientId, String role) {
+            this.prefix = "BufferedDeliveryClient-" + clientId + "-" + role + "-";
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(prefix + threadCount.incrementAndGet());
+            return thread;
+        }
+    }
+}
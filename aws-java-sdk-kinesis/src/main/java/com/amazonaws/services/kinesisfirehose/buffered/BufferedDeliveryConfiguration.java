@@ -0,0 +1,296 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+/**
+ * Settings of a {@link BufferedDeliveryClient}. The configuration is read when the client is
+ * created; changing it afterwards has no effect on that client.
+ */
+public class BufferedDeliveryConfiguration {
+
+    /** The most records a PutRecordBatch call accepts. */
+    public static final int SERVICE_MAX_RECORDS_PER_BATCH = 500;
+
+    /** The most data a PutRecordBatch call accepts: 4 MB. */
+    public static final int SERVICE_MAX_BYTES_PER_BATCH = 4 * 1024 * 1024;
+
+    /** The largest record Firehose accepts: 1,000 KB. */
+    public static final int SERVICE_MAX_RECORD_BYTES = 1000 * 1024;
+
+    /** 500 records, the service limit */
+    public static final int MAX_RECORDS_PER_BATCH_DEFAULT = SERVICE_MAX_RECORDS_PER_BATCH;
+
+    /** 4 MB, the service limit */
+    public static final int MAX_BYTES_PER_BATCH_DEFAULT = SERVICE_MAX_BYTES_PER_BATCH;
+
+    /** 100 milliseconds */
+    public static final long MAX_BUFFERED_TIME_MILLIS_DEFAULT = 100;
+
+    /** 32 MB */
+    public static final int MAX_BUFFERED_BYTES_DEFAULT = 32 * 1024 * 1024;
+
+    /** 4 requests */
+    public static final int MAX_CONCURRENT_REQUESTS_DEFAULT = 4;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /** 100 milliseconds */
+    public static final long RETRY_BACKOFF_MILLIS_DEFAULT = 100;
+
+    private int maxRecordsPerBatch = MAX_RECORDS_PER_BATCH_DEFAULT;
+    private int maxBytesPerBatch = MAX_BYTES_PER_BATCH_DEFAULT;
+    private long maxBufferedTimeMillis = MAX_BUFFERED_TIME_MILLIS_DEFAULT;
+    private int maxBufferedBytes = MAX_BUFFERED_BYTES_DEFAULT;
+    private int maxConcurrentRequests = MAX_CONCURRENT_REQUESTS_DEFAULT;
+    private int maxRetries = MAX_RETRIES_DEFAULT;
+    private long retryBackoffMillis = RETRY_BACKOFF_MILLIS_DEFAULT;
+
+    public BufferedDeliveryConfiguration() {
+    }
+
+    /** copy constructor */
+    public BufferedDeliveryConfiguration(BufferedDeliveryConfiguration other) {
+        maxRecordsPerBatch = other.maxRecordsPerBatch;
+        maxBytesPerBatch = other.maxBytesPerBatch;
+        maxBufferedTimeMillis = other.maxBufferedTimeMillis;
+        maxBufferedBytes = other.maxBufferedBytes;
+        maxConcurrentRequests = other.maxConcurrentRequests;
+        maxRetries = other.maxRetries;
+        retryBackoffMillis = other.retryBackoffMillis;
+    }
+
+    /**
+     * The most records sent in one PutRecordBatch call. A batch is sent as soon as it holds this
+     * many records.
+     */
+    public int getMaxRecordsPerBatch() {
+        return maxRecordsPerBatch;
+    }
+
+    /**
+     * The most records sent in one PutRecordBatch call.
+     *
+     * @see #getMaxRecordsPerBatch()
+     */
+    public void setMaxRecordsPerBatch(int maxRecordsPerBatch) {
+        if (maxRecordsPerBatch < 1 || maxRecordsPerBatch > SERVICE_MAX_RECORDS_PER_BATCH) {
+            throw new IllegalArgumentException("maxRecordsPerBatch must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_BATCH);
+        }
+        this.maxRecordsPerBatch = maxRecordsPerBatch;
+    }
+
+    /**
+     * The most records sent in one PutRecordBatch call.
+     *
+     * @see #getMaxRecordsPerBatch()
+     */
+    public BufferedDeliveryConfiguration withMaxRecordsPerBatch(int maxRecordsPerBatch) {
+        setMaxRecordsPerBatch(maxRecordsPerBatch);
+        return this;
+    }
+
+    /**
+     * The most data sent in one PutRecordBatch call. A batch is sent as soon as the next record
+     * would not fit.
+     */
+    public int getMaxBytesPerBatch() {
+        return maxBytesPerBatch;
+    }
+
+    /**
+     * The most data sent in one PutRecordBatch call.
+     *
+     * @see #getMaxBytesPerBatch()
+     */
+    public void setMaxBytesPerBatch(int maxBytesPerBatch) {
+        if (maxBytesPerBatch < SERVICE_MAX_RECORD_BYTES || maxBytesPerBatch > SERVICE_MAX_BYTES_PER_BATCH) {
+            throw new IllegalArgumentException("maxBytesPerBatch must be between " + SERVICE_MAX_RECORD_BYTES
+                    + " and " + SERVICE_MAX_BYTES_PER_BATCH);
+        }
+        this.maxBytesPerBatch = maxBytesPerBatch;
+    }
+
+    /**
+     * The most data sent in one PutRecordBatch call.
+     *
+     * @see #getMaxBytesPerBatch()
+     */
+    public BufferedDeliveryConfiguration withMaxBytesPerBatch(int maxBytesPerBatch) {
+        setMaxBytesPerBatch(maxBytesPerBatch);
+        return this;
+    }
+
+    /**
+     * How long a record waits for more records to be batched with. A batch that is not full is
+     * sent once its oldest record has waited this long, which bounds the latency the buffering
+     * adds.
+     */
+    public long getMaxBufferedTimeMillis() {
+        return maxBufferedTimeMillis;
+    }
+
+    /**
+     * How long a record waits for more records to be batched with.
+     *
+     * @see #getMaxBufferedTimeMillis()
+     */
+    public void setMaxBufferedTimeMillis(long maxBufferedTimeMillis) {
+        if (maxBufferedTimeMillis < 1) {
+            throw new IllegalArgumentException("maxBufferedTimeMillis must be at least 1");
+        }
+        this.maxBufferedTimeMillis = maxBufferedTimeMillis;
+    }
+
+    /**
+     * How long a record waits for more records to be batched with.
+     *
+     * @see #getMaxBufferedTimeMillis()
+     */
+    public BufferedDeliveryConfiguration withMaxBufferedTimeMillis(long maxBufferedTimeMillis) {
+        setMaxBufferedTimeMillis(maxBufferedTimeMillis);
+        return this;
+    }
+
+    /**
+     * The most data held by the client, counting records buffered, being sent and waiting for a
+     * retry. Once it is reached, putting a record blocks until enough records are delivered or
+     * fail.
+     */
+    public int getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * The most data held by the client.
+     *
+     * @see #getMaxBufferedBytes()
+     */
+    public void setMaxBufferedBytes(int maxBufferedBytes) {
+        if (maxBufferedBytes < SERVICE_MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("maxBufferedBytes must be at least " + SERVICE_MAX_RECORD_BYTES);
+        }
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * The most data held by the client.
+     *
+     * @see #getMaxBufferedBytes()
+     */
+    public BufferedDeliveryConfiguration withMaxBufferedBytes(int maxBufferedBytes) {
+        setMaxBufferedBytes(maxBufferedBytes);
+        return this;
+    }
+
+    /**
+     * The most PutRecordBatch calls in progress at once. The client's connection pool should allow
+     * at least this many connections.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * The most PutRecordBatch calls in progress at once.
+     *
+     * @see #getMaxConcurrentRequests()
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * The most PutRecordBatch calls in progress at once.
+     *
+     * @see #getMaxConcurrentRequests()
+     */
+    public BufferedDeliveryConfiguration withMaxConcurrentRequests(int maxConcurrentRequests) {
+        setMaxConcurrentRequests(maxConcurrentRequests);
+        return this;
+    }
+
+    /**
+     * How many times a record rejected by Firehose, or in a call that failed with a retryable
+     * error, is sent again before its future fails.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * How many times a rejected record is sent again before its future fails.
+     *
+     * @see #getMaxRetries()
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries cannot be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * How many times a rejected record is sent again before its future fails.
+     *
+     * @see #getMaxRetries()
+     */
+    public BufferedDeliveryConfiguration withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The backoff before the first retry of a record. Each retry waits a random time between zero
+     * and this value doubled once per earlier attempt, capped at ten seconds.
+     */
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    /**
+     * The backoff before the first retry of a record.
+     *
+     * @see #getRetryBackoffMillis()
+     */
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        if (retryBackoffMillis < 1) {
+            throw new IllegalArgumentException("retryBackoffMillis must be at least 1");
+        }
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    /**
+     * The backoff before the first retry of a record.
+     *
+     * @see #getRetryBackoffMillis()
+     */
+    public BufferedDeliveryConfiguration withRetryBackoffMillis(long retryBackoffMillis) {
+        setRetryBackoffMillis(retryBackoffMillis);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferedDeliveryConfiguration [maxRecordsPerBatch=" + maxRecordsPerBatch + ", maxBytesPerBatch="
+                + maxBytesPerBatch + ", maxBufferedTimeMillis=" + maxBufferedTimeMillis + ", maxBufferedBytes="
+                + maxBufferedBytes + ", maxConcurrentRequests=" + maxConcurrentRequests + ", maxRetries="
+                + maxRetries + ", retryBackoffMillis=" + retryBackoffMillis + "]";
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+/**
+ * A snapshot of the activity of a {@link BufferedDeliveryClient}, as returned by
+ * {@link BufferedDeliveryClient#getMetrics()}. Counts are totals since the client was created;
+ * rates over an interval are obtained by comparing two snapshots.
+ */
+public class BufferedDeliveryMetrics {
+
+    private final long elapsedMillis;
+    private final long bufferedBytes;
+    private final long recordsDelivered;
+    private final long bytesDelivered;
+    private final long fullBatches;
+    private final long timedOutBatches;
+    private final long flushedBatches;
+    private final long batchedRecords;
+    private final long putRecordBatchRequests;
+    private final long retriedRecords;
+    private final long failedRecords;
+    private final long totalRecordLatencyMillis;
+    private final long totalRequestLatencyMillis;
+
+    BufferedDeliveryMetrics(long elapsedMillis, long bufferedBytes, long recordsDelivered, long bytesDelivered,
+            long fullBatches, long timedOutBatches, long flushedBatches, long batchedRecords,
+            long putRecordBatchRequests, long retriedRecords, long failedRecords, long totalRecordLatencyMillis,
+            long totalRequestLatencyMillis) {
+        this.elapsedMillis = elapsedMillis;
+        this.bufferedBytes = bufferedBytes;
+        this.recordsDelivered = recordsDelivered;
+        this.bytesDelivered = bytesDelivered;
+        this.fullBatches = fullBatches;
+        this.timedOutBatches = timedOutBatches;
+        this.flushedBatches = flushedBatches;
+        this.batchedRecords = batchedRecords;
+        this.putRecordBatchRequests = putRecordBatchRequests;
+        this.retriedRecords = retriedRecords;
+        this.failedRecords = failedRecords;
+        this.totalRecordLatencyMillis = totalRecordLatencyMillis;
+        this.totalRequestLatencyMillis = totalRequestLatencyMillis;
+    }
+
+    /**
+     * @return the time since the client was created, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the data held by the client: records buffered, being sent or waiting for a retry
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    /**
+     * @return the number of records delivered
+     */
+    public long getRecordsDelivered() {
+        return recordsDelivered;
+    }
+
+    /**
+     * @return the number of bytes of data delivered
+     */
+    public long getBytesDelivered() {
+        return bytesDelivered;
+    }
+
+    /**
+     * @return the number of batches sent because they were full by count or size
+     */
+    public long getFullBatches() {
+        return fullBatches;
+    }
+
+    /**
+     * @return the number of batches sent because their oldest record had waited the maximum
+     *         buffered time
+     */
+    public long getTimedOutBatches() {
+        return timedOutBatches;
+    }
+
+    /**
+     * @return the number of batches sent by {@link BufferedDeliveryClient#flush()} or on shutdown
+     */
+    public long getFlushedBatches() {
+        return flushedBatches;
+    }
+
+    /**
+     * @return the number of PutRecordBatch calls made, including failed ones
+     */
+    public long getPutRecordBatchRequests() {
+        return putRecordBatchRequests;
+    }
+
+    /**
+     * @return the number of times a record was sent again after being rejected
+     */
+    public long getRetriedRecords() {
+        return retriedRecords;
+    }
+
+    /**
+     * @return the number of records that could not be delivered
+     */
+    public long getFailedRecords() {
+        return failedRecords;
+    }
+
+    /**
+     * @return the mean number of records per PutRecordBatch call
+     */
+    public double getAverageRecordsPerBatch() {
+        long batches = fullBatches + timedOutBatches + flushedBatches;
+        return batches == 0 ? 0 : (double) batchedRecords / batches;
+    }
+
+    /**
+     * @return the mean time, in milliseconds, from putting a record to it being delivered
+     */
+    public double getAverageRecordLatencyMillis() {
+        return recordsDelivered == 0 ? 0 : (double) totalRecordLatencyMillis / recordsDelivered;
+    }
+
+    /**
+     * @return the mean duration of PutRecordBatch calls, in milliseconds
+     */
+    public double getAverageRequestLatencyMillis() {
+        return putRecordBatchRequests == 0 ? 0 : (double) totalRequestLatencyMillis / putRecordBatchRequests;
+    }
+
+    /**
+     * @return the mean number of records delivered per second since the client was created
+     */
+    public double getRecordsPerSecond() {
+        return elapsedMillis == 0 ? 0 : recordsDelivered * 1000.0 / elapsedMillis;
+    }
+
+    /**
+     * @return the mean number of bytes delivered per second since the client was created
+     */
+    public double getBytesPerSecond() {
+        return elapsedMillis == 0 ? 0 : bytesDelivered * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferedDeliveryMetrics [elapsedMillis=" + elapsedMillis + ", bufferedBytes=" + bufferedBytes
+                + ", recordsDelivered=" + recordsDelivered + ", bytesDelivered=" + bytesDelivered
+                + ", fullBatches=" + fullBatches + ", timedOutBatches=" + timedOutBatches + ", flushedBatches="
+                + flushedBatches + ", putRecordBatchRequests=" + putRecordBatchRequests + ", retriedRecords="
+                + retriedRecords + ", failedRecords=" + failedRecords + ", averageRecordsPerBatch="
+                + getAverageRecordsPerBatch() + ", averageRecordLatencyMillis=" + getAverageRecordLatencyMillis()
+                + ", averageRequestLatencyMillis=" + getAverageRequestLatencyMillis() + "]";
+    }
+}
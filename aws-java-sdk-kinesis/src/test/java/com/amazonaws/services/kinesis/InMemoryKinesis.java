@@ -0,0 +1,372 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.GetShardIteratorResult;
+import com.amazonaws.services.kinesis.model.HashKeyRange;
+import com.amazonaws.services.kinesis.model.MergeShardsRequest;
+import com.amazonaws.services.kinesis.model.MergeShardsResult;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.SequenceNumberRange;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import com.amazonaws.services.kinesis.model.SplitShardRequest;
+import com.amazonaws.services.kinesis.model.SplitShardResult;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+
+/**
+ * A single in-memory stream standing in for Kinesis. The shards split the hash key space evenly;
+ * records put are kept in the shard their hash key falls on. Splitting or merging shards closes
+ * them, and reads of a closed shard end once its records have been read. Shard iterators only
+ * expire when asked to.
+ */
+public class InMemoryKinesis extends AbstractAmazonKinesis {
+
+    public static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    private final Map<String, StreamShard> shards = new LinkedHashMap<String, StreamShard>();
+    private final List<List<String>> putRequests = new ArrayList<List<String>>();
+    private final List<GetShardIteratorRequest> iteratorRequests = new ArrayList<GetShardIteratorRequest>();
+    private final List<Long> readNanos = new ArrayList<Long>();
+    private long sequenceNumber;
+    private int describeCalls;
+    private int iteratorGeneration;
+    private int throttledReads;
+
+    /** The most shards one DescribeStream call returns. */
+    private volatile int describePageSize = 100;
+
+    public InMemoryKinesis(int shardCount) {
+        BigInteger width = MAX_HASH_KEY.add(BigInteger.ONE).divide(BigInteger.valueOf(shardCount));
+        for (int i = 0; i < shardCount; i++) {
+            BigInteger start = width.multiply(BigInteger.valueOf(i));
+            BigInteger end = i == shardCount - 1 ? MAX_HASH_KEY : start.add(width).subtract(BigInteger.ONE);
+            addShard(null, null, start, end);
+        }
+    }
+
+    public void setDescribePageSize(int describePageSize) {
+        this.describePageSize = describePageSize;
+    }
+
+    public synchronized int getDescribeCalls() {
+        return describeCalls;
+    }
+
+    /**
+     * @return the partition keys of the entries of each PutRecords call, in call order
+     */
+    public synchronized List<List<String>> getPutRequests() {
+        return new ArrayList<List<String>>(putRequests);
+    }
+
+    /**
+     * @return the records put on the shard so far
+     */
+    public synchronized List<Record> getRecords(String shardId) {
+        return new ArrayList<Record>(shards.get(shardId).records);
+    }
+
+    /**
+     * @return the GetShardIterator calls made so far
+     */
+    public synchronized List<GetShardIteratorRequest> getIteratorRequests() {
+        return new ArrayList<GetShardIteratorRequest>(iteratorRequests);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of each GetRecords call made so far, throttled or not
+     */
+    public synchronized List<Long> getReadNanos() {
+        return new ArrayList<Long>(readNanos);
+    }
+
+    /**
+     * Puts a record on the shard its partition key hashes to.
+     *
+     * @return the record as stored
+     */
+    public synchronized Record put(String partitionKey, String data) {
+        StreamShard shard = shards.get(shardFor(hashKey(partitionKey)));
+        return shard.add(partitionKey, ByteBuffer.wrap(data.getBytes(UTF8)), nextSequenceNumber());
+    }
+
+    /**
+     * Throttles the next GetRecords calls.
+     */
+    public synchronized void throttleReads(int count) {
+        throttledReads += count;
+    }
+
+    /**
+     * Expires every shard iterator handed out so far.
+     */
+    public synchronized void expireIterators() {
+        iteratorGeneration++;
+    }
+
+    /**
+     * @return the id of the open shard whose range holds the hash key
+     */
+    public synchronized String shardFor(BigInteger hashKey) {
+        for (StreamShard shard : shards.values()) {
+            if (shard.isOpen() && shard.start.compareTo(hashKey) <= 0 && shard.end.compareTo(hashKey) >= 0) {
+                return shard.id;
+            }
+        }
+        throw new IllegalStateException("No open shard holds " + hashKey);
+    }
+
+    /**
+     * @return the hash key of a partition key: its MD5 digest as an unsigned 128-bit integer
+     */
+    public static BigInteger hashKey(String partitionKey) {
+        try {
+            return new BigInteger(1, MessageDigest.getInstance("MD5").digest(partitionKey.getBytes(UTF8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Override to reject entries of PutRecords calls.
+     *
+     * @return the error code to reject the entry with, or null to accept it
+     */
+    protected String errorCodeFor(PutRecordsRequestEntry entry) {
+        return null;
+    }
+
+    @Override
+    public synchronized DescribeStreamResult describeStream(DescribeStreamRequest request) {
+        describeCalls++;
+        List<Shard> page = new ArrayList<Shard>();
+        boolean started = request.getExclusiveStartShardId() == null;
+        boolean hasMoreShards = false;
+        for (StreamShard shard : shards.values()) {
+            if (!started) {
+                started = shard.id.equals(request.getExclusiveStartShardId());
+            } else if (page.size() == describePageSize) {
+                hasMoreShards = true;
+                break;
+            } else {
+                page.add(shard.describe());
+            }
+        }
+        return new DescribeStreamResult().withStreamDescription(new StreamDescription()
+                .withStreamName(request.getStreamName()).withStreamStatus("ACTIVE").withShards(page)
+                .withHasMoreShards(hasMoreShards));
+    }
+
+    @Override
+    public synchronized PutRecordsResult putRecords(PutRecordsRequest request) {
+        List<String> partitionKeys = new ArrayList<String>();
+        List<PutRecordsResultEntry> results = new ArrayList<PutRecordsResultEntry>();
+        int failed = 0;
+        for (PutRecordsRequestEntry entry : request.getRecords()) {
+            partitionKeys.add(entry.getPartitionKey());
+            String errorCode = errorCodeFor(entry);
+            if (errorCode != null) {
+                failed++;
+                results.add(new PutRecordsResultEntry().withErrorCode(errorCode).withErrorMessage("Rejected"));
+                continue;
+            }
+            BigInteger hashKey = entry.getExplicitHashKey() != null ? new BigInteger(entry.getExplicitHashKey())
+                    : hashKey(entry.getPartitionKey());
+            StreamShard shard = shards.get(shardFor(hashKey));
+            Record record = shard.add(entry.getPartitionKey(), entry.getData(), nextSequenceNumber());
+            results.add(new PutRecordsResultEntry().withShardId(shard.id).withSequenceNumber(
+                    record.getSequenceNumber()));
+        }
+        putRequests.add(Collections.unmodifiableList(partitionKeys));
+        return new PutRecordsResult().withFailedRecordCount(failed).withRecords(results);
+    }
+
+    @Override
+    public synchronized GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+        iteratorRequests.add(request);
+        StreamShard shard = shards.get(request.getShardId());
+        int position;
+        switch (ShardIteratorType.fromValue(request.getShardIteratorType())) {
+        case TRIM_HORIZON:
+            position = 0;
+            break;
+        case LATEST:
+            position = shard.records.size();
+            break;
+        case AT_SEQUENCE_NUMBER:
+            position = shard.positionOf(request.getStartingSequenceNumber());
+            break;
+        case AFTER_SEQUENCE_NUMBER:
+            position = shard.positionOf(request.getStartingSequenceNumber()) + 1;
+            break;
+        default:
+            throw new IllegalArgumentException(request.getShardIteratorType());
+        }
+        return new GetShardIteratorResult().withShardIterator(iterator(shard, position));
+    }
+
+    @Override
+    public synchronized GetRecordsResult getRecords(GetRecordsRequest request) {
+        readNanos.add(System.nanoTime());
+        if (throttledReads > 0) {
+            throttledReads--;
+            throw new ProvisionedThroughputExceededException("Rate exceeded");
+        }
+        String[] parts = request.getShardIterator().split("/");
+        if (Integer.parseInt(parts[2]) != iteratorGeneration) {
+            throw new ExpiredIteratorException("Iterator expired");
+        }
+        StreamShard shard = shards.get(parts[0]);
+        int position = Integer.parseInt(parts[1]);
+        int limit = request.getLimit() == null ? 10000 : request.getLimit();
+        int end = Math.min(shard.records.size(), position + limit);
+        List<Record> records = new ArrayList<Record>();
+        for (Record record : shard.records.subList(position, end)) {
+            records.add(record.clone().withData(record.getData().duplicate()));
+        }
+        String next = !shard.isOpen() && end == shard.records.size() ? null : iterator(shard, end);
+        return new GetRecordsResult().withRecords(records).withNextShardIterator(next).withMillisBehindLatest(
+                0L);
+    }
+
+    /**
+     * Closes the shard and opens two children covering each half of its hash key range.
+     */
+    @Override
+    public synchronized SplitShardResult splitShard(SplitShardRequest request) {
+        StreamShard parent = shards.get(request.getShardToSplit());
+        BigInteger newStart = new BigInteger(request.getNewStartingHashKey());
+        parent.close(nextSequenceNumber());
+        addShard(parent.id, null, parent.start, newStart.subtract(BigInteger.ONE));
+        addShard(parent.id, null, newStart, parent.end);
+        return new SplitShardResult();
+    }
+
+    /**
+     * Closes two adjacent shards and opens one child covering both their ranges.
+     */
+    @Override
+    public synchronized MergeShardsResult mergeShards(MergeShardsRequest request) {
+        StreamShard parent = shards.get(request.getShardToMerge());
+        StreamShard adjacentParent = shards.get(request.getAdjacentShardToMerge());
+        if (!parent.end.add(BigInteger.ONE).equals(adjacentParent.start)) {
+            throw new IllegalArgumentException("The shards are not adjacent");
+        }
+        String endingSequenceNumber = nextSequenceNumber();
+        parent.close(endingSequenceNumber);
+        adjacentParent.close(endingSequenceNumber);
+        addShard(parent.id, adjacentParent.id, parent.start, adjacentParent.end);
+        return new MergeShardsResult();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    private String iterator(StreamShard shard, int position) {
+        return shard.id + "/" + position + "/" + iteratorGeneration;
+    }
+
+    private StreamShard addShard(String parentId, String adjacentParentId, BigInteger start, BigInteger end) {
+        StreamShard shard = new StreamShard(String.format("shardId-%012d", shards.size()), parentId,
+                adjacentParentId, start, end, nextSequenceNumber());
+        shards.put(shard.id, shard);
+        return shard;
+    }
+
+    private String nextSequenceNumber() {
+        return String.format("%020d", ++sequenceNumber);
+    }
+
+    private static final class StreamShard {
+
+        private final String id;
+        private final String parentId;
+        private final String adjacentParentId;
+        private final BigInteger start;
+        private final BigInteger end;
+        private final String startingSequenceNumber;
+        private String endingSequenceNumber;
+        private final List<Record> records = new ArrayList<Record>();
+
+        private StreamShard(String id, String parentId, String adjacentParentId, BigInteger start,
+                BigInteger end, String startingSequenceNumber) {
+            this.id = id;
+            this.parentId = parentId;
+            this.adjacentParentId = adjacentParentId;
+            this.start = start;
+            this.end = end;
+            this.startingSequenceNumber = startingSequenceNumber;
+        }
+
+        private boolean isOpen() {
+            return endingSequenceNumber == null;
+        }
+
+        private void close(String endingSequenceNumber) {
+            this.endingSequenceNumber = endingSequenceNumber;
+        }
+
+        private int positionOf(String sequenceNumber) {
+            for (int i = 0; i < records.size(); i++) {
+                if (records.get(i).getSequenceNumber().equals(sequenceNumber)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("No record " + sequenceNumber + " in shard " + id);
+        }
+
+        private Record add(String partitionKey, ByteBuffer data, String sequenceNumber) {
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data.duplicate()).flip();
+            Record record = new Record().withPartitionKey(partitionKey).withData(copy.asReadOnlyBuffer())
+                    .withSequenceNumber(sequenceNumber);
+            records.add(record);
+            return record;
+        }
+
+        private Shard describe() {
+            return new Shard().withShardId(id).withParentShardId(parentId).withAdjacentParentShardId(
+                    adjacentParentId).withHashKeyRange(new HashKeyRange().withStartingHashKey(
+                    start.toString()).withEndingHashKey(end.toString())).withSequenceNumberRange(
+                    new SequenceNumberRange().withStartingSequenceNumber(startingSequenceNumber)
+                            .withEndingSequenceNumber(endingSequenceNumber));
+        }
+    }
+}
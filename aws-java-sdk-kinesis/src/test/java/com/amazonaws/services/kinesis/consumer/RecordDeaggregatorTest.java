@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.InMemoryKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.producer.KinesisProducer;
+import com.amazonaws.services.kinesis.producer.KinesisProducerConfiguration;
+import com.amazonaws.services.kinesis.producer.UserRecordResult;
+
+public class RecordDeaggregatorTest {
+
+    private static final String SHARD_ID = "shardId-000000000000";
+
+    @Test
+    public void testProducerRecordsRoundTrip() throws Exception {
+        List<String> partitionKeys = new ArrayList<String>();
+        List<String> explicitHashKeys = new ArrayList<String>();
+        List<ByteBuffer> datas = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < 300; i++) {
+            partitionKeys.add("key-" + (i % 140) + "-\u00e9");
+            explicitHashKeys.add(i % 5 == 0 ? String.valueOf(i) : null);
+            byte[] data = new byte[(i * 37) % 2000];
+            Arrays.fill(data, (byte) i);
+            datas.add(ByteBuffer.wrap(data));
+        }
+        InMemoryKinesis kinesis = produce(partitionKeys, explicitHashKeys, datas);
+
+        List<Record> records = kinesis.getRecords(SHARD_ID);
+        // 300 records of up to 2 KB do not fit in one 50 KB aggregated record
+        Assert.assertTrue(records.size() > 1);
+        List<UserRecord> userRecords = new ArrayList<UserRecord>();
+        for (Record record : records) {
+            int start = userRecords.size();
+            RecordDeaggregator.deaggregate(record, userRecords);
+            for (int i = start; i < userRecords.size(); i++) {
+                UserRecord userRecord = userRecords.get(i);
+                Assert.assertTrue(userRecord.isAggregated());
+                Assert.assertEquals(i - start, userRecord.getSubSequenceNumber());
+                Assert.assertEquals(record.getSequenceNumber(), userRecord.getSequenceNumber());
+            }
+        }
+
+        Assert.assertEquals(300, userRecords.size());
+        for (int i = 0; i < userRecords.size(); i++) {
+            Assert.assertEquals(partitionKeys.get(i), userRecords.get(i).getPartitionKey());
+            Assert.assertEquals(explicitHashKeys.get(i), userRecords.get(i).getExplicitHashKey());
+            Assert.assertEquals(datas.get(i), userRecords.get(i).getData());
+        }
+    }
+
+    @Test
+    public void testPlainRecordIsReturnedAsIs() {
+        Record record = new Record().withPartitionKey("key").withSequenceNumber("1").withData(
+                ByteBuffer.wrap("plain".getBytes(UTF8)));
+        List<UserRecord> userRecords = new ArrayList<UserRecord>();
+        RecordDeaggregator.deaggregate(record, userRecords);
+
+        Assert.assertEquals(1, userRecords.size());
+        Assert.assertFalse(userRecords.get(0).isAggregated());
+        Assert.assertEquals(-1, userRecords.get(0).getSubSequenceNumber());
+        Assert.assertEquals(record.getData(), userRecords.get(0).getData());
+    }
+
+    @Test
+    public void testRecordWithBadDigestIsReturnedAsIs() throws Exception {
+        InMemoryKinesis kinesis = produce(Arrays.asList("a", "b"), Arrays.asList((String) null, null),
+                Arrays.asList(ByteBuffer.wrap(new byte[10]), ByteBuffer.wrap(new byte[20])));
+        Record record = kinesis.getRecords(SHARD_ID).get(0);
+        byte[] data = new byte[record.getData().remaining()];
+        record.getData().duplicate().get(data);
+        data[data.length - 1] ^= 1;
+        record = record.clone().withData(ByteBuffer.wrap(data));
+
+        List<UserRecord> userRecords = new ArrayList<UserRecord>();
+        RecordDeaggregator.deaggregate(record, userRecords);
+        Assert.assertEquals(1, userRecords.size());
+        Assert.assertFalse(userRecords.get(0).isAggregated());
+        Assert.assertEquals(ByteBuffer.wrap(data), userRecords.get(0).getData());
+    }
+
+    /**
+     * Puts the records on a one-shard stream through a producer, once the producer has listed the
+     * shard so that they are aggregated.
+     */
+    private static InMemoryKinesis produce(List<String> partitionKeys, List<String> explicitHashKeys,
+            List<ByteBuffer> datas) throws Exception {
+        final CountDownLatch listed = new CountDownLatch(1);
+        InMemoryKinesis kinesis = new InMemoryKinesis(1) {
+            @Override
+            public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+                try {
+                    return super.describeStream(request);
+                } finally {
+                    listed.countDown();
+                }
+            }
+        };
+        KinesisProducer producer = new KinesisProducer(kinesis, "stream", new KinesisProducerConfiguration()
+                .withRecordMaxBufferedTimeMillis(60 * 1000));
+        try {
+            Assert.assertTrue(listed.await(10, TimeUnit.SECONDS));
+            // the listed ranges are published just after the call returns
+            Thread.sleep(100);
+            List<Future<UserRecordResult>> futures = new ArrayList<Future<UserRecordResult>>();
+            for (int i = 0; i < partitionKeys.size(); i++) {
+                futures.add(producer.addUserRecord(partitionKeys.get(i), explicitHashKeys.get(i), datas.get(i)));
+            }
+            producer.flush();
+            for (Future<UserRecordResult> future : futures) {
+                Assert.assertTrue(future.get(10, TimeUnit.SECONDS).getSubSequenceNumber() >= 0);
+            }
+        } finally {
+            producer.shutdown();
+            producer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        return kinesis;
+    }
+}
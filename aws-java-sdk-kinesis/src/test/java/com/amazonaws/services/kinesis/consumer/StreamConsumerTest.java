@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.consumer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.InMemoryKinesis;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.MergeShardsRequest;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import com.amazonaws.services.kinesis.model.SplitShardRequest;
+
+public class StreamConsumerTest {
+
+    private static final String STREAM = "stream";
+
+    private final InMemoryKinesis kinesis = new InMemoryKinesis(1);
+    private final InMemoryCheckpointStore checkpoints = new InMemoryCheckpointStore();
+    private final RecordingProcessor processor = new RecordingProcessor();
+    private StreamConsumer consumer;
+
+    @After
+    public void tearDown() throws Exception {
+        if (consumer != null) {
+            consumer.shutdown();
+            Assert.assertTrue(consumer.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testChildShardsWaitForTheirParents() throws Exception {
+        int written = 0;
+        for (int i = 0; i < 30; i++) {
+            kinesis.put("key-" + (i % 10), String.valueOf(written++));
+        }
+        BigInteger middle = InMemoryKinesis.MAX_HASH_KEY.shiftRight(1);
+        kinesis.splitShard(new SplitShardRequest().withStreamName(STREAM).withShardToSplit(shardId(0))
+                .withNewStartingHashKey(middle.toString()));
+        for (int i = 0; i < 30; i++) {
+            kinesis.put("key-" + (i % 10), String.valueOf(written++));
+        }
+        kinesis.mergeShards(new MergeShardsRequest().withStreamName(STREAM).withShardToMerge(shardId(1))
+                .withAdjacentShardToMerge(shardId(2)));
+        for (int i = 0; i < 30; i++) {
+            kinesis.put("key-" + (i % 10), String.valueOf(written++));
+        }
+
+        start(new StreamConsumerConfiguration());
+        processor.awaitCount(90);
+        awaitCheckpoint(shardId(0), CheckpointStore.SHARD_END);
+        awaitCheckpoint(shardId(1), CheckpointStore.SHARD_END);
+        awaitCheckpoint(shardId(2), CheckpointStore.SHARD_END);
+
+        List<Delivery> deliveries = processor.deliveries();
+        Assert.assertEquals(90, deliveries.size());
+        Map<String, Integer> lastByKey = new HashMap<String, Integer>();
+        for (Delivery delivery : deliveries) {
+            Integer last = lastByKey.put(delivery.partitionKey, delivery.value);
+            Assert.assertTrue("Out of order: " + delivery, last == null || last < delivery.value);
+        }
+        int lastOfParent = lastIndexOf(deliveries, shardId(0));
+        Assert.assertTrue(lastOfParent < firstIndexOf(deliveries, shardId(1)));
+        Assert.assertTrue(lastOfParent < firstIndexOf(deliveries, shardId(2)));
+        int firstOfMerged = firstIndexOf(deliveries, shardId(3));
+        Assert.assertTrue(lastIndexOf(deliveries, shardId(1)) < firstOfMerged);
+        Assert.assertTrue(lastIndexOf(deliveries, shardId(2)) < firstOfMerged);
+        Assert.assertEquals(Collections.singleton(shardId(3)), consumer.getActiveShardIds());
+    }
+
+    @Test
+    public void testThrottledReadsBackOff() throws Exception {
+        kinesis.put("key", "0");
+        kinesis.throttleReads(3);
+
+        start(new StreamConsumerConfiguration().withMinThrottleDelayMillis(50).withMaxThrottleDelayMillis(1000));
+        processor.awaitCount(1);
+
+        List<Long> reads = kinesis.getReadNanos();
+        Assert.assertTrue(reads.size() >= 4);
+        long[] delays = { 50, 100, 200 };
+        for (int i = 0; i < delays.length; i++) {
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(reads.get(i + 1) - reads.get(i));
+            Assert.assertTrue("Read " + (i + 1) + " after " + gapMillis + " ms", gapMillis >= delays[i] - 1);
+        }
+    }
+
+    @Test
+    public void testExpiredIteratorIsRenewedAfterTheLastRecord() throws Exception {
+        List<Record> records = new ArrayList<Record>();
+        for (int i = 0; i < 5; i++) {
+            records.add(kinesis.put("key", String.valueOf(i)));
+        }
+        start(new StreamConsumerConfiguration());
+        processor.awaitCount(5);
+        awaitCheckpoint(shardId(0), records.get(4).getSequenceNumber());
+
+        kinesis.expireIterators();
+        for (int i = 5; i < 10; i++) {
+            kinesis.put("key", String.valueOf(i));
+        }
+        processor.awaitCount(10);
+        Thread.sleep(100);
+
+        List<Delivery> deliveries = processor.deliveries();
+        Assert.assertEquals(10, deliveries.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            Assert.assertEquals(i, deliveries.get(i).value);
+        }
+        List<GetShardIteratorRequest> requests = kinesis.getIteratorRequests();
+        Assert.assertEquals(2, requests.size());
+        Assert.assertEquals(ShardIteratorType.TRIM_HORIZON.toString(), requests.get(0).getShardIteratorType());
+        Assert.assertEquals(ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(),
+                requests.get(1).getShardIteratorType());
+        Assert.assertEquals(records.get(4).getSequenceNumber(), requests.get(1).getStartingSequenceNumber());
+    }
+
+    @Test
+    public void testResumesAfterTheCheckpointAndRetriesFailedPages() throws Exception {
+        List<Record> records = new ArrayList<Record>();
+        for (int i = 0; i < 6; i++) {
+            records.add(kinesis.put("key", String.valueOf(i)));
+        }
+        checkpoints.setCheckpoint(STREAM, shardId(0), records.get(2).getSequenceNumber());
+        processor.failures.set(1);
+
+        start(new StreamConsumerConfiguration());
+        processor.awaitCount(3);
+        awaitCheckpoint(shardId(0), records.get(5).getSequenceNumber());
+
+        List<Delivery> deliveries = processor.deliveries();
+        Assert.assertEquals(3, deliveries.size());
+        for (int i = 0; i < deliveries.size(); i++) {
+            Assert.assertEquals(i + 3, deliveries.get(i).value);
+        }
+        Assert.assertEquals(2, processor.calls.get());
+        GetShardIteratorRequest request = kinesis.getIteratorRequests().get(0);
+        Assert.assertEquals(ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(), request.getShardIteratorType());
+        Assert.assertEquals(records.get(2).getSequenceNumber(), request.getStartingSequenceNumber());
+    }
+
+    private void start(StreamConsumerConfiguration config) {
+        consumer = new StreamConsumer(kinesis, STREAM, processor, checkpoints, config.withMinIdleDelayMillis(10)
+                .withMaxIdleDelayMillis(50).withShardSyncIntervalMillis(50));
+        consumer.start();
+    }
+
+    private void awaitCheckpoint(String shardId, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!expected.equals(checkpoints.getCheckpoint(STREAM, shardId)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(expected, checkpoints.getCheckpoint(STREAM, shardId));
+    }
+
+    private static String shardId(int index) {
+        return String.format("shardId-%012d", index);
+    }
+
+    private static int firstIndexOf(List<Delivery> deliveries, String shardId) {
+        for (int i = 0; i < deliveries.size(); i++) {
+            if (deliveries.get(i).shardId.equals(shardId)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Nothing delivered from " + shardId);
+    }
+
+    private static int lastIndexOf(List<Delivery> deliveries, String shardId) {
+        for (int i = deliveries.size() - 1; i >= 0; i--) {
+            if (deliveries.get(i).shardId.equals(shardId)) {
+                return i;
+            }
+        }
+        throw new AssertionError("Nothing delivered from " + shardId);
+    }
+
+    private static final class Delivery {
+
+        private final String shardId;
+        private final String partitionKey;
+        private final int value;
+
+        private Delivery(String shardId, UserRecord record) {
+            this.shardId = shardId;
+            this.partitionKey = record.getPartitionKey();
+            byte[] data = new byte[record.getData().remaining()];
+            record.getData().duplicate().get(data);
+            this.value = Integer.parseInt(new String(data, UTF8));
+        }
+
+        @Override
+        public String toString() {
+            return shardId + " " + partitionKey + " " + value;
+        }
+    }
+
+    /**
+     * Records the pages it successfully processed, after failing the given number of calls.
+     */
+    private static final class RecordingProcessor implements RecordProcessor {
+
+        private final List<Delivery> deliveries = new ArrayList<Delivery>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        public void processRecords(String shardId, List<UserRecord> records) {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Failing as asked");
+            }
+            synchronized (this) {
+                for (UserRecord record : records) {
+                    deliveries.add(new Delivery(shardId, record));
+                }
+            }
+        }
+
+        private synchronized List<Delivery> deliveries() {
+            return new ArrayList<Delivery>(deliveries);
+        }
+
+        private void awaitCount(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (deliveries().size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue("Only " + deliveries().size() + " records delivered", deliveries().size() >= count);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.InMemoryKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+
+public class KinesisProducerTest {
+
+    private KinesisProducer producer;
+
+    @After
+    public void tearDown() throws Exception {
+        if (producer != null) {
+            producer.shutdown();
+            producer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testAggregatedRecordsLandOnThePredictedShard() throws Exception {
+        final CountDownLatch listed = new CountDownLatch(1);
+        InMemoryKinesis kinesis = new InMemoryKinesis(4) {
+            @Override
+            public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+                try {
+                    return super.describeStream(request);
+                } finally {
+                    listed.countDown();
+                }
+            }
+        };
+        producer = new KinesisProducer(kinesis, "stream", new KinesisProducerConfiguration()
+                .withRecordMaxBufferedTimeMillis(60 * 1000));
+        Assert.assertTrue(listed.await(10, TimeUnit.SECONDS));
+        // the listed ranges are published just after the call returns
+        Thread.sleep(100);
+
+        Map<Future<UserRecordResult>, String> expectedShards = new HashMap<Future<UserRecordResult>, String>();
+        for (int i = 0; i < 200; i++) {
+            String partitionKey = "key-" + i;
+            expectedShards.put(producer.addUserRecord(partitionKey, data(i)),
+                    kinesis.shardFor(InMemoryKinesis.hashKey(partitionKey)));
+        }
+        UserRecord explicit = new UserRecord("key", "12345", null);
+        expectedShards.put(producer.addUserRecord("key", "12345", data(200)), kinesis.shardFor(explicit.hashKey()));
+        producer.flush();
+
+        Set<String> shards = new HashSet<String>();
+        for (Map.Entry<Future<UserRecordResult>, String> expected : expectedShards.entrySet()) {
+            UserRecordResult result = expected.getKey().get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(expected.getValue(), result.getShardId());
+            Assert.assertTrue(result.getSubSequenceNumber() >= 0);
+            shards.add(result.getShardId());
+        }
+        Assert.assertEquals(4, shards.size());
+        // one PutRecords call with one aggregated record per shard
+        Assert.assertEquals(1, kinesis.getPutRequests().size());
+        Assert.assertEquals(4, kinesis.getPutRequests().get(0).size());
+        // no misprediction, so no refresh beyond the initial listing
+        Assert.assertEquals(1, kinesis.getDescribeCalls());
+    }
+
+    @Test
+    public void testOnlyRejectedEntriesAreRetried() throws Exception {
+        final Set<String> rejected = Collections.synchronizedSet(new HashSet<String>());
+        InMemoryKinesis kinesis = new InMemoryKinesis(2) {
+            @Override
+            protected String errorCodeFor(PutRecordsRequestEntry entry) {
+                return entry.getPartitionKey().startsWith("reject") && rejected.add(entry.getPartitionKey())
+                        ? "ProvisionedThroughputExceededException" : null;
+            }
+        };
+        producer = new KinesisProducer(kinesis, "stream", new KinesisProducerConfiguration()
+                .withAggregationEnabled(false).withRetryBackoffMillis(1).withRecordMaxBufferedTimeMillis(
+                        60 * 1000));
+
+        Map<String, Future<UserRecordResult>> futures = new HashMap<String, Future<UserRecordResult>>();
+        for (int i = 0; i < 10; i++) {
+            String partitionKey = (i % 3 == 0 ? "reject-" : "accept-") + i;
+            futures.put(partitionKey, producer.addUserRecord(partitionKey, data(i)));
+        }
+        producer.flush();
+        // retries are batched again and sent on the next flush
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!allDone(futures.values()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            producer.flush();
+        }
+
+        for (Map.Entry<String, Future<UserRecordResult>> future : futures.entrySet()) {
+            UserRecordResult result = future.getValue().get(1, TimeUnit.SECONDS);
+            Assert.assertEquals(future.getKey().startsWith("reject") ? 2 : 1, result.getAttempts());
+            Assert.assertEquals(-1, result.getSubSequenceNumber());
+        }
+        List<List<String>> requests = kinesis.getPutRequests();
+        Assert.assertEquals(10, requests.get(0).size());
+        List<String> resent = new ArrayList<String>();
+        for (List<String> request : requests.subList(1, requests.size())) {
+            resent.addAll(request);
+        }
+        Collections.sort(resent);
+        Assert.assertEquals(new ArrayList<String>(new TreeSet<String>(rejected)), resent);
+        Assert.assertEquals(4, resent.size());
+    }
+
+    @Test
+    public void testRecordFailsOnceOutOfRetries() throws Exception {
+        InMemoryKinesis kinesis = new InMemoryKinesis(1) {
+            @Override
+            protected String errorCodeFor(PutRecordsRequestEntry entry) {
+                return entry.getPartitionKey().equals("reject") ? "InternalFailure" : null;
+            }
+        };
+        producer = new KinesisProducer(kinesis, "stream", new KinesisProducerConfiguration()
+                .withAggregationEnabled(false).withMaxRetries(2).withRetryBackoffMillis(1)
+                .withRecordMaxBufferedTimeMillis(10));
+
+        Future<UserRecordResult> accepted = producer.addUserRecord("accept", data(1));
+        Future<UserRecordResult> rejected = producer.addUserRecord("reject", data(2));
+        Assert.assertEquals(1, accepted.get(10, TimeUnit.SECONDS).getAttempts());
+        try {
+            rejected.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the record to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonClientException);
+        }
+
+        int sent = 0;
+        for (List<String> request : kinesis.getPutRequests()) {
+            sent += Collections.frequency(request, "reject");
+        }
+        Assert.assertEquals(3, sent);
+        Assert.assertEquals(1, producer.getMetrics().getFailedUserRecords());
+    }
+
+    private static boolean allDone(Iterable<Future<UserRecordResult>> futures) {
+        for (Future<UserRecordResult> future : futures) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer data(int i) {
+        return ByteBuffer.wrap(("data-" + i).getBytes(UTF8));
+    }
+}
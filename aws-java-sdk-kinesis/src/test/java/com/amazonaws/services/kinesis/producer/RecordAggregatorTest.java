@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+
+public class RecordAggregatorTest {
+
+    /** Data sizes on either side of the one, two and three byte varint boundaries. */
+    private static final int[] DATA_SIZES = { 0, 1, 126, 127, 128, 129, 16382, 16383, 16384, 16385 };
+
+    @Test
+    public void testSizeIsTheEncodedLength() throws Exception {
+        RecordAggregator aggregator = new RecordAggregator();
+        for (int i = 0; i < 300; i++) {
+            // past 128 distinct keys their indexes take two bytes
+            aggregator.add(record("key-" + (i % 150), i % 3 == 0 ? String.valueOf(i % 200) : null,
+                    DATA_SIZES[i % DATA_SIZES.length]));
+            assertEncodedSize(aggregator);
+        }
+    }
+
+    @Test
+    public void testSizeWithIsTheSizeOnceAdded() throws Exception {
+        RecordAggregator aggregator = new RecordAggregator();
+        for (int i = 0; i < 300; i++) {
+            UserRecord record = record("key-" + (i % 150), i % 4 == 0 ? String.valueOf(i % 200) : null,
+                    DATA_SIZES[(i * 7) % DATA_SIZES.length]);
+            int predicted = aggregator.sizeWith(record);
+            aggregator.add(record);
+            Assert.assertEquals(predicted, aggregator.size());
+        }
+    }
+
+    @Test
+    public void testLongPartitionKeysAreCounted() throws Exception {
+        RecordAggregator aggregator = new RecordAggregator();
+        char[] key = new char[256];
+        for (int i = 0; i < 10; i++) {
+            Arrays.fill(key, (char) ('a' + i));
+            UserRecord record = record(new String(key), null, 200);
+            int predicted = aggregator.sizeWith(record);
+            aggregator.add(record);
+            Assert.assertEquals(predicted, aggregator.size());
+            assertEncodedSize(aggregator);
+        }
+    }
+
+    @Test
+    public void testSingleRecordIsSentAsIs() throws Exception {
+        RecordAggregator aggregator = new RecordAggregator();
+        UserRecord record = record("key", "42", 10);
+        aggregator.add(record);
+
+        PutRecordsRequestEntry entry = aggregator.toEntry();
+        Assert.assertEquals("key", entry.getPartitionKey());
+        Assert.assertEquals("42", entry.getExplicitHashKey());
+        Assert.assertEquals(record.data, entry.getData());
+        Assert.assertEquals(record.plainSize(), aggregator.size());
+    }
+
+    @Test
+    public void testAggregatedRecordIsFramed() throws Exception {
+        RecordAggregator aggregator = new RecordAggregator();
+        aggregator.add(record("first", null, 10));
+        aggregator.add(record("second", null, 20));
+
+        PutRecordsRequestEntry entry = aggregator.toEntry();
+        Assert.assertEquals("first", entry.getPartitionKey());
+        byte[] data = new byte[entry.getData().remaining()];
+        entry.getData().duplicate().get(data);
+        int messageEnd = data.length - 16;
+        Assert.assertTrue(Arrays.equals(RecordAggregator.MAGIC, Arrays.copyOf(data, 4)));
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        md5.update(data, 4, messageEnd - 4);
+        Assert.assertTrue(Arrays.equals(md5.digest(), Arrays.copyOfRange(data, messageEnd, data.length)));
+    }
+
+    private static void assertEncodedSize(RecordAggregator aggregator) {
+        PutRecordsRequestEntry entry = aggregator.toEntry();
+        Assert.assertEquals(entry.getData().remaining() + entry.getPartitionKey().getBytes(UTF8).length,
+                aggregator.size());
+    }
+
+    private static UserRecord record(String partitionKey, String explicitHashKey, int dataSize) {
+        byte[] data = new byte[dataSize];
+        Arrays.fill(data, (byte) dataSize);
+        return new UserRecord(partitionKey, explicitHashKey, ByteBuffer.wrap(data));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.producer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.math.BigInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.InMemoryKinesis;
+
+public class ShardMapTest {
+
+    @Test
+    public void testNoShardIsKnownBeforeRefresh() {
+        ShardMap shardMap = new ShardMap(new InMemoryKinesis(4), "stream");
+        Assert.assertNull(shardMap.shardFor(ShardMap.hashKey("key".getBytes(UTF8))));
+    }
+
+    @Test
+    public void testPartitionKeysMapToTheShardKinesisPicks() {
+        InMemoryKinesis kinesis = new InMemoryKinesis(5);
+        kinesis.setDescribePageSize(2);
+        ShardMap shardMap = new ShardMap(kinesis, "stream");
+        shardMap.refresh();
+        Assert.assertEquals(3, kinesis.getDescribeCalls());
+
+        for (int i = 0; i < 1000; i++) {
+            String partitionKey = "key-" + i;
+            Assert.assertEquals(kinesis.shardFor(InMemoryKinesis.hashKey(partitionKey)),
+                    shardMap.shardFor(ShardMap.hashKey(partitionKey.getBytes(UTF8))));
+        }
+    }
+
+    @Test
+    public void testRangeBoundariesMapToTheirShard() {
+        InMemoryKinesis kinesis = new InMemoryKinesis(3);
+        ShardMap shardMap = new ShardMap(kinesis, "stream");
+        shardMap.refresh();
+
+        UserRecord lowest = new UserRecord("key", "0", null);
+        UserRecord highest = new UserRecord("key", InMemoryKinesis.MAX_HASH_KEY.toString(), null);
+        Assert.assertEquals(kinesis.shardFor(lowest.hashKey()), shardMap.shardFor(lowest.hashKey()));
+        Assert.assertEquals(kinesis.shardFor(highest.hashKey()), shardMap.shardFor(highest.hashKey()));
+        Assert.assertNull(shardMap.shardFor(InMemoryKinesis.MAX_HASH_KEY.add(BigInteger.ONE)));
+    }
+}
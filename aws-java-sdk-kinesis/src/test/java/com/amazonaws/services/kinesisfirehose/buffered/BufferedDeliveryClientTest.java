@@ -0,0 +1,250 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesisfirehose.model.PutRecordResult;
+
+public class BufferedDeliveryClientTest {
+
+    private static final long NEVER_MILLIS = 60 * 1000;
+
+    private BufferedDeliveryClient client;
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.shutdown();
+            client.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testBatchIsSentOnceItHolds500Records() throws Exception {
+        InMemoryFirehose firehose = new InMemoryFirehose();
+        client = new BufferedDeliveryClient(firehose, "stream", new BufferedDeliveryConfiguration()
+                .withMaxBufferedTimeMillis(NEVER_MILLIS));
+
+        List<Future<PutRecordResult>> futures = new ArrayList<Future<PutRecordResult>>();
+        for (int i = 0; i < 1200; i++) {
+            futures.add(client.putRecord(data(String.valueOf(i))));
+        }
+        awaitAll(futures.subList(0, 1000));
+        Thread.sleep(100);
+        Assert.assertEquals(Arrays.asList(500, 500), sizes(firehose.batches()));
+        Assert.assertFalse(futures.get(1000).isDone());
+
+        client.flush();
+        awaitAll(futures);
+        Assert.assertEquals(Arrays.asList(500, 500, 200), sizes(firehose.batches()));
+        BufferedDeliveryMetrics metrics = client.getMetrics();
+        Assert.assertEquals(2, metrics.getFullBatches());
+        Assert.assertEquals(1, metrics.getFlushedBatches());
+        Assert.assertEquals(0, metrics.getTimedOutBatches());
+    }
+
+    @Test
+    public void testBatchIsSentOnceItHoldsFourMegabytes() throws Exception {
+        InMemoryFirehose firehose = new InMemoryFirehose();
+        client = new BufferedDeliveryClient(firehose, "stream", new BufferedDeliveryConfiguration()
+                .withMaxBufferedTimeMillis(NEVER_MILLIS));
+        char[] chars = new char[BufferedDeliveryConfiguration.SERVICE_MAX_RECORD_BYTES];
+        Arrays.fill(chars, 'x');
+        ByteBuffer largest = data(new String(chars));
+
+        List<Future<PutRecordResult>> futures = new ArrayList<Future<PutRecordResult>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.putRecord(largest.duplicate()));
+        }
+        // the fifth record brings the buffer past 4 MB, and only four fit in a call
+        awaitAll(futures.subList(0, 4));
+        Thread.sleep(100);
+        Assert.assertEquals(1, firehose.batches().size());
+        Assert.assertEquals(4, firehose.batches().get(0).size());
+        Assert.assertTrue(firehose.batchBytes().get(0) <= BufferedDeliveryConfiguration.SERVICE_MAX_BYTES_PER_BATCH);
+        Assert.assertFalse(futures.get(4).isDone());
+
+        client.flush();
+        awaitAll(futures);
+        Assert.assertEquals(Arrays.asList(4, 1), sizes(firehose.batches()));
+    }
+
+    @Test
+    public void testRecordsAreSentOnceTheyHaveWaitedLongEnough() throws Exception {
+        InMemoryFirehose firehose = new InMemoryFirehose();
+        client = new BufferedDeliveryClient(firehose, "stream", new BufferedDeliveryConfiguration()
+                .withMaxBufferedTimeMillis(100));
+
+        long start = System.nanoTime();
+        List<Future<PutRecordResult>> futures = new ArrayList<Future<PutRecordResult>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(client.putRecord(data(String.valueOf(i))));
+        }
+        awaitAll(futures);
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        Assert.assertEquals(Arrays.asList(3), sizes(firehose.batches()));
+        Assert.assertEquals(1, client.getMetrics().getTimedOutBatches());
+    }
+
+    @Test
+    public void testOnlyRejectedRecordsAreRetried() throws Exception {
+        final Set<String> rejected = Collections.synchronizedSet(new HashSet<String>());
+        InMemoryFirehose firehose = new InMemoryFirehose() {
+            @Override
+            protected String errorCodeFor(String data) {
+                return data.startsWith("reject") && rejected.add(data) ? "ServiceUnavailableException" : null;
+            }
+        };
+        client = new BufferedDeliveryClient(firehose, "stream", new BufferedDeliveryConfiguration()
+                .withMaxBufferedTimeMillis(10).withRetryBackoffMillis(1));
+
+        List<Future<PutRecordResult>> futures = new ArrayList<Future<PutRecordResult>>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(client.putRecord(data((i % 3 == 0 ? "reject-" : "accept-") + i)));
+        }
+        client.flush();
+        awaitAll(futures);
+
+        List<List<String>> batches = firehose.batches();
+        Assert.assertEquals(10, batches.get(0).size());
+        List<String> resent = new ArrayList<String>();
+        for (List<String> batch : batches.subList(1, batches.size())) {
+            resent.addAll(batch);
+        }
+        Collections.sort(resent);
+        Assert.assertEquals(Arrays.asList("reject-0", "reject-3", "reject-6", "reject-9"), resent);
+        Assert.assertEquals(4, client.getMetrics().getRetriedRecords());
+        Assert.assertEquals(10, client.getMetrics().getRecordsDelivered());
+    }
+
+    @Test
+    public void testConcurrentPutsAndFlushesLeaveNoRecordBehind() throws Exception {
+        InMemoryFirehose firehose = new InMemoryFirehose();
+        client = new BufferedDeliveryClient(firehose, "stream", new BufferedDeliveryConfiguration()
+                .withMaxBufferedTimeMillis(NEVER_MILLIS).withMaxRecordsPerBatch(7));
+
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<List<Future<PutRecordResult>>>> putters = new ArrayList<Future<List<Future<PutRecordResult>>>>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                putters.add(threads.submit(new Callable<List<Future<PutRecordResult>>>() {
+                    public List<Future<PutRecordResult>> call() throws Exception {
+                        List<Future<PutRecordResult>> futures = new ArrayList<Future<PutRecordResult>>();
+                        for (int i = 0; i < 1000; i++) {
+                            futures.add(client.putRecord(data(thread + "-" + i)));
+                            if (i % 13 == 0) {
+                                client.flush();
+                            }
+                        }
+                        // records put during another thread's drain must not wait for the timer
+                        client.flush();
+                        return futures;
+                    }
+                }));
+            }
+            for (Future<List<Future<PutRecordResult>>> putter : putters) {
+                awaitAll(putter.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        Assert.assertEquals(8000, firehose.recordCount());
+        Set<String> delivered = new HashSet<String>();
+        for (List<String> batch : firehose.batches()) {
+            Assert.assertTrue(batch.size() <= 7);
+            delivered.addAll(batch);
+        }
+        Assert.assertEquals(8000, delivered.size());
+        Assert.assertEquals(0, client.getMetrics().getTimedOutBatches());
+    }
+
+    @Test
+    public void testPutBlocksWhileTheBufferedBytesAreTaken() throws Exception {
+        InMemoryFirehose firehose = new InMemoryFirehose();
+        int maxBufferedBytes = BufferedDeliveryConfiguration.SERVICE_MAX_RECORD_BYTES;
+        client = new BufferedDeliveryClient(firehose, "stream", new BufferedDeliveryConfiguration()
+                .withMaxBufferedTimeMillis(NEVER_MILLIS).withMaxBufferedBytes(maxBufferedBytes));
+        final ByteBuffer large = ByteBuffer.wrap(new byte[maxBufferedBytes / 2 + 1]);
+
+        firehose.close();
+        Future<PutRecordResult> first = client.putRecord(large.duplicate());
+        client.flush();
+        Assert.assertEquals(large.remaining(), client.getMetrics().getBufferedBytes());
+
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try {
+            Future<Future<PutRecordResult>> second = thread.submit(new Callable<Future<PutRecordResult>>() {
+                public Future<PutRecordResult> call() throws Exception {
+                    return client.putRecord(large.duplicate());
+                }
+            });
+            Thread.sleep(200);
+            Assert.assertFalse(second.isDone());
+
+            firehose.open();
+            first.get(10, TimeUnit.SECONDS);
+            Future<PutRecordResult> secondResult = second.get(10, TimeUnit.SECONDS);
+            client.flush();
+            secondResult.get(10, TimeUnit.SECONDS);
+        } finally {
+            thread.shutdownNow();
+        }
+        // the bytes are released just after the future completes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (client.getMetrics().getBufferedBytes() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, client.getMetrics().getBufferedBytes());
+    }
+
+    private static void awaitAll(List<Future<PutRecordResult>> futures) throws Exception {
+        for (Future<PutRecordResult> future : futures) {
+            Assert.assertNotNull(future.get(10, TimeUnit.SECONDS).getRecordId());
+        }
+    }
+
+    private static List<Integer> sizes(List<List<String>> batches) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (List<String> batch : batches) {
+            sizes.add(batch.size());
+        }
+        return sizes;
+    }
+
+    private static ByteBuffer data(String text) {
+        return ByteBuffer.wrap(text.getBytes(UTF8));
+    }
+}
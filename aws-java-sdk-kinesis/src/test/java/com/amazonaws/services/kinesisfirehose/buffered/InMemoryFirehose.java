@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.kinesisfirehose.AbstractAmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+
+/**
+ * A delivery stream standing in for Firehose that keeps the batches it is sent. Calls can be held
+ * until a gate is opened, and single records rejected.
+ */
+class InMemoryFirehose extends AbstractAmazonKinesisFirehose {
+
+    private final List<List<String>> batches = new ArrayList<List<String>>();
+    private final List<Long> batchBytes = new ArrayList<Long>();
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private int recordIds;
+
+    /**
+     * Holds the calls made from now on until {@link #open()}.
+     */
+    void close() {
+        gate = new CountDownLatch(1);
+    }
+
+    void open() {
+        gate.countDown();
+    }
+
+    /**
+     * @return the data, as text, of the records of each call so far, in call order
+     */
+    synchronized List<List<String>> batches() {
+        return new ArrayList<List<String>>(batches);
+    }
+
+    /**
+     * @return the number of data bytes of each call so far, in call order
+     */
+    synchronized List<Long> batchBytes() {
+        return new ArrayList<Long>(batchBytes);
+    }
+
+    synchronized int recordCount() {
+        int count = 0;
+        for (List<String> batch : batches) {
+            count += batch.size();
+        }
+        return count;
+    }
+
+    /**
+     * Override to reject records.
+     *
+     * @return the error code to reject the record with, or null to accept it
+     */
+    protected String errorCodeFor(String data) {
+        return null;
+    }
+
+    @Override
+    public PutRecordBatchResult putRecordBatch(PutRecordBatchRequest request) {
+        try {
+            if (!gate.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The gate was never opened");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        List<String> batch = new ArrayList<String>();
+        List<PutRecordBatchResponseEntry> responses = new ArrayList<PutRecordBatchResponseEntry>();
+        long bytes = 0;
+        int failed = 0;
+        synchronized (this) {
+            for (Record record : request.getRecords()) {
+                byte[] data = new byte[record.getData().remaining()];
+                record.getData().duplicate().get(data);
+                String text = new String(data, UTF8);
+                batch.add(text);
+                bytes += data.length;
+                String errorCode = errorCodeFor(text);
+                if (errorCode != null) {
+                    failed++;
+                    responses.add(new PutRecordBatchResponseEntry().withErrorCode(errorCode).withErrorMessage(
+                            "Rejected"));
+                } else {
+                    responses.add(new PutRecordBatchResponseEntry().withRecordId(String.valueOf(++recordIds)));
+                }
+            }
+            batches.add(batch);
+            batchBytes.add(bytes);
+        }
+        return new PutRecordBatchResult().withFailedPutCount(failed).withRequestResponses(responses);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
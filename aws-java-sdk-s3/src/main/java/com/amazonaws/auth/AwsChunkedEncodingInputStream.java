@@ -20,7 +20,6 @@ import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -28,32 +27,52 @@ import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import com.amazonaws.AmazonClientException;
 import com.amazonaws.internal.SdkInputStream;
-import com.amazonaws.util.BinaryUtils;
 
 /**
  * A wrapper class of InputStream that implements chunked-encoding.
+ * <p>
+ * The chunk data, chunk header and signing buffers are allocated once per
+ * stream and reused for every chunk, and the string to sign of each chunk is
+ * fed to the HMAC directly as bytes rather than being built up as a String.
  */
 public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     protected static final String DEFAULT_ENCODING = "UTF-8";
 
-    private static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+    /** The default number of bytes of data in each chunk. */
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+    /** The minimum chunk size accepted by Amazon S3 for all but the last chunk. */
+    public static final int MIN_CHUNK_SIZE = 8 * 1024;
     private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
 
     private static final String CRLF = "\r\n";
     private static final String CHUNK_STRING_TO_SIGN_PREFIX = "AWS4-HMAC-SHA256-PAYLOAD";
     private static final String CHUNK_SIGNATURE_HEADER = ";chunk-signature=";
     private static final int SIGNATURE_LENGTH = 64;
-    private static final byte[] FINAL_CHUNK = new byte[0];
+    private static final byte[] CHUNK_SIGNATURE_HEADER_BYTES = CHUNK_SIGNATURE_HEADER.getBytes(UTF8);
+    private static final byte[] EMPTY_STRING_SHA256_HEX_LINE =
+            ("\n" + AbstractAWSSigner.EMPTY_STRING_SHA256_HEX + "\n").getBytes(UTF8);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(UTF8);
 
     private InputStream is = null;
     private final int maxBufferSize;
-    private final String dateTime;
-    private final String keyPath;
-    private final String headerSignature;
-    private String priorChunkSignature;
-    private final AWS4Signer aws4Signer;
+    private final int chunkSize;
+    private final byte[] headerSignature;
+
+    /**
+     * The constant "AWS4-HMAC-SHA256-PAYLOAD\n{datetime}\n{scope}\n" part
+     * of the string to sign of every chunk.
+     */
+    private final byte[] stringToSignPrefix;
+
+    /** Hex encoded signature of the prior chunk */
+    private final byte[] priorChunkSignature = new byte[SIGNATURE_LENGTH];
+    /** Hex encoded SHA-256 hash of the current chunk */
+    private final byte[] chunkHash = new byte[SIGNATURE_LENGTH];
+    /** Data of the current chunk */
+    private final byte[] chunkData;
+    /** Header of the current chunk: "{hex size};chunk-signature={signature}\r\n" */
+    private final byte[] chunkHeader;
 
     private final MessageDigest sha256;
     private final Mac hmacSha256;
@@ -73,18 +92,22 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
 
     private static final Log log = LogFactory.getLog(AwsChunkedEncodingInputStream.class);
 
+    /**
+     * @deprecated The signer is no longer used; use
+     *             {@link #AwsChunkedEncodingInputStream(InputStream, int, int, byte[], String, String, String)}.
+     */
+    @Deprecated
     public AwsChunkedEncodingInputStream(InputStream in, byte[] kSigning,
             String datetime, String keyPath, String headerSignature,
             AWS4Signer aws4Signer) {
-        this(in, DEFAULT_BUFFER_SIZE, kSigning, datetime, keyPath, headerSignature, aws4Signer);
+        this(in, DEFAULT_BUFFER_SIZE, DEFAULT_CHUNK_SIZE, kSigning, datetime,
+                keyPath, headerSignature);
     }
 
     /**
      * A wrapper of InputStream that implements pseudo-chunked-encoding.
      * Each chunk will be buffered for the calculation of the chunk signature
      * which is added at the head of each chunk.<br>
-     * The default chunk size cannot be customized, since we need to calculate
-     * the expected encoded stream length before reading the wrapped stream.<br>
      * This class will use the mark() & reset() of the wrapped InputStream if they
      * are supported, otherwise it will create a buffer for bytes read from
      * the wrapped stream.
@@ -102,24 +125,66 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
      *             The signature of the signed headers. This will be used for
      *             calculating the signature of the first chunk.
      * @param aws4Signer
-     *             The AWS4Signer used for hashing and signing.
+     *             Not used.
+     * @deprecated The signer is no longer used; use
+     *             {@link #AwsChunkedEncodingInputStream(InputStream, int, int, byte[], String, String, String)}.
      */
+    @Deprecated
     public AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
             byte[] kSigning, String datetime, String keyPath,
             String headerSignature, AWS4Signer aws4Signer) {
+        this(in, maxBufferSize, DEFAULT_CHUNK_SIZE, kSigning, datetime,
+                keyPath, headerSignature);
+    }
+
+    /**
+     * A wrapper of InputStream that implements pseudo-chunked-encoding with
+     * the given chunk size. The same chunk size must be used to calculate the
+     * expected encoded stream length via
+     * {@link #calculateStreamContentLength(long, int)}.
+     * <p>
+     * Larger chunks mean fewer chunk signatures to compute and send, at the
+     * cost of a larger buffer per stream.
+     *
+     * @param in
+     *             The original InputStream.
+     * @param maxBufferSize
+     *             Maximum number of bytes buffered by this class.
+     * @param chunkSize
+     *             Number of bytes of data in each chunk; must not be less
+     *             than {@link #MIN_CHUNK_SIZE}.
+     * @param kSigning
+     *             Signing key.
+     * @param datetime
+     *             Datetime, as used in SigV4.
+     * @param keyPath
+     *             Keypath/Scope, as used in SigV4.
+     * @param headerSignature
+     *             The signature of the signed headers. This will be used for
+     *             calculating the signature of the first chunk.
+     */
+    public AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
+            int chunkSize, byte[] kSigning, String datetime, String keyPath,
+            String headerSignature) {
+        if (chunkSize < MIN_CHUNK_SIZE)
+            throw new IllegalArgumentException("Chunk size should not be less than " + MIN_CHUNK_SIZE);
+        byte[] reusableChunkData = null;
         if (in instanceof AwsChunkedEncodingInputStream) {
             // This could happen when the request is retried, and we need to re-calculate the signatures.
             AwsChunkedEncodingInputStream originalChunkedStream = (AwsChunkedEncodingInputStream)in;
             maxBufferSize = Math.max(originalChunkedStream.maxBufferSize, maxBufferSize);
             is = originalChunkedStream.is;
             decodedStreamBuffer = originalChunkedStream.decodedStreamBuffer;
+            if (originalChunkedStream.chunkSize == chunkSize) {
+                reusableChunkData = originalChunkedStream.chunkData;
+            }
         }
         else {
             is = in;
             decodedStreamBuffer = null;
         }
 
-        if (maxBufferSize < DEFAULT_CHUNK_SIZE)
+        if (maxBufferSize < chunkSize)
             throw new IllegalArgumentException("Max buffer size should not be less than chunk size");
         try {
             this.sha256 = MessageDigest.getInstance("SHA-256");
@@ -132,11 +197,17 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
             throw new IllegalArgumentException(e);
         }
         this.maxBufferSize = maxBufferSize;
-        this.dateTime = datetime;
-        this.keyPath = keyPath;
-        this.headerSignature = headerSignature;
-        this.priorChunkSignature = headerSignature;
-        this.aws4Signer = aws4Signer;
+        this.chunkSize = chunkSize;
+        this.chunkData = reusableChunkData == null ? new byte[chunkSize] : reusableChunkData;
+        this.chunkHeader = new byte[Integer.toHexString(chunkSize).length()
+                + CHUNK_SIGNATURE_HEADER_BYTES.length + SIGNATURE_LENGTH + CRLF.length()];
+        this.stringToSignPrefix = (CHUNK_STRING_TO_SIGN_PREFIX + "\n"
+                + datetime + "\n"
+                + keyPath + "\n").getBytes(UTF8);
+        this.headerSignature = headerSignature.getBytes(UTF8);
+        if (this.headerSignature.length != SIGNATURE_LENGTH)
+            throw new IllegalArgumentException("Unexpected header signature length");
+        System.arraycopy(this.headerSignature, 0, priorChunkSignature, 0, SIGNATURE_LENGTH);
     }
 
     @Override
@@ -241,7 +312,7 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
         abortIfNeeded();
         // Clear up any encoded data
         currentChunkIterator = null;
-        priorChunkSignature = headerSignature;
+        System.arraycopy(headerSignature, 0, priorChunkSignature, 0, SIGNATURE_LENGTH);
         // Reset the wrapped stream if it is mark-supported,
         // otherwise use our buffered data.
         if (is.markSupported()) {
@@ -266,13 +337,21 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     }
 
     public static long calculateStreamContentLength(long originalLength) {
+        return calculateStreamContentLength(originalLength, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the length of the chunk-encoded stream for the given original
+     * content length and chunk size.
+     */
+    public static long calculateStreamContentLength(long originalLength, int chunkSize) {
         if (originalLength < 0) {
             throw new IllegalArgumentException("Nonnegative content length expected.");
         }
 
-        long maxSizeChunks = originalLength / DEFAULT_CHUNK_SIZE;
-        long remainingBytes =  originalLength % DEFAULT_CHUNK_SIZE;
-        return maxSizeChunks * calculateSignedChunkLength(DEFAULT_CHUNK_SIZE)
+        long maxSizeChunks = originalLength / chunkSize;
+        long remainingBytes =  originalLength % chunkSize;
+        return maxSizeChunks * calculateSignedChunkLength(chunkSize)
                 + (remainingBytes > 0? calculateSignedChunkLength(remainingBytes) : 0)
                 + calculateSignedChunkLength(0);
     }
@@ -292,17 +371,17 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
      *         Returns true if next chunk is the last empty chunk.
      */
     private boolean setUpNextChunk() throws IOException {
-        byte[] chunkData = new byte[DEFAULT_CHUNK_SIZE];
         int chunkSizeInBytes = 0;
-        while (chunkSizeInBytes < DEFAULT_CHUNK_SIZE) {
+        while (chunkSizeInBytes < chunkSize) {
             /** Read from the buffer of the decoded stream */
             if (null != decodedStreamBuffer
                     && decodedStreamBuffer.hasNext()) {
-                chunkData[chunkSizeInBytes++] = decodedStreamBuffer.next();
+                chunkSizeInBytes += decodedStreamBuffer.next(
+                        chunkData, chunkSizeInBytes, chunkSize - chunkSizeInBytes);
             }
             /** Read from the wrapped stream */
             else {
-                int bytesToRead = DEFAULT_CHUNK_SIZE - chunkSizeInBytes;
+                int bytesToRead = chunkSize - chunkSizeInBytes;
                 int count = is.read(chunkData, chunkSizeInBytes, bytesToRead);
                 if (count != -1) {
                     if (null != decodedStreamBuffer)
@@ -313,52 +392,53 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                     break;
             }
         }
-        if (chunkSizeInBytes == 0){
-            byte[] signedFinalChunk = createSignedChunk(FINAL_CHUNK);
-            currentChunkIterator = new ChunkContentIterator(signedFinalChunk);
-            return true;
-        }
-        else {
-            if (chunkSizeInBytes < chunkData.length) {
-                chunkData = Arrays.copyOf(chunkData, chunkSizeInBytes);
-            }
-            byte[] signedChunkContent = createSignedChunk(chunkData);
-            currentChunkIterator = new ChunkContentIterator(signedChunkContent);
-            return false;
-        }
+        int headerLength = signChunk(chunkSizeInBytes);
+        currentChunkIterator = new ChunkContentIterator(
+                chunkHeader, headerLength, chunkData, chunkSizeInBytes);
+        return chunkSizeInBytes == 0;
     }
 
-    private byte[] createSignedChunk(byte[] chunkData) {
-        StringBuilder chunkHeader = new StringBuilder();
+    /**
+     * Signs the first <code>length</code> bytes of the chunk data buffer,
+     * and writes the resulting chunk header into the chunk header buffer.
+     *
+     * @return the length of the chunk header.
+     */
+    private int signChunk(int length) {
+        sha256.update(chunkData, 0, length);
+        toHex(sha256.digest(), chunkHash);
+
+        hmacSha256.update(stringToSignPrefix);
+        hmacSha256.update(priorChunkSignature);
+        hmacSha256.update(EMPTY_STRING_SHA256_HEX_LINE);
+        hmacSha256.update(chunkHash);
+        toHex(hmacSha256.doFinal(), priorChunkSignature);
+
         // chunk-size
-        chunkHeader.append(Integer.toHexString(chunkData.length));
+        int pos = 0;
+        final String hexLength = Integer.toHexString(length);
+        for (int i = 0; i < hexLength.length(); i++) {
+            chunkHeader[pos++] = (byte) hexLength.charAt(i);
+        }
         // sig-extension
-        final String chunkStringToSign =
-                CHUNK_STRING_TO_SIGN_PREFIX + "\n" +
-                dateTime + "\n" +
-                keyPath + "\n" +
-                priorChunkSignature + "\n" +
-                AbstractAWSSigner.EMPTY_STRING_SHA256_HEX + "\n" +
-                BinaryUtils.toHex(sha256.digest(chunkData));
-        final String chunkSignature =
-            BinaryUtils.toHex(aws4Signer.signWithMac(chunkStringToSign, hmacSha256));
-        priorChunkSignature = chunkSignature;
-        chunkHeader.append(CHUNK_SIGNATURE_HEADER)
-                   .append(chunkSignature)
-                   .append(CRLF)
-                   ;
-        try {
-            byte[] header = chunkHeader.toString().getBytes(UTF8);
-            byte[] trailer = CRLF.getBytes(UTF8);
-            byte[] signedChunk = new byte[header.length + chunkData.length + trailer.length];
-            System.arraycopy(header, 0, signedChunk, 0, header.length);
-            System.arraycopy(chunkData, 0, signedChunk, header.length, chunkData.length);
-            System.arraycopy(trailer, 0,
-                    signedChunk, header.length + chunkData.length,
-                    trailer.length);
-            return signedChunk;
-        } catch (Exception e) {
-            throw new AmazonClientException("Unable to sign the chunked data. " + e.getMessage(), e);
+        System.arraycopy(CHUNK_SIGNATURE_HEADER_BYTES, 0,
+                chunkHeader, pos, CHUNK_SIGNATURE_HEADER_BYTES.length);
+        pos += CHUNK_SIGNATURE_HEADER_BYTES.length;
+        System.arraycopy(priorChunkSignature, 0, chunkHeader, pos, SIGNATURE_LENGTH);
+        pos += SIGNATURE_LENGTH;
+        chunkHeader[pos++] = '\r';
+        chunkHeader[pos++] = '\n';
+        return pos;
+    }
+
+    /**
+     * Writes the lower case hex encoding of the given bytes into the
+     * destination array.
+     */
+    private static void toHex(byte[] data, byte[] dest) {
+        for (int i = 0; i < data.length; i++) {
+            dest[2 * i] = HEX_DIGITS[(data[i] >> 4) & 0xF];
+            dest[2 * i + 1] = HEX_DIGITS[data[i] & 0xF];
         }
     }
 
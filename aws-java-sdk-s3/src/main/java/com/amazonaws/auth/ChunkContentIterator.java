@@ -14,17 +14,32 @@
  */
 package com.amazonaws.auth;
 
+/**
+ * Iterates over the bytes of a signed chunk, which consists of the chunk
+ * header, the chunk data and a trailing CRLF. The header and data are read in
+ * place from the given arrays, so that they can be reused for the next chunk.
+ */
 class ChunkContentIterator {
 
-    private final byte[] signedChunk;
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private final byte[] header;
+    private final int headerLength;
+    private final byte[] data;
+    private final int dataLength;
+    private final int totalLength;
     private int pos;
 
-    public ChunkContentIterator(byte[] signedChunk) {
-        this.signedChunk = signedChunk;
+    public ChunkContentIterator(byte[] header, int headerLength, byte[] data, int dataLength) {
+        this.header = header;
+        this.headerLength = headerLength;
+        this.data = data;
+        this.dataLength = dataLength;
+        this.totalLength = headerLength + dataLength + CRLF.length;
     }
 
     public boolean hasNext() {
-        return pos < signedChunk.length;
+        return pos < totalLength;
     }
 
     public int read(byte[] output, int offset, int length) {
@@ -32,10 +47,29 @@ class ChunkContentIterator {
             return 0;
         if ( !hasNext() )
             return -1;
-        int remaingBytesNum = signedChunk.length - pos;
-        int bytesToRead = Math.min(remaingBytesNum, length);
-        System.arraycopy(signedChunk, pos, output, offset, bytesToRead);
-        pos += bytesToRead;
-        return bytesToRead;
+        int bytesRead = 0;
+        while (bytesRead < length && pos < totalLength) {
+            final byte[] segment;
+            final int segmentPos;
+            final int segmentRemaining;
+            if (pos < headerLength) {
+                segment = header;
+                segmentPos = pos;
+                segmentRemaining = headerLength - pos;
+            } else if (pos < headerLength + dataLength) {
+                segment = data;
+                segmentPos = pos - headerLength;
+                segmentRemaining = headerLength + dataLength - pos;
+            } else {
+                segment = CRLF;
+                segmentPos = pos - headerLength - dataLength;
+                segmentRemaining = totalLength - pos;
+            }
+            int bytesToRead = Math.min(segmentRemaining, length - bytesRead);
+            System.arraycopy(segment, segmentPos, output, offset + bytesRead, bytesToRead);
+            pos += bytesToRead;
+            bytesRead += bytesToRead;
+        }
+        return bytesRead;
     }
-}
\ No newline at end of file
+}
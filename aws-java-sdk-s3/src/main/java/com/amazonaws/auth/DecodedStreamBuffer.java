@@ -71,6 +71,23 @@ class DecodedStreamBuffer {
         return bufferArray[pos++];
     }
 
+    /**
+     * Copies up to <code>length</code> of the remaining buffered bytes into
+     * the given array.
+     *
+     * @return the number of bytes copied, which is zero if there are no more
+     *         buffered bytes to be read.
+     */
+    public int next(byte[] dest, int destPos, int length) {
+        if (!hasNext()) {
+            return 0;
+        }
+        int count = Math.min(length, byteBuffered - pos);
+        System.arraycopy(bufferArray, pos, dest, destPos, count);
+        pos += count;
+        return count;
+    }
+
     public void startReadBuffer() {
         if (bufferSizeOverflow) {
             throw new AmazonClientException(
@@ -1322,7 +1322,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                     // No content length check is performed when the
                     // MD5 check is enabled, since a correct MD5 check would
                     // imply a correct content length.
-                    MessageDigest digest = MessageDigest.getInstance("MD5");
+                    MessageDigest digest = ServiceUtils.newMD5Digest();
                     is = new DigestValidationInputStream(is, digest, serverSideHash);
                 } catch (NoSuchAlgorithmException e) {
                     log.warn("No MD5 digest algorithm available.  Unable to calculate "
@@ -3000,19 +3000,24 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                     partSize,
                     uploadPartRequest.isLastPart());
             MD5DigestCalculatingInputStream md5DigestStream = null;
-            if (uploadPartRequest.getMd5Digest() == null
-                    && !skipMd5CheckStrategy.skipClientSideValidationPerRequest(uploadPartRequest)) {
-                /*
-                 * If the user hasn't set the content MD5, then we don't want to buffer the whole
-                 * stream in memory just to calculate it. Instead, we can calculate it on the fly
-                 * and validate it with the returned ETag from the object upload.
-                 */
-                isCurr = md5DigestStream = new MD5DigestCalculatingInputStream(isCurr);
+            /*
+             * If the user hasn't set the content MD5, then we don't want to buffer the whole
+             * stream in memory just to calculate it. Instead, we can calculate it on the fly
+             * and validate it with the returned ETag from the object upload.
+             */
+            final boolean validateMd5 = uploadPartRequest.getMd5Digest() == null
+                    && !skipMd5CheckStrategy.skipClientSideValidationPerRequest(uploadPartRequest);
+            final Long expectedCrc32c = uploadPartRequest.getCrc32cChecksum();
+            if (validateMd5 || expectedCrc32c != null) {
+                // The requested checks are computed in a single pass over the part data
+                isCurr = md5DigestStream = new MD5DigestCalculatingInputStream(
+                        isCurr, validateMd5, expectedCrc32c != null);
             }
             final ProgressListener listener = uploadPartRequest.getGeneralProgressListener();
             publishProgress(listener, ProgressEventType.TRANSFER_PART_STARTED_EVENT);
             return doUploadPart(bucketName, key, uploadId, partNumber,
-                    partSize, request, isCurr, md5DigestStream, listener);
+                    partSize, request, isCurr, md5DigestStream, validateMd5,
+                    expectedCrc32c, listener);
         } finally {
             cleanupDataSource(uploadPartRequest, fileOrig, isOrig, isCurr, log);
         }
@@ -3023,22 +3028,39 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             final long partSize, Request<UploadPartRequest> request,
             InputStream inputStream,
             MD5DigestCalculatingInputStream md5DigestStream,
+            final boolean validateMd5,
+            final Long expectedCrc32c,
             final ProgressListener listener) {
         try {
             request.setContent(inputStream);
             ObjectMetadata metadata = invoke(request, new S3MetadataResponseHandler(), bucketName, key);
             final String etag = metadata.getETag();
+            final String info = "bucketName: " + bucketName + ", key: "
+                    + key + ", uploadId: " + uploadId
+                    + ", partNumber: " + partNumber + ", partSize: "
+                    + partSize;
+
+            if (expectedCrc32c != null) {
+                Long clientSideCrc32c = md5DigestStream.getCrc32cChecksum();
+                if (!expectedCrc32c.equals(clientSideCrc32c)) {
+                    throw new AmazonClientException(
+                         "Unable to verify integrity of data upload.  "
+                        + "Client calculated CRC-32C checksum ("
+                        + clientSideCrc32c
+                        + ") didn't match the expected checksum ("
+                        + expectedCrc32c
+                        + ") of the part data.  "
+                        + "You may need to upload this part again. "
+                        + "(" + info + ")");
+                }
+            }
 
-            if (md5DigestStream != null
+            if (validateMd5
                     && !skipMd5CheckStrategy.skipClientSideValidationPerUploadPartResponse(metadata)) {
                 byte[] clientSideHash = md5DigestStream.getMd5Digest();
                 byte[] serverSideHash = BinaryUtils.fromHex(etag);
 
                 if (!Arrays.equals(clientSideHash, serverSideHash)) {
-                    final String info = "bucketName: " + bucketName + ", key: "
-                            + key + ", uploadId: " + uploadId
-                            + ", partNumber: " + partNumber + ", partSize: "
-                            + partSize;
                     throw new AmazonClientException(
                          "Unable to verify integrity of data upload.  "
                         + "Client calculated content hash (contentMD5: "
@@ -3903,6 +3925,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 Boolean.valueOf(clientOptions.isChunkedEncodingDisabled()));
         request.addHandlerContext(S3HandlerContextKeys.IS_PAYLOAD_SIGNING_ENABLED,
                 Boolean.valueOf(clientOptions.isPayloadSigningEnabled()));
+        request.addHandlerContext(S3HandlerContextKeys.CHUNKED_ENCODING_CHUNK_SIZE,
+                Integer.valueOf(clientOptions.getChunkedEncodingChunkSize()));
         resolveRequestEndpoint(request, bucketName, key, endpoint);
         return request;
     }
@@ -44,6 +44,7 @@ public final class AmazonS3ClientBuilder extends
     private Boolean chunkedEncodingDisabled;
     private Boolean accelerateModeEnabled;
     private Boolean payloadSigningEnabled;
+    private Integer chunkedEncodingChunkSize;
 
     /**
      * @return Create new instance of builder with all defaults set.
@@ -312,6 +313,39 @@ public final class AmazonS3ClientBuilder extends
         return this;
     }
 
+    /**
+     * @return The number of bytes of data in each chunk configured in the builder, or null if
+     *         the default should be used.
+     */
+    public Integer getChunkedEncodingChunkSize() {
+        return chunkedEncodingChunkSize;
+    }
+
+    /**
+     * <p>Configures the number of bytes of data in each chunk when chunked encoding is used.</p>
+     *
+     * <p>Every chunk carries its own signature, so larger chunks reduce the signing overhead of
+     * large uploads, at the cost of a larger buffer for each upload in progress. The default is
+     * 128 KB; Amazon S3 requires chunks of at least 8 KB.</p>
+     *
+     * @param chunkedEncodingChunkSize The number of bytes of data in each chunk.
+     */
+    public void setChunkedEncodingChunkSize(Integer chunkedEncodingChunkSize) {
+        this.chunkedEncodingChunkSize = chunkedEncodingChunkSize;
+    }
+
+    /**
+     * <p>Configures the number of bytes of data in each chunk when chunked encoding is used.</p>
+     *
+     * @param chunkedEncodingChunkSize The number of bytes of data in each chunk.
+     * @return this Builder instance that can be used for method chaining
+     * @see #setChunkedEncodingChunkSize(Integer)
+     */
+    public AmazonS3ClientBuilder withChunkedEncodingChunkSize(Integer chunkedEncodingChunkSize) {
+        setChunkedEncodingChunkSize(chunkedEncodingChunkSize);
+        return this;
+    }
+
     /**
      * Construct a synchronous implementation of AmazonS3 using the current builder configuration.
      *
@@ -337,6 +371,9 @@ public final class AmazonS3ClientBuilder extends
         if (this.pathStyleAccessEnabled != null) {
             builder.setPathStyleAccess(this.pathStyleAccessEnabled);
         }
+        if (this.chunkedEncodingChunkSize != null) {
+            builder.setChunkedEncodingChunkSize(this.chunkedEncodingChunkSize);
+        }
         return builder.build();
     }
 }
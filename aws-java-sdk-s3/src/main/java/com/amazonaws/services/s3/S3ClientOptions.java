@@ -14,6 +14,8 @@
  */
 package com.amazonaws.services.s3;
 
+import com.amazonaws.auth.AwsChunkedEncodingInputStream;
+
 /**
  * S3 client configuration options such as the request access style.
  */
@@ -27,6 +29,8 @@ public class S3ClientOptions {
     public static final boolean DEFAULT_PAYLOAD_SIGNING_ENABLED = false;
     /** S3 accelerate is by default not enabled */
     public static final boolean DEFAULT_ACCELERATE_MODE_ENABLED = false;
+    /** The default number of bytes of data in each chunk when chunked encoding is used */
+    public static final int DEFAULT_CHUNKED_ENCODING_CHUNK_SIZE = AwsChunkedEncodingInputStream.DEFAULT_CHUNK_SIZE;
 
     /*
      * TODO: make it final after we remove the deprecated setters.
@@ -35,6 +39,7 @@ public class S3ClientOptions {
     private boolean chunkedEncodingDisabled;
     private final boolean accelerateModeEnabled;
     private final boolean payloadSigningEnabled;
+    private final int chunkedEncodingChunkSize;
 
     /**
      * @return a new S3ClientOptions builder.
@@ -50,12 +55,13 @@ public class S3ClientOptions {
         private boolean chunkedEncodingDisabled = DEFAULT_CHUNKED_ENCODING_DISABLED;
         private boolean accelerateModeEnabled = DEFAULT_ACCELERATE_MODE_ENABLED;
         private boolean payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
+        private int chunkedEncodingChunkSize = DEFAULT_CHUNKED_ENCODING_CHUNK_SIZE;
 
         private Builder() {}
 
         public S3ClientOptions build() {
             return new S3ClientOptions(pathStyleAccess, chunkedEncodingDisabled,
-                    accelerateModeEnabled, payloadSigningEnabled);
+                    accelerateModeEnabled, payloadSigningEnabled, chunkedEncodingChunkSize);
         }
         /**
          * <p>
@@ -146,6 +152,29 @@ public class S3ClientOptions {
             this.chunkedEncodingDisabled = true;
             return this;
         }
+
+        /**
+         * <p>
+         * Configures the number of bytes of data in each chunk when chunked encoding is used.
+         * </p>
+         * <p>
+         * Every chunk carries its own signature, so larger chunks reduce the signing overhead
+         * of large uploads, at the cost of a larger buffer for each upload in progress. The
+         * default is 128 KB; Amazon S3 requires chunks of at least 8 KB.
+         * </p>
+         *
+         * @param chunkedEncodingChunkSize
+         *            The number of bytes of data in each chunk.
+         * @return this Builder instance that can be used for method chaining
+         */
+        public Builder setChunkedEncodingChunkSize(int chunkedEncodingChunkSize) {
+            if (chunkedEncodingChunkSize < AwsChunkedEncodingInputStream.MIN_CHUNK_SIZE) {
+                throw new IllegalArgumentException("Chunk size should not be less than "
+                        + AwsChunkedEncodingInputStream.MIN_CHUNK_SIZE);
+            }
+            this.chunkedEncodingChunkSize = chunkedEncodingChunkSize;
+            return this;
+        }
     }
 
     /**
@@ -158,6 +187,7 @@ public class S3ClientOptions {
         this.chunkedEncodingDisabled = DEFAULT_CHUNKED_ENCODING_DISABLED;
         this.accelerateModeEnabled = DEFAULT_ACCELERATE_MODE_ENABLED;
         this.payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
+        this.chunkedEncodingChunkSize = DEFAULT_CHUNKED_ENCODING_CHUNK_SIZE;
     }
 
     /**
@@ -170,14 +200,16 @@ public class S3ClientOptions {
         this.chunkedEncodingDisabled = other.chunkedEncodingDisabled;
         this.accelerateModeEnabled = other.accelerateModeEnabled;
         this.payloadSigningEnabled = other.payloadSigningEnabled;
+        this.chunkedEncodingChunkSize = other.chunkedEncodingChunkSize;
     }
 
     private S3ClientOptions(boolean pathStyleAccess, boolean chunkedEncodingDisabled, boolean accelerateModeEnabled,
-                            boolean payloadSigningEnabled) {
+                            boolean payloadSigningEnabled, int chunkedEncodingChunkSize) {
         this.pathStyleAccess = pathStyleAccess;
         this.chunkedEncodingDisabled = chunkedEncodingDisabled;
         this.accelerateModeEnabled = accelerateModeEnabled;
         this.payloadSigningEnabled = payloadSigningEnabled;
+        this.chunkedEncodingChunkSize = chunkedEncodingChunkSize;
     }
 
     /**
@@ -262,6 +294,17 @@ public class S3ClientOptions {
         return payloadSigningEnabled;
     }
 
+    /**
+     * <p>
+     * Returns the number of bytes of data in each chunk when chunked encoding is used.
+     * </p>
+     *
+     * @return The chunk size used for chunked encoding.
+     */
+    public int getChunkedEncodingChunkSize() {
+        return chunkedEncodingChunkSize;
+    }
+
     /**
      * @deprecated Use {@link S3ClientOptions#builder()} to build new
      *             S3ClientOptions instead.
@@ -42,6 +42,9 @@ public class AWSS3V4Signer extends AWS4Signer {
     /** Sent to S3 in lieu of a payload hash when unsigned payloads are enabled */
     private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
 
+    /** Maximum number of bytes buffered for retries of non mark-supported chunk-encoded content */
+    private static final int DEFAULT_CHUNKED_ENCODING_BUFFER_SIZE = 256 * 1024;
+
     /**
      * Don't double-url-encode path elements; S3 expects path elements to be encoded only once in
      * the canonical URI.
@@ -57,11 +60,14 @@ public class AWSS3V4Signer extends AWS4Signer {
     protected void processRequestPayload(SignableRequest<?> request, byte[] signature,
             byte[] signingKey, AWS4SignerRequestParams signerRequestParams) {
         if (useChunkEncoding(request)) {
+            final int chunkSize = getChunkSize(request);
             AwsChunkedEncodingInputStream chunkEncodededStream = new AwsChunkedEncodingInputStream(
-                    request.getContent(), signingKey,
+                    request.getContent(),
+                    Math.max(DEFAULT_CHUNKED_ENCODING_BUFFER_SIZE, chunkSize), chunkSize,
+                    signingKey,
                     signerRequestParams.getFormattedSigningDateTime(),
                     signerRequestParams.getScope(),
-                    BinaryUtils.toHex(signature), this);
+                    BinaryUtils.toHex(signature));
             request.setContent(chunkEncodededStream);
         }
     }
@@ -112,7 +118,8 @@ public class AWSS3V4Signer extends AWS4Signer {
                 // won't cache the stream again to recover Content-Length
                 request.addHeader(Headers.CONTENT_LENGTH, Long.toString(
                         AwsChunkedEncodingInputStream
-                                .calculateStreamContentLength(originalContentLength)));
+                                .calculateStreamContentLength(originalContentLength,
+                                        getChunkSize(request))));
                 return CONTENT_SHA_256;
             } else {
                 return super.calculateContentHash(request);
@@ -152,6 +159,21 @@ public class AWSS3V4Signer extends AWS4Signer {
         return false;
     }
 
+    /**
+     * @return The number of bytes of data in each chunk when chunked encoding is used.
+     */
+    private int getChunkSize(SignableRequest<?> signableRequest) {
+        if (signableRequest instanceof Request) {
+            Request<?> request = (Request<?>) signableRequest;
+            Integer chunkSize = request
+                    .getHandlerContext(S3HandlerContextKeys.CHUNKED_ENCODING_CHUNK_SIZE);
+            if (chunkSize != null) {
+                return chunkSize;
+            }
+        }
+        return AwsChunkedEncodingInputStream.DEFAULT_CHUNK_SIZE;
+    }
+
     /**
      * @return True if payload signing is explicitly enabled.
      */
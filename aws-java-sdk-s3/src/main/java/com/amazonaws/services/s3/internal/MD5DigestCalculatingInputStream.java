@@ -20,28 +20,58 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import com.amazonaws.internal.SdkFilterInputStream;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.services.s3.metrics.DigestThroughputProvider;
 
 /**
  * Simple InputStream wrapper that examines the wrapped stream's contents as
  * they are read and calculates and MD5 digest.
+ * <p>
+ * Optionally a CRC-32C checksum is calculated in the same pass over the data,
+ * either along with the digest or instead of it.
+ * When metrics are enabled, the time spent digesting is reported as the
+ * {@link com.amazonaws.services.s3.metrics.S3ServiceMetric#S3DigestThroughput}
+ * metric.
  */
 public class MD5DigestCalculatingInputStream extends SdkFilterInputStream {
-    /** The MD5 message digest being calculated by this input stream */
+    /** The MD5 message digest being calculated, or null if not requested */
     private MessageDigest digest;
     /**
      * The MD5 message digest as at the time when the last {@link #mark(int)}
      * operation was called; always null if mark is not supported.
      */
     private MessageDigest digestLastMarked;
+    /** The CRC-32C checksum being calculated, or null if not requested */
+    private Crc32c crc32c;
+    /** The CRC-32C checksum as at the time of the last {@link #mark(int)} */
+    private Crc32c crc32cLastMarked;
+    /** Null unless metrics are enabled */
+    private final DigestThroughputProvider throughput;
 
     public MD5DigestCalculatingInputStream(InputStream in) {
+        this(in, true, false);
+    }
+
+    /**
+     * @param calculateMd5
+     *            true if the MD5 digest should be calculated; false if only
+     *            the CRC-32C checksum is wanted.
+     * @param calculateCrc32c
+     *            true if a CRC-32C checksum should be calculated.
+     */
+    public MD5DigestCalculatingInputStream(InputStream in, boolean calculateMd5,
+            boolean calculateCrc32c) {
         super(in);
-        digest = newMD5();
+        digest = calculateMd5 ? newMD5() : null;
+        crc32c = calculateCrc32c ? new Crc32c() : null;
+        throughput = AwsSdkMetrics.isMetricsEnabled()
+                ? new DigestThroughputProvider()
+                : null;
     }
 
     private MessageDigest newMD5() {
         try {
-            return MessageDigest.getInstance("MD5");
+            return ServiceUtils.newMD5Digest();
         } catch (NoSuchAlgorithmException e) { // should never occur
             throw new IllegalStateException("unexpected", e);
         }
@@ -55,15 +85,33 @@ public class MD5DigestCalculatingInputStream extends SdkFilterInputStream {
         }
     }
 
+    /**
+     * Returns the MD5 digest of the data read so far, or null if this stream
+     * was not asked to calculate one.
+     */
     public byte[] getMd5Digest() {
-        return digest.digest();
+        reportMetrics();
+        return digest == null ? null : digest.digest();
+    }
+
+    /**
+     * Returns the CRC-32C checksum of the data read so far, or null if this
+     * stream was not asked to calculate one.
+     */
+    public Long getCrc32cChecksum() {
+        return crc32c == null ? null : Long.valueOf(crc32c.getValue());
     }
 
     @Override
     public void mark(int readlimit) {
         if (markSupported()) {
             super.mark(readlimit);
-            digestLastMarked = cloneFrom(digest);
+            if (digest != null) {
+                digestLastMarked = cloneFrom(digest);
+            }
+            if (crc32c != null) {
+                crc32cLastMarked = crc32c.copy();
+            }
         }
     }
 
@@ -74,11 +122,18 @@ public class MD5DigestCalculatingInputStream extends SdkFilterInputStream {
     public void reset() throws IOException {
         if (markSupported()) {
             super.reset();
-            digest = (digestLastMarked == null)
-                   // This is necessary so that should there be a reset without a
-                   // preceding mark, the MD5 would still be computed correctly.
-                   ? newMD5()
-                   : cloneFrom(digestLastMarked);
+            if (digest != null) {
+                digest = (digestLastMarked == null)
+                       // This is necessary so that should there be a reset without a
+                       // preceding mark, the MD5 would still be computed correctly.
+                       ? newMD5()
+                       : cloneFrom(digestLastMarked);
+            }
+            if (crc32c != null) {
+                crc32c = (crc32cLastMarked == null)
+                       ? new Crc32c()
+                       : crc32cLastMarked.copy();
+            }
         } else {
             throw new IOException("mark/reset not supported");
         }
@@ -88,7 +143,12 @@ public class MD5DigestCalculatingInputStream extends SdkFilterInputStream {
     public int read() throws IOException {
         int ch = super.read();
         if (ch != -1) {
-            digest.update((byte)ch);
+            if (digest != null) {
+                digest.update((byte)ch);
+            }
+            if (crc32c != null) {
+                crc32c.update(ch);
+            }
         }
         return ch;
     }
@@ -96,9 +156,30 @@ public class MD5DigestCalculatingInputStream extends SdkFilterInputStream {
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         int result = super.read(b, off, len);
-        if (result != -1) {
-            digest.update(b, off, result);
+        if (result > 0) {
+            long startNano = throughput == null ? 0 : throughput.startTiming();
+            if (digest != null) {
+                digest.update(b, off, result);
+            }
+            if (crc32c != null) {
+                crc32c.update(b, off, result);
+            }
+            if (throughput != null) {
+                throughput.increment(result, startNano);
+            }
         }
         return result;
     }
+
+    @Override
+    public void close() throws IOException {
+        reportMetrics();
+        super.close();
+    }
+
+    private void reportMetrics() {
+        if (throughput != null) {
+            throughput.reportMetrics();
+        }
+    }
 }
@@ -31,6 +31,8 @@ import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -72,6 +74,42 @@ public class ServiceUtils {
     @Deprecated
     protected static final DateUtils dateUtils = new DateUtils();
 
+    /**
+     * Initial MD5 digest cloned for each new digest, which avoids the
+     * security provider lookup of {@link MessageDigest#getInstance(String)}
+     * on every request; null if the digest can't be cloned.
+     */
+    private static final MessageDigest MD5_PROTOTYPE = newMD5Prototype();
+
+    private static MessageDigest newMD5Prototype() {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            md5.clone();
+            return md5;
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a new MD5 message digest.
+     *
+     * @throws NoSuchAlgorithmException
+     *             if no MD5 implementation is available.
+     */
+    public static MessageDigest newMD5Digest() throws NoSuchAlgorithmException {
+        if (MD5_PROTOTYPE != null) {
+            try {
+                return (MessageDigest) MD5_PROTOTYPE.clone();
+            } catch (CloneNotSupportedException e) {
+                // fall through and look up a new instance
+            }
+        }
+        return MessageDigest.getInstance("MD5");
+    }
+
     public static Date parseIso8601Date(String dateString) {
         return DateUtils.parseISO8601Date(dateString);
     }
@@ -62,9 +62,13 @@ public class AdjustedRangeInputStream extends SdkInputStream {
         if(numBytesToSkip != 0) {
             // Skip to the left-most desired byte.  The read() method is used instead of the skip() method
             // since the skip() method will not block if the underlying input stream is waiting for more input.
+            byte[] skipped = new byte[numBytesToSkip];
             while(numBytesToSkip > 0) {
-                this.decryptedContents.read();
-                numBytesToSkip--;
+                int read = this.decryptedContents.read(skipped, 0, numBytesToSkip);
+                if (read == -1) {
+                    break;
+                }
+                numBytesToSkip -= read;
             }
         }
         // The number of bytes the user may read is equal to the number of the bytes in the range.
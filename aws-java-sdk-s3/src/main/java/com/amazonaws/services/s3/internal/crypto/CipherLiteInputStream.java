@@ -19,6 +19,7 @@ import java.io.InputStream;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
 
 import com.amazonaws.internal.SdkFilterInputStream;
 
@@ -49,6 +50,12 @@ public class CipherLiteInputStream extends SdkFilterInputStream {
     private boolean eof;
     private byte[] bufin;
     private byte[] bufout;
+    /**
+     * Output buffer reused across chunks, so that processing a chunk doesn't
+     * allocate a new array; null until first needed. Its size is fixed at the
+     * input buffer size plus the most a cipher adds to a chunk.
+     */
+    private byte[] reusableBufout;
     private int curr_pos;
     private int max_pos;
 
@@ -239,9 +246,45 @@ public class CipherLiteInputStream extends SdkFilterInputStream {
             }
             return -1;
         }
-        bufout = cipherLite.update(bufin, 0, len);
         curr_pos = 0;
-        return max_pos = (bufout == null ? 0 : bufout.length);
+        int outputSize = cipherLite.getOutputSize(len);
+        int reusableSize = bufin.length + maxOutputOverhead();
+        if (outputSize > reusableSize) {
+            // AES/GCM decryption buffers all the ciphertext until doFinal, so
+            // the output size it reports keeps growing although update
+            // returns nothing; don't grow the buffer with it
+            bufout = cipherLite.update(bufin, 0, len);
+            return max_pos = (bufout == null ? 0 : bufout.length);
+        }
+        if (reusableBufout == null)
+            reusableBufout = new byte[reusableSize];
+        try {
+            max_pos = cipherLite.update(bufin, 0, len, reusableBufout, 0);
+            bufout = reusableBufout;
+            return max_pos;
+        } catch (ShortBufferException e) {
+            // should never happen given the output size computed above
+            bufout = cipherLite.update(bufin, 0, len);
+            return max_pos = (bufout == null ? 0 : bufout.length);
+        }
+    }
+
+    /**
+     * Returns the most the cipher can output for a chunk beyond the chunk
+     * itself: a block of data held back from the previous chunk plus the
+     * authentication tag, if any.
+     */
+    private int maxOutputOverhead() {
+        ContentCryptoScheme scheme = cipherLite.getContentCryptoScheme();
+        return scheme == null ? 0
+                : scheme.getBlockSizeInBytes() + scheme.getTagLengthInBits() / 8;
+    }
+
+    /**
+     * Returns the output buffer reused across chunks; for testing.
+     */
+    byte[] getReusableOutputBuffer() {
+        return reusableBufout;
     }
 
     void renewCipherLite() {
@@ -20,6 +20,7 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 
 /**
  * A AES/GCM specific {@link CipherLite} that support re-processing of input
@@ -184,6 +185,39 @@ final class GCMCipherLite extends CipherLite {
         return out;
     }
 
+    /**
+     * Same as {@link #update(byte[], int, int)}, but stores the result in the
+     * given output buffer instead of a new one when no re-processing is in
+     * progress.
+     */
+    @Override
+    int update(byte[] input, int inputOffset, int inputLen, byte[] output,
+            int outputOffset) throws ShortBufferException {
+        if (aux == null) {
+            int len = super.update(input, inputOffset, inputLen, output, outputOffset);
+            outputByteCount += checkMax(len);
+            invisiblyProcessed = len == 0 && inputLen > 0;
+            return len;
+        }
+        // Re-processing is in progress, which is rare enough to not be worth
+        // avoiding the extra copy
+        if (aux.getOutputSize(inputLen) > output.length - outputOffset)
+            throw new ShortBufferException();
+        byte[] out = update(input, inputOffset, inputLen);
+        if (out == null)
+            return 0;
+        System.arraycopy(out, 0, output, outputOffset, out.length);
+        return out.length;
+    }
+
+    @Override
+    int getOutputSize(int inputLen) {
+        return aux == null
+             ? super.getOutputSize(inputLen)
+             : aux.getOutputSize(inputLen)
+             ;
+    }
+
     /**
      * Returns the input delta but only if it will not result in exceeding the
      * limit of the maximum number of bytes that can be processed by AES/GCM.
@@ -94,7 +94,7 @@ import com.amazonaws.util.json.Jackson;
 public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         extends S3CryptoModule<T> {
     private static final boolean IS_MULTI_PART = true;
-    protected static final int DEFAULT_BUFFER_SIZE = 1024*2;    // 2K
+    protected static final int DEFAULT_BUFFER_SIZE = 1024*16;   // 16K
     protected final EncryptionMaterialsProvider kekMaterialsProvider;
     protected final Log log = LogFactory.getLog(getClass());
     protected final S3CryptoScheme cryptoScheme;
@@ -54,11 +54,22 @@ public class S3ServiceMetric extends SimpleMetricType implements ServiceMetricTy
     };
     public static final S3ServiceMetric S3UploadByteCount = new S3ServiceMetric(
             metricName(UPLOAD_BYTE_COUNT_NAME_SUFFIX));
+    public static final S3ThroughputMetric S3DigestThroughput = new S3ThroughputMetric(
+            metricName("DigestThroughput")) {
+        @Override
+        public ServiceMetricType getByteCountMetricType() {
+            return S3DigestByteCount;
+        }
+    };
+    public static final S3ServiceMetric S3DigestByteCount = new S3ServiceMetric(
+            metricName("DigestByteCount"));
     private static final S3ServiceMetric[] values = {
         S3DownloadThroughput,
         S3DownloadByteCount,
         S3UploadThroughput,
-        S3UploadByteCount
+        S3UploadByteCount,
+        S3DigestThroughput,
+        S3DigestByteCount
     };
 
     private final String name;
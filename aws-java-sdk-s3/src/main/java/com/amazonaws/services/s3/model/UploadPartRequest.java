@@ -76,6 +76,13 @@ public class UploadPartRequest extends AmazonWebServiceRequest implements
      */
     private String md5Digest;
 
+    /**
+     * The optional CRC-32C checksum of the content of this part. If
+     * specified, the client calculates the checksum of the data actually sent
+     * and fails the upload of this part if the two don't match.
+     */
+    private Long crc32cChecksum;
+
     /**
      * The stream containing the data to upload for the new part. Exactly one
      * File or InputStream must be specified as the input to this operation.
@@ -389,6 +396,56 @@ public class UploadPartRequest extends AmazonWebServiceRequest implements
         return this;
     }
 
+    /**
+     * Returns the optional CRC-32C checksum of the content of this part. If
+     * specified, the client calculates the CRC-32C checksum of the data
+     * actually sent, in the same pass as the MD5 digest, and fails the upload
+     * of this part if the two don't match.
+     *
+     * @return The optional CRC-32C checksum of the content of this part, or
+     *         null if none was specified.
+     */
+    public Long getCrc32cChecksum() {
+        return crc32cChecksum;
+    }
+
+    /**
+     * Sets the optional CRC-32C checksum of the content of this part. If
+     * specified, the client calculates the CRC-32C checksum of the data
+     * actually sent, in the same pass as the MD5 digest, and fails the upload
+     * of this part if the two don't match.
+     * <p>
+     * CRC-32C is much cheaper to compute than MD5, so it can serve as an
+     * end-to-end check from the data source even when the client side MD5
+     * validation has been disabled.
+     *
+     * @param crc32cChecksum
+     *            The CRC-32C checksum of the content of this part, as
+     *            computed by the data source, or null for none.
+     */
+    public void setCrc32cChecksum(Long crc32cChecksum) {
+        this.crc32cChecksum = crc32cChecksum;
+    }
+
+    /**
+     * Sets the optional CRC-32C checksum of the content of this part.
+     * <p>
+     * Returns this updated UploadPartRequest object so that additional method
+     * calls can be chained together.
+     *
+     * @param crc32cChecksum
+     *            The CRC-32C checksum of the content of this part, as
+     *            computed by the data source, or null for none.
+     *
+     * @return This updated UploadPartRequest object.
+     *
+     * @see #setCrc32cChecksum(Long)
+     */
+    public UploadPartRequest withCrc32cChecksum(Long crc32cChecksum) {
+        setCrc32cChecksum(crc32cChecksum);
+        return this;
+    }
+
     /**
      * Returns the file containing the data to upload. Exactly one File or
      * InputStream must be specified as the input to this operation.
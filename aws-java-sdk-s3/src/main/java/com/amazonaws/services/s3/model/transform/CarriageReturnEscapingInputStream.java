@@ -0,0 +1,149 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+/**
+ * Package private input stream that replaces every carriage return (0x0D)
+ * byte of the wrapped UTF-8 XML document with the explicit character entity
+ * <code>&amp;#013;</code> as the document is read, so the SAX parser doesn't
+ * misinterpret it as a line feed.
+ * <p>
+ * Since 0x0D can never occur as part of a multi-byte UTF-8 sequence, the
+ * replacement can safely be done on raw bytes without first decoding the
+ * whole document into characters.
+ */
+class CarriageReturnEscapingInputStream extends SdkFilterInputStream {
+
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte[] ESCAPED_CARRIAGE_RETURN = "&#013;".getBytes(UTF8);
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final byte[] buffer;
+    private final byte[] single = new byte[1];
+    private int bufferPosition;
+    private int bufferLimit;
+
+    /**
+     * Position within {@link #ESCAPED_CARRIAGE_RETURN} of the next byte to
+     * emit; equal to its length when no escape sequence is pending.
+     */
+    private int escapePosition = ESCAPED_CARRIAGE_RETURN.length;
+
+    CarriageReturnEscapingInputStream(InputStream in) {
+        super(in);
+        this.buffer = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+
+        int written = 0;
+        while (written < len) {
+            if (escapePosition < ESCAPED_CARRIAGE_RETURN.length) {
+                int count = Math.min(len - written,
+                        ESCAPED_CARRIAGE_RETURN.length - escapePosition);
+                System.arraycopy(ESCAPED_CARRIAGE_RETURN, escapePosition,
+                        b, off + written, count);
+                escapePosition += count;
+                written += count;
+                continue;
+            }
+
+            if (bufferPosition == bufferLimit) {
+                // Don't block for more input once we have something to return
+                if (written > 0) {
+                    break;
+                }
+                int read = in.read(buffer, 0, buffer.length);
+                if (read == -1) {
+                    return -1;
+                }
+                bufferPosition = 0;
+                bufferLimit = read;
+                continue;
+            }
+
+            int end = Math.min(bufferLimit, bufferPosition + (len - written));
+            int scan = bufferPosition;
+            while (scan < end && buffer[scan] != CARRIAGE_RETURN) {
+                scan++;
+            }
+
+            int count = scan - bufferPosition;
+            System.arraycopy(buffer, bufferPosition, b, off + written, count);
+            written += count;
+            bufferPosition = scan;
+
+            if (scan < end) {
+                // Skip the carriage return and start emitting its escape
+                bufferPosition++;
+                escapePosition = 0;
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] skipBuffer = new byte[(int) Math.min(n, DEFAULT_BUFFER_SIZE)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(skipBuffer, 0, (int) Math.min(remaining, skipBuffer.length));
+            if (read == -1) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (bufferLimit - bufferPosition)
+                + (ESCAPED_CARRIAGE_RETURN.length - escapePosition);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        // mark is not supported
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+}
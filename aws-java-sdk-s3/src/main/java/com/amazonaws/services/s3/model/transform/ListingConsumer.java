@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+/**
+ * Callback that receives the entries of a listing response (for example
+ * {@link com.amazonaws.services.s3.model.S3ObjectSummary} or
+ * {@link com.amazonaws.services.s3.model.S3VersionSummary}) one at a time as
+ * they are parsed, instead of having them accumulated into the listing
+ * result.
+ *
+ * @param <T>
+ *            The type of the listing entries.
+ */
+public interface ListingConsumer<T> {
+
+    /**
+     * Called once for every entry, in document order, as soon as the entry
+     * has been fully parsed.
+     *
+     * @param entry
+     *            The parsed listing entry.
+     */
+    void accept(T entry);
+}
@@ -19,10 +19,7 @@ package com.amazonaws.services.s3.model.transform;
 
 import com.amazonaws.services.s3.model.*;
 
-import static com.amazonaws.util.StringUtils.UTF8;
-
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,6 +29,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,6 +43,7 @@ import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.SdkTestInternalApi;
 import com.amazonaws.services.s3.internal.Constants;
 import com.amazonaws.services.s3.internal.DeleteObjectsResponse;
 import com.amazonaws.services.s3.internal.ObjectExpirationResult;
@@ -68,7 +69,22 @@ import com.amazonaws.util.StringUtils;
 public class XmlResponsesSaxParser {
     private static final Log log = LogFactory.getLog(XmlResponsesSaxParser.class);
 
-    private XMLReader xr = null;
+    /**
+     * Upper bound on the number of idle SAX readers kept around for reuse.
+     */
+    private static final int MAX_POOLED_XML_READERS = 64;
+
+    /**
+     * Idle SAX readers shared by all parser instances. Creating a reader
+     * through {@link XMLReaderFactory} involves a service lookup, so readers
+     * are reused across responses instead; each reader is only ever used by
+     * one parse at a time.
+     */
+    private static final Queue<XMLReader> xmlReaderPool = new ConcurrentLinkedQueue<XMLReader>();
+    private static final AtomicInteger pooledXmlReaders = new AtomicInteger();
+
+    /** Handler installed on pooled readers so they don't retain parsed results. */
+    private static final DefaultHandler NO_OP_HANDLER = new DefaultHandler();
 
     private boolean sanitizeXmlDocument = true;
 
@@ -79,13 +95,40 @@ public class XmlResponsesSaxParser {
      */
     public XmlResponsesSaxParser() throws AmazonClientException {
         // Ensure we can load the XML Reader.
+        releaseXmlReader(acquireXmlReader());
+    }
+
+    private static XMLReader acquireXmlReader() {
+        XMLReader xr = xmlReaderPool.poll();
+        if (xr != null) {
+            pooledXmlReaders.decrementAndGet();
+            return xr;
+        }
         try {
-            xr = XMLReaderFactory.createXMLReader();
+            return XMLReaderFactory.createXMLReader();
         } catch (SAXException e) {
             throw new AmazonClientException("Couldn't initialize a SAX driver to create an XMLReader", e);
         }
     }
 
+    private static void releaseXmlReader(XMLReader xr) {
+        xr.setContentHandler(NO_OP_HANDLER);
+        xr.setErrorHandler(NO_OP_HANDLER);
+        if (pooledXmlReaders.incrementAndGet() <= MAX_POOLED_XML_READERS) {
+            xmlReaderPool.offer(xr);
+        } else {
+            pooledXmlReaders.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of idle SAX readers in the pool.
+     */
+    @SdkTestInternalApi
+    static int pooledXmlReaderCount() {
+        return pooledXmlReaders.get();
+    }
+
     /**
      * Parses an XML document from an input stream using a document handler.
      *
@@ -101,6 +144,7 @@ public class XmlResponsesSaxParser {
      */
     protected void parseXmlInputStream(DefaultHandler handler, InputStream inputStream)
             throws IOException {
+        XMLReader xr = acquireXmlReader();
         try {
 
             if (log.isDebugEnabled()) {
@@ -112,6 +156,7 @@ public class XmlResponsesSaxParser {
             xr.setContentHandler(handler);
             xr.setErrorHandler(handler);
             xr.parse(new InputSource(breader));
+            releaseXmlReader(xr);
 
         } catch (IOException e) {
             throw e;
@@ -129,6 +174,13 @@ public class XmlResponsesSaxParser {
         }
     }
 
+    /**
+     * Returns a stream that replaces any carriage return (\r) characters in
+     * the given XML document with explicit XML character entities, to prevent
+     * the SAX parser from misinterpreting 0x0D characters as 0x0A and being
+     * unable to parse the XML. The replacement is done as the document is
+     * read, so the document is never buffered in full.
+     */
     protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
             throws IOException {
 
@@ -139,53 +191,7 @@ public class XmlResponsesSaxParser {
             if (log.isDebugEnabled()) {
                 log.debug("Sanitizing XML document destined for handler " + handler.getClass());
             }
-
-            InputStream sanitizedInputStream = null;
-
-            try {
-
-                /*
-                 * Read object listing XML document from input stream provided into a
-                 * string buffer, so we can replace troublesome characters before
-                 * sending the document to the XML parser.
-                 */
-                StringBuilder listingDocBuffer = new StringBuilder();
-                BufferedReader br = new BufferedReader(
-                    new InputStreamReader(inputStream, Constants.DEFAULT_ENCODING));
-
-                char[] buf = new char[8192];
-                int read = -1;
-                while ((read = br.read(buf)) != -1) {
-                    listingDocBuffer.append(buf, 0, read);
-                }
-                br.close();
-
-                /*
-                 * Replace any carriage return (\r) characters with explicit XML
-                 * character entities, to prevent the SAX parser from
-                 * misinterpreting 0x0D characters as 0x0A and being unable to
-                 * parse the XML.
-                 */
-                String listingDoc = listingDocBuffer.toString().replaceAll("\r", "&#013;");
-
-                sanitizedInputStream = new ByteArrayInputStream(
-                    listingDoc.getBytes(UTF8));
-
-            } catch (IOException e) {
-                throw e;
-
-            } catch (Throwable t) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Unable to close response InputStream after failure sanitizing XML document", e);
-                    }
-                }
-                throw new AmazonClientException("Failed to sanitize XML document destined for handler "
-                    + handler.getClass(), t);
-            }
-            return sanitizedInputStream;
+            return new CarriageReturnEscapingInputStream(inputStream);
         }
     }
 
@@ -266,7 +272,27 @@ public class XmlResponsesSaxParser {
      */
     public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream, final boolean shouldSDKDecodeResponse)
             throws IOException {
-        ListBucketHandler handler = new ListBucketHandler(shouldSDKDecodeResponse);
+        return parseListBucketObjectsResponse(inputStream, shouldSDKDecodeResponse, null);
+    }
+
+    /**
+     * Parses a ListBucket response XML document from an input stream, handing
+     * each object summary to the given consumer as soon as it is parsed
+     * instead of collecting it into the returned listing.
+     *
+     * @param inputStream
+     *            XML data input stream.
+     * @param consumer
+     *            the consumer to receive object summaries, or null to
+     *            collect them into the listing as usual.
+     * @return the XML handler object populated with data parsed from the XML
+     *         stream.
+     * @throws AmazonClientException
+     */
+    public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream,
+            final boolean shouldSDKDecodeResponse, ListingConsumer<S3ObjectSummary> consumer)
+            throws IOException {
+        ListBucketHandler handler = new ListBucketHandler(shouldSDKDecodeResponse, consumer);
         parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
 
         return handler;
@@ -283,7 +309,27 @@ public class XmlResponsesSaxParser {
      */
     public ListObjectsV2Handler parseListObjectsV2Response(InputStream inputStream, final boolean shouldSDKDecodeResponse)
             throws IOException {
-        ListObjectsV2Handler handler = new ListObjectsV2Handler(shouldSDKDecodeResponse);
+        return parseListObjectsV2Response(inputStream, shouldSDKDecodeResponse, null);
+    }
+
+    /**
+     * Parses a ListBucketV2 response XML document from an input stream,
+     * handing each object summary to the given consumer as soon as it is
+     * parsed instead of collecting it into the returned result.
+     *
+     * @param inputStream
+     *            XML data input stream.
+     * @param consumer
+     *            the consumer to receive object summaries, or null to
+     *            collect them into the result as usual.
+     * @return the XML handler object populated with data parsed from the XML
+     *         stream.
+     * @throws AmazonClientException
+     */
+    public ListObjectsV2Handler parseListObjectsV2Response(InputStream inputStream,
+            final boolean shouldSDKDecodeResponse, ListingConsumer<S3ObjectSummary> consumer)
+            throws IOException {
+        ListObjectsV2Handler handler = new ListObjectsV2Handler(shouldSDKDecodeResponse, consumer);
         parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
 
         return handler;
@@ -300,7 +346,27 @@ public class XmlResponsesSaxParser {
      */
     public ListVersionsHandler parseListVersionsResponse(InputStream inputStream, final boolean shouldSDKDecodeResponse)
             throws IOException {
-        ListVersionsHandler handler = new ListVersionsHandler(shouldSDKDecodeResponse);
+        return parseListVersionsResponse(inputStream, shouldSDKDecodeResponse, null);
+    }
+
+    /**
+     * Parses a ListVersions response XML document from an input stream,
+     * handing each version summary to the given consumer as soon as it is
+     * parsed instead of collecting it into the returned listing.
+     *
+     * @param inputStream
+     *            XML data input stream.
+     * @param consumer
+     *            the consumer to receive version summaries, or null to
+     *            collect them into the listing as usual.
+     * @return the XML handler object populated with data parsed from the XML
+     *         stream.
+     * @throws AmazonClientException
+     */
+    public ListVersionsHandler parseListVersionsResponse(InputStream inputStream,
+            final boolean shouldSDKDecodeResponse, ListingConsumer<S3VersionSummary> consumer)
+            throws IOException {
+        ListVersionsHandler handler = new ListVersionsHandler(shouldSDKDecodeResponse, consumer);
         parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
         return handler;
     }
@@ -482,13 +548,27 @@ public class XmlResponsesSaxParser {
     public static class ListBucketHandler extends AbstractHandler {
         private final ObjectListing objectListing = new ObjectListing();
         private final boolean shouldSDKDecodeResponse;
+        private final ListingConsumer<S3ObjectSummary> consumer;
 
         private S3ObjectSummary currentObject = null;
         private Owner currentOwner = null;
         private String lastKey = null;
+        private String lastSummaryKey = null;
 
         public ListBucketHandler(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param consumer
+         *            if not null, receives each object summary as soon as it
+         *            is parsed; the summaries are then not added to the
+         *            object listing.
+         */
+        public ListBucketHandler(final boolean shouldSDKDecodeResponse,
+                ListingConsumer<S3ObjectSummary> consumer) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.consumer = consumer;
         }
 
         public ObjectListing getObjectListing() {
@@ -530,10 +610,8 @@ public class XmlResponsesSaxParser {
                         && objectListing.getNextMarker() == null) {
 
                         String nextMarker = null;
-                        if (!objectListing.getObjectSummaries().isEmpty()) {
-                            nextMarker = objectListing.getObjectSummaries()
-                                .get(objectListing.getObjectSummaries().size() - 1)
-                                .getKey();
+                        if (lastSummaryKey != null) {
+                            nextMarker = lastSummaryKey;
 
                         } else if (!objectListing.getCommonPrefixes().isEmpty()) {
                             nextMarker = objectListing.getCommonPrefixes()
@@ -594,7 +672,12 @@ public class XmlResponsesSaxParser {
                     }
 
                 } else if (name.equals("Contents")) {
-                    objectListing.getObjectSummaries().add(currentObject);
+                    lastSummaryKey = currentObject.getKey();
+                    if (consumer != null) {
+                        consumer.accept(currentObject);
+                    } else {
+                        objectListing.getObjectSummaries().add(currentObject);
+                    }
                     currentObject = null;
                 }
             }
@@ -648,13 +731,27 @@ public class XmlResponsesSaxParser {
     public static class ListObjectsV2Handler extends AbstractHandler {
         private final ListObjectsV2Result result = new ListObjectsV2Result();
         private final boolean shouldSDKDecodeResponse;
+        private final ListingConsumer<S3ObjectSummary> consumer;
 
         private S3ObjectSummary currentObject = null;
         private Owner currentOwner = null;
         private String lastKey = null;
+        private String lastSummaryKey = null;
 
         public ListObjectsV2Handler(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param consumer
+         *            if not null, receives each object summary as soon as it
+         *            is parsed; the summaries are then not added to the
+         *            result.
+         */
+        public ListObjectsV2Handler(final boolean shouldSDKDecodeResponse,
+                ListingConsumer<S3ObjectSummary> consumer) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.consumer = consumer;
         }
 
         public ListObjectsV2Result getResult() {
@@ -696,10 +793,8 @@ public class XmlResponsesSaxParser {
                             && result.getNextContinuationToken() == null) {
 
                         String nextContinuationToken = null;
-                        if (!result.getObjectSummaries().isEmpty()) {
-                            nextContinuationToken = result.getObjectSummaries()
-                                    .get(result.getObjectSummaries().size() - 1)
-                                    .getKey();
+                        if (lastSummaryKey != null) {
+                            nextContinuationToken = lastSummaryKey;
 
                         } else {
                             log.error("S3 response indicates truncated results, "
@@ -760,7 +855,12 @@ public class XmlResponsesSaxParser {
                     }
 
                 } else if (name.equals("Contents")) {
-                    result.getObjectSummaries().add(currentObject);
+                    lastSummaryKey = currentObject.getKey();
+                    if (consumer != null) {
+                        consumer.accept(currentObject);
+                    } else {
+                        result.getObjectSummaries().add(currentObject);
+                    }
                     currentObject = null;
                 }
             }
@@ -1232,12 +1332,25 @@ public class XmlResponsesSaxParser {
 
         private final VersionListing versionListing = new VersionListing();
         private final boolean shouldSDKDecodeResponse;
+        private final ListingConsumer<S3VersionSummary> consumer;
 
         private S3VersionSummary currentVersionSummary;
         private Owner currentOwner;
 
         public ListVersionsHandler(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param consumer
+         *            if not null, receives each version summary as soon as it
+         *            is parsed; the summaries are then not added to the
+         *            version listing.
+         */
+        public ListVersionsHandler(final boolean shouldSDKDecodeResponse,
+                ListingConsumer<S3VersionSummary> consumer) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.consumer = consumer;
         }
 
         public VersionListing getListing() {
@@ -1316,8 +1429,12 @@ public class XmlResponsesSaxParser {
                 } else if (name.equals("Version")
                         || name.equals("DeleteMarker")) {
 
-                    versionListing.getVersionSummaries()
-                        .add(currentVersionSummary);
+                    if (consumer != null) {
+                        consumer.accept(currentVersionSummary);
+                    } else {
+                        versionListing.getVersionSummaries()
+                            .add(currentVersionSummary);
+                    }
 
                     currentVersionSummary = null;
                 }
@@ -38,4 +38,11 @@ public class S3HandlerContextKeys {
     public static final HandlerContextKey<Boolean> IS_PAYLOAD_SIGNING_ENABLED = new HandlerContextKey<Boolean>(
             "IsPayloadSigningEnabled");
 
+    /**
+     * Context provided to {@link AWSS3V4Signer} to determine the number of bytes of data in each
+     * chunk when chunked encoding is used. Derived from the value set in {@link S3ClientOptions}
+     */
+    public static final HandlerContextKey<Integer> CHUNKED_ENCODING_CHUNK_SIZE = new HandlerContextKey<Integer>(
+            "ChunkedEncodingChunkSize");
+
 }
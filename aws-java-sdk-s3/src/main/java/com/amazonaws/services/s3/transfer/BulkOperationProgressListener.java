@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.ProgressListener.ExceptionReporter;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressPublisher;
+import com.amazonaws.services.s3.transfer.model.BulkOperationResult;
+
+/**
+ * Listener interface for the key counts of a {@link BulkOperations} delete or
+ * copy. Passed as the progress listener of an operation, it receives the
+ * usual transfer started and completed events through
+ * {@link #progressChanged(com.amazonaws.event.ProgressEvent)}, and the number
+ * of keys processed through {@link #onKeysProcessed(long, long)}.
+ */
+public interface BulkOperationProgressListener extends ProgressListener {
+    /**
+     * Called as keys finish, with the number of keys just deleted or copied
+     * and the number that failed for good. Every key is counted exactly once,
+     * so the totals over all calls add up to the counts of the final
+     * {@link BulkOperationResult}. The execution of the callback is managed by
+     * {@link S3ProgressPublisher}; implementations should never block.
+     * <p>
+     * Note any exception thrown by the listener will get ignored. Should there
+     * be need to capture any such exception, you may consider wrapping the
+     * listener with {@link ExceptionReporter#wrap(ProgressListener)}.
+     *
+     * @param succeededCount
+     *            The number of keys processed successfully; may be zero.
+     * @param failedCount
+     *            The number of keys that failed; may be zero.
+     */
+    public void onKeysProcessed(long succeededCount, long failedCount);
+}
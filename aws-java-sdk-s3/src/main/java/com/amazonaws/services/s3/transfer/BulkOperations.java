@@ -0,0 +1,774 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static com.amazonaws.event.ProgressEventType.TRANSFER_COMPLETED_EVENT;
+import static com.amazonaws.event.ProgressEventType.TRANSFER_FAILED_EVENT;
+import static com.amazonaws.event.ProgressEventType.TRANSFER_STARTED_EVENT;
+import static com.amazonaws.services.s3.internal.Constants.GB;
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.SDKProgressPublisher;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.transfer.internal.CopyPartRequestFactory;
+import com.amazonaws.services.s3.transfer.internal.RequestRateLimiter;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressPublisher;
+import com.amazonaws.services.s3.transfer.model.BulkOperationFailure;
+import com.amazonaws.services.s3.transfer.model.BulkOperationResult;
+
+/**
+ * Deletes or copies large numbers of Amazon S3 objects.
+ * <p>
+ * Keys are consumed lazily from an {@link Iterator}, so a listing of millions
+ * of objects (for example from
+ * {@link com.amazonaws.services.s3.iterable.S3Objects}) can be processed
+ * without holding it in memory. Deletes are packed into multi-object delete
+ * requests of up to {@value BulkOperationsConfiguration#MAX_DELETE_BATCH_SIZE}
+ * keys; copies are issued as individual copy requests, falling back to a
+ * multi-part copy for source objects too large to copy in one request.
+ * <p>
+ * When only some keys of a request fail with a retryable error, such as
+ * <code>SlowDown</code> or <code>InternalError</code>, only those keys are
+ * sent again. Keys that still fail are reported in the returned
+ * {@link BulkOperationResult} rather than thrown, so that one bad key does not
+ * stop the rest of the operation.
+ * <p>
+ * Each operation keeps at most
+ * {@link BulkOperationsConfiguration#getMaxConcurrency()} requests in flight,
+ * and all the operations of one instance share its thread pool and request
+ * rate cap. A request waiting to be retried does not count towards the cap.
+ * Progress is reported to the optional {@link ProgressListener} as a
+ * {@link com.amazonaws.event.ProgressEventType#TRANSFER_STARTED_EVENT} and
+ * finally a
+ * {@link com.amazonaws.event.ProgressEventType#TRANSFER_COMPLETED_EVENT} or
+ * {@link com.amazonaws.event.ProgressEventType#TRANSFER_FAILED_EVENT}. A
+ * {@link BulkOperationProgressListener} is also told the number of keys
+ * processed as they finish.
+ * <p>
+ * The operation methods block until every key has been processed. Call
+ * {@link #shutdownNow()} to release the threads of an instance that created
+ * its own thread pool.
+ */
+public class BulkOperations {
+
+    private static final Log log = LogFactory.getLog(BulkOperations.class);
+
+    /** The largest source object Amazon S3 copies in a single request. */
+    private static final long MAXIMUM_SINGLE_COPY_SIZE = 5 * GB;
+
+    /** Per-key error codes of a multi-object delete that are worth retrying. */
+    private static final Set<String> RETRYABLE_ERROR_CODES = Collections
+            .unmodifiableSet(new HashSet<String>(Arrays.asList(
+                    "InternalError", "ServiceUnavailable", "SlowDown",
+                    "RequestTimeout")));
+
+    /** The low level client used to make the requests to Amazon S3. */
+    private final AmazonS3 s3;
+
+    /** Configuration for how requests are issued. */
+    private final BulkOperationsConfiguration configuration;
+
+    /** The thread pool in which requests are executed. */
+    private final ExecutorService executorService;
+
+    /** Whether the thread pool was created by, and belongs to, this instance. */
+    private final boolean shutDownThreadPools;
+
+    /** Shared request rate cap for all the operations of this instance. */
+    private final RequestRateLimiter rateLimiter;
+
+    /**
+     * Resubmits requests once their retry back-off has elapsed, so that no
+     * worker thread or in-flight slot is held while waiting.
+     */
+    private final ScheduledThreadPoolExecutor retryTimer;
+
+    /**
+     * Constructs a new instance with the default configuration, using the
+     * specified client to make requests to Amazon S3.
+     *
+     * @param s3
+     *            The client to use when making requests to Amazon S3.
+     */
+    public BulkOperations(AmazonS3 s3) {
+        this(s3, new BulkOperationsConfiguration());
+    }
+
+    /**
+     * Constructs a new instance with the specified configuration. A thread
+     * pool of {@link BulkOperationsConfiguration#getMaxConcurrency()} threads
+     * is created and is released by {@link #shutdownNow()}.
+     *
+     * @param s3
+     *            The client to use when making requests to Amazon S3.
+     * @param configuration
+     *            The concurrency, rate and retry settings to use.
+     */
+    public BulkOperations(AmazonS3 s3,
+            BulkOperationsConfiguration configuration) {
+        this(s3, configuration, createExecutorService(configuration
+                .getMaxConcurrency()), true);
+    }
+
+    /**
+     * Constructs a new instance that executes requests in the given thread
+     * pool. The thread pool is not shut down by {@link #shutdownNow()}.
+     * Requests in flight are still bounded by
+     * {@link BulkOperationsConfiguration#getMaxConcurrency()}.
+     *
+     * @param s3
+     *            The client to use when making requests to Amazon S3.
+     * @param configuration
+     *            The concurrency, rate and retry settings to use.
+     * @param executorService
+     *            The thread pool in which to execute requests.
+     */
+    public BulkOperations(AmazonS3 s3,
+            BulkOperationsConfiguration configuration,
+            ExecutorService executorService) {
+        this(s3, configuration, executorService, false);
+    }
+
+    private BulkOperations(AmazonS3 s3,
+            BulkOperationsConfiguration configuration,
+            ExecutorService executorService, boolean shutDownThreadPools) {
+        if (s3 == null || configuration == null || executorService == null) {
+            throw new IllegalArgumentException(
+                    "The client, configuration and executor must be specified");
+        }
+        this.s3 = s3;
+        this.configuration = configuration;
+        this.executorService = executorService;
+        this.shutDownThreadPools = shutDownThreadPools;
+        this.rateLimiter = new RequestRateLimiter(
+                configuration.getMaxRequestsPerSecond());
+        this.retryTimer = new ScheduledThreadPoolExecutor(1,
+                newThreadFactory("s3-bulk-operations-retry-"));
+        this.retryTimer.setKeepAliveTime(60, TimeUnit.SECONDS);
+        this.retryTimer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Deletes the given keys from a bucket, packing them into multi-object
+     * delete requests.
+     *
+     * @param bucketName
+     *            The bucket containing the keys.
+     * @param keys
+     *            The keys to delete; consumed lazily.
+     * @param progressListener
+     *            Optional listener notified as keys are deleted.
+     * @return The number of keys deleted and the keys that could not be.
+     * @throws AbortedException
+     *             If the calling thread is interrupted.
+     */
+    public BulkOperationResult deleteObjects(String bucketName,
+            final Iterator<String> keys, ProgressListener progressListener) {
+        return deleteVersions(bucketName, new Iterator<KeyVersion>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public KeyVersion next() {
+                return new KeyVersion(keys.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }, progressListener);
+    }
+
+    /**
+     * Deletes the given keys, optionally qualified by version, from a bucket,
+     * packing them into multi-object delete requests.
+     *
+     * @param bucketName
+     *            The bucket containing the keys.
+     * @param keys
+     *            The keys and versions to delete; consumed lazily.
+     * @param progressListener
+     *            Optional listener notified as keys are deleted.
+     * @return The number of keys deleted and the keys that could not be.
+     * @throws AbortedException
+     *             If the calling thread is interrupted.
+     */
+    public BulkOperationResult deleteVersions(String bucketName,
+            Iterator<KeyVersion> keys, ProgressListener progressListener) {
+        final int batchSize = configuration.getDeleteBatchSize();
+        final Operation operation = new Operation(progressListener);
+        List<KeyVersion> batch = new ArrayList<KeyVersion>(batchSize);
+        while (keys.hasNext()) {
+            batch.add(keys.next());
+            if (batch.size() == batchSize) {
+                operation.submit(new DeleteBatch(operation, bucketName, batch));
+                batch = new ArrayList<KeyVersion>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            operation.submit(new DeleteBatch(operation, bucketName, batch));
+        }
+        return operation.awaitCompletion();
+    }
+
+    /**
+     * Executes the given copy requests in parallel. Source objects too large
+     * for a single copy request are copied with a sequence of upload part
+     * copy requests.
+     *
+     * @param copyObjectRequests
+     *            The copies to perform; consumed lazily.
+     * @param progressListener
+     *            Optional listener notified as objects are copied.
+     * @return The number of objects copied and the source keys that could not
+     *         be.
+     * @throws AbortedException
+     *             If the calling thread is interrupted.
+     */
+    public BulkOperationResult copyObjects(
+            Iterator<CopyObjectRequest> copyObjectRequests,
+            ProgressListener progressListener) {
+        final Operation operation = new Operation(progressListener);
+        while (copyObjectRequests.hasNext()) {
+            operation.submit(new CopyTask(operation, copyObjectRequests.next()));
+        }
+        return operation.awaitCompletion();
+    }
+
+    /**
+     * Forcefully shuts down the thread pool created by this instance and the
+     * timer used to schedule retries. Has no effect on a thread pool supplied
+     * by the caller.
+     */
+    public void shutdownNow() {
+        retryTimer.shutdownNow();
+        if (shutDownThreadPools) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static ExecutorService createExecutorService(int threads) {
+        return Executors.newFixedThreadPool(threads,
+                newThreadFactory("s3-bulk-operations-worker-"));
+    }
+
+    private static ThreadFactory newThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName(namePrefix + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static boolean isRetryable(AmazonClientException ace) {
+        if (ace instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) ace;
+            return RetryUtils.isRetryableServiceException(ase)
+                    || RetryUtils.isThrottlingException(ase);
+        }
+        return ace.isRetryable();
+    }
+
+    /**
+     * Returns how long to wait before sending failed keys again, using the SDK
+     * default back-off.
+     */
+    private static long backoff(AmazonWebServiceRequest request,
+            AmazonClientException cause, int attempt) {
+        return Math.max(0, PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY
+                .delayBeforeNextRetry(request, cause, attempt));
+    }
+
+    private static String errorCode(AmazonClientException cause) {
+        return cause instanceof AmazonServiceException
+                ? ((AmazonServiceException) cause).getErrorCode() : null;
+    }
+
+    /**
+     * The unit of work of an operation: the keys of one delete batch or one
+     * copy, sent once per call to {@link #attempt()}.
+     */
+    private static abstract class KeyTask {
+        /** The number of attempts made so far. */
+        int attempts;
+
+        /**
+         * Sends the request once and records the keys that finished. Returns
+         * the delay in milliseconds before the remaining keys should be sent
+         * again, or a negative value once every key has been recorded.
+         */
+        abstract long attempt();
+
+        /**
+         * Records every key not yet recorded as failed with the given cause.
+         * Keys already recorded are not recorded again.
+         */
+        abstract void failRemaining(AmazonClientException cause);
+    }
+
+    /**
+     * The state of one bulk operation: the requests in flight, the tasks not
+     * yet finished, the running totals and the listener to notify.
+     */
+    private final class Operation {
+        private final Semaphore inFlight = new Semaphore(
+                configuration.getMaxConcurrency());
+        private final AtomicLong succeeded = new AtomicLong();
+        private final List<BulkOperationFailure> failures = Collections
+                .synchronizedList(new ArrayList<BulkOperationFailure>());
+        private final ProgressListener listener;
+
+        /** Tasks submitted but not finished, including those awaiting retry. */
+        private int unfinished;
+
+        Operation(ProgressListener listener) {
+            this.listener = listener;
+            SDKProgressPublisher.publishProgress(listener,
+                    TRANSFER_STARTED_EVENT);
+        }
+
+        /**
+         * Hands the task to the thread pool, blocking while the maximum
+         * number of requests is already in flight so that the key iterator
+         * is only consumed as fast as the requests complete.
+         */
+        void submit(KeyTask task) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AbortedException(e);
+            }
+            synchronized (this) {
+                unfinished++;
+            }
+            try {
+                execute(task);
+            } catch (RejectedExecutionException e) {
+                task.failRemaining(new AmazonClientException(
+                        "Unable to execute the request: " + e.getMessage(), e));
+                finished();
+                throw e;
+            }
+        }
+
+        /**
+         * Runs one attempt of the task, which must hold an in-flight permit,
+         * in the thread pool.
+         */
+        private void execute(final KeyTask task) {
+            try {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runAttempt(task);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        private void runAttempt(final KeyTask task) {
+            long delay = -1;
+            try {
+                delay = task.attempt();
+            } catch (RuntimeException e) {
+                task.failRemaining(new AmazonClientException(
+                        "Unable to complete the request: " + e.getMessage(), e));
+            } catch (Error e) {
+                task.failRemaining(new AmazonClientException(
+                        "Unable to complete the request: " + e.getMessage(), e));
+                throw e;
+            } finally {
+                // The permit is not held while waiting to retry
+                inFlight.release();
+                if (delay < 0) {
+                    finished();
+                }
+            }
+            if (delay >= 0) {
+                scheduleRetry(task, delay);
+            }
+        }
+
+        private void scheduleRetry(final KeyTask task, long delay) {
+            try {
+                retryTimer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        resubmit(task);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                task.failRemaining(new AmazonClientException(
+                        "Unable to retry the request: " + e.getMessage(), e));
+                finished();
+            }
+        }
+
+        /**
+         * Called on the retry timer thread. Waiting here for an in-flight
+         * permit cannot deadlock, as every permit holder is either running or
+         * queued in the thread pool and does not need the timer to finish.
+         */
+        private void resubmit(KeyTask task) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.failRemaining(new AbortedException(e));
+                finished();
+                return;
+            }
+            try {
+                execute(task);
+            } catch (RejectedExecutionException e) {
+                task.failRemaining(new AmazonClientException(
+                        "Unable to retry the request: " + e.getMessage(), e));
+                finished();
+            }
+        }
+
+        private synchronized void finished() {
+            if (--unfinished == 0) {
+                notifyAll();
+            }
+        }
+
+        BulkOperationResult awaitCompletion() {
+            synchronized (this) {
+                while (unfinished > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new AbortedException(e);
+                    }
+                }
+            }
+            final List<BulkOperationFailure> failed;
+            synchronized (failures) {
+                failed = new ArrayList<BulkOperationFailure>(failures);
+            }
+            SDKProgressPublisher.publishProgress(listener, failed.isEmpty()
+                    ? TRANSFER_COMPLETED_EVENT : TRANSFER_FAILED_EVENT);
+            return new BulkOperationResult(succeeded.get(), failed);
+        }
+
+        /**
+         * Records the outcome of some keys. Every key must be recorded
+         * exactly once.
+         */
+        void record(long succeededCount, List<BulkOperationFailure> failed) {
+            succeeded.addAndGet(succeededCount);
+            failures.addAll(failed);
+            S3ProgressPublisher.publishKeysProcessed(listener, succeededCount,
+                    failed.size());
+        }
+    }
+
+    /**
+     * Deletes one batch of keys, resending only the keys that fail with a
+     * retryable error.
+     */
+    private final class DeleteBatch extends KeyTask {
+        private final Operation operation;
+        private final String bucketName;
+
+        /** The keys not yet recorded as deleted or failed. */
+        private List<KeyVersion> pending;
+
+        DeleteBatch(Operation operation, String bucketName,
+                List<KeyVersion> keys) {
+            this.operation = operation;
+            this.bucketName = bucketName;
+            this.pending = keys;
+        }
+
+        @Override
+        long attempt() {
+            final DeleteObjectsRequest request = new DeleteObjectsRequest(
+                    bucketName).withKeys(pending).withQuiet(true);
+            final boolean canRetry = attempts++ < configuration
+                    .getMaxKeyRetries();
+            try {
+                rateLimiter.acquire();
+                s3.deleteObjects(request);
+            } catch (MultiObjectDeleteException e) {
+                // A quiet delete only reports the keys that failed
+                List<KeyVersion> retry = new ArrayList<KeyVersion>();
+                List<BulkOperationFailure> failed =
+                        new ArrayList<BulkOperationFailure>();
+                for (DeleteError error : e.getErrors()) {
+                    if (canRetry && RETRYABLE_ERROR_CODES
+                            .contains(error.getCode())) {
+                        retry.add(new KeyVersion(error.getKey(), error
+                                .getVersionId()));
+                    } else {
+                        failed.add(new BulkOperationFailure(bucketName, error
+                                .getKey(), error.getVersionId(), error
+                                .getCode(), error.getMessage()));
+                    }
+                }
+                final int deleted = pending.size() - e.getErrors().size();
+                pending = retry;
+                operation.record(deleted, failed);
+                return retry.isEmpty() ? -1
+                        : backoff(request, e, attempts - 1);
+            } catch (AmazonClientException e) {
+                if (!canRetry || !isRetryable(e)) {
+                    failRemaining(e);
+                    return -1;
+                }
+                return backoff(request, e, attempts - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failRemaining(new AbortedException(e));
+                return -1;
+            }
+            final int deleted = pending.size();
+            pending = Collections.emptyList();
+            operation.record(deleted,
+                    Collections.<BulkOperationFailure> emptyList());
+            return -1;
+        }
+
+        @Override
+        void failRemaining(AmazonClientException cause) {
+            List<BulkOperationFailure> failed =
+                    new ArrayList<BulkOperationFailure>(pending.size());
+            for (KeyVersion key : pending) {
+                failed.add(new BulkOperationFailure(bucketName, key.getKey(),
+                        key.getVersion(), errorCode(cause), cause.getMessage()));
+            }
+            pending = Collections.emptyList();
+            operation.record(0, failed);
+        }
+    }
+
+    /**
+     * Copies one object, falling back to a multi-part copy when the source is
+     * too large for a single copy request.
+     */
+    private final class CopyTask extends KeyTask {
+        private final Operation operation;
+        private final CopyObjectRequest request;
+
+        /** Whether the source key has been recorded as copied or failed. */
+        private boolean recorded;
+
+        CopyTask(Operation operation, CopyObjectRequest request) {
+            this.operation = operation;
+            this.request = request;
+        }
+
+        @Override
+        long attempt() {
+            final boolean canRetry = attempts++ < configuration
+                    .getMaxKeyRetries();
+            final boolean copied;
+            try {
+                copied = copy();
+            } catch (AmazonClientException e) {
+                if (!canRetry || !isRetryable(e)) {
+                    failRemaining(e);
+                    return -1;
+                }
+                return backoff(request, e, attempts - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failRemaining(new AbortedException(e));
+                return -1;
+            }
+            if (copied) {
+                recorded = true;
+                operation.record(1,
+                        Collections.<BulkOperationFailure> emptyList());
+            } else {
+                fail(null, "The copy constraints were not satisfied");
+            }
+            return -1;
+        }
+
+        /**
+         * Returns false if the copy was skipped because its constraints were
+         * not met.
+         */
+        private boolean copy() throws InterruptedException {
+            try {
+                rateLimiter.acquire();
+                return s3.copyObject(request) != null;
+            } catch (AmazonS3Exception e) {
+                if (e.getStatusCode() != 400
+                        || !"InvalidRequest".equals(e.getErrorCode())) {
+                    throw e;
+                }
+                // The source may be larger than a single copy allows
+                rateLimiter.acquire();
+                ObjectMetadata metadata = s3
+                        .getObjectMetadata(new GetObjectMetadataRequest(
+                                request.getSourceBucketName(), request
+                                        .getSourceKey(), request
+                                        .getSourceVersionId())
+                                .withSSECustomerKey(request
+                                        .getSourceSSECustomerKey()));
+                if (metadata.getContentLength() <= MAXIMUM_SINGLE_COPY_SIZE) {
+                    throw e;
+                }
+                copyInParts(metadata);
+                return true;
+            }
+        }
+
+        private void copyInParts(ObjectMetadata sourceMetadata)
+                throws InterruptedException {
+            final long contentLength = sourceMetadata.getContentLength();
+            final long partSize = Math.max(
+                    (long) Math.ceil((double) contentLength
+                            / MAXIMUM_UPLOAD_PARTS),
+                    configuration.getMultipartCopyPartSize());
+            rateLimiter.acquire();
+            final String uploadId = s3.initiateMultipartUpload(
+                    newInitiateRequest(sourceMetadata)).getUploadId();
+            try {
+                CopyPartRequestFactory factory = new CopyPartRequestFactory(
+                        request, uploadId, partSize, contentLength);
+                List<PartETag> partETags = new ArrayList<PartETag>();
+                while (factory.hasMoreRequests()) {
+                    rateLimiter.acquire();
+                    partETags.add(s3.copyPart(
+                            factory.getNextCopyPartRequest()).getPartETag());
+                }
+                rateLimiter.acquire();
+                s3.completeMultipartUpload(new CompleteMultipartUploadRequest(
+                        request.getDestinationBucketName(), request
+                                .getDestinationKey(), uploadId, partETags));
+            } catch (InterruptedException e) {
+                abort(uploadId);
+                throw e;
+            } catch (RuntimeException e) {
+                abort(uploadId);
+                throw e;
+            }
+        }
+
+        private InitiateMultipartUploadRequest newInitiateRequest(
+                ObjectMetadata sourceMetadata) {
+            ObjectMetadata newObjectMetadata = request.getNewObjectMetadata();
+            if (newObjectMetadata == null) {
+                // Carry over what a single copy request would have copied
+                newObjectMetadata = new ObjectMetadata();
+                newObjectMetadata.setUserMetadata(sourceMetadata
+                        .getUserMetadata());
+                newObjectMetadata.setContentType(sourceMetadata
+                        .getContentType());
+                newObjectMetadata.setContentEncoding(sourceMetadata
+                        .getContentEncoding());
+                newObjectMetadata.setContentDisposition(sourceMetadata
+                        .getContentDisposition());
+                newObjectMetadata.setCacheControl(sourceMetadata
+                        .getCacheControl());
+            }
+            return new InitiateMultipartUploadRequest(
+                    request.getDestinationBucketName(),
+                    request.getDestinationKey(), newObjectMetadata)
+                    .withCannedACL(request.getCannedAccessControlList())
+                    .withAccessControlList(request.getAccessControlList())
+                    .withStorageClass(request.getStorageClass())
+                    .withSSECustomerKey(request.getDestinationSSECustomerKey())
+                    .withSSEAwsKeyManagementParams(
+                            request.getSSEAwsKeyManagementParams())
+                    .withRequestMetricCollector(
+                            request.getRequestMetricCollector());
+        }
+
+        private void abort(String uploadId) {
+            try {
+                s3.abortMultipartUpload(new AbortMultipartUploadRequest(
+                        request.getDestinationBucketName(), request
+                                .getDestinationKey(), uploadId));
+            } catch (Exception e) {
+                log.info("Unable to abort multipart copy " + uploadId
+                        + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        void failRemaining(AmazonClientException cause) {
+            fail(errorCode(cause), cause.getMessage());
+        }
+
+        private void fail(String errorCode, String errorMessage) {
+            if (recorded) {
+                return;
+            }
+            recorded = true;
+            operation.record(0, Collections.singletonList(
+                    new BulkOperationFailure(request.getSourceBucketName(),
+                            request.getSourceKey(), request
+                                    .getSourceVersionId(), errorCode,
+                            errorMessage)));
+        }
+    }
+}
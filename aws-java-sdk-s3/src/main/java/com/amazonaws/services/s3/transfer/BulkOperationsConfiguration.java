@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static com.amazonaws.services.s3.internal.Constants.MB;
+
+/**
+ * Configuration options for how {@link BulkOperations} processes requests.
+ * <p>
+ * The default settings keep a modest number of requests in flight and do not
+ * limit the request rate. Applications operating on very large key sets in a
+ * shared bucket may want to lower the concurrency or set a request rate cap to
+ * stay clear of Amazon S3 request rate throttling.
+ */
+public class BulkOperationsConfiguration {
+
+    /** Maximum number of keys Amazon S3 accepts in one multi-object delete. */
+    public static final int MAX_DELETE_BATCH_SIZE = 1000;
+
+    /** Default number of requests that may be in flight at the same time. */
+    static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    /** Default number of times a failed key is retried. */
+    static final int DEFAULT_MAX_KEY_RETRIES = 3;
+
+    /** Default minimum size of each part for multi-part copy. */
+    static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
+
+    /** The maximum number of requests in flight at the same time. */
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    /**
+     * The maximum number of requests per second issued across all the
+     * operations of one {@link BulkOperations} instance, or zero for no limit.
+     */
+    private double maxRequestsPerSecond;
+
+    /**
+     * The number of times a key that failed with a retryable error is sent
+     * again before it is reported as failed.
+     */
+    private int maxKeyRetries = DEFAULT_MAX_KEY_RETRIES;
+
+    /** The number of keys packed into each multi-object delete request. */
+    private int deleteBatchSize = MAX_DELETE_BATCH_SIZE;
+
+    /** The minimum size in bytes of each part of a multi-part copy. */
+    private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
+
+    /**
+     * Returns the maximum number of requests that may be in flight at the
+     * same time.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of requests that may be in flight at the same
+     * time. This is also the size of the thread pool created by
+     * {@link BulkOperations} when no executor is supplied.
+     *
+     * @param maxConcurrency
+     *            The maximum number of concurrent requests; must be positive.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException(
+                    "maxConcurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Returns the maximum number of requests per second, or zero if the
+     * request rate is not limited.
+     */
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of requests per second issued across all the
+     * operations of one {@link BulkOperations} instance, including retries of
+     * failed keys. Zero disables the limit.
+     *
+     * @param maxRequestsPerSecond
+     *            The request rate cap; must not be negative.
+     */
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        if (maxRequestsPerSecond < 0) {
+            throw new IllegalArgumentException(
+                    "maxRequestsPerSecond must not be negative");
+        }
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Returns the number of times a key that failed with a retryable error is
+     * sent again before it is reported as failed.
+     */
+    public int getMaxKeyRetries() {
+        return maxKeyRetries;
+    }
+
+    /**
+     * Sets the number of times a key that failed with a retryable error, such
+     * as an internal error or throttling, is sent again before it is reported
+     * as failed. Only the failed keys are resent; keys that succeeded in the
+     * same request are not. These retries come on top of the retries already
+     * performed by the client's retry policy.
+     *
+     * @param maxKeyRetries
+     *            The number of retries per key; must not be negative.
+     */
+    public void setMaxKeyRetries(int maxKeyRetries) {
+        if (maxKeyRetries < 0) {
+            throw new IllegalArgumentException(
+                    "maxKeyRetries must not be negative");
+        }
+        this.maxKeyRetries = maxKeyRetries;
+    }
+
+    /**
+     * Returns the number of keys packed into each multi-object delete request.
+     */
+    public int getDeleteBatchSize() {
+        return deleteBatchSize;
+    }
+
+    /**
+     * Sets the number of keys packed into each multi-object delete request.
+     * Defaults to the service maximum of {@value #MAX_DELETE_BATCH_SIZE}.
+     *
+     * @param deleteBatchSize
+     *            The number of keys per delete request, between 1 and
+     *            {@value #MAX_DELETE_BATCH_SIZE}.
+     */
+    public void setDeleteBatchSize(int deleteBatchSize) {
+        if (deleteBatchSize < 1 || deleteBatchSize > MAX_DELETE_BATCH_SIZE) {
+            throw new IllegalArgumentException(
+                    "deleteBatchSize must be between 1 and "
+                            + MAX_DELETE_BATCH_SIZE);
+        }
+        this.deleteBatchSize = deleteBatchSize;
+    }
+
+    /**
+     * Returns the minimum size in bytes of each part in a multi-part copy.
+     */
+    public long getMultipartCopyPartSize() {
+        return multipartCopyPartSize;
+    }
+
+    /**
+     * Sets the minimum part size in bytes for each part in a multi-part copy.
+     * Multi-part copy is only used for source objects too large for a single
+     * copy request.
+     *
+     * @param multipartCopyPartSize
+     *            The minimum size in bytes for each part in a multi part copy
+     *            request.
+     */
+    public void setMultipartCopyPartSize(long multipartCopyPartSize) {
+        this.multipartCopyPartSize = multipartCopyPartSize;
+    }
+}
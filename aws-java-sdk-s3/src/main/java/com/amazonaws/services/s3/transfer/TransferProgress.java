@@ -14,6 +14,8 @@
  */
 package com.amazonaws.services.s3.transfer;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -23,7 +25,7 @@ import org.apache.commons.logging.LogFactory;
 public final class TransferProgress {
 
     private static final Log log = LogFactory.getLog(TransferProgress.class);
-    private volatile long bytesTransferred = 0;
+    private final AtomicLong bytesTransferred = new AtomicLong();
     private volatile long totalBytesToTransfer = -1;
 
     /**
@@ -39,7 +41,7 @@ public final class TransferProgress {
      * @return The number of bytes completed in the associated transfer.
      */
     public long getBytesTransferred() {
-        return bytesTransferred;
+        return bytesTransferred.get();
     }
 
     /**
@@ -58,7 +60,7 @@ public final class TransferProgress {
      * @deprecated Replaced by {@link #getPercentTransferred()}
      */
     @Deprecated
-    public synchronized double getPercentTransfered() {
+    public double getPercentTransfered() {
         return getPercentTransferred();
     }
 
@@ -69,24 +71,30 @@ public final class TransferProgress {
      * @return A percentage of the number of bytes transferred out of the total
      *         number of bytes to transfer; or -1.0 if the total length is not known.
      */
-    public synchronized double getPercentTransferred() {
-        if (getBytesTransferred() < 0) return 0;
+    public double getPercentTransferred() {
+        final long transferred = getBytesTransferred();
+        if (transferred < 0) return 0;
 
-        return totalBytesToTransfer < 0
+        final long total = totalBytesToTransfer;
+        return total < 0
              ? -1.0 
-             : ((double)bytesTransferred / (double)totalBytesToTransfer) * (double)100;
+             : ((double)transferred / (double)total) * (double)100;
     }
 
-    public synchronized void updateProgress(long bytes) {
-        this.bytesTransferred += bytes;
-        if (totalBytesToTransfer > -1
-        &&  this.bytesTransferred > this.totalBytesToTransfer) {
-            this.bytesTransferred = this.totalBytesToTransfer;
+    public void updateProgress(long bytes) {
+        final long transferred = bytesTransferred.addAndGet(bytes);
+        final long total = totalBytesToTransfer;
+        if (total > -1 && transferred > total) {
+            long current;
+            do {
+                current = bytesTransferred.get();
+            } while (current > total
+                    && !bytesTransferred.compareAndSet(current, total));
             if (log.isDebugEnabled()) {
                 log.debug("Number of bytes transfered is more than the actual total bytes to transfer. Total number of bytes to Transfer : "
-                        + totalBytesToTransfer
+                        + total
                         + ". Bytes Transferred : "
-                        + (bytesTransferred + bytes));
+                        + transferred);
             }
         }
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces out requests so that no more than a fixed number are started per
+ * second. Shared by all the threads issuing requests for one bulk operation
+ * engine; a rate of zero disables the limit.
+ */
+public class RequestRateLimiter {
+
+    /** Nanoseconds between two permits, or zero if the rate is unlimited. */
+    private final long intervalNanos;
+
+    /** The earliest time the next permit may be handed out. */
+    private long nextPermitNanos;
+
+    public RequestRateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond <= 0
+                ? 0
+                : (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.nextPermitNanos = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the caller may issue its next request.
+     */
+    public void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        final long waitNanos;
+        synchronized (this) {
+            final long now = System.nanoTime();
+            if (nextPermitNanos - now < 0) {
+                // An idle limiter must not accumulate a burst of permits
+                nextPermitNanos = now;
+            }
+            waitNanos = nextPermitNanos - now;
+            nextPermitNanos += intervalNanos;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
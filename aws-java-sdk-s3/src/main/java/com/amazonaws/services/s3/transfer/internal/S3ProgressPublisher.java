@@ -17,6 +17,7 @@ package com.amazonaws.services.s3.transfer.internal;
 import com.amazonaws.event.DeliveryMode;
 import com.amazonaws.event.ProgressListener;
 import com.amazonaws.event.SDKProgressPublisher;
+import com.amazonaws.services.s3.transfer.BulkOperationProgressListener;
 import com.amazonaws.services.s3.transfer.PersistableTransfer;
 
 import org.apache.commons.logging.LogFactory;
@@ -47,6 +48,42 @@ public class S3ProgressPublisher extends SDKProgressPublisher {
         return deliverEvent(s3listener, persistableTransfer);
     }
 
+    /**
+     * Used to deliver the number of keys processed by a bulk operation to the
+     * given listener.
+     *
+     * @param listener only listener of type
+     * {@link BulkOperationProgressListener} will be notified.
+     *
+     * @return the future of a submitted task; or null if the delivery is
+     * synchronous with no future task involved.
+     */
+    public static Future<?> publishKeysProcessed(
+            final ProgressListener listener,
+            final long succeededCount, final long failedCount) {
+        if (!(listener instanceof BulkOperationProgressListener)
+        ||  (succeededCount == 0 && failedCount == 0)) {
+            return null;
+        }
+        final BulkOperationProgressListener bulkListener =
+                (BulkOperationProgressListener) listener;
+        if (listener instanceof DeliveryMode
+        &&  ((DeliveryMode) listener).isSyncCallSafe()) {
+            try {
+                bulkListener.onKeysProcessed(succeededCount, failedCount);
+            } catch(Throwable t) {
+                LogFactory.getLog(S3ProgressPublisher.class)
+                    .debug("Failure from the event listener", t);
+            }
+            return null;
+        }
+        return setLatestFutureTask(getExecutorService().submit(new Runnable() {
+            @Override public void run() {
+                bulkListener.onKeysProcessed(succeededCount, failedCount);
+            }
+        }));
+    }
+
     private static Future<?> deliverEvent(final S3ProgressListener listener,
             final PersistableTransfer persistableTransfer) {
         if (listener instanceof DeliveryMode) {
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.model;
+
+import com.amazonaws.services.s3.transfer.BulkOperations;
+
+/**
+ * Describes a key that a {@link BulkOperations} delete or copy could not
+ * process, after any retries.
+ */
+public class BulkOperationFailure {
+
+    /** The bucket containing the key that failed. */
+    private final String bucketName;
+
+    /** The key that failed. */
+    private final String key;
+
+    /** The version of the key that failed, or null if none was specified. */
+    private final String versionId;
+
+    /** The Amazon S3 error code, or null for a client side failure. */
+    private final String errorCode;
+
+    /** A description of the failure. */
+    private final String errorMessage;
+
+    public BulkOperationFailure(String bucketName, String key,
+            String versionId, String errorCode, String errorMessage) {
+        this.bucketName = bucketName;
+        this.key = key;
+        this.versionId = versionId;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Returns the bucket containing the key that failed. For copies this is
+     * the source bucket.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Returns the key that failed. For copies this is the source key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the version of the key that failed, or null if no version was
+     * specified.
+     */
+    public String getVersionId() {
+        return versionId;
+    }
+
+    /**
+     * Returns the Amazon S3 error code, such as <code>AccessDenied</code>, or
+     * null if the failure happened on the client side.
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns a description of the failure.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkOperationFailure [bucketName=" + bucketName + ", key="
+                + key + ", versionId=" + versionId + ", errorCode="
+                + errorCode + ", errorMessage=" + errorMessage + "]";
+    }
+}
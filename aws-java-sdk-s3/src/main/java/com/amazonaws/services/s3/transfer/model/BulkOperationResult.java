@@ -0,0 +1,60 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.model;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.s3.transfer.BulkOperations;
+
+/**
+ * Summarizes the outcome of a {@link BulkOperations} delete or copy.
+ */
+public class BulkOperationResult {
+
+    /** The number of keys that were processed successfully. */
+    private final long succeededCount;
+
+    /** The keys that could not be processed. */
+    private final List<BulkOperationFailure> failures;
+
+    public BulkOperationResult(long succeededCount,
+            List<BulkOperationFailure> failures) {
+        this.succeededCount = succeededCount;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Returns the number of keys that were deleted or copied successfully.
+     */
+    public long getSucceededCount() {
+        return succeededCount;
+    }
+
+    /**
+     * Returns the keys that could not be deleted or copied, after any
+     * retries. Never null.
+     */
+    public List<BulkOperationFailure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns true if every key was processed successfully.
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.util.BinaryUtils;
+
+public class AwsChunkedEncodingInputStreamTest {
+
+    private static final byte[] SIGNING_KEY = "signing-key".getBytes(UTF8);
+    private static final String DATETIME = "20160101T000000Z";
+    private static final String KEY_PATH = "20160101/us-east-1/s3/aws4_request";
+    private static final String HEADER_SIGNATURE =
+            "4f232c4386841ef735655705268965c44a0e4690baa4adea153f7db9fa80a0a9";
+
+    private static final int[] CHUNK_SIZES = {
+            AwsChunkedEncodingInputStream.MIN_CHUNK_SIZE,
+            10000,
+            AwsChunkedEncodingInputStream.DEFAULT_CHUNK_SIZE };
+
+    @Test
+    public void testSignaturesMatchStringBuiltSignatures() throws Exception {
+        for (int chunkSize : CHUNK_SIZES) {
+            for (int length : lengths(chunkSize)) {
+                byte[] data = data(length);
+                byte[] encoded = readFully(new AwsChunkedEncodingInputStream(
+                        new ByteArrayInputStream(data), 4 * chunkSize, chunkSize,
+                        SIGNING_KEY, DATETIME, KEY_PATH, HEADER_SIGNATURE));
+                Assert.assertTrue("chunk size " + chunkSize + ", length " + length,
+                        Arrays.equals(expectedEncoding(data, chunkSize), encoded));
+            }
+        }
+    }
+
+    @Test
+    public void testEncodedLengthMatchesCalculatedLength() throws Exception {
+        for (int chunkSize : CHUNK_SIZES) {
+            for (int length : lengths(chunkSize)) {
+                byte[] encoded = readFully(new AwsChunkedEncodingInputStream(
+                        new ByteArrayInputStream(data(length)), 4 * chunkSize, chunkSize,
+                        SIGNING_KEY, DATETIME, KEY_PATH, HEADER_SIGNATURE));
+                Assert.assertEquals("chunk size " + chunkSize + ", length " + length,
+                        AwsChunkedEncodingInputStream.calculateStreamContentLength(length, chunkSize),
+                        encoded.length);
+            }
+        }
+    }
+
+    @Test
+    public void testResignedStreamMatchesOriginal() throws Exception {
+        byte[] data = data(3 * 10000 + 17);
+        AwsChunkedEncodingInputStream first = new AwsChunkedEncodingInputStream(
+                new ByteArrayInputStream(data), 40000, 10000,
+                SIGNING_KEY, DATETIME, KEY_PATH, HEADER_SIGNATURE);
+        byte[] original = readFully(first);
+        first.reset();
+        // A retried request wraps the previous stream, reusing its chunk buffer
+        byte[] retried = readFully(new AwsChunkedEncodingInputStream(first, 40000, 10000,
+                SIGNING_KEY, DATETIME, KEY_PATH, HEADER_SIGNATURE));
+        Assert.assertTrue(Arrays.equals(original, retried));
+    }
+
+    private static int[] lengths(int chunkSize) {
+        return new int[] { 0, 1, chunkSize - 1, chunkSize, chunkSize + 1, 3 * chunkSize + 123 };
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the data the way chunks were signed before the signing buffers
+     * were reused: by building each string to sign as a String.
+     */
+    private static byte[] expectedEncoding(byte[] data, int chunkSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String priorSignature = HEADER_SIGNATURE;
+        int offset = 0;
+        while (true) {
+            int length = Math.min(chunkSize, data.length - offset);
+            byte[] chunk = Arrays.copyOfRange(data, offset, offset + length);
+            String stringToSign = "AWS4-HMAC-SHA256-PAYLOAD" + "\n"
+                    + DATETIME + "\n"
+                    + KEY_PATH + "\n"
+                    + priorSignature + "\n"
+                    + AbstractAWSSigner.EMPTY_STRING_SHA256_HEX + "\n"
+                    + BinaryUtils.toHex(MessageDigest.getInstance("SHA-256").digest(chunk));
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(SIGNING_KEY, "HmacSHA256"));
+            String signature = BinaryUtils.toHex(mac.doFinal(stringToSign.getBytes(UTF8)));
+
+            out.write((Integer.toHexString(length) + ";chunk-signature=" + signature + "\r\n")
+                    .getBytes(UTF8));
+            out.write(chunk);
+            out.write("\r\n".getBytes(UTF8));
+            priorSignature = signature;
+            offset += length;
+            if (length == 0) {
+                return out.toByteArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class Crc32cTest {
+
+    @Test
+    public void testKnownAnswers() {
+        Assert.assertEquals(0xE3069283L, crc("123456789".getBytes(UTF8)));
+        Assert.assertEquals(0L, crc(new byte[0]));
+
+        // RFC 3720, appendix B.4
+        byte[] zeros = new byte[32];
+        Assert.assertEquals(0x8A9136AAL, crc(zeros));
+        byte[] ones = new byte[32];
+        Arrays.fill(ones, (byte) 0xFF);
+        Assert.assertEquals(0x62A8AB43L, crc(ones));
+        byte[] ascending = new byte[32];
+        for (int i = 0; i < ascending.length; i++) {
+            ascending[i] = (byte) i;
+        }
+        Assert.assertEquals(0x46DD794EL, crc(ascending));
+    }
+
+    @Test
+    public void testUnalignedOffsetsAndLengths() {
+        byte[] data = new byte[300];
+        new Random(27).nextBytes(data);
+        for (int off = 0; off < 16; off++) {
+            for (int len = 0; off + len <= data.length; len += (len < 40 ? 1 : 37)) {
+                Crc32c crc = new Crc32c();
+                crc.update(data, off, len);
+                Assert.assertEquals("offset " + off + ", length " + len,
+                        reference(data, off, len), crc.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdatesMatchOneUpdate() {
+        byte[] data = new byte[1000];
+        new Random(28).nextBytes(data);
+        Crc32c crc = new Crc32c();
+        int off = 0;
+        int step = 1;
+        while (off < data.length) {
+            int len = Math.min(step, data.length - off);
+            if (len == 1) {
+                crc.update(data[off] & 0xFF);
+            } else {
+                crc.update(data, off, len);
+            }
+            off += len;
+            step = step * 3 % 23 + 1;
+        }
+        Assert.assertEquals(reference(data, 0, data.length), crc.getValue());
+    }
+
+    @Test
+    public void testCopyAndReset() {
+        byte[] data = "123456789".getBytes(UTF8);
+        Crc32c crc = new Crc32c();
+        crc.update(data, 0, 4);
+        Crc32c copy = crc.copy();
+        crc.update(data, 4, 5);
+        copy.update(data, 4, 5);
+        Assert.assertEquals(0xE3069283L, crc.getValue());
+        Assert.assertEquals(0xE3069283L, copy.getValue());
+
+        crc.reset();
+        Assert.assertEquals(0L, crc.getValue());
+        crc.update(data, 0, data.length);
+        Assert.assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    private static long crc(byte[] data) {
+        Crc32c crc = new Crc32c();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    /** Bit-at-a-time CRC-32C, the definition the table-driven version must match. */
+    private static long reference(byte[] data, int off, int len) {
+        int crc = 0xFFFFFFFF;
+        for (int i = off; i < off + len; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ 0x82F63B78 : crc >>> 1;
+            }
+        }
+        return ~crc & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MD5DigestCalculatingInputStreamTest {
+
+    private static final byte[] DATA = new byte[10000];
+
+    static {
+        new Random(27).nextBytes(DATA);
+    }
+
+    @Test
+    public void testMd5Only() throws Exception {
+        MD5DigestCalculatingInputStream in = drain(
+                new MD5DigestCalculatingInputStream(new ByteArrayInputStream(DATA)));
+        Assert.assertTrue(Arrays.equals(md5(DATA), in.getMd5Digest()));
+        Assert.assertNull(in.getCrc32cChecksum());
+    }
+
+    @Test
+    public void testCrc32cOnly() throws Exception {
+        MD5DigestCalculatingInputStream in = drain(
+                new MD5DigestCalculatingInputStream(new ByteArrayInputStream(DATA), false, true));
+        Assert.assertNull(in.getMd5Digest());
+        Assert.assertEquals(Long.valueOf(crc32c(DATA)), in.getCrc32cChecksum());
+    }
+
+    @Test
+    public void testMd5AndCrc32c() throws Exception {
+        MD5DigestCalculatingInputStream in = drain(
+                new MD5DigestCalculatingInputStream(new ByteArrayInputStream(DATA), true, true));
+        Assert.assertTrue(Arrays.equals(md5(DATA), in.getMd5Digest()));
+        Assert.assertEquals(Long.valueOf(crc32c(DATA)), in.getCrc32cChecksum());
+    }
+
+    @Test
+    public void testNeither() throws Exception {
+        MD5DigestCalculatingInputStream in = drain(
+                new MD5DigestCalculatingInputStream(new ByteArrayInputStream(DATA), false, false));
+        Assert.assertNull(in.getMd5Digest());
+        Assert.assertNull(in.getCrc32cChecksum());
+    }
+
+    @Test
+    public void testResetRewindsBothChecksums() throws Exception {
+        MD5DigestCalculatingInputStream in =
+                new MD5DigestCalculatingInputStream(new ByteArrayInputStream(DATA), true, true);
+        byte[] buffer = new byte[100];
+        in.read(buffer, 0, buffer.length);
+        in.mark(DATA.length);
+        in.read(buffer, 0, buffer.length);
+        in.read();
+        in.reset();
+        drain(in);
+        Assert.assertTrue(Arrays.equals(md5(DATA), in.getMd5Digest()));
+        Assert.assertEquals(Long.valueOf(crc32c(DATA)), in.getCrc32cChecksum());
+    }
+
+    /** Reads the stream with a mix of single byte and bulk reads. */
+    private static MD5DigestCalculatingInputStream drain(MD5DigestCalculatingInputStream in)
+            throws IOException {
+        byte[] buffer = new byte[333];
+        while (true) {
+            if (in.read() == -1 || in.read(buffer, 7, 300) == -1) {
+                return in;
+            }
+        }
+    }
+
+    private static byte[] md5(byte[] data) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(data);
+    }
+
+    private static long crc32c(byte[] data) {
+        Crc32c crc = new Crc32c();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class CipherLiteInputStreamTest {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int DATA_SIZE = 20 * BUFFER_SIZE + 123;
+
+    private final SecretKey key = new SecretKeySpec(new byte[16], "AES");
+    private final byte[] iv = new byte[12];
+
+    @Test
+    public void testGcmRoundTripReusesOutputBuffer() throws Exception {
+        byte[] plaintext = new byte[DATA_SIZE];
+        new Random(42).nextBytes(plaintext);
+
+        byte[] ciphertext = readAll(new CipherLiteInputStream(new ByteArrayInputStream(plaintext),
+                gcm(Cipher.ENCRYPT_MODE),
+                BUFFER_SIZE));
+        Assert.assertEquals(DATA_SIZE + 16, ciphertext.length);
+
+        byte[] decrypted = readAll(new CipherLiteInputStream(new ByteArrayInputStream(ciphertext),
+                gcm(Cipher.DECRYPT_MODE),
+                BUFFER_SIZE));
+        Assert.assertTrue(Arrays.equals(plaintext, decrypted));
+    }
+
+    @Test(expected = SecurityException.class)
+    public void testGcmDecryptFailsOnTamperedCiphertext() throws Exception {
+        byte[] ciphertext = readAll(new CipherLiteInputStream(new ByteArrayInputStream(new byte[DATA_SIZE]),
+                gcm(Cipher.ENCRYPT_MODE),
+                BUFFER_SIZE));
+        ciphertext[100] ^= 1;
+        readAll(new CipherLiteInputStream(new ByteArrayInputStream(ciphertext),
+                gcm(Cipher.DECRYPT_MODE),
+                BUFFER_SIZE));
+    }
+
+    /**
+     * Creates an AES/GCM cipher of the default provider, which is the one
+     * that reports a growing output size while decrypting.
+     */
+    private CipherLite gcm(int cipherMode) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(ContentCryptoScheme.AES_GCM.getCipherAlgorithm());
+        cipher.init(cipherMode, key, new GCMParameterSpec(128, iv));
+        return ContentCryptoScheme.AES_GCM.newCipherLite(cipher, key, cipherMode);
+    }
+
+    /**
+     * Reads the stream to its end, checking after every read that the stream
+     * kept the output buffer it allocated first, and that the buffer stays
+     * within the input buffer size plus one block and the GCM tag.
+     */
+    private static byte[] readAll(CipherLiteInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[BUFFER_SIZE];
+        byte[] firstBuffer = null;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+            byte[] buffer = in.getReusableOutputBuffer();
+            if (firstBuffer == null) {
+                firstBuffer = buffer;
+            } else {
+                Assert.assertSame(firstBuffer, buffer);
+            }
+            if (buffer != null) {
+                Assert.assertTrue(buffer.length <= BUFFER_SIZE + 16 + 16);
+            }
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
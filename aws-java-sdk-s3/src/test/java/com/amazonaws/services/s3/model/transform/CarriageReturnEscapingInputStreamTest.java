@@ -0,0 +1,122 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class CarriageReturnEscapingInputStreamTest {
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        String document = "<a>\r\nb\rc\r</a>";
+        InputStream in = new CarriageReturnEscapingInputStream(
+                new ByteArrayInputStream(document.getBytes(UTF8)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        Assert.assertEquals(escape(document), new String(out.toByteArray(), UTF8));
+    }
+
+    @Test
+    public void testEscapesAcrossReadBoundaries() throws IOException {
+        Random random = new Random(26);
+        // Larger than the internal buffer, with carriage returns at its edges
+        byte[] document = new byte[3 * 8192 + 17];
+        for (int i = 0; i < document.length; i++) {
+            document[i] = random.nextInt(8) == 0 ? (byte) '\r' : (byte) ('a' + random.nextInt(26));
+        }
+        document[8191] = '\r';
+        document[8192] = '\r';
+        document[document.length - 1] = '\r';
+        String expected = escape(new String(document, UTF8));
+
+        for (int readSize : new int[] { 1, 2, 3, 5, 6, 7, 64, 8191, 8192, 10000 }) {
+            for (int chunkSize : new int[] { 1, 7, 8192 }) {
+                InputStream in = new CarriageReturnEscapingInputStream(
+                        new ChunkedInputStream(document, chunkSize));
+                Assert.assertEquals("read " + readSize + ", chunk " + chunkSize,
+                        expected, new String(readFully(in, readSize), UTF8));
+            }
+        }
+    }
+
+    @Test
+    public void testReadsAtAnOffset() throws IOException {
+        InputStream in = new CarriageReturnEscapingInputStream(
+                new ByteArrayInputStream("x\ry".getBytes(UTF8)));
+        byte[] b = new byte[12];
+        Arrays.fill(b, (byte) '-');
+        int total = 0;
+        while (total < 8) {
+            total += in.read(b, 2 + total, Math.min(4, 8 - total));
+        }
+        Assert.assertEquals(-1, in.read(b, 0, 1));
+        Assert.assertEquals("--x&#013;y--", new String(b, UTF8));
+    }
+
+    @Test
+    public void testMultiByteCharactersAreUntouched() throws IOException {
+        String document = "<k>\u00e9\u4e2d\ud83d\ude00\r</k>";
+        InputStream in = new CarriageReturnEscapingInputStream(
+                new ByteArrayInputStream(document.getBytes(UTF8)));
+        Assert.assertEquals(escape(document), new String(readFully(in, 3), UTF8));
+    }
+
+    private static String escape(String document) {
+        return document.replace("\r", "&#013;");
+    }
+
+    private static byte[] readFully(InputStream in, int readSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[readSize];
+        int read;
+        while ((read = in.read(b, 0, readSize)) != -1) {
+            Assert.assertTrue(read > 0);
+            out.write(b, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns at most a fixed number of bytes per read, like a network stream.
+     */
+    private static final class ChunkedInputStream extends ByteArrayInputStream {
+
+        private final int chunkSize;
+
+        private ChunkedInputStream(byte[] data, int chunkSize) {
+            super(data);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunkSize));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.amazonaws.AmazonClientException;
+
+public class XmlResponsesSaxParserTest {
+
+    private static final String DOCUMENT = "<Root><Name>value</Name></Root>";
+
+    @Test
+    public void testReaderIsReturnedToThePoolAfterParse() throws Exception {
+        XmlResponsesSaxParser parser = new XmlResponsesSaxParser();
+        int pooled = XmlResponsesSaxParser.pooledXmlReaderCount();
+        Assert.assertTrue(pooled > 0);
+
+        CountingHandler handler = new CountingHandler();
+        parser.parseXmlInputStream(handler, stream(DOCUMENT));
+
+        Assert.assertEquals(2, handler.elements);
+        Assert.assertEquals(pooled, XmlResponsesSaxParser.pooledXmlReaderCount());
+    }
+
+    @Test
+    public void testReaderOfFailedParseIsNotReused() throws Exception {
+        XmlResponsesSaxParser parser = new XmlResponsesSaxParser();
+        int pooled = XmlResponsesSaxParser.pooledXmlReaderCount();
+        Assert.assertTrue(pooled > 0);
+
+        // A handler failing half way leaves the reader in the middle of a document
+        try {
+            parser.parseXmlInputStream(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName,
+                        Attributes attributes) throws SAXException {
+                    throw new SAXException("handler failed");
+                }
+            }, stream(DOCUMENT));
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+        Assert.assertEquals(pooled - 1, XmlResponsesSaxParser.pooledXmlReaderCount());
+
+        try {
+            parser.parseXmlInputStream(new DefaultHandler(), stream("<Root><Unclosed></Root>"));
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+
+        // The next parses get a working reader and put it back
+        CountingHandler handler = new CountingHandler();
+        parser.parseXmlInputStream(handler, stream(DOCUMENT));
+        Assert.assertEquals(2, handler.elements);
+        parser.parseXmlInputStream(handler, stream(DOCUMENT));
+        Assert.assertEquals(4, handler.elements);
+    }
+
+    private static InputStream stream(String document) {
+        return new ByteArrayInputStream(document.getBytes(UTF8));
+    }
+
+    private static final class CountingHandler extends DefaultHandler {
+
+        private int elements;
+
+        @Override
+        public void startElement(String uri, String localName, String qName,
+                Attributes attributes) {
+            elements++;
+        }
+    }
+}
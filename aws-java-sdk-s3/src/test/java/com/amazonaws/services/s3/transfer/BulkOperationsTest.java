@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.SyncProgressListener;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.CopyObjectResult;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.DeleteObjectsResult;
+import com.amazonaws.services.s3.model.DeleteObjectsResult.DeletedObject;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException;
+import com.amazonaws.services.s3.model.MultiObjectDeleteException.DeleteError;
+import com.amazonaws.services.s3.transfer.model.BulkOperationFailure;
+import com.amazonaws.services.s3.transfer.model.BulkOperationResult;
+
+public class BulkOperationsTest {
+
+    private static final String BUCKET = "bucket";
+
+    private BulkOperations bulkOperations;
+
+    @After
+    public void tearDown() {
+        if (bulkOperations != null) {
+            bulkOperations.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDeleteRetriesOnlyFailedKeys() {
+        final List<List<String>> requests =
+                Collections.synchronizedList(new ArrayList<List<String>>());
+        bulkOperations = newBulkOperations(new AbstractAmazonS3() {
+            @Override
+            public DeleteObjectsResult deleteObjects(
+                    DeleteObjectsRequest request) {
+                List<String> keys = keysOf(request);
+                requests.add(keys);
+                List<DeleteError> errors = new ArrayList<DeleteError>();
+                if (keys.contains("key-5") && keys.size() > 1) {
+                    errors.add(newDeleteError("key-5", "SlowDown"));
+                }
+                if (keys.contains("key-7")) {
+                    errors.add(newDeleteError("key-7", "AccessDenied"));
+                }
+                if (!errors.isEmpty()) {
+                    throw new MultiObjectDeleteException(errors,
+                            Collections.<DeletedObject> emptyList());
+                }
+                return new DeleteObjectsResult(
+                        Collections.<DeletedObject> emptyList());
+            }
+        });
+        CountingListener listener = new CountingListener();
+
+        BulkOperationResult result = bulkOperations.deleteObjects(BUCKET,
+                keys(25).iterator(), listener);
+
+        Assert.assertEquals(24, result.getSucceededCount());
+        Assert.assertEquals(1, result.getFailures().size());
+        BulkOperationFailure failure = result.getFailures().get(0);
+        Assert.assertEquals("key-7", failure.getKey());
+        Assert.assertEquals("AccessDenied", failure.getErrorCode());
+        Assert.assertTrue(requests.contains(Collections.singletonList("key-5")));
+        Assert.assertEquals(4, requests.size());
+        listener.assertCounted(result);
+    }
+
+    @Test
+    public void testUnexpectedExceptionFailsEveryKeyOnce() {
+        bulkOperations = newBulkOperations(new AbstractAmazonS3() {
+            @Override
+            public DeleteObjectsResult deleteObjects(
+                    DeleteObjectsRequest request) {
+                if (keysOf(request).contains("key-12")) {
+                    throw new IllegalStateException("boom");
+                }
+                return new DeleteObjectsResult(
+                        Collections.<DeletedObject> emptyList());
+            }
+        });
+        CountingListener listener = new CountingListener();
+
+        BulkOperationResult result = bulkOperations.deleteObjects(BUCKET,
+                keys(25).iterator(), listener);
+
+        Assert.assertEquals(15, result.getSucceededCount());
+        Assert.assertEquals(10, result.getFailures().size());
+        for (BulkOperationFailure failure : result.getFailures()) {
+            Assert.assertTrue(failure.getErrorMessage().contains("boom"));
+        }
+        listener.assertCounted(result);
+    }
+
+    @Test
+    public void testCopyRetriesThrottledRequests() {
+        final AtomicInteger calls = new AtomicInteger();
+        bulkOperations = newBulkOperations(new AbstractAmazonS3() {
+            @Override
+            public CopyObjectResult copyObject(CopyObjectRequest request) {
+                if (calls.incrementAndGet() == 1) {
+                    AmazonS3Exception e = new AmazonS3Exception("Slow down");
+                    e.setErrorCode("SlowDown");
+                    e.setStatusCode(503);
+                    throw e;
+                }
+                if ("denied".equals(request.getSourceKey())) {
+                    AmazonS3Exception e = new AmazonS3Exception("Denied");
+                    e.setErrorCode("AccessDenied");
+                    e.setStatusCode(403);
+                    throw e;
+                }
+                return new CopyObjectResult();
+            }
+        });
+        List<CopyObjectRequest> copies = new ArrayList<CopyObjectRequest>();
+        for (String key : keys(5)) {
+            copies.add(new CopyObjectRequest(BUCKET, key, BUCKET, key + "-copy"));
+        }
+        copies.add(new CopyObjectRequest(BUCKET, "denied", BUCKET, "copy"));
+        CountingListener listener = new CountingListener();
+
+        BulkOperationResult result = bulkOperations.copyObjects(
+                copies.iterator(), listener);
+
+        Assert.assertEquals(5, result.getSucceededCount());
+        Assert.assertEquals(1, result.getFailures().size());
+        Assert.assertEquals("denied", result.getFailures().get(0).getKey());
+        Assert.assertEquals(7, calls.get());
+        listener.assertCounted(result);
+    }
+
+    private static BulkOperations newBulkOperations(AbstractAmazonS3 s3) {
+        BulkOperationsConfiguration configuration =
+                new BulkOperationsConfiguration();
+        configuration.setMaxConcurrency(2);
+        configuration.setDeleteBatchSize(10);
+        return new BulkOperations(s3, configuration);
+    }
+
+    private static List<String> keys(int count) {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            keys.add("key-" + i);
+        }
+        return keys;
+    }
+
+    private static List<String> keysOf(DeleteObjectsRequest request) {
+        List<String> keys = new ArrayList<String>();
+        for (KeyVersion key : request.getKeys()) {
+            keys.add(key.getKey());
+        }
+        return keys;
+    }
+
+    private static DeleteError newDeleteError(String key, String code) {
+        DeleteError error = new DeleteError();
+        error.setKey(key);
+        error.setCode(code);
+        error.setMessage(code);
+        return error;
+    }
+
+    private static class CountingListener extends SyncProgressListener
+            implements BulkOperationProgressListener {
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        @Override
+        public void progressChanged(ProgressEvent progressEvent) {
+        }
+
+        @Override
+        public void onKeysProcessed(long succeededCount, long failedCount) {
+            succeeded.addAndGet(succeededCount);
+            failed.addAndGet(failedCount);
+        }
+
+        void assertCounted(BulkOperationResult result) {
+            Assert.assertEquals(result.getSucceededCount(), succeeded.get());
+            Assert.assertEquals(result.getFailures().size(), failed.get());
+        }
+    }
+}
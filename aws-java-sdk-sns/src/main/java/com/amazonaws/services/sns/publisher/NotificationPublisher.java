@@ -0,0 +1,392 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.publisher;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.internal.SdkSettableFuture;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.sns.AmazonSNSAsync;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+/**
+ * Publishes large numbers of messages, typically one per mobile endpoint, through an
+ * {@link AmazonSNSAsync} client, so that a single thread can keep many publishes in flight.
+ * <p>
+ * Each call to {@code publish} returns at once with a future of the result, and calls the given
+ * handler, if any, when the publish completes. The number of publishes accepted but not yet
+ * completed is bounded; once the bound is reached, {@code publish} blocks until one completes.
+ * Publishes to a single target (topic ARN, target ARN or phone number) can be spread out to a
+ * fixed rate, and publishes throttled by SNS are retried with a jittered exponential backoff.
+ * <p>
+ * The publisher does not retry other errors, which the client's own retry policy already handles.
+ * Instances of {@code NotificationPublisher} are thread-safe.
+ */
+public class NotificationPublisher {
+
+    private static final Log log = LogFactory.getLog(NotificationPublisher.class);
+
+    /** Rate limiters of targets not published to for this long are dropped. */
+    private static final long LIMITER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AmazonSNSAsync sns;
+    private final NotificationPublisherConfiguration config;
+
+    /** Permits for publishes accepted but not yet completed. */
+    private final Semaphore outstandingPermits;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /** Delays rate-limited publishes and retries. */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ConcurrentMap<String, TargetLimiter> limiters = new ConcurrentHashMap<String, TargetLimiter>();
+    private final long publishIntervalNanos;
+    private final Random random = new Random();
+
+    private volatile boolean shutdown;
+    private final AtomicBoolean terminating = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final AtomicLong publishedMessages = new AtomicLong();
+    private final AtomicLong failedMessages = new AtomicLong();
+    private final AtomicLong throttledRetries = new AtomicLong();
+
+    public NotificationPublisher(AmazonSNSAsync sns) {
+        this(sns, new NotificationPublisherConfiguration());
+    }
+
+    public NotificationPublisher(AmazonSNSAsync sns, NotificationPublisherConfiguration config) {
+        this.sns = sns;
+        this.config = new NotificationPublisherConfiguration(config);
+        this.outstandingPermits = new Semaphore(this.config.getMaxOutstandingPublishes());
+        this.publishIntervalNanos = this.config.getTargetPublishesPerSecond() > 0 ? (long) (TimeUnit.SECONDS
+                .toNanos(1) / this.config.getTargetPublishesPerSecond()) : 0;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory());
+        if (publishIntervalNanos > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    dropIdleLimiters();
+                }
+            }, LIMITER_IDLE_NANOS, LIMITER_IDLE_NANOS, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Publishes a message to a topic or a platform endpoint.
+     *
+     * @param targetArn
+     *            the ARN of a topic or of a platform endpoint; ARNs containing
+     *            {@code ":endpoint/"} are sent as the target ARN, others as the topic ARN
+     * @return a future of the publish result
+     * @see #publish(PublishRequest, AsyncHandler)
+     */
+    public Future<PublishResult> publish(String targetArn, String message) throws InterruptedException {
+        PublishRequest request = new PublishRequest().withMessage(message);
+        if (targetArn.contains(":endpoint/")) {
+            request.setTargetArn(targetArn);
+        } else {
+            request.setTopicArn(targetArn);
+        }
+        return publish(request, null);
+    }
+
+    /**
+     * Publishes a message, blocking while the maximum number of outstanding publishes is reached.
+     *
+     * @param handler
+     *            called once the message is published or has failed, on a thread of the client or
+     *            of the publisher; may be null
+     * @return a future of the publish result. Cancelling it frees its slot among the outstanding
+     *         publishes, but does not recall a request already sent.
+     * @throws IllegalStateException
+     *             if the publisher was shut down
+     */
+    public Future<PublishResult> publish(PublishRequest request, AsyncHandler<PublishRequest, PublishResult> handler)
+            throws InterruptedException {
+        outstanding.incrementAndGet();
+        if (shutdown) {
+            completed();
+            throw new IllegalStateException("The publisher was shut down");
+        }
+        try {
+            outstandingPermits.acquire();
+        } catch (InterruptedException e) {
+            completed();
+            throw e;
+        }
+        Publish publish = new Publish(request, handler, limiterFor(request));
+        publish.schedule(0);
+        return publish;
+    }
+
+    /**
+     * Stops accepting publishes. Those already accepted, including their retries, still complete.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (outstanding.get() == 0) {
+            terminate();
+        }
+    }
+
+    /**
+     * Waits for the publisher to complete its outstanding publishes after {@link #shutdown()}.
+     *
+     * @return true if the publisher terminated, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return the number of publishes accepted but not yet completed
+     */
+    public int getOutstandingCount() {
+        return config.getMaxOutstandingPublishes() - outstandingPermits.availablePermits();
+    }
+
+    /**
+     * @return the number of messages published successfully
+     */
+    public long getPublishedCount() {
+        return publishedMessages.get();
+    }
+
+    /**
+     * @return the number of messages that could not be published
+     */
+    public long getFailedCount() {
+        return failedMessages.get();
+    }
+
+    /**
+     * @return the number of times a throttled publish was retried
+     */
+    public long getThrottledRetryCount() {
+        return throttledRetries.get();
+    }
+
+    private TargetLimiter limiterFor(PublishRequest request) {
+        if (publishIntervalNanos == 0) {
+            return null;
+        }
+        String target = request.getTargetArn() != null ? request.getTargetArn()
+                : request.getTopicArn() != null ? request.getTopicArn() : request.getPhoneNumber();
+        if (target == null) {
+            return null;
+        }
+        TargetLimiter limiter = limiters.get(target);
+        if (limiter == null) {
+            TargetLimiter created = new TargetLimiter();
+            limiter = limiters.putIfAbsent(target, created);
+            if (limiter == null) {
+                limiter = created;
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Drops the limiters of targets no longer published to, so that fanning out to many endpoints
+     * does not keep one limiter per endpoint forever. A publish racing with the removal may get a
+     * fresh limiter, so the rate is approximate.
+     */
+    private void dropIdleLimiters() {
+        long idleSince = System.nanoTime() - LIMITER_IDLE_NANOS;
+        for (Map.Entry<String, TargetLimiter> entry : limiters.entrySet()) {
+            if (entry.getValue().isIdleSince(idleSince)) {
+                limiters.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Called once per publish accepted, or refused, when it is over.
+     */
+    private void completed() {
+        if (outstanding.decrementAndGet() == 0 && shutdown) {
+            terminate();
+        }
+    }
+
+    private void terminate() {
+        if (terminating.compareAndSet(false, true)) {
+            scheduler.shutdown();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * The rate limit of one target: each publish reserves the next free slot, one publish
+     * interval after the previous one.
+     */
+    private final class TargetLimiter {
+
+        private long nextFreeNanos = System.nanoTime();
+
+        /**
+         * @return the time at which a publish asked for no earlier than {@code earliestNanos} may
+         *         be sent
+         */
+        private synchronized long reserve(long earliestNanos) {
+            long slot = (nextFreeNanos - earliestNanos > 0) ? nextFreeNanos : earliestNanos;
+            nextFreeNanos = slot + publishIntervalNanos;
+            return slot;
+        }
+
+        private synchronized boolean isIdleSince(long nanos) {
+            return nextFreeNanos - nanos < 0;
+        }
+    }
+
+    /**
+     * One accepted publish, which is its own future and its own client callback.
+     */
+    private final class Publish extends SdkSettableFuture<PublishResult> implements
+            AsyncHandler<PublishRequest, PublishResult> {
+
+        private final PublishRequest request;
+        private final AsyncHandler<PublishRequest, PublishResult> handler;
+        private final TargetLimiter limiter;
+        private int retries;
+
+        private final Runnable sender = new Runnable() {
+            public void run() {
+                send();
+            }
+        };
+
+        private Publish(PublishRequest request, AsyncHandler<PublishRequest, PublishResult> handler,
+                TargetLimiter limiter) {
+            this.request = request;
+            this.handler = handler;
+            this.limiter = limiter;
+        }
+
+        /**
+         * Sends the request after the given delay, or later if the rate limit of its target
+         * requires.
+         */
+        private void schedule(long delayNanos) {
+            long now = System.nanoTime();
+            long sendAt = limiter == null ? now + delayNanos : limiter.reserve(now + delayNanos);
+            if (sendAt - now <= 0) {
+                send();
+            } else {
+                try {
+                    scheduler.schedule(sender, sendAt - now, TimeUnit.NANOSECONDS);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        private void send() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                sns.publishAsync(request, this);
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        public void onSuccess(PublishRequest request, PublishResult result) {
+            publishedMessages.incrementAndGet();
+            set(result);
+            if (handler != null && !isCancelled()) {
+                try {
+                    handler.onSuccess(request, result);
+                } catch (RuntimeException e) {
+                    log.warn("Publish handler failed", e);
+                }
+            }
+        }
+
+        public void onError(Exception exception) {
+            if (exception instanceof AmazonServiceException
+                    && RetryUtils.isThrottlingException((AmazonServiceException) exception)
+                    && retries < config.getMaxThrottleRetries() && !isDone()) {
+                throttledRetries.incrementAndGet();
+                schedule(TimeUnit.MILLISECONDS.toNanos(backoffMillis(retries++)));
+                return;
+            }
+            fail(exception);
+        }
+
+        private void fail(Exception exception) {
+            failedMessages.incrementAndGet();
+            setException(exception);
+            if (handler != null && !isCancelled()) {
+                try {
+                    handler.onError(exception);
+                } catch (RuntimeException e) {
+                    log.warn("Publish handler failed", e);
+                }
+            }
+        }
+
+        /**
+         * "Full jitter": a random time up to the exponential backoff, so that publishes throttled
+         * together do not retry together.
+         */
+        private long backoffMillis(int retry) {
+            long ceiling = config.getThrottleBackoffMaxMillis();
+            if (retry < 31) {
+                ceiling = Math.min(ceiling, config.getThrottleBackoffBaseMillis() << retry);
+            }
+            return (long) (random.nextDouble() * ceiling);
+        }
+
+        @Override
+        protected void done() {
+            outstandingPermits.release();
+            completed();
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger publisherCount = new AtomicInteger();
+
+        private final String name = "NotificationPublisher-" + publisherCount.incrementAndGet();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(name);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.publisher;
+
+/**
+ * Settings of a {@link NotificationPublisher}. The configuration is read when the publisher is
+ * created; changing it afterwards has no effect on that publisher.
+ */
+public class NotificationPublisherConfiguration {
+
+    /** 100 publishes */
+    public static final int MAX_OUTSTANDING_PUBLISHES_DEFAULT = 100;
+
+    /** 0, which means publishes to a target are not rate limited */
+    public static final double TARGET_PUBLISHES_PER_SECOND_DEFAULT = 0;
+
+    /** 5 retries */
+    public static final int MAX_THROTTLE_RETRIES_DEFAULT = 5;
+
+    /** 100 milliseconds */
+    public static final long THROTTLE_BACKOFF_BASE_MILLIS_DEFAULT = 100;
+
+    /** 20 seconds */
+    public static final long THROTTLE_BACKOFF_MAX_MILLIS_DEFAULT = 20 * 1000;
+
+    private int maxOutstandingPublishes = MAX_OUTSTANDING_PUBLISHES_DEFAULT;
+    private double targetPublishesPerSecond = TARGET_PUBLISHES_PER_SECOND_DEFAULT;
+    private int maxThrottleRetries = MAX_THROTTLE_RETRIES_DEFAULT;
+    private long throttleBackoffBaseMillis = THROTTLE_BACKOFF_BASE_MILLIS_DEFAULT;
+    private long throttleBackoffMaxMillis = THROTTLE_BACKOFF_MAX_MILLIS_DEFAULT;
+
+    public NotificationPublisherConfiguration() {
+    }
+
+    /** copy constructor */
+    public NotificationPublisherConfiguration(NotificationPublisherConfiguration other) {
+        maxOutstandingPublishes = other.maxOutstandingPublishes;
+        targetPublishesPerSecond = other.targetPublishesPerSecond;
+        maxThrottleRetries = other.maxThrottleRetries;
+        throttleBackoffBaseMillis = other.throttleBackoffBaseMillis;
+        throttleBackoffMaxMillis = other.throttleBackoffMaxMillis;
+    }
+
+    /**
+     * The maximum number of publishes accepted but not yet completed, including those waiting for
+     * their target's rate limit or for a retry. Once it is reached, publishing blocks until an
+     * outstanding publish completes. The client's connection pool and executor should allow at
+     * least this many concurrent requests.
+     */
+    public int getMaxOutstandingPublishes() {
+        return maxOutstandingPublishes;
+    }
+
+    /**
+     * The maximum number of publishes accepted but not yet completed, including those waiting for
+     * their target's rate limit or for a retry.
+     *
+     * @see #getMaxOutstandingPublishes()
+     */
+    public void setMaxOutstandingPublishes(int maxOutstandingPublishes) {
+        if (maxOutstandingPublishes < 1) {
+            throw new IllegalArgumentException("maxOutstandingPublishes must be at least 1");
+        }
+        this.maxOutstandingPublishes = maxOutstandingPublishes;
+    }
+
+    /**
+     * The maximum number of publishes accepted but not yet completed, including those waiting for
+     * their target's rate limit or for a retry.
+     *
+     * @see #getMaxOutstandingPublishes()
+     */
+    public NotificationPublisherConfiguration withMaxOutstandingPublishes(int maxOutstandingPublishes) {
+        setMaxOutstandingPublishes(maxOutstandingPublishes);
+        return this;
+    }
+
+    /**
+     * The highest rate at which messages are published to any one target, that is to one topic,
+     * endpoint or phone number. Publishes over the rate are delayed, not rejected. Zero, the
+     * default, disables rate limiting.
+     */
+    public double getTargetPublishesPerSecond() {
+        return targetPublishesPerSecond;
+    }
+
+    /**
+     * The highest rate at which messages are published to any one target. Zero disables rate
+     * limiting.
+     *
+     * @see #getTargetPublishesPerSecond()
+     */
+    public void setTargetPublishesPerSecond(double targetPublishesPerSecond) {
+        if (targetPublishesPerSecond < 0 || Double.isNaN(targetPublishesPerSecond)) {
+            throw new IllegalArgumentException("targetPublishesPerSecond cannot be negative");
+        }
+        this.targetPublishesPerSecond = targetPublishesPerSecond;
+    }
+
+    /**
+     * The highest rate at which messages are published to any one target. Zero disables rate
+     * limiting.
+     *
+     * @see #getTargetPublishesPerSecond()
+     */
+    public NotificationPublisherConfiguration withTargetPublishesPerSecond(double targetPublishesPerSecond) {
+        setTargetPublishesPerSecond(targetPublishesPerSecond);
+        return this;
+    }
+
+    /**
+     * How many times a throttled publish is retried by the publisher, after the retries of the
+     * client itself are exhausted.
+     */
+    public int getMaxThrottleRetries() {
+        return maxThrottleRetries;
+    }
+
+    /**
+     * How many times a throttled publish is retried by the publisher, after the retries of the
+     * client itself are exhausted.
+     */
+    public void setMaxThrottleRetries(int maxThrottleRetries) {
+        if (maxThrottleRetries < 0) {
+            throw new IllegalArgumentException("maxThrottleRetries cannot be negative");
+        }
+        this.maxThrottleRetries = maxThrottleRetries;
+    }
+
+    /**
+     * How many times a throttled publish is retried by the publisher, after the retries of the
+     * client itself are exhausted.
+     */
+    public NotificationPublisherConfiguration withMaxThrottleRetries(int maxThrottleRetries) {
+        setMaxThrottleRetries(maxThrottleRetries);
+        return this;
+    }
+
+    /**
+     * The backoff before the first retry of a throttled publish. Each retry waits a random time
+     * between zero and this value doubled once per earlier retry, capped by the maximum backoff.
+     */
+    public long getThrottleBackoffBaseMillis() {
+        return throttleBackoffBaseMillis;
+    }
+
+    /**
+     * The backoff before the first retry of a throttled publish.
+     *
+     * @see #getThrottleBackoffBaseMillis()
+     */
+    public void setThrottleBackoffBaseMillis(long throttleBackoffBaseMillis) {
+        if (throttleBackoffBaseMillis < 1) {
+            throw new IllegalArgumentException("throttleBackoffBaseMillis must be at least 1");
+        }
+        this.throttleBackoffBaseMillis = throttleBackoffBaseMillis;
+    }
+
+    /**
+     * The backoff before the first retry of a throttled publish.
+     *
+     * @see #getThrottleBackoffBaseMillis()
+     */
+    public NotificationPublisherConfiguration withThrottleBackoffBaseMillis(long throttleBackoffBaseMillis) {
+        setThrottleBackoffBaseMillis(throttleBackoffBaseMillis);
+        return this;
+    }
+
+    /**
+     * The longest backoff before retrying a throttled publish.
+     */
+    public long getThrottleBackoffMaxMillis() {
+        return throttleBackoffMaxMillis;
+    }
+
+    /**
+     * The longest backoff before retrying a throttled publish.
+     */
+    public void setThrottleBackoffMaxMillis(long throttleBackoffMaxMillis) {
+        if (throttleBackoffMaxMillis < 1) {
+            throw new IllegalArgumentException("throttleBackoffMaxMillis must be at least 1");
+        }
+        this.throttleBackoffMaxMillis = throttleBackoffMaxMillis;
+    }
+
+    /**
+     * The longest backoff before retrying a throttled publish.
+     */
+    public NotificationPublisherConfiguration withThrottleBackoffMaxMillis(long throttleBackoffMaxMillis) {
+        setThrottleBackoffMaxMillis(throttleBackoffMaxMillis);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationPublisherConfiguration [maxOutstandingPublishes=" + maxOutstandingPublishes
+                + ", targetPublishesPerSecond=" + targetPublishesPerSecond + ", maxThrottleRetries="
+                + maxThrottleRetries + ", throttleBackoffBaseMillis=" + throttleBackoffBaseMillis
+                + ", throttleBackoffMaxMillis=" + throttleBackoffMaxMillis + "]";
+    }
+}
@@ -36,11 +36,12 @@ import com.fasterxml.jackson.core.JsonToken;
 
 /**
  * Utility for validating signatures on a Simple Notification Service JSON message.
+ *
+ * @see SignatureVerifier for a verifier that also fetches and caches the
+ *      signing certificates
  */
 public class SignatureChecker {
 
-    private Signature sigChecker;
-
     private final String NOTIFICATION_TYPE = "Notification";
     private final String SUBSCRIBE_TYPE = "SubscriptionConfirmation";
     private final String UNSUBSCRIBE_TYPE = "UnsubscribeConfirmation";
@@ -133,7 +134,8 @@ public class SignatureChecker {
         byte[] sigbytes = null;
         try {
             sigbytes = Base64.decode(signature.getBytes());
-            sigChecker = Signature.getInstance("SHA1withRSA"); //check the signature
+            // reuse the calling thread's instance rather than looking up a new one
+            Signature sigChecker = SignatureVerifier.getSignature(); //check the signature
             sigChecker.initVerify(publicKey);
             sigChecker.update(message.getBytes());
             result = sigChecker.verify(sigbytes);
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.Base64;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Verifies the signatures of Amazon SNS messages delivered to HTTP/S endpoints,
+ * fetching the signing certificates itself.
+ * <p>
+ * Unlike {@link SignatureChecker}, which needs the caller to supply the public
+ * key, the verifier reads the {@code SigningCertURL} of each message, checks
+ * that it is an HTTPS URL on an Amazon SNS host, and keeps the certificates it
+ * fetches for a configurable time. Concurrent messages signed with a
+ * certificate not yet cached wait for a single fetch. Each message is read
+ * with one streaming pass over the JSON, and each thread reuses its own
+ * {@link Signature}.
+ * <p>
+ * Instances of {@code SignatureVerifier} are thread-safe and meant to be
+ * shared by all the threads of an endpoint.
+ */
+public class SignatureVerifier {
+
+    /** One hour. */
+    public static final long DEFAULT_CERTIFICATE_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+
+    /** The hosts Amazon SNS serves its signing certificates from. */
+    private static final Pattern SIGNING_CERT_HOST = Pattern
+            .compile("^sns\\.[a-zA-Z0-9\\-]{3,}\\.amazonaws\\.com(\\.cn)?$");
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ThreadLocal<Signature> SIGNATURES = new ThreadLocal<Signature>();
+
+    // The fields read from a message, indexed in the order they sort in when
+    // building the string to sign.
+    private static final int MESSAGE = 0;
+    private static final int MESSAGE_ID = 1;
+    private static final int SUBSCRIBE_URL = 2;
+    private static final int SUBJECT = 3;
+    private static final int TIMESTAMP = 4;
+    private static final int TOKEN = 5;
+    private static final int TOPIC_ARN = 6;
+    private static final int TYPE = 7;
+    private static final int SIGNATURE = 8;
+    private static final int SIGNATURE_VERSION = 9;
+    private static final int SIGNING_CERT_URL = 10;
+    private static final String[] FIELD_NAMES = { "Message", "MessageId", "SubscribeURL", "Subject", "Timestamp",
+            "Token", "TopicArn", "Type", "Signature", "SignatureVersion", "SigningCertURL" };
+
+    private static final int[] NOTIFICATION_SIGNED_FIELDS = { MESSAGE, MESSAGE_ID, SUBJECT, TIMESTAMP, TOPIC_ARN,
+            TYPE };
+    private static final int[] SUBSCRIPTION_SIGNED_FIELDS = { MESSAGE, MESSAGE_ID, SUBSCRIBE_URL, TIMESTAMP, TOKEN,
+            TOPIC_ARN, TYPE };
+
+    private final SigningCertificateFetcher fetcher;
+    private final long certificateTtlNanos;
+    private final ConcurrentMap<String, CachedCertificate> certificates = new ConcurrentHashMap<String, CachedCertificate>();
+
+    /**
+     * Creates a verifier fetching certificates over HTTPS and keeping them for
+     * {@value #DEFAULT_CERTIFICATE_TTL_MILLIS} milliseconds.
+     */
+    public SignatureVerifier() {
+        this(new HttpsCertificateFetcher(), DEFAULT_CERTIFICATE_TTL_MILLIS);
+    }
+
+    /**
+     * @param fetcher
+     *            retrieves certificates not found in the cache
+     * @param certificateTtlMillis
+     *            how long a fetched certificate is used before it is fetched
+     *            again
+     */
+    public SignatureVerifier(SigningCertificateFetcher fetcher, long certificateTtlMillis) {
+        if (fetcher == null) {
+            throw new IllegalArgumentException("fetcher cannot be null");
+        }
+        if (certificateTtlMillis < 0) {
+            throw new IllegalArgumentException("certificateTtlMillis cannot be negative");
+        }
+        this.fetcher = fetcher;
+        this.certificateTtlNanos = TimeUnit.MILLISECONDS.toNanos(certificateTtlMillis);
+    }
+
+    /**
+     * Verifies the signature of an Amazon SNS message, as posted to an HTTP/S
+     * endpoint.
+     *
+     * @param message
+     *            the JSON body of the message
+     * @return true if the message was signed by Amazon SNS, false if its
+     *         signature does not match its content
+     * @throws AmazonClientException
+     *             if the message cannot be verified at all: it is malformed,
+     *             of an unknown type or signature version, its signing
+     *             certificate URL is not an Amazon SNS one, or the certificate
+     *             could not be fetched or has expired
+     */
+    public boolean verifyMessageSignature(String message) {
+        String[] fields = parse(message);
+
+        if (!"1".equals(fields[SIGNATURE_VERSION])) {
+            throw new AmazonClientException("Unsupported signature version: " + fields[SIGNATURE_VERSION]);
+        }
+        String type = fields[TYPE];
+        int[] signedFields;
+        if ("Notification".equals(type)) {
+            signedFields = NOTIFICATION_SIGNED_FIELDS;
+        } else if ("SubscriptionConfirmation".equals(type) || "UnsubscribeConfirmation".equals(type)) {
+            signedFields = SUBSCRIPTION_SIGNED_FIELDS;
+        } else {
+            throw new AmazonClientException("Cannot process message of type " + type);
+        }
+        if (fields[SIGNATURE] == null) {
+            throw new AmazonClientException("The message has no signature");
+        }
+
+        X509Certificate certificate = getCertificate(fields[SIGNING_CERT_URL]);
+        try {
+            certificate.checkValidity();
+        } catch (GeneralSecurityException e) {
+            throw new AmazonClientException("The signing certificate is not valid: " + e.getMessage(), e);
+        }
+
+        // each key and value is followed by a newline
+        StringBuilder stringToSign = new StringBuilder(256 + (fields[MESSAGE] == null ? 0 : fields[MESSAGE].length()));
+        for (int field : signedFields) {
+            if (fields[field] != null) {
+                stringToSign.append(FIELD_NAMES[field]).append('\n');
+                stringToSign.append(fields[field]).append('\n');
+            }
+        }
+
+        try {
+            Signature signature = getSignature();
+            signature.initVerify(certificate.getPublicKey());
+            signature.update(stringToSign.toString().getBytes(UTF8));
+            return signature.verify(Base64.decode(fields[SIGNATURE]));
+        } catch (GeneralSecurityException e) {
+            return false;
+        } catch (IllegalArgumentException e) {
+            // the signature is not base 64
+            return false;
+        }
+    }
+
+    /**
+     * Drops all the cached certificates, for example after Amazon SNS rotated
+     * them.
+     */
+    public void clearCertificateCache() {
+        certificates.clear();
+    }
+
+    /**
+     * Returns the {@code SHA1withRSA} signature instance of the calling
+     * thread, which callers initialize before each use.
+     */
+    static Signature getSignature() throws NoSuchAlgorithmException {
+        Signature signature = SIGNATURES.get();
+        if (signature == null) {
+            signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+            SIGNATURES.set(signature);
+        }
+        return signature;
+    }
+
+    /**
+     * Reads the fields needed to verify the message in a single pass,
+     * skipping everything else. All the signed fields are strings.
+     */
+    private static String[] parse(String message) {
+        String[] fields = new String[FIELD_NAMES.length];
+        try {
+            JsonParser parser = JSON_FACTORY.createParser(message);
+            try {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new AmazonClientException("The message is not a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    int field = fieldIndex(parser.getCurrentName());
+                    JsonToken value = parser.nextToken();
+                    if (field >= 0 && value.isScalarValue()) {
+                        fields[field] = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to parse the message: " + e.getMessage(), e);
+        }
+        return fields;
+    }
+
+    private static int fieldIndex(String name) {
+        for (int i = 0; i < FIELD_NAMES.length; i++) {
+            if (FIELD_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private X509Certificate getCertificate(String signingCertUrl) {
+        final URI uri = toTrustedUri(signingCertUrl);
+        long now = System.nanoTime();
+
+        CachedCertificate cached = certificates.get(signingCertUrl);
+        if (cached == null || cached.isExpired(now)) {
+            CachedCertificate fresh = new CachedCertificate(new FutureTask<X509Certificate>(
+                    new Callable<X509Certificate>() {
+                        public X509Certificate call() throws Exception {
+                            return fetcher.fetchCertificate(uri);
+                        }
+                    }), now + certificateTtlNanos);
+            boolean won = (cached == null) ? certificates.putIfAbsent(signingCertUrl, fresh) == null : certificates
+                    .replace(signingCertUrl, cached, fresh);
+            if (won) {
+                fresh.certificate.run();
+            }
+            cached = certificates.get(signingCertUrl);
+            if (cached == null) {
+                // a failed fetch was just dropped by another thread
+                cached = fresh;
+                cached.certificate.run();
+            }
+        }
+
+        try {
+            return cached.certificate.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while fetching the signing certificate", e);
+        } catch (ExecutionException e) {
+            // do not keep failures, so that the next message tries again
+            certificates.remove(signingCertUrl, cached);
+            throw new AmazonClientException("Unable to fetch the signing certificate from " + signingCertUrl + ": "
+                    + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static URI toTrustedUri(String signingCertUrl) {
+        if (signingCertUrl == null) {
+            throw new AmazonClientException("The message has no signing certificate URL");
+        }
+        URI uri;
+        try {
+            uri = new URI(signingCertUrl);
+        } catch (URISyntaxException e) {
+            throw new AmazonClientException("Invalid signing certificate URL: " + signingCertUrl, e);
+        }
+        if (!"https".equals(uri.getScheme()) || uri.getHost() == null
+                || !SIGNING_CERT_HOST.matcher(uri.getHost()).matches()) {
+            throw new AmazonClientException("The signing certificate URL is not an Amazon SNS one: "
+                    + signingCertUrl);
+        }
+        return uri;
+    }
+
+    private static final class CachedCertificate {
+
+        private final FutureTask<X509Certificate> certificate;
+        private final long expiresAtNanos;
+
+        private CachedCertificate(FutureTask<X509Certificate> certificate, long expiresAtNanos) {
+            this.certificate = certificate;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    /**
+     * Fetches certificates with {@link HttpURLConnection}, relying on the
+     * HTTPS handshake to authenticate the host serving them.
+     */
+    private static final class HttpsCertificateFetcher implements SigningCertificateFetcher {
+
+        private static final int TIMEOUT_MILLIS = 10 * 1000;
+
+        public X509Certificate fetchCertificate(URI signingCertUrl) throws IOException, GeneralSecurityException {
+            HttpURLConnection connection = (HttpURLConnection) signingCertUrl.toURL().openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            InputStream in = connection.getInputStream();
+            try {
+                return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
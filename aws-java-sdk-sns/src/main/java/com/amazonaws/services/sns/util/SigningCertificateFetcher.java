@@ -0,0 +1,43 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+
+/**
+ * Retrieves the certificate Amazon SNS signed a message with, given the
+ * {@code SigningCertURL} of the message. Implement this to fetch certificates
+ * through a proxy or from a local mirror.
+ * <p>
+ * {@link SignatureVerifier} only asks for HTTPS URLs on Amazon SNS hosts, and
+ * caches what is returned, so implementations need not do either.
+ * Implementations must be thread-safe.
+ */
+public interface SigningCertificateFetcher {
+
+    /**
+     * @param signingCertUrl
+     *            the {@code SigningCertURL} of a message
+     * @return the certificate found at the URL
+     * @throws IOException
+     *             if the certificate could not be retrieved
+     * @throws GeneralSecurityException
+     *             if what was retrieved is not a valid certificate
+     */
+    X509Certificate fetchCertificate(URI signingCertUrl) throws IOException, GeneralSecurityException;
+}
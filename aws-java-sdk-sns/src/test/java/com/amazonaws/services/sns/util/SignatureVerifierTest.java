@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sns.util;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.Base64;
+import com.amazonaws.util.IOUtils;
+
+public class SignatureVerifierTest {
+
+    private static final String CERT_URL = "https://sns.us-east-1.amazonaws.com/SimpleNotificationService-test.pem";
+
+    private static X509Certificate certificate;
+    private static PrivateKey privateKey;
+
+    private final StubFetcher fetcher = new StubFetcher();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @BeforeClass
+    public static void loadKeys() throws Exception {
+        InputStream in = SignatureVerifierTest.class.getResourceAsStream("signing-cert.pem");
+        try {
+            certificate = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        } finally {
+            in.close();
+        }
+        in = SignatureVerifierTest.class.getResourceAsStream("signing-key.pem");
+        String pem;
+        try {
+            pem = new String(IOUtils.toByteArray(in), UTF8);
+        } finally {
+            in.close();
+        }
+        String base64 = pem.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        privateKey = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.decode(base64)));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testValidMessagesVerify() {
+        SignatureVerifier verifier = new SignatureVerifier(fetcher, SignatureVerifier.DEFAULT_CERTIFICATE_TTL_MILLIS);
+        Assert.assertTrue(verifier.verifyMessageSignature(notification("hello", CERT_URL)));
+        Assert.assertTrue(verifier.verifyMessageSignature(subscriptionConfirmation(CERT_URL)));
+        Assert.assertEquals(1, fetcher.fetches.get());
+    }
+
+    @Test
+    public void testTamperedMessageDoesNotVerify() {
+        SignatureVerifier verifier = new SignatureVerifier(fetcher, SignatureVerifier.DEFAULT_CERTIFICATE_TTL_MILLIS);
+        String tampered = notification("hello", CERT_URL).replace("\"Message\":\"hello\"", "\"Message\":\"hellO\"");
+        Assert.assertFalse(verifier.verifyMessageSignature(tampered));
+    }
+
+    @Test
+    public void testForeignCertificateUrlsAreRejected() {
+        SignatureVerifier verifier = new SignatureVerifier(fetcher, SignatureVerifier.DEFAULT_CERTIFICATE_TTL_MILLIS);
+        String[] urls = {
+                "https://example.com/cert.pem",
+                "https://sns.us-east-1.amazonaws.com.example.com/cert.pem",
+                "http://sns.us-east-1.amazonaws.com/cert.pem",
+                "ftp://sns.us-east-1.amazonaws.com/cert.pem" };
+        for (String url : urls) {
+            try {
+                verifier.verifyMessageSignature(notification("hello", url));
+                Assert.fail(url);
+            } catch (AmazonClientException expected) {
+            }
+        }
+        Assert.assertEquals(0, fetcher.fetches.get());
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneFetch() throws Exception {
+        final SignatureVerifier verifier = new SignatureVerifier(fetcher,
+                SignatureVerifier.DEFAULT_CERTIFICATE_TTL_MILLIS);
+        fetcher.gate = new CountDownLatch(1);
+        final String message = notification("hello", CERT_URL);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    return verifier.verifyMessageSignature(message);
+                }
+            }));
+        }
+        Thread.sleep(100);
+        fetcher.gate.countDown();
+        for (Future<Boolean> result : results) {
+            Assert.assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, fetcher.fetches.get());
+    }
+
+    @Test
+    public void testFailedFetchIsNotCached() {
+        SignatureVerifier verifier = new SignatureVerifier(fetcher, SignatureVerifier.DEFAULT_CERTIFICATE_TTL_MILLIS);
+        fetcher.failures.set(1);
+        String message = notification("hello", CERT_URL);
+        try {
+            verifier.verifyMessageSignature(message);
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+        Assert.assertTrue(verifier.verifyMessageSignature(message));
+        Assert.assertEquals(2, fetcher.fetches.get());
+    }
+
+    @Test
+    public void testExpiredCertificateIsFetchedAgain() {
+        SignatureVerifier verifier = new SignatureVerifier(fetcher, 0);
+        Assert.assertTrue(verifier.verifyMessageSignature(notification("hello", CERT_URL)));
+        Assert.assertTrue(verifier.verifyMessageSignature(notification("hello", CERT_URL)));
+        Assert.assertEquals(2, fetcher.fetches.get());
+    }
+
+    private static String notification(String message, String certUrl) {
+        String stringToSign = "Message\n" + message + "\nMessageId\nid\nSubject\nsubject\n"
+                + "Timestamp\n2016-01-01T00:00:00.000Z\nTopicArn\narn:aws:sns:us-east-1:123456789012:topic\n"
+                + "Type\nNotification\n";
+        return "{\"Type\":\"Notification\",\"MessageId\":\"id\","
+                + "\"TopicArn\":\"arn:aws:sns:us-east-1:123456789012:topic\",\"Subject\":\"subject\","
+                + "\"Message\":\"" + message + "\",\"Timestamp\":\"2016-01-01T00:00:00.000Z\","
+                + "\"SignatureVersion\":\"1\",\"Signature\":\"" + sign(stringToSign) + "\",\"SigningCertURL\":\""
+                + certUrl + "\",\"UnsubscribeURL\":\"https://sns.us-east-1.amazonaws.com/unsubscribe\"}";
+    }
+
+    private static String subscriptionConfirmation(String certUrl) {
+        String stringToSign = "Message\nconfirm\nMessageId\nid\n"
+                + "SubscribeURL\nhttps://sns.us-east-1.amazonaws.com/confirm\n"
+                + "Timestamp\n2016-01-01T00:00:00.000Z\nToken\ntoken\n"
+                + "TopicArn\narn:aws:sns:us-east-1:123456789012:topic\n"
+                + "Type\nSubscriptionConfirmation\n";
+        return "{\"Type\":\"SubscriptionConfirmation\",\"MessageId\":\"id\",\"Token\":\"token\","
+                + "\"TopicArn\":\"arn:aws:sns:us-east-1:123456789012:topic\",\"Message\":\"confirm\","
+                + "\"SubscribeURL\":\"https://sns.us-east-1.amazonaws.com/confirm\","
+                + "\"Timestamp\":\"2016-01-01T00:00:00.000Z\",\"SignatureVersion\":\"1\",\"Signature\":\""
+                + sign(stringToSign) + "\",\"SigningCertURL\":\"" + certUrl + "\"}";
+    }
+
+    private static String sign(String stringToSign) {
+        try {
+            Signature signature = Signature.getInstance("SHA1withRSA");
+            signature.initSign(privateKey);
+            signature.update(stringToSign.getBytes(UTF8));
+            return Base64.encodeAsString(signature.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class StubFetcher implements SigningCertificateFetcher {
+
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile CountDownLatch gate;
+
+        public X509Certificate fetchCertificate(URI signingCertUrl) throws IOException {
+            fetches.incrementAndGet();
+            Assert.assertEquals(CERT_URL, signingCertUrl.toString());
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+            }
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("fetch failure");
+            }
+            return certificate;
+        }
+    }
+}
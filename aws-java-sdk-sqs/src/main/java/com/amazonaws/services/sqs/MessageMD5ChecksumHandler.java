@@ -14,15 +14,12 @@
  */
 package com.amazonaws.services.sqs;
 
-import static com.amazonaws.util.StringUtils.UTF8;
-
-import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -42,7 +39,6 @@ import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.amazonaws.util.BinaryUtils;
-import com.amazonaws.util.Md5Utils;
 import com.amazonaws.util.TimingInfo;
 
 /**
@@ -70,9 +66,27 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
 
     private static final Log log = LogFactory.getLog(MessageMD5ChecksumHandler.class);
 
+    /**
+     * When this system property is set, the MD5 checksums of messages sent and received over HTTPS
+     * are not checked, leaving message integrity to TLS. Messages exchanged over HTTP are always
+     * checked.
+     */
+    public static final String DISABLE_MD5_VALIDATION_PROPERTY = "com.amazonaws.services.sqs.disableMD5Validation";
+
+    /**
+     * Each thread hashes with its own digest and buffer, so concurrent responses are checked in
+     * parallel without contention.
+     */
+    private static final ThreadLocal<Md5Calculator> DIGESTS = new ThreadLocal<Md5Calculator>() {
+        @Override
+        protected Md5Calculator initialValue() {
+            return new Md5Calculator();
+        }
+    };
+
     @Override
     public void afterResponse(Request<?> request, Object response, TimingInfo timingInfo) {
-        if (request != null && response != null) {
+        if (request != null && response != null && !shouldSkipMd5Check(request)) {
             // SendMessage
             if (request.getOriginalRequest() instanceof SendMessageRequest && response instanceof SendMessageResult) {
                 SendMessageRequest sendMessageRequest = (SendMessageRequest) request.getOriginalRequest();
@@ -195,14 +209,13 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
         if (log.isDebugEnabled()) {
             log.debug("Message body: " + messageBody);
         }
-        byte[] expectedMd5;
+        String expectedMd5Hex;
         try {
-            expectedMd5 = Md5Utils.computeMD5Hash(messageBody.getBytes(UTF8));
+            expectedMd5Hex = DIGESTS.get().bodyMd5(messageBody);
         } catch (Exception e) {
             throw new AmazonClientException("Unable to calculate the MD5 hash of the message body. " + e.getMessage(),
                     e);
         }
-        String expectedMd5Hex = BinaryUtils.toHex(expectedMd5);
         if (log.isDebugEnabled()) {
             log.debug("Expected  MD5 of message body: " + expectedMd5Hex);
         }
@@ -216,72 +229,179 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
         if (log.isDebugEnabled()) {
             log.debug("Message attribtues: " + messageAttributes);
         }
-        List<String> sortedAttributeNames = new ArrayList<String>(messageAttributes.keySet());
-        Collections.sort(sortedAttributeNames);
-
-        MessageDigest md5Digest = null;
+        String expectedMd5Hex;
         try {
-            md5Digest = MessageDigest.getInstance("MD5");
+            expectedMd5Hex = DIGESTS.get().attributesMd5(messageAttributes);
+        } catch (Exception e) {
+            throw new AmazonClientException("Unable to calculate the MD5 hash of the message attributes. "
+                    + e.getMessage(), e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Expected  MD5 of message attributes: " + expectedMd5Hex);
+        }
+        return expectedMd5Hex;
+    }
+
+    /**
+     * Returns whether checking should be skipped for the given request: only when the system
+     * property {@value #DISABLE_MD5_VALIDATION_PROPERTY} is set and the request went over HTTPS,
+     * whose own integrity checks then stand in for the MD5 ones.
+     */
+    private static boolean shouldSkipMd5Check(Request<?> request) {
+        if (System.getProperty(DISABLE_MD5_VALIDATION_PROPERTY) == null) {
+            return false;
+        }
+        URI endpoint = request.getEndpoint();
+        return endpoint != null && "https".equalsIgnoreCase(endpoint.getScheme());
+    }
+
+    /**
+     * The MD5 digest and scratch space of one thread. Strings are encoded to UTF-8 through a
+     * fixed-size buffer straight into the digest, so hashing a message allocates nothing but the
+     * hex result, however large the message.
+     */
+    private static final class Md5Calculator {
+
+        private static final int BUFFER_SIZE = 4096;
+
+        private final MessageDigest digest;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private Md5Calculator() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AmazonClientException("Unable to get the MD5 message digest. " + e.getMessage(), e);
+            }
+        }
+
+        private String bodyMd5(String messageBody) {
+            digest.reset();
+            updateUtf8(messageBody);
+            return BinaryUtils.toHex(digest.digest());
+        }
+
+        private String attributesMd5(Map<String, MessageAttributeValue> messageAttributes) {
+            digest.reset();
+            String[] sortedAttributeNames = messageAttributes.keySet().toArray(new String[messageAttributes.size()]);
+            Arrays.sort(sortedAttributeNames);
 
             for (String attrName : sortedAttributeNames) {
                 MessageAttributeValue attrValue = messageAttributes.get(attrName);
 
                 // Encoded Name
-                updateLengthAndBytes(md5Digest, attrName);
+                updateLengthAndBytes(attrName);
                 // Encoded Type
-                updateLengthAndBytes(md5Digest, attrValue.getDataType());
+                updateLengthAndBytes(attrValue.getDataType());
 
                 // Encoded Value
                 if (attrValue.getStringValue() != null) {
-                    md5Digest.update(STRING_TYPE_FIELD_INDEX);
-                    updateLengthAndBytes(md5Digest, attrValue.getStringValue());
+                    digest.update(STRING_TYPE_FIELD_INDEX);
+                    updateLengthAndBytes(attrValue.getStringValue());
                 } else if (attrValue.getBinaryValue() != null) {
-                    md5Digest.update(BINARY_TYPE_FIELD_INDEX);
-                    updateLengthAndBytes(md5Digest, attrValue.getBinaryValue());
+                    digest.update(BINARY_TYPE_FIELD_INDEX);
+                    updateLengthAndBytes(attrValue.getBinaryValue());
                 } else if (attrValue.getStringListValues().size() > 0) {
-                    md5Digest.update(STRING_LIST_TYPE_FIELD_INDEX);
+                    digest.update(STRING_LIST_TYPE_FIELD_INDEX);
                     for (String strListMember : attrValue.getStringListValues()) {
-                        updateLengthAndBytes(md5Digest, strListMember);
+                        updateLengthAndBytes(strListMember);
                     }
                 } else if (attrValue.getBinaryListValues().size() > 0) {
-                    md5Digest.update(BINARY_LIST_TYPE_FIELD_INDEX);
+                    digest.update(BINARY_LIST_TYPE_FIELD_INDEX);
                     for (ByteBuffer byteListMember : attrValue.getBinaryListValues()) {
-                        updateLengthAndBytes(md5Digest, byteListMember);
+                        updateLengthAndBytes(byteListMember);
                     }
                 }
             }
-        } catch (Exception e) {
-            throw new AmazonClientException("Unable to calculate the MD5 hash of the message attributes. "
-                    + e.getMessage(), e);
+            return BinaryUtils.toHex(digest.digest());
         }
 
-        String expectedMd5Hex = BinaryUtils.toHex(md5Digest.digest());
-        if (log.isDebugEnabled()) {
-            log.debug("Expected  MD5 of message attributes: " + expectedMd5Hex);
+        /**
+         * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of
+         * the input String and the actual utf8-encoded byte values.
+         */
+        private void updateLengthAndBytes(String str) {
+            updateLength(utf8Length(str));
+            updateUtf8(str);
         }
-        return expectedMd5Hex;
-    }
 
-    /**
-     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
-     * input String and the actual utf8-encoded byte values.
-     */
-    private static void updateLengthAndBytes(MessageDigest digest, String str) throws UnsupportedEncodingException {
-        byte[] utf8Encoded = str.getBytes(UTF8);
-        ByteBuffer lengthBytes = ByteBuffer.allocate(INTEGER_SIZE_IN_BYTES).putInt(utf8Encoded.length);
-        digest.update(lengthBytes.array());
-        digest.update(utf8Encoded);
-    }
+        /**
+         * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of
+         * the input ByteBuffer and all the bytes it contains.
+         */
+        private void updateLengthAndBytes(ByteBuffer binaryValue) {
+            ByteBuffer readOnlyBuffer = binaryValue.asReadOnlyBuffer();
+            updateLength(readOnlyBuffer.remaining());
+            digest.update(readOnlyBuffer);
+        }
 
-    /**
-     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
-     * input ByteBuffer and all the bytes it contains.
-     */
-    private static void updateLengthAndBytes(MessageDigest digest, ByteBuffer binaryValue) {
-        ByteBuffer readOnlyBuffer = binaryValue.asReadOnlyBuffer();
-        int size = readOnlyBuffer.remaining();
-        ByteBuffer lengthBytes = ByteBuffer.allocate(INTEGER_SIZE_IN_BYTES).putInt(size);
-        digest.update(lengthBytes.array());
-        digest.update(readOnlyBuffer);
+        private void updateLength(int length) {
+            buffer[0] = (byte) (length >>> 24);
+            buffer[1] = (byte) (length >>> 16);
+            buffer[2] = (byte) (length >>> 8);
+            buffer[3] = (byte) length;
+            digest.update(buffer, 0, INTEGER_SIZE_IN_BYTES);
+        }
+
+        /**
+         * Feeds the string to the digest encoded as {@link String#getBytes(java.nio.charset.Charset)}
+         * would encode it in UTF-8, including the replacement of unpaired surrogates with '?'.
+         */
+        private void updateUtf8(String str) {
+            int pos = 0;
+            for (int i = 0, n = str.length(); i < n; i++) {
+                if (pos > BUFFER_SIZE - 4) {
+                    digest.update(buffer, 0, pos);
+                    pos = 0;
+                }
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    buffer[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[pos++] = (byte) (0xc0 | (c >> 6));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(str.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                        buffer[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                        buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                        buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                        buffer[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+                    } else {
+                        buffer[pos++] = (byte) '?';
+                    }
+                } else {
+                    buffer[pos++] = (byte) (0xe0 | (c >> 12));
+                    buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            digest.update(buffer, 0, pos);
+        }
+
+        /**
+         * Returns the number of bytes {@link #updateUtf8(String)} feeds to the digest.
+         */
+        private static int utf8Length(String str) {
+            int length = 0;
+            for (int i = 0, n = str.length(); i < n; i++) {
+                char c = str.charAt(i);
+                if (c < 0x80) {
+                    length += 1;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                    if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(str.charAt(i + 1))) {
+                        length += 4;
+                        i++;
+                    } else {
+                        length += 1;
+                    }
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
     }
 }
@@ -15,10 +15,13 @@
 
 package com.amazonaws.services.sqs.buffered;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -84,6 +87,10 @@ import com.amazonaws.util.VersionInfoUtils;
  * store in a temporary buffer. Future receiveMessage calls will be satisfied from the buffer, and
  * only if the buffer is empty will the calling thread have to wait for the messages to be fetched.
  * The size of the buffer and the maximum number of threads used for prefetching are configurable. <br>
+ * The client keeps one buffer for each of the most recently used queues, up to
+ * {@link QueueBufferConfig#getMaxQueueBuffers()}. Buffers run on a pool shared by all buffered
+ * clients, or on a bounded pool owned by this client if
+ * {@link QueueBufferConfig#getExecutorThreads()} is set. <br>
  * AmazonSQSBufferedAsyncClient is thread-safe.<br>
  */
 public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
@@ -91,9 +98,11 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
     public static final String USER_AGENT = AmazonSQSBufferedAsyncClient.class.getSimpleName() + "/"
             + VersionInfoUtils.getVersion();
 
-    private final CachingMap buffers = new CachingMap(16, (float) 0.75, true);
+    private final QueueBufferRegistry buffers;
     private final AmazonSQSAsync realSQS;
-    private final QueueBufferConfig bufferConfigExemplar;
+
+    /** The pool owned by this client, or null if it uses the shared pool. */
+    private final ExecutorService ownExecutor;
 
     public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS) {
         this(paramRealSQS, new QueueBufferConfig());
@@ -104,7 +113,17 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
     public AmazonSQSBufferedAsyncClient(AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
         config.validate();
         realSQS = paramRealSQS;
-        bufferConfigExemplar = config;
+        if (config.getExecutorThreads() > 0) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(config.getExecutorThreads(),
+                    config.getExecutorThreads(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new QueueBuffer.DaemonThreadFactory());
+            pool.allowCoreThreadTimeOut(true);
+            ownExecutor = pool;
+        } else {
+            ownExecutor = null;
+        }
+        buffers = new QueueBufferRegistry(config, realSQS,
+                ownExecutor != null ? ownExecutor : QueueBuffer.sharedExecutor);
     }
 
     /*
@@ -172,6 +191,9 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         for (QueueBuffer buffer : buffers.values()) {
             buffer.shutdown();
         }
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
         realSQS.shutdown();
     }
 
@@ -352,6 +374,20 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         return buffer.deleteMessage(deleteMessageRequest, null);
     }
 
+    /**
+     * Returns a snapshot of the state of the receive buffer for a queue: how many pre-fetched
+     * messages it holds, how fast they are consumed, and how many expired or had to be returned
+     * unconsumed.
+     *
+     * @param queueUrl
+     *            the URL of the queue
+     * @return the metrics, or null if this client has no buffer for the queue
+     */
+    public ReceiveBufferMetrics getReceiveBufferMetrics(String queueUrl) {
+        QueueBuffer buffer = buffers.peek(queueUrl);
+        return buffer == null ? null : buffer.getReceiveBufferMetrics();
+    }
+
     /**
      * Returns (creating it if necessary) a queue buffer for a particular queue Since we are only
      * storing a limited number of queue buffers, it is possible that as a result of calling this
@@ -359,28 +395,8 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
      *
      * @return a queue buffer associated with the provided queue URL. Never null
      */
-    private synchronized QueueBuffer getQBuffer(String qUrl) {
-        QueueBuffer toReturn = buffers.get(qUrl);
-        if (null == toReturn) {
-            QueueBufferConfig config = new QueueBufferConfig(bufferConfigExemplar);
-            toReturn = new QueueBuffer(config, qUrl, realSQS);
-            buffers.put(qUrl, toReturn);
-        }
-        return toReturn;
-    }
-
-    class CachingMap extends LinkedHashMap<String, QueueBuffer> {
-        private static final long serialVersionUID = 1;
-        private static final int MAX_ENTRIES = 100;
-
-        public CachingMap(int initial, float loadFactor, boolean accessOrder) {
-            super(initial, loadFactor, accessOrder);
-        }
-
-        protected boolean removeEldestEntry(java.util.Map.Entry<String, QueueBuffer> eldest) {
-            return size() > MAX_ENTRIES;
-        }
-
+    private QueueBuffer getQBuffer(String qUrl) {
+        return buffers.get(qUrl);
     }
 
     public Future<ChangeMessageVisibilityResult> changeMessageVisibilityAsync(ChangeMessageVisibilityRequest changeMessageVisibilityRequest,
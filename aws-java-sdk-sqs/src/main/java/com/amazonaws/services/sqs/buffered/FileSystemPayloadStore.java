@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * A {@link PayloadStore} keeping each payload in a file of a local directory, for tests and for
+ * producers and consumers sharing a file system.
+ */
+public class FileSystemPayloadStore implements PayloadStore {
+
+    private final File directory;
+
+    /**
+     * @param directory
+     *            the directory holding the payload files, created if it does not exist
+     */
+    public FileSystemPayloadStore(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create payload directory " + directory);
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public String storePayload(String payload) {
+        String pointer = UUID.randomUUID().toString();
+        File target = new File(directory, pointer);
+        File temp = new File(directory, pointer + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(payload.getBytes(StringUtils.UTF8));
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw new AmazonClientException("Unable to store payload in " + directory, e);
+        }
+        // a reader never sees a partially written payload
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new AmazonClientException("Unable to store payload in " + directory);
+        }
+        return pointer;
+    }
+
+    @Override
+    public String getPayload(String pointer) {
+        File file = new File(directory, pointer);
+        if (!file.getParentFile().equals(directory)) {
+            throw new AmazonClientException("Invalid payload pointer " + pointer);
+        }
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                return new String(IOUtils.toByteArray(in), StringUtils.UTF8);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to read payload " + pointer, e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+
+/**
+ * Measures outgoing messages the way SQS does, moves bodies over the offload threshold to the
+ * configured {@link PayloadStore}, and fetches them back for received messages.
+ * <p>
+ * An offloaded message is sent with its body replaced by {@link #POINTER_PREFIX} followed by the
+ * pointer returned by the store. The pointer is recognized from the body alone, since the
+ * pre-fetching receive calls of the buffer do not ask for message attributes.
+ */
+class PayloadOffloader {
+
+    /** Starts the body of a message whose actual body is in the payload store. */
+    static final String POINTER_PREFIX = "com.amazonaws.services.sqs.buffered.PayloadPointer:";
+
+    /**
+     * The room reserved in a batch for the body of a message to be offloaded, which is only
+     * known once the payload has been stored.
+     */
+    private static final int POINTER_SIZE_ESTIMATE = 1024;
+
+    private final PayloadStore store;
+    private final long thresholdBytes;
+
+    PayloadOffloader(QueueBufferConfig config) {
+        this.store = config.getPayloadStore();
+        this.thresholdBytes = config.getPayloadOffloadThresholdBytes();
+    }
+
+    /**
+     * @return the number of bytes the message will take in a batch once sent, counting an
+     *         offloaded body as its pointer
+     */
+    int batchedSize(SendMessageRequest request) {
+        int attributesSize = attributesSize(request.getMessageAttributes());
+        int bodySize = utf8Length(request.getMessageBody());
+        if (store != null && (long) bodySize + attributesSize > thresholdBytes) {
+            bodySize = POINTER_SIZE_ESTIMATE;
+        }
+        return bodySize + attributesSize;
+    }
+
+    /**
+     * Returns the request to send in place of the given one: the same request if the message is
+     * small enough, or a copy whose body points to the stored payload.
+     */
+    SendMessageRequest offload(SendMessageRequest request) {
+        if (store == null) {
+            return request;
+        }
+        int attributesSize = attributesSize(request.getMessageAttributes());
+        if ((long) utf8Length(request.getMessageBody()) + attributesSize <= thresholdBytes) {
+            return request;
+        }
+        String pointer = store.storePayload(request.getMessageBody());
+        SendMessageRequest offloaded = new SendMessageRequest(request.getQueueUrl(), POINTER_PREFIX + pointer)
+                .withDelaySeconds(request.getDelaySeconds());
+        offloaded.setMessageAttributes(request.getMessageAttributes());
+        offloaded.setRequestCredentials(request.getRequestCredentials());
+        return offloaded;
+    }
+
+    /**
+     * Returns a future whose result has the bodies of offloaded messages fetched back, the first
+     * time the result is asked for.
+     */
+    Future<ReceiveMessageResult> resolving(final Future<ReceiveMessageResult> future, final Executor executor) {
+        if (store == null) {
+            return future;
+        }
+        return new Future<ReceiveMessageResult>() {
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return future.cancel(mayInterruptIfRunning);
+            }
+
+            public boolean isCancelled() {
+                return future.isCancelled();
+            }
+
+            public boolean isDone() {
+                return future.isDone();
+            }
+
+            public ReceiveMessageResult get() throws InterruptedException, ExecutionException {
+                return resolve(future.get(), executor);
+            }
+
+            public ReceiveMessageResult get(long timeout, TimeUnit unit) throws InterruptedException,
+                    ExecutionException, TimeoutException {
+                return resolve(future.get(timeout, unit), executor);
+            }
+        };
+    }
+
+    /**
+     * Returns a handler passing results with the bodies of offloaded messages fetched back to the
+     * given handler.
+     */
+    AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> resolving(
+            final AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler, final Executor executor) {
+        if (store == null || handler == null) {
+            return handler;
+        }
+        return new AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult>() {
+            public void onError(Exception exception) {
+                handler.onError(exception);
+            }
+
+            public void onSuccess(ReceiveMessageRequest request, ReceiveMessageResult result) {
+                try {
+                    resolve(result, executor);
+                } catch (ExecutionException e) {
+                    handler.onError(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    handler.onError(e);
+                    return;
+                }
+                handler.onSuccess(request, result);
+            }
+        };
+    }
+
+    /**
+     * Fetches the bodies of the offloaded messages in the result, in parallel on the executor.
+     * Tasks the executor has not started yet are run by the calling thread, so that a caller
+     * running on a busy bounded executor does not wait for itself.
+     */
+    private ReceiveMessageResult resolve(ReceiveMessageResult result, Executor executor)
+            throws InterruptedException, ExecutionException {
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+        for (final Message message : result.getMessages()) {
+            if (!isPointer(message)) {
+                continue;
+            }
+            FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                public Void call() {
+                    resolve(message);
+                    return null;
+                }
+            });
+            tasks.add(task);
+            if (tasks.size() > 1) {
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // run below by the calling thread
+                }
+            }
+        }
+        for (FutureTask<Void> task : tasks) {
+            // does nothing if the task already started elsewhere
+            task.run();
+        }
+        for (FutureTask<Void> task : tasks) {
+            task.get();
+        }
+        return result;
+    }
+
+    private void resolve(Message message) {
+        // the same result may be resolved by both a future and a handler
+        synchronized (message) {
+            if (isPointer(message)) {
+                String pointer = message.getBody().substring(POINTER_PREFIX.length());
+                message.setBody(store.getPayload(pointer));
+            }
+        }
+    }
+
+    private static boolean isPointer(Message message) {
+        return message.getBody() != null && message.getBody().startsWith(POINTER_PREFIX);
+    }
+
+    /**
+     * @return the size SQS counts for the message attributes: the name, type and value of each
+     */
+    static int attributesSize(Map<String, MessageAttributeValue> attributes) {
+        if (attributes == null) {
+            return 0;
+        }
+        int size = 0;
+        for (Map.Entry<String, MessageAttributeValue> entry : attributes.entrySet()) {
+            MessageAttributeValue value = entry.getValue();
+            size += utf8Length(entry.getKey()) + utf8Length(value.getDataType());
+            size += utf8Length(value.getStringValue());
+            ByteBuffer binary = value.getBinaryValue();
+            if (binary != null) {
+                size += binary.remaining();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the length of the string encoded in UTF-8, without encoding it
+     */
+    static int utf8Length(String s) {
+        if (s == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+/**
+ * Stores message bodies too large to be sent through SQS, for a buffered client configured with
+ * {@link QueueBufferConfig#setPayloadStore(PayloadStore)}.
+ * <p>
+ * The sending client stores the body and sends a pointer in its place; the receiving client, which
+ * must be configured with a store reading from the same place, fetches the body back. An
+ * implementation backed by Amazon S3 would put each payload as an object under a generated key
+ * and return that key as the pointer. Payloads are not removed when their message is deleted, so
+ * the underlying storage should expire them, for example with a lifecycle rule.
+ * <p>
+ * Implementations must be thread-safe.
+ */
+public interface PayloadStore {
+
+    /**
+     * Stores a message body.
+     *
+     * @return a pointer to the stored body, short enough to be sent as a message body
+     * @throws com.amazonaws.AmazonClientException
+     *             if the body could not be stored
+     */
+    String storePayload(String payload);
+
+    /**
+     * Fetches a message body stored by {@link #storePayload(String)}.
+     *
+     * @throws com.amazonaws.AmazonClientException
+     *             if the body could not be read
+     */
+    String getPayload(String pointer);
+}
@@ -54,19 +54,39 @@ class QueueBuffer {
     private final SendQueueBuffer sendBuffer;
     private final ReceiveQueueBuffer receiveBuffer;
     private final AmazonSQSAsync realSqs;
+    private final PayloadOffloader payloadOffloader;
     QueueBufferConfig config;
 
     /**
-     * This executor that will be shared among all queue buffers. Since a single JVM can access
-     * hundreds of queues, it won't do to have hundreds of executors spinning up hundreds of threads
-     * for each queue. The DaemonThreadFactory creates daemon threads, which means they won't block
-     * the JVM from exiting if only they are still around.
+     * Retires the queue buffer once it has been dropped from its client. Pre-fetched messages are
+     * made visible again, and no more are received unless a caller still using the buffer waits
+     * for some.
      */
-    static ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());;
+    void retire() {
+        receiveBuffer.retire();
+    }
+
+    /**
+     * This executor that will be shared among all queue buffers of clients that do not configure
+     * their own. Since a single JVM can access hundreds of queues, it won't do to have hundreds of
+     * executors spinning up hundreds of threads for each queue. The DaemonThreadFactory creates
+     * daemon threads, which means they won't block the JVM from exiting if only they are still
+     * around.
+     */
+    static final ExecutorService sharedExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory());
+
+    /** The executor running this buffer's batches and callbacks. */
+    final ExecutorService executor;
 
     QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
+        this(paramConfig, url, sqs, sharedExecutor);
+    }
+
+    QueueBuffer(QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs, ExecutorService paramExecutor) {
         realSqs = sqs;
         config = paramConfig;
+        executor = paramExecutor;
+        payloadOffloader = new PayloadOffloader(paramConfig);
         sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
         receiveBuffer = new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
     }
@@ -162,21 +182,26 @@ class QueueBuffer {
 
     public Future<ReceiveMessageResult> receiveMessage(ReceiveMessageRequest rq,
                                                        AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult> handler) {
+        // offloaded bodies are fetched lazily, by whichever of the handler or the future
+        // gets to the result first
+        handler = payloadOffloader.resolving(handler, executor);
+        Future<ReceiveMessageResult> future;
         if (canBeRetrievedFromQueueBuffer(rq)) {
             QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult> callback = null;
             if (handler != null) {
                 callback = new QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult>(handler, rq);
             }
 
-            QueueBufferFuture<ReceiveMessageRequest, ReceiveMessageResult> future = receiveBuffer.receiveMessageAsync(
-                    rq, callback);
-            future.setBuffer(this);
-            return future;
+            QueueBufferFuture<ReceiveMessageRequest, ReceiveMessageResult> bufferFuture = receiveBuffer
+                    .receiveMessageAsync(rq, callback);
+            bufferFuture.setBuffer(this);
+            future = bufferFuture;
         } else if (handler != null) {
-            return realSqs.receiveMessageAsync(rq, handler);
+            future = realSqs.receiveMessageAsync(rq, handler);
         } else {
-            return realSqs.receiveMessageAsync(rq);
+            future = realSqs.receiveMessageAsync(rq);
         }
+        return payloadOffloader.resolving(future, executor);
     }
 
     /**
@@ -189,6 +214,13 @@ class QueueBuffer {
         return waitForFuture(future);
     }
 
+    /**
+     * @return a snapshot of the state of the receive buffer
+     */
+    public ReceiveBufferMetrics getReceiveBufferMetrics() {
+        return receiveBuffer.getMetrics();
+    }
+
     /**
      * Shuts down the queue buffer. Once this method has been called, the queue buffer is not
      * operational and all subsequent calls to it may fail
@@ -275,7 +307,7 @@ class QueueBuffer {
      * We need daemon threads in our executor so that we don't keep the process running if our
      * executor threads are the only ones left in the process.
      */
-    private static class DaemonThreadFactory implements ThreadFactory {
+    static class DaemonThreadFactory implements ThreadFactory {
         static AtomicInteger threadCount = new AtomicInteger(0);
 
         public Thread newThread(Runnable r) {
@@ -109,6 +109,62 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * The maximum number of queue buffers a client keeps. Once exceeded, the buffers of the least
+     * recently used queues are dropped, together with any messages they had pre-fetched.
+     */
+    private int maxQueueBuffers = MAX_QUEUE_BUFFERS_DEFAULT;
+
+    /** 100 queues */
+    public static final int MAX_QUEUE_BUFFERS_DEFAULT = 100;
+
+    /**
+     * The number of threads a client uses to run batches, pre-fetch messages and invoke async
+     * handlers. If set to 0, the client shares an unbounded pool with all other buffered clients
+     * that also use 0.
+     */
+    private int executorThreads = EXECUTOR_THREADS_DEFAULT;
+
+    /** 0, which means use the shared unbounded pool */
+    public static final int EXECUTOR_THREADS_DEFAULT = 0;
+
+    /**
+     * Whether the number of receive batches pre-fetched is sized from the rate at which the
+     * buffered messages are consumed, rather than always kept at maxDoneReceiveBatches and
+     * maxInflightReceiveBatches, which then become upper bounds.
+     */
+    private boolean adaptivePrefetch = ADAPTIVE_PREFETCH_DEFAULT;
+
+    /** false */
+    public static final boolean ADAPTIVE_PREFETCH_DEFAULT = false;
+
+    /**
+     * How many seconds before their visibility timeout expires pre-fetched messages that are still
+     * in the buffer are returned to the queue, so that other consumers can receive them right away
+     * instead of after the timeout. Set it to 0 to let such messages expire in the buffer. It must
+     * be less than the visibility timeout; when the queue's own visibility timeout is used and is
+     * not longer than the margin, messages are not returned early.
+     */
+    private int visibilityReturnMarginSeconds = VISIBILITY_RETURN_MARGIN_SECONDS_DEFAULT;
+
+    /** 0, which means let unconsumed messages expire */
+    public static final int VISIBILITY_RETURN_MARGIN_SECONDS_DEFAULT = 0;
+
+    /**
+     * Where message bodies too large to be sent through SQS are stored. Null, the default, disables
+     * offloading, and such messages are rejected.
+     */
+    private PayloadStore payloadStore;
+
+    /**
+     * Messages whose body and attributes take more than this many bytes have their body moved to
+     * the payload store.
+     */
+    private long payloadOffloadThresholdBytes = PAYLOAD_OFFLOAD_THRESHOLD_BYTES_DEFAULT;
+
+    /** 256 kilobytes */
+    public static final long PAYLOAD_OFFLOAD_THRESHOLD_BYTES_DEFAULT = SERVICE_MAX_BATCH_SIZE_BYTES;
+
     public QueueBufferConfig(long maxBatchOpenMs, int maxInflightOutboundBatches, int maxInflightReceiveBatches,
             int maxDoneReceiveBatches, boolean paramLongPoll, long maxBatchSizeBytes, int visibilityTimeout,
             int longPollTimeout, int maxBatch) {
@@ -141,6 +197,12 @@ public class QueueBufferConfig {
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        maxQueueBuffers = other.maxQueueBuffers;
+        executorThreads = other.executorThreads;
+        adaptivePrefetch = other.adaptivePrefetch;
+        visibilityReturnMarginSeconds = other.visibilityReturnMarginSeconds;
+        payloadStore = other.payloadStore;
+        payloadOffloadThresholdBytes = other.payloadOffloadThresholdBytes;
     }
 
     @Override
@@ -149,7 +211,11 @@ public class QueueBufferConfig {
                 + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
                 + ", maxInflightReceiveBatches=" + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
-                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + "]";
+                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds
+                + ", maxQueueBuffers=" + maxQueueBuffers + ", executorThreads=" + executorThreads
+                + ", adaptivePrefetch=" + adaptivePrefetch + ", visibilityReturnMarginSeconds="
+                + visibilityReturnMarginSeconds + ", payloadStore=" + payloadStore
+                + ", payloadOffloadThresholdBytes=" + payloadOffloadThresholdBytes + "]";
     }
 
     /**
@@ -429,6 +495,195 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * The maximum number of queue buffers a client keeps. Once exceeded, the buffers of the least
+     * recently used queues are dropped, together with any messages they had pre-fetched.
+     */
+    public int getMaxQueueBuffers() {
+        return maxQueueBuffers;
+    }
+
+    /**
+     * The maximum number of queue buffers a client keeps. Once exceeded, the buffers of the least
+     * recently used queues are dropped, together with any messages they had pre-fetched.
+     */
+    public void setMaxQueueBuffers(int maxQueueBuffers) {
+        this.maxQueueBuffers = maxQueueBuffers;
+    }
+
+    /**
+     * The maximum number of queue buffers a client keeps. Once exceeded, the buffers of the least
+     * recently used queues are dropped, together with any messages they had pre-fetched.
+     */
+    public QueueBufferConfig withMaxQueueBuffers(int maxQueueBuffers) {
+        setMaxQueueBuffers(maxQueueBuffers);
+        return this;
+    }
+
+    /**
+     * The number of threads a client uses to run batches, pre-fetch messages and invoke async
+     * handlers. If set to 0, the client shares an unbounded pool with all other buffered clients
+     * that also use 0.
+     * <p>
+     * A bounded pool caps the threads a busy client can start, at the expense of queueing work
+     * when all threads are busy. Each pre-fetching receive batch holds a thread for up to the long
+     * poll wait timeout, so the pool should be larger than
+     * {@code maxInflightReceiveBatches + 3 * maxInflightOutboundBatches} for every queue in active
+     * use, or sends will wait behind receives.
+     */
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    /**
+     * The number of threads a client uses to run batches, pre-fetch messages and invoke async
+     * handlers. If set to 0, the client shares an unbounded pool with all other buffered clients
+     * that also use 0.
+     *
+     * @see #getExecutorThreads()
+     */
+    public void setExecutorThreads(int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    /**
+     * The number of threads a client uses to run batches, pre-fetch messages and invoke async
+     * handlers. If set to 0, the client shares an unbounded pool with all other buffered clients
+     * that also use 0.
+     *
+     * @see #getExecutorThreads()
+     */
+    public QueueBufferConfig withExecutorThreads(int executorThreads) {
+        setExecutorThreads(executorThreads);
+        return this;
+    }
+
+    /**
+     * Whether the number of receive batches pre-fetched is sized from the rate at which the
+     * buffered messages are consumed, rather than always kept at maxDoneReceiveBatches and
+     * maxInflightReceiveBatches, which then become upper bounds.
+     */
+    public boolean isAdaptivePrefetch() {
+        return adaptivePrefetch;
+    }
+
+    /**
+     * Specify "true" to size the receive pre-fetch from the rate at which the buffered messages are
+     * consumed, with maxDoneReceiveBatches and maxInflightReceiveBatches as upper bounds.
+     */
+    public void setAdaptivePrefetch(boolean adaptivePrefetch) {
+        this.adaptivePrefetch = adaptivePrefetch;
+    }
+
+    /**
+     * Specify "true" to size the receive pre-fetch from the rate at which the buffered messages are
+     * consumed, with maxDoneReceiveBatches and maxInflightReceiveBatches as upper bounds.
+     */
+    public QueueBufferConfig withAdaptivePrefetch(boolean adaptivePrefetch) {
+        setAdaptivePrefetch(adaptivePrefetch);
+        return this;
+    }
+
+    /**
+     * How many seconds before their visibility timeout expires pre-fetched messages that are still
+     * in the buffer are returned to the queue, so that other consumers can receive them right away
+     * instead of after the timeout. Set it to 0 to let such messages expire in the buffer. It must
+     * be less than the visibility timeout; when the queue's own visibility timeout is used and is
+     * not longer than the margin, messages are not returned early.
+     */
+    public int getVisibilityReturnMarginSeconds() {
+        return visibilityReturnMarginSeconds;
+    }
+
+    /**
+     * How many seconds before their visibility timeout expires pre-fetched messages that are still
+     * in the buffer are returned to the queue, so that other consumers can receive them right away
+     * instead of after the timeout. Set it to 0 to let such messages expire in the buffer. It must
+     * be less than the visibility timeout; when the queue's own visibility timeout is used and is
+     * not longer than the margin, messages are not returned early.
+     */
+    public void setVisibilityReturnMarginSeconds(int visibilityReturnMarginSeconds) {
+        this.visibilityReturnMarginSeconds = visibilityReturnMarginSeconds;
+    }
+
+    /**
+     * How many seconds before their visibility timeout expires pre-fetched messages that are still
+     * in the buffer are returned to the queue, so that other consumers can receive them right away
+     * instead of after the timeout. Set it to 0 to let such messages expire in the buffer. It must
+     * be less than the visibility timeout; when the queue's own visibility timeout is used and is
+     * not longer than the margin, messages are not returned early.
+     */
+    public QueueBufferConfig withVisibilityReturnMarginSeconds(int visibilityReturnMarginSeconds) {
+        setVisibilityReturnMarginSeconds(visibilityReturnMarginSeconds);
+        return this;
+    }
+
+    /**
+     * Where message bodies too large to be sent through SQS are stored. The buffered client sends
+     * a pointer to the stored body instead, and fetches the body back for received messages that
+     * carry such a pointer, so producers and consumers must be configured with stores reading the
+     * same data. Null, the default, disables offloading.
+     */
+    public PayloadStore getPayloadStore() {
+        return payloadStore;
+    }
+
+    /**
+     * Where message bodies too large to be sent through SQS are stored.
+     *
+     * @see #getPayloadStore()
+     */
+    public void setPayloadStore(PayloadStore payloadStore) {
+        this.payloadStore = payloadStore;
+    }
+
+    /**
+     * Where message bodies too large to be sent through SQS are stored.
+     *
+     * @see #getPayloadStore()
+     */
+    public QueueBufferConfig withPayloadStore(PayloadStore payloadStore) {
+        setPayloadStore(payloadStore);
+        return this;
+    }
+
+    /**
+     * Messages whose body and attributes take more than this many bytes have their body moved to
+     * the payload store, if one is configured. Lowering it below the service limit keeps SQS
+     * batches small at the cost of more calls to the store.
+     */
+    public long getPayloadOffloadThresholdBytes() {
+        return payloadOffloadThresholdBytes;
+    }
+
+    /**
+     * Messages whose body and attributes take more than this many bytes have their body moved to
+     * the payload store, if one is configured.
+     *
+     * @throws IllegalArgumentException
+     *             if the threshold is greater than the service allowed size for a message.
+     */
+    public void setPayloadOffloadThresholdBytes(long payloadOffloadThresholdBytes) {
+        if (payloadOffloadThresholdBytes > SERVICE_MAX_BATCH_SIZE_BYTES) {
+            throw new IllegalArgumentException(
+                    "Payload offload threshold cannot be greater than the allowed limit of "
+                            + SERVICE_MAX_BATCH_SIZE_BYTES + " bytes");
+        }
+        this.payloadOffloadThresholdBytes = payloadOffloadThresholdBytes;
+    }
+
+    /**
+     * Messages whose body and attributes take more than this many bytes have their body moved to
+     * the payload store, if one is configured.
+     *
+     * @throws IllegalArgumentException
+     *             if the threshold is greater than the service allowed size for a message.
+     */
+    public QueueBufferConfig withPayloadOffloadThresholdBytes(long payloadOffloadThresholdBytes) {
+        setPayloadOffloadThresholdBytes(payloadOffloadThresholdBytes);
+        return this;
+    }
+
     /**
      * this method checks the config for validity. If the config is deemed to be invalid, an
      * informative exception is thrown.
@@ -440,6 +695,18 @@ public class QueueBufferConfig {
         if (visibilityTimeoutSeconds == 0) {
             throw new AmazonClientException("Visibility timeout value may not be equal to zero ");
         }
+        if (maxQueueBuffers < 1) {
+            throw new AmazonClientException("Maximum number of queue buffers must be at least 1");
+        }
+        if (executorThreads < 0) {
+            throw new AmazonClientException("Number of executor threads may not be negative");
+        }
+        if (visibilityReturnMarginSeconds < 0) {
+            throw new AmazonClientException("Visibility return margin may not be negative");
+        }
+        if (visibilityTimeoutSeconds > 0 && visibilityReturnMarginSeconds >= visibilityTimeoutSeconds) {
+            throw new AmazonClientException("Visibility return margin must be less than the visibility timeout");
+        }
     }
 
 }
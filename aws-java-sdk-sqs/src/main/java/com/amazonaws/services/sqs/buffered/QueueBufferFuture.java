@@ -67,7 +67,7 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
         // it on a different thread. Who knows what this
         // thread is doing.
         if (callback != null && issuingBuffer != null) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
+            issuingBuffer.executor.submit(new Callable<Void>() {
                 public Void call() throws Exception {
                     callback.onSuccess(result);
                     return null;
@@ -91,7 +91,7 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
         // it on a different thread. Who knows what this
         // thread is doing.
         if (callback != null && issuingBuffer != null) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
+            issuingBuffer.executor.submit(new Callable<Void>() {
                 public Void call() throws Exception {
                     callback.onError(e);
                     return null;
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+
+/**
+ * The queue buffers of one buffered client, keyed by queue URL.
+ * <p>
+ * Looking up the buffer of a known queue takes no lock. The registry is split into stripes by
+ * queue URL, and only creating a buffer locks the stripe it goes to. When a stripe is over its
+ * share of {@code maxQueueBuffers}, the buffer of its least recently used queue is dropped, so the
+ * bound and the eviction order are approximate. Every stripe holds at least
+ * {@value #MIN_BUFFERS_PER_STRIPE} buffers, so a small registry has a single stripe and evicts in
+ * exact least recently used order.
+ * <p>
+ * A dropped buffer is not shut down, since callers that looked it up just before may still be
+ * using it. It is retired instead: its pre-fetched messages are made visible again, and it only
+ * receives more while such a caller waits for messages. Sends already accepted by a dropped buffer
+ * are sent as usual.
+ * <p>
+ * Instances of {@code QueueBufferRegistry} are thread-safe.
+ */
+class QueueBufferRegistry {
+
+    private static final int MAX_STRIPES = 16;
+
+    private static final int MIN_BUFFERS_PER_STRIPE = 8;
+
+    /**
+     * Access times closer together than this are not recorded, so that threads hammering the same
+     * queue do not all write to the same entry.
+     */
+    private static final long ACCESS_GRANULARITY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Stripe[] stripes;
+    private final QueueBufferConfig configExemplar;
+    private final AmazonSQSAsync realSqs;
+    private final ExecutorService executor;
+
+    QueueBufferRegistry(QueueBufferConfig configExemplar, AmazonSQSAsync realSqs, ExecutorService executor) {
+        int maxBuffers = configExemplar.getMaxQueueBuffers();
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, maxBuffers / MIN_BUFFERS_PER_STRIPE));
+        int stripeSize = (maxBuffers + stripeCount - 1) / stripeCount;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+        this.configExemplar = configExemplar;
+        this.realSqs = realSqs;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns (creating it if necessary) the queue buffer for a particular queue. Creating a buffer
+     * may drop the buffer of the least recently used queue in the same stripe.
+     *
+     * @return a queue buffer associated with the provided queue URL. Never null
+     */
+    QueueBuffer get(String qUrl) {
+        Stripe stripe = stripeFor(qUrl);
+        Entry entry = stripe.buffers.get(qUrl);
+        if (entry == null) {
+            Entry evicted = null;
+            synchronized (stripe) {
+                entry = stripe.buffers.get(qUrl);
+                if (entry == null) {
+                    QueueBufferConfig config = new QueueBufferConfig(configExemplar);
+                    entry = new Entry(new QueueBuffer(config, qUrl, realSqs, executor));
+                    stripe.buffers.put(qUrl, entry);
+                    if (stripe.buffers.size() > stripe.maxSize) {
+                        evicted = stripe.evictEldest();
+                    }
+                }
+            }
+            if (evicted != null) {
+                evicted.buffer.retire();
+            }
+        }
+        entry.touch();
+        return entry.buffer;
+    }
+
+    /**
+     * Returns the queue buffer for a particular queue, or null if there is none.
+     */
+    QueueBuffer peek(String qUrl) {
+        Entry entry = stripeFor(qUrl).buffers.get(qUrl);
+        return entry == null ? null : entry.buffer;
+    }
+
+    /**
+     * Returns the queue buffers currently held.
+     */
+    List<QueueBuffer> values() {
+        List<QueueBuffer> values = new ArrayList<QueueBuffer>();
+        for (Stripe stripe : stripes) {
+            for (Entry entry : stripe.buffers.values()) {
+                values.add(entry.buffer);
+            }
+        }
+        return values;
+    }
+
+    private Stripe stripeFor(String qUrl) {
+        int hash = qUrl.hashCode();
+        hash ^= (hash >>> 16);
+        return stripes[(hash & 0x7fffffff) % stripes.length];
+    }
+
+    private static final class Stripe {
+
+        private final ConcurrentHashMap<String, Entry> buffers = new ConcurrentHashMap<String, Entry>();
+        private final int maxSize;
+
+        private Stripe(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Drops and returns the least recently used buffer. Called with the lock on this stripe
+         * held; stripes are small, so a scan is cheaper than keeping the entries ordered on every
+         * lookup.
+         */
+        private Entry evictEldest() {
+            Map.Entry<String, Entry> eldest = null;
+            for (Map.Entry<String, Entry> candidate : buffers.entrySet()) {
+                if (eldest == null || candidate.getValue().lastAccess - eldest.getValue().lastAccess < 0) {
+                    eldest = candidate;
+                }
+            }
+            if (eldest != null && buffers.remove(eldest.getKey(), eldest.getValue())) {
+                return eldest.getValue();
+            }
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        private final QueueBuffer buffer;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(QueueBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private void touch() {
+            long now = System.nanoTime();
+            if (now - lastAccess > ACCESS_GRANULARITY_NANOS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
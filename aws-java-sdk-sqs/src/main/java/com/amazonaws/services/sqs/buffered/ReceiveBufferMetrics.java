@@ -0,0 +1,115 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+/**
+ * A snapshot of the state of the receive buffer of one queue, as returned by
+ * {@link AmazonSQSBufferedAsyncClient#getReceiveBufferMetrics(String)}. Counts are totals since
+ * the buffer was created.
+ */
+public class ReceiveBufferMetrics {
+
+    private final int bufferedMessages;
+    private final int inflightReceiveBatches;
+    private final int targetReceiveBatches;
+    private final double drainRatePerSecond;
+    private final long deliveredMessages;
+    private final long expiredMessages;
+    private final long returnedMessages;
+    private final long wastedVisibilityMillis;
+
+    ReceiveBufferMetrics(int bufferedMessages, int inflightReceiveBatches, int targetReceiveBatches,
+            double drainRatePerSecond, long deliveredMessages, long expiredMessages, long returnedMessages,
+            long wastedVisibilityMillis) {
+        this.bufferedMessages = bufferedMessages;
+        this.inflightReceiveBatches = inflightReceiveBatches;
+        this.targetReceiveBatches = targetReceiveBatches;
+        this.drainRatePerSecond = drainRatePerSecond;
+        this.deliveredMessages = deliveredMessages;
+        this.expiredMessages = expiredMessages;
+        this.returnedMessages = returnedMessages;
+        this.wastedVisibilityMillis = wastedVisibilityMillis;
+    }
+
+    /**
+     * @return the number of pre-fetched messages waiting in the buffer
+     */
+    public int getBufferedMessages() {
+        return bufferedMessages;
+    }
+
+    /**
+     * @return the number of receive calls to SQS in progress
+     */
+    public int getInflightReceiveBatches() {
+        return inflightReceiveBatches;
+    }
+
+    /**
+     * @return the number of receive batches the buffer currently aims to keep pre-fetched; with
+     *         adaptive pre-fetch disabled, this is always maxDoneReceiveBatches
+     */
+    public int getTargetReceiveBatches() {
+        return targetReceiveBatches;
+    }
+
+    /**
+     * @return the recent rate, in messages per second, at which buffered messages were handed to
+     *         consumers
+     */
+    public double getDrainRatePerSecond() {
+        return drainRatePerSecond;
+    }
+
+    /**
+     * @return the number of pre-fetched messages handed to consumers
+     */
+    public long getDeliveredMessages() {
+        return deliveredMessages;
+    }
+
+    /**
+     * @return the number of pre-fetched messages dropped because their visibility timeout expired
+     *         in the buffer; SQS redelivers them once the timeout is over
+     */
+    public long getExpiredMessages() {
+        return expiredMessages;
+    }
+
+    /**
+     * @return the number of pre-fetched messages returned to the queue before their visibility
+     *         timeout expired
+     */
+    public long getReturnedMessages() {
+        return returnedMessages;
+    }
+
+    /**
+     * @return the total time, in milliseconds, that expired and returned messages were invisible
+     *         to all consumers while sitting unconsumed in the buffer
+     */
+    public long getWastedVisibilityMillis() {
+        return wastedVisibilityMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiveBufferMetrics [bufferedMessages=" + bufferedMessages + ", inflightReceiveBatches="
+                + inflightReceiveBatches + ", targetReceiveBatches=" + targetReceiveBatches
+                + ", drainRatePerSecond=" + drainRatePerSecond + ", deliveredMessages=" + deliveredMessages
+                + ", expiredMessages=" + expiredMessages + ", returnedMessages=" + returnedMessages
+                + ", wastedVisibilityMillis=" + wastedVisibilityMillis + "]";
+    }
+}
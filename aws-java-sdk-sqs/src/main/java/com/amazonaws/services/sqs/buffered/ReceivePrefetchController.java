@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the receive prefetch of a {@link ReceiveQueueBuffer} from what its consumers actually
+ * take.
+ * <p>
+ * The controller keeps moving averages of the rate at which buffered messages are handed to
+ * consumers, of the number of messages a receive batch brings back and of how long a non-empty
+ * receive takes. It aims to buffer enough messages to cover twice the receive latency at the
+ * current drain rate, so that consumers do not wait for a receive to come back, but no more than
+ * consumers can take in half of the usable visibility timeout, so that prefetched messages are
+ * not left to expire in the buffer.
+ * <p>
+ * Instances of {@code ReceivePrefetchController} are thread-safe.
+ */
+class ReceivePrefetchController {
+
+    /** The length of the window over which the drain rate is sampled. */
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** The weight of the latest sample in the moving averages. */
+    private static final double ALPHA = 0.3;
+
+    private double drainRatePerSecond;
+    private double messagesPerBatch;
+    private double receiveLatencySeconds;
+
+    private long windowStartNanos = System.nanoTime();
+    private int deliveredInWindow;
+
+    /**
+     * Records messages handed to consumers.
+     */
+    synchronized void onMessagesDelivered(int count) {
+        roll(System.nanoTime());
+        deliveredInWindow += count;
+    }
+
+    /**
+     * Records the outcome of a receive batch. Empty batches say nothing about how fast messages
+     * can be fetched, since a long poll on an empty queue waits for the full timeout.
+     */
+    synchronized void onBatchReceived(int messageCount, long latencyNanos) {
+        if (messageCount == 0) {
+            return;
+        }
+        double latencySeconds = latencyNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        if (messagesPerBatch == 0) {
+            messagesPerBatch = messageCount;
+            receiveLatencySeconds = latencySeconds;
+        } else {
+            messagesPerBatch = ALPHA * messageCount + (1 - ALPHA) * messagesPerBatch;
+            receiveLatencySeconds = ALPHA * latencySeconds + (1 - ALPHA) * receiveLatencySeconds;
+        }
+    }
+
+    /**
+     * Returns the number of receive batches worth buffering, between 1 and the given maximum.
+     *
+     * @param maxBatches
+     *            the configured upper bound
+     * @param usableVisibilityNanos
+     *            how long a prefetched message can stay in the buffer before it can no longer be
+     *            handed out
+     */
+    synchronized int targetBatches(int maxBatches, long usableVisibilityNanos) {
+        roll(System.nanoTime());
+        if (drainRatePerSecond <= 0 || messagesPerBatch <= 0) {
+            return 1;
+        }
+        double usableSeconds = usableVisibilityNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        double wanted = drainRatePerSecond * receiveLatencySeconds * 2;
+        double affordable = drainRatePerSecond * usableSeconds / 2;
+        double batches = Math.ceil(Math.min(wanted, affordable) / messagesPerBatch);
+        return (int) Math.max(1, Math.min(maxBatches, batches));
+    }
+
+    /**
+     * Returns the current estimate of the rate at which consumers take messages.
+     */
+    synchronized double getDrainRatePerSecond() {
+        roll(System.nanoTime());
+        return drainRatePerSecond;
+    }
+
+    /**
+     * Folds the current window into the drain rate once it is long enough. Called with the lock
+     * on this object held.
+     */
+    private void roll(long now) {
+        long elapsed = now - windowStartNanos;
+        if (elapsed < WINDOW_NANOS) {
+            return;
+        }
+        double rate = deliveredInWindow / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+        // A window stretched by idleness counts as that many windows
+        double weight = 1 - Math.pow(1 - ALPHA, (double) elapsed / WINDOW_NANOS);
+        drainRatePerSecond = weight * rate + (1 - weight) * drainRatePerSecond;
+        windowStartNanos = now;
+        deliveredInWindow = 0;
+    }
+}
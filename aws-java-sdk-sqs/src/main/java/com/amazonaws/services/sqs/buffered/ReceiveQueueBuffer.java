@@ -20,7 +20,11 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,6 +43,10 @@ import com.amazonaws.services.sqs.model.ReceiveMessageResult;
  * It uses the provided executor to pre-fetch messages from the server and keeps them in a buffer
  * which it uses to satisfy incoming requests. The number of requests pre-fetched and kept in the
  * buffer, as well as the maximum number of threads used to retrieve the messages are configurable.
+ * With adaptive pre-fetch enabled, those settings become upper bounds and the number of batches
+ * actually kept is sized by a {@link ReceivePrefetchController}. With a visibility return margin
+ * set, messages still in the buffer shortly before their visibility timeout expires are returned to
+ * the queue rather than left to expire.
  * <p>
  * Synchronization strategy: - Threads must hold the TaskSpawnSyncPoint object monitor to spawn a
  * new task or modify the number of inflight tasks - Threads must hold the monitor of the "futures"
@@ -72,6 +80,20 @@ public class ReceiveQueueBuffer {
 
     private final AmazonSQS sqsClient;
 
+    /**
+     * Fires the early return of pre-fetched messages, shared among all buffers. It only schedules
+     * the returns; the calls to SQS run on the buffer's executor.
+     */
+    private static final ScheduledExecutorService returnTimer = new ScheduledThreadPoolExecutor(1,
+            new QueueBuffer.DaemonThreadFactory());
+
+    private final ReceivePrefetchController prefetchController = new ReceivePrefetchController();
+
+    private final AtomicLong deliveredMessages = new AtomicLong();
+    private final AtomicLong expiredMessages = new AtomicLong();
+    private final AtomicLong returnedMessages = new AtomicLong();
+    private final AtomicLong wastedVisibilityNanos = new AtomicLong();
+
     private long bufferCounter = 0;
 
     /**
@@ -95,6 +117,12 @@ public class ReceiveQueueBuffer {
     /** shutdown buffer does not retrieve any more messages from sqs */
     volatile boolean shutDown = false;
 
+    /**
+     * retired buffer only retrieves messages for futures still waiting, and returns the rest to
+     * the queue
+     */
+    private volatile boolean retired = false;
+
     /** message delivery futures we gave out */
     private final LinkedList<ReceiveMessageFuture> futures = new LinkedList<ReceiveMessageFuture>();
 
@@ -123,6 +151,15 @@ public class ReceiveQueueBuffer {
         }
     }
 
+    /**
+     * Returns the pre-fetched messages to the queue and stops pre-fetching more than the futures
+     * already issued, or issued later, wait for.
+     */
+    void retire() {
+        retired = true;
+        discardUnclaimedBatches();
+    }
+
     /**
      * Submits the request for retrieval of messages from the queue and returns a future that will
      * be signalled when the request is satisfied. The future may already be signalled by the time
@@ -222,6 +259,10 @@ public class ReceiveQueueBuffer {
             finishedTasks.removeFirst();
         }
         result.setMessages(messages);
+        if (numRetrieved > 0) {
+            deliveredMessages.addAndGet(numRetrieved);
+            prefetchController.onMessagesDelivered(numRetrieved);
+        }
 
         // if after the above runs the exception is not null,
         // the finished batch has encountered an error, and we will
@@ -270,7 +311,7 @@ public class ReceiveQueueBuffer {
         int numberPruned = 0;
         while (!finishedTasks.isEmpty()) {
             if (pruneCondition.test(finishedTasks.getFirst())) {
-                finishedTasks.removeFirst();
+                finishedTasks.removeFirst().discard();
                 numberPruned++;
             } else {
                 break;
@@ -284,13 +325,25 @@ public class ReceiveQueueBuffer {
      * the maximum number of receive tasks, or if we are at the maximum number of prefetched buffers
      */
     private void spawnMoreReceiveTasks() {
-        if (shutDown) {
+        if (shutDown || (retired && !hasWaitingFutures())) {
             return;
         }
 
         int desiredBatches = config.getMaxDoneReceiveBatches();
         desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
 
+        int max = config.getMaxInflightReceiveBatches();
+        // must allow at least one inflight receive task, or receive won't
+        // work at all.
+        max = max > 0 ? max : 1;
+
+        // consumers already waiting on an empty buffer get the full configured pre-fetch
+        if (config.isAdaptivePrefetch() && visibilityTimeoutNanos != -1 && !hasWaitingFutures()) {
+            int target = prefetchController.targetBatches(desiredBatches, usableVisibilityNanos());
+            desiredBatches = target;
+            max = Math.min(max, target);
+        }
+
         synchronized (finishedTasks) {
             if (finishedTasks.size() >= desiredBatches)
                 return;
@@ -312,12 +365,15 @@ public class ReceiveQueueBuffer {
                 long visibilityTimeoutSeconds = Long.parseLong(sqsClient.getQueueAttributes(request).getAttributes()
                         .get("VisibilityTimeout"));
                 visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(visibilityTimeoutSeconds, TimeUnit.SECONDS);
+                if (config.getVisibilityTimeoutSeconds() <= 0 && config.getVisibilityReturnMarginSeconds() > 0
+                        && returnMarginNanos() == 0) {
+                    log.warn("The visibility timeout of queue " + qUrl + " is " + visibilityTimeoutSeconds
+                            + " seconds, not longer than the visibility return margin of "
+                            + config.getVisibilityReturnMarginSeconds()
+                            + " seconds; pre-fetched messages will not be returned early");
+                }
             }
 
-            int max = config.getMaxInflightReceiveBatches();
-            // must allow at least one inflight receive task, or receive won't
-            // work at all.
-            max = max > 0 ? max : 1;
             int toSpawn = max - inflightReceiveMessageBatches;
             if (toSpawn > 0) {
                 ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
@@ -346,9 +402,143 @@ public class ReceiveQueueBuffer {
             --inflightReceiveMessageBatches;
         }
         satisfyFuturesFromBuffer();
+        if (retired) {
+            discardUnclaimedBatches();
+        }
         spawnMoreReceiveTasks();
     }
 
+    /**
+     * Returns the messages of all finished batches to the queue, unless futures are waiting for
+     * them.
+     */
+    private void discardUnclaimedBatches() {
+        synchronized (futures) {
+            if (!futures.isEmpty()) {
+                return;
+            }
+            synchronized (finishedTasks) {
+                while (!finishedTasks.isEmpty()) {
+                    finishedTasks.removeFirst().discard();
+                }
+            }
+        }
+    }
+
+    private boolean hasWaitingFutures() {
+        synchronized (futures) {
+            return !futures.isEmpty();
+        }
+    }
+
+    /**
+     * @return the visibility timeout of the messages this buffer receives
+     */
+    private long visibilityNanos() {
+        return config.getVisibilityTimeoutSeconds() > 0 ? TimeUnit.SECONDS.toNanos(config
+                .getVisibilityTimeoutSeconds()) : visibilityTimeoutNanos;
+    }
+
+    /**
+     * @return how long before their visibility timeout expires unconsumed messages are returned,
+     *         or 0 if the margin would not leave any time to hand them out
+     */
+    private long returnMarginNanos() {
+        long margin = TimeUnit.SECONDS.toNanos(config.getVisibilityReturnMarginSeconds());
+        return margin < visibilityNanos() ? margin : 0;
+    }
+
+    /**
+     * @return how long a pre-fetched message can be handed out after it was received
+     */
+    private long usableVisibilityNanos() {
+        return Math.max(0, visibilityNanos() - returnMarginNanos());
+    }
+
+    /**
+     * Schedules the return of whatever is left of the batch once it reaches its return deadline.
+     */
+    private void scheduleReturn(final ReceiveMessageBatchTask batch, long delayNanos) {
+        returnTimer.schedule(new Runnable() {
+            public void run() {
+                boolean removed;
+                synchronized (finishedTasks) {
+                    removed = finishedTasks.remove(batch);
+                }
+                if (removed) {
+                    batch.discard();
+                }
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Makes the given messages visible again, on the executor so that the caller is not held up by
+     * the call to SQS.
+     */
+    private void returnMessagesAsync(final List<Message> messages) {
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    returnMessages(messages);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("ReceiveQueueBuffer: could not schedule the return of " + messages.size()
+                    + " messages to queue " + qUrl + " " + e);
+        }
+    }
+
+    /**
+     * Makes the given messages visible again, in batches of at most 10.
+     */
+    private void returnMessages(List<Message> messages) {
+        for (int start = 0; start < messages.size(); start += 10) {
+            List<Message> chunk = messages.subList(start, Math.min(messages.size(), start + 10));
+            ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
+                    .withQueueUrl(qUrl);
+            ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
+
+            List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(
+                    chunk.size());
+
+            int i = 0;
+            for (Message m : chunk) {
+
+                entries.add(new ChangeMessageVisibilityBatchRequestEntry().withId(Integer.toString(i))
+                        .withReceiptHandle(m.getReceiptHandle()).withVisibilityTimeout(0));
+                ++i;
+            }
+
+            try {
+                batchRequest.setEntries(entries);
+                sqsClient.changeMessageVisibilityBatch(batchRequest);
+            } catch (AmazonClientException e) {
+                // Log and ignore.
+                log.warn("ReceiveMessageBatchTask: changeMessageVisibility failed " + e);
+            }
+        }
+    }
+
+    /**
+     * @return a snapshot of the state of this buffer
+     */
+    public ReceiveBufferMetrics getMetrics() {
+        int buffered = 0;
+        synchronized (finishedTasks) {
+            for (ReceiveMessageBatchTask task : finishedTasks) {
+                buffered += task.size();
+            }
+        }
+        int target = config.getMaxDoneReceiveBatches();
+        if (config.isAdaptivePrefetch() && visibilityTimeoutNanos != -1) {
+            target = prefetchController.targetBatches(Math.max(1, target), usableVisibilityNanos());
+        }
+        return new ReceiveBufferMetrics(buffered, inflightReceiveMessageBatches, target,
+                prefetchController.getDrainRatePerSecond(), deliveredMessages.get(), expiredMessages.get(),
+                returnedMessages.get(), TimeUnit.NANOSECONDS.toMillis(wastedVisibilityNanos.get()));
+    }
+
     /**
      * Clears and nacks any pre-fetched messages in this buffer.
      */
@@ -393,7 +583,9 @@ public class ReceiveQueueBuffer {
     private class ReceiveMessageBatchTask implements Runnable {
         private Exception exception = null;
         private List<Message> messages;
+        private long receivedNano;
         private long visibilityDeadlineNano;
+        private long returnDeadlineNano;
         private boolean open = false;
         private ReceiveQueueBuffer parentBuffer;
 
@@ -416,6 +608,10 @@ public class ReceiveQueueBuffer {
             return messages.isEmpty();
         }
 
+        synchronized int size() {
+            return messages.size();
+        }
+
         /**
          * @return the exception that was thrown during execution, or null if there was no exception
          */
@@ -441,7 +637,7 @@ public class ReceiveQueueBuffer {
 
             // our messages expired.
             if (isExpired()) {
-                messages.clear();
+                discard();
                 return null;
             }
 
@@ -451,8 +647,23 @@ public class ReceiveQueueBuffer {
                 return messages.remove(messages.size() - 1);
         }
 
+        /**
+         * @return true once the messages may no longer be handed out, which is when their
+         *         visibility timeout expires or the return margin before it begins
+         */
         boolean isExpired() {
-            return System.nanoTime() > visibilityDeadlineNano;
+            return System.nanoTime() > returnDeadlineNano;
+        }
+
+        /**
+         * Drops the remaining messages of a batch that will not be handed out, returning them to
+         * the queue if their visibility timeout has not expired yet.
+         */
+        synchronized void discard() {
+            List<Message> toReturn = drain();
+            if (!toReturn.isEmpty()) {
+                returnMessagesAsync(toReturn);
+            }
         }
 
         /**
@@ -463,31 +674,31 @@ public class ReceiveQueueBuffer {
                 throw new IllegalStateException("batch is not open");
             }
 
-            if (!isExpired()) {
-                ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
-                        .withQueueUrl(qUrl);
-                ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
-
-                List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(
-                        messages.size());
-
-                int i = 0;
-                for (Message m : messages) {
-
-                    entries.add(new ChangeMessageVisibilityBatchRequestEntry().withId(Integer.toString(i))
-                            .withReceiptHandle(m.getReceiptHandle()).withVisibilityTimeout(0));
-                    ++i;
-                }
+            returnMessages(drain());
+        }
 
-                try {
-                    batchRequest.setEntries(entries);
-                    sqsClient.changeMessageVisibilityBatch(batchRequest);
-                } catch (AmazonClientException e) {
-                    // Log and ignore.
-                    log.warn("ReceiveMessageBatchTask: changeMessageVisibility failed " + e);
-                }
+        /**
+         * Removes the remaining messages and accounts for them as returned or expired.
+         *
+         * @return the messages whose visibility timeout has not expired yet
+         */
+        private List<Message> drain() {
+            if (messages.isEmpty()) {
+                return Collections.emptyList();
+            }
+            long now = System.nanoTime();
+            int count = messages.size();
+            List<Message> toReturn = Collections.emptyList();
+            if (now < visibilityDeadlineNano) {
+                returnedMessages.addAndGet(count);
+                wastedVisibilityNanos.addAndGet((now - receivedNano) * count);
+                toReturn = new ArrayList<Message>(messages);
+            } else {
+                expiredMessages.addAndGet(count);
+                wastedVisibilityNanos.addAndGet((visibilityDeadlineNano - receivedNano) * count);
             }
             messages.clear();
+            return toReturn;
         }
 
         /**
@@ -496,29 +707,45 @@ public class ReceiveQueueBuffer {
          */
         public void run() {
 
+            long latencyNanos = 0;
             try {
-                visibilityDeadlineNano = System.nanoTime() + visibilityTimeoutNanos;
+                receivedNano = System.nanoTime();
+                visibilityDeadlineNano = receivedNano + visibilityTimeoutNanos;
                 ReceiveMessageRequest request = new ReceiveMessageRequest(qUrl).withMaxNumberOfMessages(config
                         .getMaxBatchSize());
                 ResultConverter.appendUserAgent(request, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
                 if (config.getVisibilityTimeoutSeconds() > 0) {
                     request.setVisibilityTimeout(config.getVisibilityTimeoutSeconds());
-                    visibilityDeadlineNano = System.nanoTime()
+                    visibilityDeadlineNano = receivedNano
                             + TimeUnit.NANOSECONDS.convert(config.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS);
                 }
+                returnDeadlineNano = visibilityDeadlineNano - returnMarginNanos();
 
                 if (config.isLongPoll()) {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
                 }
 
                 messages = sqsClient.receiveMessage(request).getMessages();
-            } catch (AmazonClientException e) {
+                latencyNanos = System.nanoTime() - receivedNano;
+            } catch (RuntimeException e) {
+                // not only client exceptions: a failed batch must still be reported finished
                 exception = e;
             } finally {
                 // whatever happened, we are done and can be considered open
                 open = true;
+                if (messages == null) {
+                    messages = Collections.emptyList();
+                }
+                boolean returnLater = false;
+                if (exception == null) {
+                    prefetchController.onBatchReceived(messages.size(), latencyNanos);
+                    returnLater = returnMarginNanos() > 0 && !messages.isEmpty();
+                }
                 parentBuffer.reportBatchFinished(this);
+                if (returnLater) {
+                    scheduleReturn(this, returnDeadlineNano - System.nanoTime());
+                }
             }
 
         }
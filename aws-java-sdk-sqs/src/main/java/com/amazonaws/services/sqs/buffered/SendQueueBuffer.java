@@ -129,10 +129,14 @@ public class SendQueueBuffer {
      */
     private final Semaphore inflightChangeMessageVisibilityBatches;
 
+    /** Measures messages and moves oversized bodies to the payload store. */
+    private final PayloadOffloader payloadOffloader;
+
     SendQueueBuffer(AmazonSQS sqsClient, Executor executor, QueueBufferConfig paramConfig, String url) {
         this.sqsClient = sqsClient;
         this.executor = executor;
         this.config = paramConfig;
+        this.payloadOffloader = new PayloadOffloader(paramConfig);
         qUrl = url;
         int maxBatch = config.getMaxInflightOutboundBatches();
 
@@ -473,15 +477,19 @@ public class SendQueueBuffer {
 
         int batchSizeBytes = 0;
 
+        /** The size of the request last checked by isOkToAdd, so it is only measured once. */
+        private int checkedSizeBytes;
+
         @Override
         protected boolean isOkToAdd(SendMessageRequest request) {
+            checkedSizeBytes = payloadOffloader.batchedSize(request);
             return (requests.size() < config.getMaxBatchSize())
-                    && ((request.getMessageBody().getBytes().length + batchSizeBytes) < config.getMaxBatchSizeBytes());
+                    && ((checkedSizeBytes + batchSizeBytes) <= config.getMaxBatchSizeBytes());
         }
 
         @Override
         protected void onRequestAdded(SendMessageRequest request) {
-            batchSizeBytes += request.getMessageBody().getBytes().length;
+            batchSizeBytes += checkedSizeBytes;
         }
 
         @Override
@@ -500,12 +508,33 @@ public class SendQueueBuffer {
             SendMessageBatchRequest batchRequest = new SendMessageBatchRequest().withQueueUrl(qUrl);
             ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
+            // move oversized bodies to the payload store; the futures of messages
+            // that cannot be stored fail on their own, without the rest of the batch
+            List<SendMessageRequest> toSend = new ArrayList<SendMessageRequest>(requests.size());
             List<SendMessageBatchRequestEntry> entries = new ArrayList<SendMessageBatchRequestEntry>(requests.size());
             for (int i = 0, n = requests.size(); i < n; i++) {
+                SendMessageRequest request;
+                try {
+                    request = payloadOffloader.offload(requests.get(i));
+                } catch (AmazonClientException e) {
+                    futures.get(i).setFailure(e);
+                    request = null;
+                } catch (RuntimeException e) {
+                    // a store failing in any other way must not fail the rest of the batch either
+                    futures.get(i).setFailure(new AmazonClientException("Unable to store the message payload", e));
+                    request = null;
+                }
+                toSend.add(request);
+                if (request == null) {
+                    continue;
+                }
                 entries.add(new SendMessageBatchRequestEntry().withId(Integer.toString(i))
-                        .withMessageBody(requests.get(i).getMessageBody())
-                        .withDelaySeconds(requests.get(i).getDelaySeconds())
-                        .withMessageAttributes(requests.get(i).getMessageAttributes()));
+                        .withMessageBody(request.getMessageBody())
+                        .withDelaySeconds(request.getDelaySeconds())
+                        .withMessageAttributes(request.getMessageAttributes()));
+            }
+            if (entries.isEmpty()) {
+                return;
             }
             batchRequest.setEntries(entries);
 
@@ -524,7 +553,7 @@ public class SendQueueBuffer {
                     // retry.
                     try {
                         // this will retry internally up to 3 times.
-                        futures.get(index).setSuccess(sqsClient.sendMessage(requests.get(index)));
+                        futures.get(index).setSuccess(sqsClient.sendMessage(toSend.get(index)));
                     } catch (AmazonClientException ace) {
                         futures.get(index).setFailure(ace);
                     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.consumer;
+
+import com.amazonaws.services.sqs.model.Message;
+
+/**
+ * Processes the messages received by a {@link QueueConsumer}.
+ * <p>
+ * Implementations are called concurrently from the consumer's worker threads and must be
+ * thread-safe. SQS delivers messages at least once, so a message may be handled more than once.
+ */
+public interface MessageHandler {
+
+    /**
+     * Processes one message. The message stays invisible to other consumers while this method
+     * runs, however long it takes.
+     *
+     * @param message
+     *            the message received
+     * @throws Exception
+     *             if the message could not be processed; it is then not deleted and becomes
+     *             visible again, as configured by
+     *             {@link QueueConsumerConfiguration#getFailedMessageVisibilitySeconds()}
+     */
+    void handleMessage(Message message) throws Exception;
+}
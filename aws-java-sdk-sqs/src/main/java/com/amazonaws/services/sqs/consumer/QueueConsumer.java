@@ -0,0 +1,518 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.util.VersionInfoUtils;
+
+/**
+ * Receives messages from an SQS queue and hands them to a {@link MessageHandler} on a pool of
+ * worker threads.
+ * <p>
+ * A number of poller threads long-poll the queue. They only receive as many messages as there is
+ * room for under {@link QueueConsumerConfiguration#getMaxInFlightMessages()}, so a slow handler
+ * slows down receiving rather than piling up messages. While a message waits for a worker or is
+ * being handled, its visibility timeout is renewed in the background with
+ * ChangeMessageVisibilityBatch calls, so long jobs are not redelivered to other consumers.
+ * Messages whose handler returns normally are deleted with DeleteMessageBatch calls grouping up to
+ * 10 messages.
+ * <p>
+ * The consumer only uses the {@link AmazonSQS} interface, so it can be run against an in-memory
+ * stand-in, for example one extending {@link com.amazonaws.services.sqs.AbstractAmazonSQS}.
+ * <p>
+ * Instances of {@code QueueConsumer} are thread-safe, and can be started only once.
+ */
+public class QueueConsumer {
+
+    public static final String USER_AGENT = QueueConsumer.class.getSimpleName() + "/"
+            + VersionInfoUtils.getVersion();
+
+    private static final Log log = LogFactory.getLog(QueueConsumer.class);
+
+    /** The most entries SQS accepts in a receive or batch call. */
+    private static final int MAX_BATCH_SIZE = 10;
+
+    /** How often a poller waiting for capacity checks whether the consumer was shut down. */
+    private static final long CAPACITY_POLL_MILLIS = 200;
+
+    private static final long MAX_RECEIVE_BACKOFF_MILLIS = 10000;
+
+    private static final AtomicInteger consumerCount = new AtomicInteger();
+
+    /** Numbers the threads of this consumer, shared by all their roles. */
+    private final int id = consumerCount.incrementAndGet();
+
+    private final AmazonSQS sqs;
+    private final String queueUrl;
+    private final MessageHandler handler;
+    private final QueueConsumerConfiguration config;
+
+    /** Permits for messages received but not yet handled. */
+    private final Semaphore capacity;
+
+    /** Messages received but not yet handled, by receipt handle. */
+    private final ConcurrentMap<String, InFlightMessage> inFlight =
+            new ConcurrentHashMap<String, InFlightMessage>();
+
+    /** Receipt handles of handled messages waiting to be deleted. Guarded by itself. */
+    private final List<String> pendingDeletes = new ArrayList<String>();
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final List<Thread> pollers = new ArrayList<Thread>();
+    private final AtomicInteger activePollers = new AtomicInteger();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private final AtomicLong handledMessages = new AtomicLong();
+    private final AtomicLong failedMessages = new AtomicLong();
+
+    /**
+     * Creates a consumer with the default configuration.
+     */
+    public QueueConsumer(AmazonSQS sqs, String queueUrl, MessageHandler handler) {
+        this(sqs, queueUrl, handler, new QueueConsumerConfiguration());
+    }
+
+    /**
+     * Creates a consumer. Nothing is received until {@link #start()} is called.
+     *
+     * @param sqs
+     *            the client used for all calls to SQS
+     * @param queueUrl
+     *            the URL of the queue to consume
+     * @param handler
+     *            the handler to call for each message
+     * @param config
+     *            the consumer settings, copied by this constructor
+     */
+    public QueueConsumer(AmazonSQS sqs, String queueUrl, MessageHandler handler, QueueConsumerConfiguration config) {
+        if (sqs == null || queueUrl == null || handler == null || config == null) {
+            throw new IllegalArgumentException("sqs, queueUrl, handler and config are required");
+        }
+        this.sqs = sqs;
+        this.queueUrl = queueUrl;
+        this.handler = handler;
+        this.config = new QueueConsumerConfiguration(config);
+        this.capacity = new Semaphore(this.config.getMaxInFlightMessages());
+        this.workers = new ThreadPoolExecutor(this.config.getWorkerCount(), this.config.getWorkerCount(), 0,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(id, "worker"));
+        // one thread for heartbeats and one for deletes, so that neither delays the other
+        this.scheduler = new ScheduledThreadPoolExecutor(2, new NamedThreadFactory(id, "scheduler"));
+    }
+
+    /**
+     * Starts receiving and handling messages.
+     *
+     * @throws IllegalStateException
+     *             if the consumer was already started or shut down
+     */
+    public void start() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The consumer was already started");
+        }
+        running = true;
+
+        long heartbeatMillis = TimeUnit.SECONDS.toMillis(config.getVisibilityTimeoutSeconds()) / 3;
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    extendVisibility();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to extend the visibility of messages in " + queueUrl, e);
+                }
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    flushDeletes();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to delete messages from " + queueUrl, e);
+                }
+            }
+        }, config.getDeleteBatchDelayMillis(), config.getDeleteBatchDelayMillis(), TimeUnit.MILLISECONDS);
+
+        ThreadFactory pollerFactory = new NamedThreadFactory(id, "poller");
+        activePollers.set(config.getPollerCount());
+        for (int i = 0; i < config.getPollerCount(); i++) {
+            Thread poller = pollerFactory.newThread(new Runnable() {
+                public void run() {
+                    poll();
+                }
+            });
+            pollers.add(poller);
+            poller.start();
+        }
+    }
+
+    /**
+     * Stops receiving messages. Messages already received are still handled and deleted, after
+     * which the consumer terminates; this may take up to the long poll wait time, while pollers
+     * finish their current receive call, plus the time the handlers take.
+     */
+    public void shutdown() {
+        running = false;
+        if (started.compareAndSet(false, true)) {
+            // never started, so there is nothing to drain
+            workers.shutdown();
+            scheduler.shutdown();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Waits for the consumer to terminate after {@link #shutdown()}.
+     *
+     * @return true if the consumer terminated, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return the number of messages received but not yet handled
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the number of messages handled successfully
+     */
+    public long getHandledCount() {
+        return handledMessages.get();
+    }
+
+    /**
+     * @return the number of messages whose handler failed
+     */
+    public long getFailedCount() {
+        return failedMessages.get();
+    }
+
+    /**
+     * The loop of a poller thread.
+     */
+    private void poll() {
+        long backoffMillis = 0;
+        try {
+            while (running) {
+                int permits = acquireCapacity();
+                if (permits == 0) {
+                    continue;
+                }
+                List<Message> messages;
+                try {
+                    messages = receive(permits);
+                    backoffMillis = 0;
+                } catch (RuntimeException e) {
+                    // not only client exceptions: a poller that dies stops the consumer for good
+                    capacity.release(permits);
+                    backoffMillis = Math.min(MAX_RECEIVE_BACKOFF_MILLIS, Math.max(100, backoffMillis * 2));
+                    log.warn("Failed to receive messages from " + queueUrl + ", retrying in " + backoffMillis
+                            + " ms", e);
+                    Thread.sleep(backoffMillis);
+                    continue;
+                }
+                capacity.release(permits - messages.size());
+                for (Message message : messages) {
+                    dispatch(message);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (activePollers.decrementAndGet() == 0) {
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Waits until there is room for at least one more message, and takes room for as many as one
+     * receive call can return.
+     *
+     * @return the number of messages to receive, or 0 if the consumer is shutting down
+     */
+    private int acquireCapacity() throws InterruptedException {
+        while (!capacity.tryAcquire(CAPACITY_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!running) {
+                return 0;
+            }
+        }
+        int permits = 1;
+        while (permits < MAX_BATCH_SIZE && capacity.tryAcquire()) {
+            permits++;
+        }
+        return permits;
+    }
+
+    private List<Message> receive(int maxMessages) {
+        ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+                .withMaxNumberOfMessages(maxMessages)
+                .withWaitTimeSeconds(config.getWaitTimeSeconds())
+                .withVisibilityTimeout(config.getVisibilityTimeoutSeconds());
+        if (!config.getAttributeNames().isEmpty()) {
+            request.setAttributeNames(config.getAttributeNames());
+        }
+        if (!config.getMessageAttributeNames().isEmpty()) {
+            request.setMessageAttributeNames(config.getMessageAttributeNames());
+        }
+        request.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return sqs.receiveMessage(request).getMessages();
+    }
+
+    private void dispatch(Message message) {
+        final InFlightMessage entry = new InFlightMessage(message,
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getVisibilityTimeoutSeconds()));
+        inFlight.put(message.getReceiptHandle(), entry);
+        workers.execute(new Runnable() {
+            public void run() {
+                handle(entry);
+            }
+        });
+    }
+
+    /**
+     * Runs the handler for one message on a worker thread.
+     */
+    private void handle(InFlightMessage entry) {
+        Message message = entry.message;
+        boolean handled = false;
+        try {
+            handler.handleMessage(message);
+            handled = true;
+        } catch (Exception e) {
+            log.warn("Failed to handle message " + message.getMessageId() + " from " + queueUrl, e);
+        } finally {
+            inFlight.remove(message.getReceiptHandle());
+            if (handled) {
+                handledMessages.incrementAndGet();
+                delete(message.getReceiptHandle());
+            } else {
+                failedMessages.incrementAndGet();
+                resetVisibility(message);
+            }
+            capacity.release();
+        }
+    }
+
+    private void resetVisibility(Message message) {
+        if (config.getFailedMessageVisibilitySeconds() < 0) {
+            return;
+        }
+        ChangeMessageVisibilityRequest request = new ChangeMessageVisibilityRequest(queueUrl,
+                message.getReceiptHandle(), config.getFailedMessageVisibilitySeconds());
+        request.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        try {
+            sqs.changeMessageVisibility(request);
+        } catch (RuntimeException e) {
+            log.warn("Failed to change the visibility of message " + message.getMessageId(), e);
+        }
+    }
+
+    /**
+     * Queues a handled message for deletion, sending a batch right away once it is full.
+     */
+    private void delete(String receiptHandle) {
+        List<String> batch = null;
+        synchronized (pendingDeletes) {
+            pendingDeletes.add(receiptHandle);
+            if (pendingDeletes.size() >= MAX_BATCH_SIZE) {
+                batch = new ArrayList<String>(pendingDeletes);
+                pendingDeletes.clear();
+            }
+        }
+        if (batch != null) {
+            deleteBatch(batch);
+        }
+    }
+
+    private void flushDeletes() {
+        List<String> receiptHandles;
+        synchronized (pendingDeletes) {
+            if (pendingDeletes.isEmpty()) {
+                return;
+            }
+            receiptHandles = new ArrayList<String>(pendingDeletes);
+            pendingDeletes.clear();
+        }
+        for (int start = 0; start < receiptHandles.size(); start += MAX_BATCH_SIZE) {
+            deleteBatch(receiptHandles.subList(start, Math.min(receiptHandles.size(), start + MAX_BATCH_SIZE)));
+        }
+    }
+
+    private void deleteBatch(List<String> receiptHandles) {
+        List<DeleteMessageBatchRequestEntry> entries =
+                new ArrayList<DeleteMessageBatchRequestEntry>(receiptHandles.size());
+        for (int i = 0; i < receiptHandles.size(); i++) {
+            entries.add(new DeleteMessageBatchRequestEntry(Integer.toString(i), receiptHandles.get(i)));
+        }
+        DeleteMessageBatchRequest request = new DeleteMessageBatchRequest(queueUrl, entries);
+        request.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        try {
+            DeleteMessageBatchResult result = sqs.deleteMessageBatch(request);
+            for (BatchResultErrorEntry error : result.getFailed()) {
+                log.warn("Failed to delete a message from " + queueUrl + ": " + error.getCode() + " "
+                        + error.getMessage());
+            }
+        } catch (RuntimeException e) {
+            // The messages become visible again and are redelivered
+            log.warn("Failed to delete " + receiptHandles.size() + " messages from " + queueUrl, e);
+        }
+    }
+
+    /**
+     * Renews the visibility timeout of the in-flight messages that would otherwise expire before
+     * the heartbeat after next.
+     */
+    private void extendVisibility() {
+        long horizon = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getVisibilityTimeoutSeconds()) * 2 / 3;
+        List<InFlightMessage> due = new ArrayList<InFlightMessage>();
+        for (InFlightMessage entry : inFlight.values()) {
+            if (entry.visibleAtNanos - horizon < 0) {
+                due.add(entry);
+            }
+        }
+        for (int start = 0; start < due.size(); start += MAX_BATCH_SIZE) {
+            extendVisibility(due.subList(start, Math.min(due.size(), start + MAX_BATCH_SIZE)));
+        }
+    }
+
+    private void extendVisibility(List<InFlightMessage> batch) {
+        List<ChangeMessageVisibilityBatchRequestEntry> entries =
+                new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            entries.add(new ChangeMessageVisibilityBatchRequestEntry(Integer.toString(i),
+                    batch.get(i).message.getReceiptHandle())
+                    .withVisibilityTimeout(config.getVisibilityTimeoutSeconds()));
+        }
+        ChangeMessageVisibilityBatchRequest request = new ChangeMessageVisibilityBatchRequest(queueUrl, entries);
+        request.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        long visibleAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getVisibilityTimeoutSeconds());
+        try {
+            ChangeMessageVisibilityBatchResult result = sqs.changeMessageVisibilityBatch(request);
+            boolean[] failed = new boolean[batch.size()];
+            for (BatchResultErrorEntry error : result.getFailed()) {
+                int index = Integer.parseInt(error.getId());
+                failed[index] = true;
+                InFlightMessage entry = batch.get(index);
+                // Messages handled since the heartbeat started are expected to fail
+                if (inFlight.containsKey(entry.message.getReceiptHandle())) {
+                    log.warn("Failed to extend the visibility of message " + entry.message.getMessageId()
+                            + ": " + error.getCode() + " " + error.getMessage());
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (!failed[i]) {
+                    batch.get(i).visibleAtNanos = visibleAt;
+                }
+            }
+        } catch (RuntimeException e) {
+            // Retried at the next heartbeat, which is still before the messages expire
+            log.warn("Failed to extend the visibility of " + batch.size() + " messages in " + queueUrl, e);
+        }
+    }
+
+    /**
+     * Called by the last poller to exit: lets the workers finish, sends the remaining deletes and
+     * stops the background tasks.
+     */
+    private void drain() {
+        workers.shutdown();
+        try {
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                log.debug("Waiting for " + inFlight.size() + " messages to be handled");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushDeletes();
+        terminated.countDown();
+    }
+
+    /**
+     * A message received but not yet handled.
+     */
+    private static final class InFlightMessage {
+
+        private final Message message;
+
+        /** When the message becomes visible again unless its timeout is renewed. */
+        private volatile long visibleAtNanos;
+
+        private InFlightMessage(Message message, long visibleAtNanos) {
+            this.message = message;
+            this.visibleAtNanos = visibleAtNanos;
+        }
+    }
+
+    /**
+     * Creates daemon threads named after the queue consumer and their role.
+     */
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private NamedThreadFactory(int consumerId, String role) {
+            this.prefix = "QueueConsumer-" + consumerId + "-" + role + "-";
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(prefix + threadCount.incrementAndGet());
+            return thread;
+        }
+    }
+}
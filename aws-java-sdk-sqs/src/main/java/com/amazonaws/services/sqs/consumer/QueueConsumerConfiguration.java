@@ -0,0 +1,341 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.consumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Settings of a {@link QueueConsumer}. The configuration is read when the consumer is created;
+ * changing it afterwards has no effect on that consumer.
+ */
+public class QueueConsumerConfiguration {
+
+    /** 1 poller */
+    public static final int POLLER_COUNT_DEFAULT = 1;
+
+    /** 10 workers */
+    public static final int WORKER_COUNT_DEFAULT = 10;
+
+    /** 20 messages */
+    public static final int MAX_IN_FLIGHT_MESSAGES_DEFAULT = 20;
+
+    /** 20 seconds, the longest long poll SQS supports */
+    public static final int WAIT_TIME_SECONDS_DEFAULT = 20;
+
+    /** 30 seconds */
+    public static final int VISIBILITY_TIMEOUT_SECONDS_DEFAULT = 30;
+
+    /** -1, which means leave the visibility timeout of failed messages as it is */
+    public static final int FAILED_MESSAGE_VISIBILITY_SECONDS_DEFAULT = -1;
+
+    /** 100 milliseconds */
+    public static final long DELETE_BATCH_DELAY_MILLIS_DEFAULT = 100;
+
+    private int pollerCount = POLLER_COUNT_DEFAULT;
+    private int workerCount = WORKER_COUNT_DEFAULT;
+    private int maxInFlightMessages = MAX_IN_FLIGHT_MESSAGES_DEFAULT;
+    private int waitTimeSeconds = WAIT_TIME_SECONDS_DEFAULT;
+    private int visibilityTimeoutSeconds = VISIBILITY_TIMEOUT_SECONDS_DEFAULT;
+    private int failedMessageVisibilitySeconds = FAILED_MESSAGE_VISIBILITY_SECONDS_DEFAULT;
+    private long deleteBatchDelayMillis = DELETE_BATCH_DELAY_MILLIS_DEFAULT;
+    private List<String> attributeNames = new ArrayList<String>();
+    private List<String> messageAttributeNames = new ArrayList<String>();
+
+    public QueueConsumerConfiguration() {
+    }
+
+    /** copy constructor */
+    public QueueConsumerConfiguration(QueueConsumerConfiguration other) {
+        pollerCount = other.pollerCount;
+        workerCount = other.workerCount;
+        maxInFlightMessages = other.maxInFlightMessages;
+        waitTimeSeconds = other.waitTimeSeconds;
+        visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        failedMessageVisibilitySeconds = other.failedMessageVisibilitySeconds;
+        deleteBatchDelayMillis = other.deleteBatchDelayMillis;
+        attributeNames = new ArrayList<String>(other.attributeNames);
+        messageAttributeNames = new ArrayList<String>(other.messageAttributeNames);
+    }
+
+    /**
+     * The number of threads calling ReceiveMessage. A single poller can receive 10 messages per
+     * call; add pollers when the handlers drain messages faster than one poller can fetch them.
+     */
+    public int getPollerCount() {
+        return pollerCount;
+    }
+
+    /**
+     * The number of threads calling ReceiveMessage. A single poller can receive 10 messages per
+     * call; add pollers when the handlers drain messages faster than one poller can fetch them.
+     */
+    public void setPollerCount(int pollerCount) {
+        if (pollerCount < 1) {
+            throw new IllegalArgumentException("pollerCount must be at least 1");
+        }
+        this.pollerCount = pollerCount;
+    }
+
+    /**
+     * The number of threads calling ReceiveMessage. A single poller can receive 10 messages per
+     * call; add pollers when the handlers drain messages faster than one poller can fetch them.
+     */
+    public QueueConsumerConfiguration withPollerCount(int pollerCount) {
+        setPollerCount(pollerCount);
+        return this;
+    }
+
+    /**
+     * The number of threads running the message handler.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * The number of threads running the message handler.
+     */
+    public void setWorkerCount(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1");
+        }
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * The number of threads running the message handler.
+     */
+    public QueueConsumerConfiguration withWorkerCount(int workerCount) {
+        setWorkerCount(workerCount);
+        return this;
+    }
+
+    /**
+     * The maximum number of messages received but not yet handled, including those being handled.
+     * Pollers stop receiving while the limit is reached, so a slow handler slows down the pollers
+     * instead of piling up messages whose visibility must be kept extended. Values larger than the
+     * worker count let the next messages be fetched while the current ones are handled.
+     */
+    public int getMaxInFlightMessages() {
+        return maxInFlightMessages;
+    }
+
+    /**
+     * The maximum number of messages received but not yet handled, including those being handled.
+     *
+     * @see #getMaxInFlightMessages()
+     */
+    public void setMaxInFlightMessages(int maxInFlightMessages) {
+        if (maxInFlightMessages < 1) {
+            throw new IllegalArgumentException("maxInFlightMessages must be at least 1");
+        }
+        this.maxInFlightMessages = maxInFlightMessages;
+    }
+
+    /**
+     * The maximum number of messages received but not yet handled, including those being handled.
+     *
+     * @see #getMaxInFlightMessages()
+     */
+    public QueueConsumerConfiguration withMaxInFlightMessages(int maxInFlightMessages) {
+        setMaxInFlightMessages(maxInFlightMessages);
+        return this;
+    }
+
+    /**
+     * How long, in seconds, a ReceiveMessage call waits for messages to arrive on an empty queue.
+     * Shutting down the consumer may take this long, since pollers finish their current call.
+     */
+    public int getWaitTimeSeconds() {
+        return waitTimeSeconds;
+    }
+
+    /**
+     * How long, in seconds, a ReceiveMessage call waits for messages to arrive on an empty queue.
+     * Shutting down the consumer may take this long, since pollers finish their current call.
+     */
+    public void setWaitTimeSeconds(int waitTimeSeconds) {
+        if (waitTimeSeconds < 0 || waitTimeSeconds > 20) {
+            throw new IllegalArgumentException("waitTimeSeconds must be between 0 and 20");
+        }
+        this.waitTimeSeconds = waitTimeSeconds;
+    }
+
+    /**
+     * How long, in seconds, a ReceiveMessage call waits for messages to arrive on an empty queue.
+     * Shutting down the consumer may take this long, since pollers finish their current call.
+     */
+    public QueueConsumerConfiguration withWaitTimeSeconds(int waitTimeSeconds) {
+        setWaitTimeSeconds(waitTimeSeconds);
+        return this;
+    }
+
+    /**
+     * The visibility timeout, in seconds, requested for received messages and renewed for messages
+     * still waiting or being handled. Renewals are sent every third of this timeout, so a short
+     * timeout means a failed consumer's messages become visible again sooner, at the cost of more
+     * ChangeMessageVisibilityBatch calls.
+     */
+    public int getVisibilityTimeoutSeconds() {
+        return visibilityTimeoutSeconds;
+    }
+
+    /**
+     * The visibility timeout, in seconds, requested for received messages and renewed for messages
+     * still waiting or being handled.
+     *
+     * @see #getVisibilityTimeoutSeconds()
+     */
+    public void setVisibilityTimeoutSeconds(int visibilityTimeoutSeconds) {
+        if (visibilityTimeoutSeconds < 3) {
+            throw new IllegalArgumentException("visibilityTimeoutSeconds must be at least 3");
+        }
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+    }
+
+    /**
+     * The visibility timeout, in seconds, requested for received messages and renewed for messages
+     * still waiting or being handled.
+     *
+     * @see #getVisibilityTimeoutSeconds()
+     */
+    public QueueConsumerConfiguration withVisibilityTimeoutSeconds(int visibilityTimeoutSeconds) {
+        setVisibilityTimeoutSeconds(visibilityTimeoutSeconds);
+        return this;
+    }
+
+    /**
+     * The visibility timeout, in seconds, set on a message whose handler failed; 0 makes it
+     * visible again right away. Set it to -1 to leave the message invisible for whatever remains of
+     * its current visibility timeout.
+     */
+    public int getFailedMessageVisibilitySeconds() {
+        return failedMessageVisibilitySeconds;
+    }
+
+    /**
+     * The visibility timeout, in seconds, set on a message whose handler failed.
+     *
+     * @see #getFailedMessageVisibilitySeconds()
+     */
+    public void setFailedMessageVisibilitySeconds(int failedMessageVisibilitySeconds) {
+        if (failedMessageVisibilitySeconds < -1) {
+            throw new IllegalArgumentException("failedMessageVisibilitySeconds must be -1 or more");
+        }
+        this.failedMessageVisibilitySeconds = failedMessageVisibilitySeconds;
+    }
+
+    /**
+     * The visibility timeout, in seconds, set on a message whose handler failed.
+     *
+     * @see #getFailedMessageVisibilitySeconds()
+     */
+    public QueueConsumerConfiguration withFailedMessageVisibilitySeconds(int failedMessageVisibilitySeconds) {
+        setFailedMessageVisibilitySeconds(failedMessageVisibilitySeconds);
+        return this;
+    }
+
+    /**
+     * The longest time, in milliseconds, a handled message waits for others to share its
+     * DeleteMessageBatch call. A batch is sent as soon as it holds 10 messages.
+     */
+    public long getDeleteBatchDelayMillis() {
+        return deleteBatchDelayMillis;
+    }
+
+    /**
+     * The longest time, in milliseconds, a handled message waits for others to share its
+     * DeleteMessageBatch call. A batch is sent as soon as it holds 10 messages.
+     */
+    public void setDeleteBatchDelayMillis(long deleteBatchDelayMillis) {
+        if (deleteBatchDelayMillis < 1) {
+            throw new IllegalArgumentException("deleteBatchDelayMillis must be at least 1");
+        }
+        this.deleteBatchDelayMillis = deleteBatchDelayMillis;
+    }
+
+    /**
+     * The longest time, in milliseconds, a handled message waits for others to share its
+     * DeleteMessageBatch call. A batch is sent as soon as it holds 10 messages.
+     */
+    public QueueConsumerConfiguration withDeleteBatchDelayMillis(long deleteBatchDelayMillis) {
+        setDeleteBatchDelayMillis(deleteBatchDelayMillis);
+        return this;
+    }
+
+    /**
+     * The message system attributes requested with each message, as in
+     * {@code ReceiveMessageRequest#getAttributeNames()}.
+     */
+    public List<String> getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * The message system attributes requested with each message, as in
+     * {@code ReceiveMessageRequest#getAttributeNames()}.
+     */
+    public void setAttributeNames(Collection<String> attributeNames) {
+        this.attributeNames = attributeNames == null ? new ArrayList<String>()
+                : new ArrayList<String>(attributeNames);
+    }
+
+    /**
+     * The message system attributes requested with each message, as in
+     * {@code ReceiveMessageRequest#getAttributeNames()}.
+     */
+    public QueueConsumerConfiguration withAttributeNames(String... attributeNames) {
+        setAttributeNames(Arrays.asList(attributeNames));
+        return this;
+    }
+
+    /**
+     * The message attributes requested with each message, as in
+     * {@code ReceiveMessageRequest#getMessageAttributeNames()}.
+     */
+    public List<String> getMessageAttributeNames() {
+        return messageAttributeNames;
+    }
+
+    /**
+     * The message attributes requested with each message, as in
+     * {@code ReceiveMessageRequest#getMessageAttributeNames()}.
+     */
+    public void setMessageAttributeNames(Collection<String> messageAttributeNames) {
+        this.messageAttributeNames = messageAttributeNames == null ? new ArrayList<String>()
+                : new ArrayList<String>(messageAttributeNames);
+    }
+
+    /**
+     * The message attributes requested with each message, as in
+     * {@code ReceiveMessageRequest#getMessageAttributeNames()}.
+     */
+    public QueueConsumerConfiguration withMessageAttributeNames(String... messageAttributeNames) {
+        setMessageAttributeNames(Arrays.asList(messageAttributeNames));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "QueueConsumerConfiguration [pollerCount=" + pollerCount + ", workerCount=" + workerCount
+                + ", maxInFlightMessages=" + maxInFlightMessages + ", waitTimeSeconds=" + waitTimeSeconds
+                + ", visibilityTimeoutSeconds=" + visibilityTimeoutSeconds + ", failedMessageVisibilitySeconds="
+                + failedMessageVisibilitySeconds + ", deleteBatchDelayMillis=" + deleteBatchDelayMillis
+                + ", attributeNames=" + attributeNames + ", messageAttributeNames=" + messageAttributeNames + "]";
+    }
+}
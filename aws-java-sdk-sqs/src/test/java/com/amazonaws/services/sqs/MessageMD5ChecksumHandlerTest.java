@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import com.amazonaws.util.BinaryUtils;
+
+public class MessageMD5ChecksumHandlerTest {
+
+    /** The size of the handler's encoding buffer. */
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final String[] TAILS = {
+            "\u00e9", // two bytes
+            "\u20ac", // three bytes
+            "\ud83d\ude00", // a surrogate pair, four bytes
+            "\ud83d", // an unpaired high surrogate
+            "\ude00", // an unpaired low surrogate
+            "\ude00\ud83d", // surrogates in the wrong order
+    };
+
+    private final MessageMD5ChecksumHandler handler = new MessageMD5ChecksumHandler();
+
+    @After
+    public void tearDown() {
+        System.clearProperty(MessageMD5ChecksumHandler.DISABLE_MD5_VALIDATION_PROPERTY);
+    }
+
+    @Test
+    public void testBodyHashMatchesStringGetBytes() throws Exception {
+        for (String tail : TAILS) {
+            assertBodyAccepted(tail);
+            assertBodyAccepted("a" + tail + "b" + tail + tail);
+        }
+        assertBodyAccepted("");
+    }
+
+    @Test
+    public void testBodyHashAcrossBufferBoundaries() throws Exception {
+        for (String tail : TAILS) {
+            // puts the multi-byte character on every position around the end of the buffer
+            for (int prefix = BUFFER_SIZE - 8; prefix <= BUFFER_SIZE + 4; prefix++) {
+                assertBodyAccepted(repeat("a", prefix) + tail + "z");
+            }
+            // many buffers' worth of multi-byte characters
+            assertBodyAccepted(repeat(tail, 3 * BUFFER_SIZE + 1));
+        }
+    }
+
+    @Test
+    public void testAttributesHashMatchesStringGetBytes() throws Exception {
+        for (String tail : TAILS) {
+            Map<String, MessageAttributeValue> attributes = new HashMap<String, MessageAttributeValue>();
+            attributes.put("name" + tail, new MessageAttributeValue().withDataType("String")
+                    .withStringValue(repeat("v", BUFFER_SIZE - 2) + tail));
+            attributes.put("binary", new MessageAttributeValue().withDataType("Binary" + tail)
+                    .withBinaryValue(ByteBuffer.wrap(new byte[] { 1, 2, 3 })));
+            attributes.put("list", new MessageAttributeValue().withDataType("String")
+                    .withStringListValues(tail, "x" + tail));
+            SendMessageResult result = new SendMessageResult()
+                    .withMD5OfMessageBody(md5("body".getBytes(UTF8)))
+                    .withMD5OfMessageAttributes(attributesMd5(attributes));
+            handler.afterResponse(request(new SendMessageRequest("queue", "body").withMessageAttributes(attributes),
+                    "https"), result, null);
+        }
+    }
+
+    @Test
+    public void testMismatchIsRejected() throws Exception {
+        try {
+            handler.afterResponse(request(new ReceiveMessageRequest(), "https"), received("body", md5(new byte[0])),
+                    null);
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void testDisablingValidationOnlyAppliesToHttps() throws Exception {
+        System.setProperty(MessageMD5ChecksumHandler.DISABLE_MD5_VALIDATION_PROPERTY, "true");
+        ReceiveMessageResult corrupted = received("body", md5(new byte[0]));
+
+        handler.afterResponse(request(new ReceiveMessageRequest(), "https"), corrupted, null);
+        try {
+            handler.afterResponse(request(new ReceiveMessageRequest(), "http"), corrupted, null);
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+
+        System.clearProperty(MessageMD5ChecksumHandler.DISABLE_MD5_VALIDATION_PROPERTY);
+        try {
+            handler.afterResponse(request(new ReceiveMessageRequest(), "https"), corrupted, null);
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    private void assertBodyAccepted(String body) throws Exception {
+        handler.afterResponse(request(new ReceiveMessageRequest(), "https"),
+                received(body, md5(body.getBytes(UTF8))), null);
+    }
+
+    private static ReceiveMessageResult received(String body, String md5OfBody) {
+        return new ReceiveMessageResult().withMessages(new Message().withBody(body).withMD5OfBody(md5OfBody));
+    }
+
+    private static Request<?> request(AmazonWebServiceRequest original, String scheme) {
+        Request<?> request = new DefaultRequest<Object>(original, "AmazonSQS");
+        request.setEndpoint(URI.create(scheme + "://sqs.us-east-1.amazonaws.com"));
+        return request;
+    }
+
+    /**
+     * Hashes the attributes as documented by SQS, encoding strings with String.getBytes.
+     */
+    private static String attributesMd5(Map<String, MessageAttributeValue> attributes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Map.Entry<String, MessageAttributeValue> entry : new TreeMap<String, MessageAttributeValue>(attributes)
+                .entrySet()) {
+            MessageAttributeValue value = entry.getValue();
+            writeLengthAndBytes(out, entry.getKey().getBytes(UTF8));
+            writeLengthAndBytes(out, value.getDataType().getBytes(UTF8));
+            if (value.getStringValue() != null) {
+                out.write(1);
+                writeLengthAndBytes(out, value.getStringValue().getBytes(UTF8));
+            } else if (value.getBinaryValue() != null) {
+                out.write(2);
+                writeLengthAndBytes(out, value.getBinaryValue().array());
+            } else {
+                out.write(3);
+                for (String member : value.getStringListValues()) {
+                    writeLengthAndBytes(out, member.getBytes(UTF8));
+                }
+            }
+        }
+        return md5(out.toByteArray());
+    }
+
+    private static void writeLengthAndBytes(ByteArrayOutputStream out, byte[] bytes) {
+        int length = bytes.length;
+        out.write(length >>> 24);
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+        out.write(bytes, 0, length);
+    }
+
+    private static String md5(byte[] bytes) throws Exception {
+        return BinaryUtils.toHex(MessageDigest.getInstance("MD5").digest(bytes));
+    }
+
+    private static String repeat(String s, int count) {
+        char[] chars = new char[s.length() * count];
+        for (int i = 0; i < count; i++) {
+            s.getChars(0, s.length(), chars, i * s.length());
+        }
+        return new String(chars);
+    }
+}
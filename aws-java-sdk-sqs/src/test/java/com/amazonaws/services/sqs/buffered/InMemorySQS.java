@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.sqs.AbstractAmazonSQSAsync;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResultEntry;
+import com.amazonaws.services.sqs.model.GetQueueAttributesRequest;
+import com.amazonaws.services.sqs.model.GetQueueAttributesResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+
+/**
+ * A single in-memory queue standing in for SQS. Received messages stay in flight until their
+ * visibility is reset; visibility timeouts never expire on their own.
+ */
+class InMemorySQS extends AbstractAmazonSQSAsync {
+
+    private final int visibilityTimeoutSeconds;
+    private final LinkedList<Message> visible = new LinkedList<Message>();
+    private final Map<String, Message> inFlight = new LinkedHashMap<String, Message>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    final AtomicInteger receiveCalls = new AtomicInteger();
+    final AtomicInteger returnedMessages = new AtomicInteger();
+
+    InMemorySQS(int visibilityTimeoutSeconds) {
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+    }
+
+    synchronized void add(int count) {
+        for (int i = 0; i < count; i++) {
+            int id = ids.incrementAndGet();
+            visible.add(new Message().withMessageId("m" + id).withBody("body" + id));
+        }
+    }
+
+    synchronized int visibleCount() {
+        return visible.size();
+    }
+
+    synchronized int inFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public GetQueueAttributesResult getQueueAttributes(GetQueueAttributesRequest request) {
+        return new GetQueueAttributesResult().withAttributes(Collections.singletonMap("VisibilityTimeout",
+                Integer.toString(visibilityTimeoutSeconds)));
+    }
+
+    @Override
+    public synchronized ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+        receiveCalls.incrementAndGet();
+        int max = request.getMaxNumberOfMessages() == null ? 1 : request.getMaxNumberOfMessages();
+        List<Message> messages = new ArrayList<Message>();
+        while (messages.size() < max && !visible.isEmpty()) {
+            Message message = visible.removeFirst();
+            String handle = message.getMessageId() + "-" + ids.incrementAndGet();
+            inFlight.put(handle, message);
+            messages.add(new Message().withMessageId(message.getMessageId()).withBody(message.getBody())
+                    .withReceiptHandle(handle).withMessageAttributes(message.getMessageAttributes()));
+        }
+        return new ReceiveMessageResult().withMessages(messages);
+    }
+
+    @Override
+    public synchronized ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(
+            ChangeMessageVisibilityBatchRequest request) {
+        List<ChangeMessageVisibilityBatchResultEntry> results = new ArrayList<ChangeMessageVisibilityBatchResultEntry>();
+        for (ChangeMessageVisibilityBatchRequestEntry entry : request.getEntries()) {
+            Message message = inFlight.get(entry.getReceiptHandle());
+            if (message != null && entry.getVisibilityTimeout() == 0) {
+                inFlight.remove(entry.getReceiptHandle());
+                visible.add(message);
+                returnedMessages.incrementAndGet();
+            }
+            results.add(new ChangeMessageVisibilityBatchResultEntry().withId(entry.getId()));
+        }
+        return new ChangeMessageVisibilityBatchResult().withSuccessful(results);
+    }
+
+    @Override
+    public synchronized SendMessageBatchResult sendMessageBatch(SendMessageBatchRequest request) {
+        List<SendMessageBatchResultEntry> results = new ArrayList<SendMessageBatchResultEntry>();
+        for (SendMessageBatchRequestEntry entry : request.getEntries()) {
+            String id = "m" + ids.incrementAndGet();
+            visible.add(new Message().withMessageId(id).withBody(entry.getMessageBody())
+                    .withMessageAttributes(entry.getMessageAttributes()));
+            results.add(new SendMessageBatchResultEntry().withId(entry.getId()).withMessageId(id));
+        }
+        return new SendMessageBatchResult().withSuccessful(results);
+    }
+}
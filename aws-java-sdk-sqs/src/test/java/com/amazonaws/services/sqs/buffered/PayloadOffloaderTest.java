@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+public class PayloadOffloaderTest {
+
+    private static final String QUEUE_URL = "queue";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemorySQS sqs = new InMemorySQS(30);
+    private PayloadStore store;
+    private AmazonSQSBufferedAsyncClient client;
+
+    @Before
+    public void setUp() {
+        final PayloadStore files = new FileSystemPayloadStore(folder.getRoot());
+        store = new PayloadStore() {
+            public String storePayload(String payload) {
+                if (payload.startsWith("fail")) {
+                    throw new IllegalStateException("store failure");
+                }
+                return files.storePayload(payload);
+            }
+
+            public String getPayload(String pointer) {
+                return files.getPayload(pointer);
+            }
+        };
+        client = new AmazonSQSBufferedAsyncClient(sqs, new QueueBufferConfig().withPayloadStore(store)
+                .withLongPoll(false));
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    public void testOversizedBodyRoundTrips() {
+        // Multi-byte characters, so that the body is over the limit in bytes but not in chars
+        String body = body('\u00e9', 200 * 1024);
+        client.sendMessage(new SendMessageRequest(QUEUE_URL, body));
+        client.sendMessage(new SendMessageRequest(QUEUE_URL, "small"));
+
+        List<Message> sent = sqs.receiveMessage(new ReceiveMessageRequest(QUEUE_URL).withMaxNumberOfMessages(10))
+                .getMessages();
+        Assert.assertEquals(2, sent.size());
+        Assert.assertTrue(sent.get(0).getBody().startsWith(PayloadOffloader.POINTER_PREFIX));
+        Assert.assertEquals("small", sent.get(1).getBody());
+        returnAll(sent);
+
+        List<Message> received = client.receiveMessage(new ReceiveMessageRequest(QUEUE_URL)
+                .withMaxNumberOfMessages(10)).getMessages();
+        Assert.assertEquals(2, received.size());
+        Set<String> bodies = new HashSet<String>();
+        for (Message message : received) {
+            bodies.add(message.getBody());
+        }
+        Assert.assertEquals(new HashSet<String>(Arrays.asList(body, "small")), bodies);
+    }
+
+    @Test
+    public void testSmallBodyIsNotOffloaded() {
+        client.sendMessage(new SendMessageRequest(QUEUE_URL, body('a', 1024)));
+        Assert.assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void testStoreFailureFailsOnlyItsMessage() throws Exception {
+        Future<SendMessageResult> failing = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL,
+                "fail" + body('a', 300 * 1024)));
+        Future<SendMessageResult> oversized = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL,
+                body('b', 300 * 1024)));
+        Future<SendMessageResult> small = client.sendMessageAsync(new SendMessageRequest(QUEUE_URL, "small"));
+
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonClientException);
+            Assert.assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+        Assert.assertNotNull(oversized.get(5, TimeUnit.SECONDS).getMessageId());
+        Assert.assertNotNull(small.get(5, TimeUnit.SECONDS).getMessageId());
+        Assert.assertEquals(2, sqs.visibleCount());
+    }
+
+    private void returnAll(List<Message> messages) {
+        ChangeMessageVisibilityBatchRequest request = new ChangeMessageVisibilityBatchRequest()
+                .withQueueUrl(QUEUE_URL);
+        for (int i = 0; i < messages.size(); i++) {
+            request.withEntries(new ChangeMessageVisibilityBatchRequestEntry(Integer.toString(i), messages.get(i)
+                    .getReceiptHandle()).withVisibilityTimeout(0));
+        }
+        sqs.changeMessageVisibilityBatch(request);
+    }
+
+    private static String body(char c, int length) {
+        StringBuilder body = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            body.append(c);
+        }
+        return body.toString();
+    }
+}
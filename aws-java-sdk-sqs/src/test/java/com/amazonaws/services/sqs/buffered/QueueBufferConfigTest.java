@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+
+public class QueueBufferConfigTest {
+
+    @Test
+    public void testDefaultsAreValid() {
+        new QueueBufferConfig().validate();
+    }
+
+    @Test
+    public void testReturnMarginMustBeShorterThanVisibilityTimeout() {
+        new QueueBufferConfig().withVisibilityTimeoutSeconds(10).withVisibilityReturnMarginSeconds(9).validate();
+        try {
+            new QueueBufferConfig().withVisibilityTimeoutSeconds(10).withVisibilityReturnMarginSeconds(10)
+                    .validate();
+            Assert.fail();
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void testReturnMarginIsNotCheckedAgainstQueueTimeout() {
+        // The queue's own timeout is only known once the buffer asks for it
+        new QueueBufferConfig().withVisibilityReturnMarginSeconds(3600).validate();
+    }
+
+    @Test(expected = AmazonClientException.class)
+    public void testNegativeReturnMarginIsRejected() {
+        new QueueBufferConfig().withVisibilityReturnMarginSeconds(-1).validate();
+    }
+}
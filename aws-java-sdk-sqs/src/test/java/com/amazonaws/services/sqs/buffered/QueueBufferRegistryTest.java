@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+
+public class QueueBufferRegistryTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSmallRegistryEvictsLeastRecentlyUsed() throws Exception {
+        QueueBufferRegistry registry = newRegistry(new InMemorySQS(30), 4);
+        QueueBuffer first = registry.get("q1");
+        for (int i = 2; i <= 4; i++) {
+            Thread.sleep(2);
+            registry.get("q" + i);
+        }
+        Thread.sleep(2);
+        Assert.assertSame(first, registry.get("q1"));
+        Thread.sleep(2);
+        registry.get("q5");
+
+        Assert.assertEquals(4, registry.values().size());
+        Assert.assertNull(registry.peek("q2"));
+        Assert.assertSame(first, registry.peek("q1"));
+        Assert.assertNotNull(registry.peek("q5"));
+    }
+
+    @Test
+    public void testStripedRegistryStaysNearItsBound() {
+        QueueBufferRegistry registry = newRegistry(new InMemorySQS(30), 100);
+        for (int i = 0; i < 1000; i++) {
+            registry.get("queue" + i);
+        }
+        int size = registry.values().size();
+        // Each stripe holds its share of the bound, rounded up
+        Assert.assertTrue("size " + size, size >= 90 && size <= 100 + 16);
+        Assert.assertNotNull(registry.peek("queue999"));
+    }
+
+    @Test
+    public void testConcurrentGetsShareOneBuffer() throws Exception {
+        final QueueBufferRegistry registry = newRegistry(new InMemorySQS(30), 100);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<QueueBuffer>> results = new ArrayList<Future<QueueBuffer>>();
+        for (int i = 0; i < 16; i++) {
+            final String qUrl = "q" + (i % 4);
+            results.add(executor.submit(new Callable<QueueBuffer>() {
+                public QueueBuffer call() throws Exception {
+                    start.await();
+                    return registry.get(qUrl);
+                }
+            }));
+        }
+        start.countDown();
+        for (int i = 0; i < results.size(); i++) {
+            QueueBuffer buffer = results.get(i).get(5, TimeUnit.SECONDS);
+            Assert.assertSame(registry.peek("q" + (i % 4)), buffer);
+        }
+        Assert.assertEquals(4, registry.values().size());
+    }
+
+    @Test
+    public void testEvictedBufferReturnsPrefetchedMessages() throws Exception {
+        InMemorySQS sqs = new InMemorySQS(30);
+        sqs.add(50);
+        QueueBufferRegistry registry = newRegistry(sqs, 1);
+        QueueBuffer evicted = registry.get("q1");
+        Assert.assertEquals(1, evicted.receiveMessageSync(new ReceiveMessageRequest("q1")
+                .withMaxNumberOfMessages(1)).getMessages().size());
+
+        registry.get("q2");
+        Assert.assertNull(registry.peek("q1"));
+
+        // Everything but the delivered message becomes visible again, and no more is received
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((sqs.visibleCount() != 49 || evicted.getReceiveBufferMetrics().getInflightReceiveBatches() > 0)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(49, sqs.visibleCount());
+        Assert.assertEquals(1, sqs.inFlightCount());
+        int receiveCalls = sqs.receiveCalls.get();
+        Thread.sleep(100);
+        Assert.assertEquals(receiveCalls, sqs.receiveCalls.get());
+
+        // A caller still holding the retired buffer is served
+        Assert.assertEquals(1, evicted.receiveMessageSync(new ReceiveMessageRequest("q1")
+                .withMaxNumberOfMessages(1)).getMessages().size());
+    }
+
+    private QueueBufferRegistry newRegistry(InMemorySQS sqs, int maxQueueBuffers) {
+        return new QueueBufferRegistry(new QueueBufferConfig().withMaxQueueBuffers(maxQueueBuffers)
+                .withLongPoll(false), sqs, executor);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class ReceivePrefetchControllerTest {
+
+    private static final long USABLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Test
+    public void testTargetIsOneWithoutSamples() {
+        ReceivePrefetchController controller = new ReceivePrefetchController();
+        Assert.assertEquals(1, controller.targetBatches(10, USABLE_NANOS));
+
+        // Empty batches say nothing about the batch size or latency
+        controller.onBatchReceived(0, TimeUnit.SECONDS.toNanos(20));
+        controller.onMessagesDelivered(100);
+        Assert.assertEquals(1, controller.targetBatches(10, USABLE_NANOS));
+    }
+
+    @Test
+    public void testTargetFollowsDrainRateWithinBounds() throws Exception {
+        ReceivePrefetchController controller = new ReceivePrefetchController();
+        controller.onBatchReceived(10, TimeUnit.SECONDS.toNanos(1));
+        controller.onMessagesDelivered(1000);
+        Thread.sleep(1100);
+
+        Assert.assertTrue(controller.getDrainRatePerSecond() > 0);
+        // Draining hundreds of messages a second with one second receives wants every batch
+        Assert.assertEquals(10, controller.targetBatches(10, USABLE_NANOS));
+        Assert.assertEquals(3, controller.targetBatches(3, USABLE_NANOS));
+        // ... unless they would expire before being handed out
+        int shortVisibility = controller.targetBatches(10, TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertTrue("target " + shortVisibility, shortVisibility < 10);
+        Assert.assertEquals(1, controller.targetBatches(10, 0));
+    }
+
+    @Test
+    public void testIdleTimeDecaysDrainRate() throws Exception {
+        ReceivePrefetchController controller = new ReceivePrefetchController();
+        controller.onBatchReceived(10, TimeUnit.SECONDS.toNanos(1));
+        controller.onMessagesDelivered(1000);
+        Thread.sleep(1100);
+        double busy = controller.getDrainRatePerSecond();
+        Thread.sleep(2100);
+        double idle = controller.getDrainRatePerSecond();
+
+        Assert.assertTrue(busy + " then " + idle, idle < busy);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.buffered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+
+public class ReceiveQueueBufferTest {
+
+    private static final String QUEUE_URL = "queue";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<ReceiveQueueBuffer> buffers = new ArrayList<ReceiveQueueBuffer>();
+
+    @After
+    public void tearDown() {
+        for (ReceiveQueueBuffer buffer : buffers) {
+            buffer.shutdown();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testUnconsumedMessagesAreReturnedBeforeTheyExpire() throws Exception {
+        InMemorySQS sqs = new InMemorySQS(30);
+        sqs.add(30);
+        ReceiveQueueBuffer buffer = newBuffer(sqs, new QueueBufferConfig().withVisibilityTimeoutSeconds(2)
+                .withVisibilityReturnMarginSeconds(1));
+        Assert.assertEquals(1, receiveOne(buffer));
+
+        // Returned one second into their two second visibility timeout
+        Thread.sleep(500);
+        Assert.assertEquals(0, buffer.getMetrics().getReturnedMessages());
+        awaitVisible(sqs, 29, 2000);
+        Assert.assertEquals(29, buffer.getMetrics().getReturnedMessages());
+        Assert.assertEquals(0, buffer.getMetrics().getBufferedMessages());
+        Assert.assertEquals(0, buffer.getMetrics().getExpiredMessages());
+    }
+
+    @Test
+    public void testMarginNotShorterThanQueueTimeoutDisablesEarlyReturn() throws Exception {
+        InMemorySQS sqs = new InMemorySQS(1);
+        sqs.add(30);
+        ReceiveQueueBuffer buffer = newBuffer(sqs, new QueueBufferConfig().withVisibilityReturnMarginSeconds(5));
+
+        // Batches are not expired as soon as they arrive
+        Assert.assertEquals(1, receiveOne(buffer));
+        Assert.assertEquals(1, receiveOne(buffer));
+        Thread.sleep(200);
+        Assert.assertEquals(0, buffer.getMetrics().getReturnedMessages());
+    }
+
+    @Test
+    public void testClearCountsReturnedMessages() throws Exception {
+        InMemorySQS sqs = new InMemorySQS(30);
+        sqs.add(30);
+        ReceiveQueueBuffer buffer = newBuffer(sqs, new QueueBufferConfig().withMaxInflightReceiveBatches(1)
+                .withMaxDoneReceiveBatches(1));
+        Assert.assertEquals(1, receiveOne(buffer));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (buffer.getMetrics().getInflightReceiveBatches() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        int buffered = buffer.getMetrics().getBufferedMessages();
+        Assert.assertTrue(buffered > 0);
+
+        buffer.clear();
+        Assert.assertEquals(buffered, buffer.getMetrics().getReturnedMessages());
+        Assert.assertEquals(0, buffer.getMetrics().getBufferedMessages());
+        Assert.assertEquals(1, sqs.inFlightCount());
+        Assert.assertEquals(29, sqs.visibleCount());
+    }
+
+    private ReceiveQueueBuffer newBuffer(InMemorySQS sqs, QueueBufferConfig config) {
+        ReceiveQueueBuffer buffer = new ReceiveQueueBuffer(sqs, executor, config.withLongPoll(false), QUEUE_URL);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private static int receiveOne(ReceiveQueueBuffer buffer) throws Exception {
+        return buffer.receiveMessageAsync(new ReceiveMessageRequest(QUEUE_URL).withMaxNumberOfMessages(1), null)
+                .get(5, TimeUnit.SECONDS).getMessages().size();
+    }
+
+    private static void awaitVisible(InMemorySQS sqs, int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (sqs.visibleCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, sqs.visibleCount());
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.consumer;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.Message;
+
+public class QueueConsumerTest {
+
+    private static final String QUEUE_URL = "queue";
+
+    private final RecordingSQS sqs = new RecordingSQS();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private QueueConsumer consumer;
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        if (consumer != null) {
+            consumer.shutdown();
+            consumer.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testReceivesNoMoreThanMaxInFlight() throws Exception {
+        sqs.add(20);
+        consumer = start(blockingHandler(), config().withMaxInFlightMessages(5).withWorkerCount(2));
+
+        Thread.sleep(300);
+        Assert.assertEquals(5, sqs.receivedMessages.get());
+        Assert.assertEquals(5, consumer.getInFlightCount());
+        synchronized (sqs) {
+            for (int size : sqs.receiveSizes) {
+                Assert.assertTrue("receive size " + size, size <= 5);
+            }
+        }
+
+        release.countDown();
+        await(new Condition() {
+            public boolean holds() {
+                return consumer.getHandledCount() == 20;
+            }
+        });
+    }
+
+    @Test
+    public void testHandledMessagesAreDeletedInBatches() throws Exception {
+        sqs.add(25);
+        consumer = start(new MessageHandler() {
+            public void handleMessage(Message message) {
+            }
+        }, config());
+
+        await(new Condition() {
+            public boolean holds() {
+                return sqs.deletedCount() == 25;
+            }
+        });
+        synchronized (sqs) {
+            int largest = 0;
+            for (List<String> batch : sqs.deleteBatches) {
+                Assert.assertTrue(batch.size() <= 10);
+                largest = Math.max(largest, batch.size());
+            }
+            Assert.assertTrue("largest batch " + largest, largest > 1);
+            Assert.assertTrue(sqs.deleteBatches.size() < 25);
+        }
+        Assert.assertEquals(25, consumer.getHandledCount());
+    }
+
+    @Test
+    public void testHeartbeatExtendsVisibilityOfLongJobs() throws Exception {
+        sqs.add(1);
+        consumer = start(blockingHandler(), config().withVisibilityTimeoutSeconds(3));
+
+        await(new Condition() {
+            public boolean holds() {
+                synchronized (sqs) {
+                    return !sqs.heartbeats.isEmpty();
+                }
+            }
+        });
+        synchronized (sqs) {
+            ChangeMessageVisibilityBatchRequest heartbeat = sqs.heartbeats.get(0);
+            Assert.assertEquals(1, heartbeat.getEntries().size());
+            Assert.assertEquals("r0", heartbeat.getEntries().get(0).getReceiptHandle());
+            Assert.assertEquals(Integer.valueOf(3), heartbeat.getEntries().get(0).getVisibilityTimeout());
+        }
+        Assert.assertEquals(0, sqs.deletedCount());
+    }
+
+    @Test
+    public void testFailedMessageVisibilityIsReset() throws Exception {
+        sqs.add(1);
+        consumer = start(new MessageHandler() {
+            public void handleMessage(Message message) throws Exception {
+                throw new Exception("handler failure");
+            }
+        }, config().withFailedMessageVisibilitySeconds(0));
+
+        await(new Condition() {
+            public boolean holds() {
+                return consumer.getFailedCount() == 1;
+            }
+        });
+        consumer.shutdown();
+        Assert.assertTrue(consumer.awaitTermination(5, TimeUnit.SECONDS));
+        synchronized (sqs) {
+            Assert.assertEquals(1, sqs.visibilityChanges.size());
+            Assert.assertEquals("r0", sqs.visibilityChanges.get(0).getReceiptHandle());
+            Assert.assertEquals(Integer.valueOf(0), sqs.visibilityChanges.get(0).getVisibilityTimeout());
+        }
+        Assert.assertEquals(0, sqs.deletedCount());
+    }
+
+    @Test
+    public void testPollerSurvivesRuntimeExceptions() throws Exception {
+        sqs.receiveFailures.set(2);
+        sqs.add(3);
+        // With a single permit, permits leaked by a failed receive would stall the consumer
+        consumer = start(new MessageHandler() {
+            public void handleMessage(Message message) {
+            }
+        }, config().withMaxInFlightMessages(1));
+
+        await(new Condition() {
+            public boolean holds() {
+                return consumer.getHandledCount() == 3;
+            }
+        });
+    }
+
+    @Test
+    public void testShutdownDrainsReceivedMessages() throws Exception {
+        sqs.add(4);
+        consumer = start(blockingHandler(), config().withWorkerCount(1));
+        await(new Condition() {
+            public boolean holds() {
+                return consumer.getInFlightCount() == 4;
+            }
+        });
+
+        consumer.shutdown();
+        Assert.assertFalse(consumer.awaitTermination(200, TimeUnit.MILLISECONDS));
+        sqs.add(1);
+        release.countDown();
+        Assert.assertTrue(consumer.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(4, consumer.getHandledCount());
+        Assert.assertEquals(4, sqs.deletedCount());
+        Assert.assertEquals(4, sqs.receivedMessages.get());
+    }
+
+    private QueueConsumerConfiguration config() {
+        return new QueueConsumerConfiguration().withWaitTimeSeconds(0);
+    }
+
+    private QueueConsumer start(MessageHandler handler, QueueConsumerConfiguration config) {
+        QueueConsumer consumer = new QueueConsumer(sqs, QUEUE_URL, handler, config);
+        consumer.start();
+        return consumer;
+    }
+
+    private MessageHandler blockingHandler() {
+        return new MessageHandler() {
+            public void handleMessage(Message message) throws Exception {
+                release.await();
+            }
+        };
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static void await(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.holds()) {
+            Assert.assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
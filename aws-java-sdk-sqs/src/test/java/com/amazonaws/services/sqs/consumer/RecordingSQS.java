@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.sqs.consumer;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.sqs.AbstractAmazonSQS;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchResult;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+
+/**
+ * Hands out queued messages and records the calls a {@link QueueConsumer} makes.
+ */
+class RecordingSQS extends AbstractAmazonSQS {
+
+    private final LinkedList<Message> queued = new LinkedList<Message>();
+
+    /** Receive calls still to fail before messages are handed out. */
+    final AtomicInteger receiveFailures = new AtomicInteger();
+
+    final AtomicInteger receivedMessages = new AtomicInteger();
+    final List<Integer> receiveSizes = new ArrayList<Integer>();
+    final List<List<String>> deleteBatches = new ArrayList<List<String>>();
+    final List<ChangeMessageVisibilityBatchRequest> heartbeats = new ArrayList<ChangeMessageVisibilityBatchRequest>();
+    final List<ChangeMessageVisibilityRequest> visibilityChanges = new ArrayList<ChangeMessageVisibilityRequest>();
+
+    synchronized void add(int count) {
+        for (int i = 0; i < count; i++) {
+            int id = queued.size() + receivedMessages.get();
+            queued.add(new Message().withMessageId("m" + id).withReceiptHandle("r" + id).withBody("body" + id));
+        }
+    }
+
+    synchronized int deletedCount() {
+        int count = 0;
+        for (List<String> batch : deleteBatches) {
+            count += batch.size();
+        }
+        return count;
+    }
+
+    @Override
+    public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+        if (receiveFailures.getAndDecrement() > 0) {
+            throw new IllegalStateException("receive failure");
+        }
+        List<Message> messages = new ArrayList<Message>();
+        synchronized (this) {
+            receiveSizes.add(request.getMaxNumberOfMessages());
+            while (messages.size() < request.getMaxNumberOfMessages() && !queued.isEmpty()) {
+                messages.add(queued.removeFirst());
+            }
+            receivedMessages.addAndGet(messages.size());
+        }
+        if (messages.isEmpty()) {
+            // stands in for the long poll
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new ReceiveMessageResult().withMessages(messages);
+    }
+
+    @Override
+    public synchronized DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request) {
+        List<String> receiptHandles = new ArrayList<String>();
+        for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+            receiptHandles.add(entry.getReceiptHandle());
+        }
+        deleteBatches.add(receiptHandles);
+        return new DeleteMessageBatchResult();
+    }
+
+    @Override
+    public synchronized ChangeMessageVisibilityBatchResult changeMessageVisibilityBatch(
+            ChangeMessageVisibilityBatchRequest request) {
+        heartbeats.add(request);
+        return new ChangeMessageVisibilityBatchResult();
+    }
+
+    @Override
+    public synchronized ChangeMessageVisibilityResult changeMessageVisibility(ChangeMessageVisibilityRequest request) {
+        visibilityChanges.add(request);
+        return new ChangeMessageVisibilityResult();
+    }
+}